@@ -0,0 +1,21 @@
+package com.example.cars.config;
+
+import com.example.cars.stats.AnomalyDetector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Configuration class for the anomaly detection on ingested fuel entries
+@Configuration
+public class AnomalyConfig {
+
+    // cars.anomalies.enabled: flag suspicious fill-ups on createFuelEntry
+    // cars.anomalies.tank-capacity-liters: fill-ups above this many liters are flagged
+    // cars.anomalies.threshold: spreads from a car's rolling mean price or consumption that get flagged
+    @Bean
+    public AnomalyDetector anomalyDetector(@Value("${cars.anomalies.enabled:true}") boolean enabled,
+            @Value("${cars.anomalies.tank-capacity-liters:100}") double tankCapacityLiters,
+            @Value("${cars.anomalies.threshold:3.0}") double threshold) {
+        return new AnomalyDetector(enabled, tankCapacityLiters, threshold);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.cars.config;
+
+import com.example.cars.persistence.FsyncPolicy;
+import com.example.cars.persistence.PersistenceManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+// Configuration class for the write-ahead logs behind the repositories (off by default)
+@Configuration
+public class PersistenceConfig {
+
+    // cars.persistence.fsync: per-write, group-commit or periodic (every cars.persistence.fsync-interval-ms).
+    // A repository is snapshotted once its log has grown by cars.persistence.snapshot-threshold-bytes.
+    @Bean
+    public PersistenceManager persistenceManager(
+            @Value("${cars.persistence.enabled:false}") boolean enabled,
+            @Value("${cars.persistence.directory:data}") String directory,
+            @Value("${cars.persistence.fsync:group-commit}") String fsync,
+            @Value("${cars.persistence.fsync-interval-ms:100}") long fsyncIntervalMillis,
+            @Value("${cars.persistence.snapshot-threshold-bytes:67108864}") long snapshotThresholdBytes,
+            @Value("${cars.persistence.snapshot-check-ms:10000}") long snapshotCheckMillis) {
+        return new PersistenceManager(enabled, Path.of(directory), FsyncPolicy.fromProperty(fsync), fsyncIntervalMillis,
+            snapshotThresholdBytes, snapshotCheckMillis);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.cars.config;
+
+import com.example.cars.stats.FleetStatsCalculator;
+import com.example.cars.stats.FuelStatsCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Configuration class for the fuel stats cache and the fleet stats pool
+@Configuration
+public class StatsConfig {
+
+    // cars.stats.cache-size: cars whose stats are kept, least recently used evicted first; 0 disables it
+    @Bean
+    public FuelStatsCache fuelStatsCache(@Value("${cars.stats.cache-size:10000}") int cacheSize) {
+        return new FuelStatsCache(cacheSize);
+    }
+
+    // cars.stats.fleet-parallelism: threads computing fleet-wide and batch stats; 0 uses one per available processor
+    @Bean
+    public FleetStatsCalculator fleetStatsCalculator(@Value("${cars.stats.fleet-parallelism:0}") int parallelism) {
+        return new FleetStatsCalculator(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.cars.config;
+
+import com.example.cars.repository.FuelAnomalyRepository;
+import com.example.cars.repository.FuelEntryRepository;
+import com.example.cars.repository.FuelHistoryPurger;
+import com.example.cars.repository.storage.ColumnarFuelEntryStore;
+import com.example.cars.repository.storage.FuelEntryStore;
+import com.example.cars.repository.storage.HeapFuelEntryStore;
+import com.example.cars.repository.storage.OffHeapFuelEntryStore;
+import com.example.cars.repository.storage.TieredFuelEntryStore;
+import com.example.cars.stats.AnomalyDetector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+// Configuration class selecting the storage backend behind FuelEntryRepository
+@Configuration
+public class StorageConfig {
+
+    // cars.storage.fuel-entries: heap (one object per entry), columnar (primitive arrays; only the rows
+    // shrink, the repository's per-car index stays on the heap), off-heap
+    // (fixed-width records in native memory) or tiered (recent entries on the heap within
+    // cars.storage.hot-budget-mb, older ones in memory-mapped segments under cars.storage.cold-directory)
+    @Bean
+    public FuelEntryStore fuelEntryStore(@Value("${cars.storage.fuel-entries:heap}") String mode,
+            @Value("${cars.storage.hot-budget-mb:256}") long hotBudgetMb,
+            @Value("${cars.storage.cold-directory:data/cold}") String coldDirectory) {
+        return switch (mode) {
+            case "heap" -> new HeapFuelEntryStore();
+            case "columnar" -> new ColumnarFuelEntryStore();
+            case "off-heap" -> new OffHeapFuelEntryStore();
+            case "tiered" -> new TieredFuelEntryStore(Path.of(coldDirectory),
+                (int) Math.min(Integer.MAX_VALUE, Math.max(1, (hotBudgetMb << 20) / TieredFuelEntryStore.HOT_ENTRY_BYTES)));
+            default -> throw new IllegalStateException("Unknown cars.storage.fuel-entries mode: " + mode);
+        };
+    }
+
+    // cars.storage.purge: background (a deleted car's fuel entries are hidden at once and reclaimed on a
+    // background thread) or immediate (deleted before the request returns)
+    @Bean
+    public FuelHistoryPurger fuelHistoryPurger(FuelEntryRepository fuelEntryRepository,
+            FuelAnomalyRepository fuelAnomalyRepository, AnomalyDetector anomalyDetector,
+            @Value("${cars.storage.purge:background}") String mode) {
+        return switch (mode) {
+            case "background" -> new FuelHistoryPurger(fuelEntryRepository, fuelAnomalyRepository, anomalyDetector, true);
+            case "immediate" -> new FuelHistoryPurger(fuelEntryRepository, fuelAnomalyRepository, anomalyDetector, false);
+            default -> throw new IllegalStateException("Unknown cars.storage.purge mode: " + mode);
+        };
+    }
+}
@@ -1,34 +1,56 @@
 package com.example.cars.controller;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.validation.Valid;
 import com.example.cars.dto.*;
 import com.example.cars.model.Car;
+import com.example.cars.model.FuelAnomaly;
 import com.example.cars.model.FuelEntry;
+import com.example.cars.repository.Page;
+import com.example.cars.repository.ReadSnapshot;
 import com.example.cars.service.CarService;
 import com.example.cars.service.FuelEntryService;
+import com.example.cars.stats.ConsumptionPoint;
+import com.example.cars.stats.FuelBucket;
+import com.example.cars.stats.FuelDistribution;
+import com.example.cars.stats.FuelStatsCache;
 
 @RestController
 @RequestMapping("/api/cars")
 public class CarController {
     private final CarService carService;
     private final FuelEntryService fuelEntryService;
+    private final ResponseStreamer responseStreamer;
 
-    public CarController(CarService carService, FuelEntryService fuelEntryService) {
+    public CarController(CarService carService, FuelEntryService fuelEntryService, ResponseStreamer responseStreamer) {
         this.carService = carService;
         this.fuelEntryService = fuelEntryService;
+        this.responseStreamer = responseStreamer;
     }
 
-    // GET all cars
+    // GET all cars, streamed page by page
+    @GetMapping(params = {"!after", "!limit"})
+    public ResponseEntity<StreamingResponseBody> getAllCars() {
+        ReadSnapshot snapshot = carService.openSnapshot();
+        return responseStreamer.stream(snapshot,
+            after -> carService.getCarsPage(after, ResponseStreamer.CHUNK_SIZE, snapshot));
+    }
+
+    // GET one page of cars
     @GetMapping
-    public ResponseEntity<Response<List<Car>>> getAllCars() {
-        List<Car> cars = carService.getAllCars();
-        return ResponseEntity.ok(Response.success(cars));
+    public ResponseEntity<Response<List<Car>>> getCarsPage(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        Page<Car> page = carService.getCarsPage(after, limit);
+        return ResponseEntity.ok(Response.page(page.items(), page.nextCursor()));
     }
 
     // GET a car by id
@@ -69,21 +91,82 @@ public class CarController {
         return new ResponseEntity<>(Response.success(createdFuelEntry, "Fuel entry created successfully"), HttpStatus.CREATED);
     }
 
-    // GET all fuel entries for a car
+    // GET all fuel entries for a car, streamed page by page
+    @GetMapping(value = "/{id}/fuel", params = {"!after", "!limit"})
+    public ResponseEntity<StreamingResponseBody> getAllFuelEntries(@PathVariable("id") Long id) {
+        ReadSnapshot snapshot = fuelEntryService.openSnapshot();
+        return responseStreamer.stream(snapshot,
+            after -> fuelEntryService.getFuelEntriesPageByCarId(id, after, ResponseStreamer.CHUNK_SIZE, snapshot));
+    }
+
+    // GET one page of fuel entries for a car
     @GetMapping("/{id}/fuel")
-    public ResponseEntity<Response<List<FuelEntry>>> getAllFuelEntries(@PathVariable("id") Long id) {
-        List<FuelEntry> fuelEntries = fuelEntryService.getAllFuelEntriesByCarId(id);
-        return ResponseEntity.ok(Response.success(fuelEntries));
+    public ResponseEntity<Response<List<FuelEntry>>> getFuelEntriesPage(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        Page<FuelEntry> page = fuelEntryService.getFuelEntriesPageByCarId(id, after, limit);
+        return ResponseEntity.ok(Response.page(page.items(), page.nextCursor()));
+    }
+
+    // GET hit/miss/eviction counters of the fuel stats cache
+    @GetMapping("/fuel/stats/cache")
+    public ResponseEntity<Response<FuelStatsCache.Counters>> getFuelStatsCacheCounters() {
+        return ResponseEntity.ok(Response.success(fuelEntryService.getFuelStatsCacheCounters()));
+    }
+
+    // GET fuel stats for a car over [from, to) (ISO date-times, both optional), e.g. a rental period
+    @GetMapping("/{id}/fuel/stats/range")
+    public ResponseEntity<Response<FuelStatsResponse>> getFuelStatsInRange(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseEntity.ok(Response.success(FuelStatsResponse.of(fuelEntryService.getFuelStats(id, from, to))));
+    }
+
+    // GET L/100km between consecutive fill-ups of a car, oldest first: up to limit points (default 100, max
+    // 1000) whose second fill-up is after since (ISO date-time, optional)
+    @GetMapping("/{id}/fuel/consumption")
+    public ResponseEntity<Response<List<ConsumptionPoint>>> getFuelConsumption(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "since", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.ok(Response.success(fuelEntryService.getFuelConsumption(id, since, limit)));
+    }
+
+    // GET a car's fuel entries flagged as suspicious when they were ingested
+    @GetMapping("/{id}/fuel/anomalies")
+    public ResponseEntity<Response<List<FuelAnomaly>>> getFuelAnomalies(@PathVariable("id") Long id) {
+        return ResponseEntity.ok(Response.success(fuelEntryService.getFuelAnomalies(id)));
+    }
+
+    // GET percentiles of a car's per-interval consumption and price per liter
+    @GetMapping("/{id}/fuel/stats/distribution")
+    public ResponseEntity<Response<FuelDistribution>> getFuelDistribution(@PathVariable("id") Long id) {
+        return ResponseEntity.ok(Response.success(fuelEntryService.getFuelDistribution(id)));
+    }
+
+    // GET fuel stats for a car per day, week or month, over [from, to) (ISO dates, both optional)
+    @GetMapping(value = "/{id}/fuel/stats", params = "granularity")
+    public ResponseEntity<Response<List<FuelBucket>>> getFuelStatsBuckets(
+            @PathVariable("id") Long id,
+            @RequestParam("granularity") String granularity,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(Response.success(fuelEntryService.getFuelStatsBuckets(id, granularity, from, to)));
+    }
+
+    // POST fuel stats for many cars at once (up to 1000 ids), in the order given; unknown ids get an error
+    // in their place instead of failing the whole batch
+    @PostMapping("/fuel/stats:batch")
+    public ResponseEntity<Response<List<FuelStatsBatchItem>>> getFuelStatsBatch(
+            @Valid @RequestBody FuelStatsBatchRequest request) {
+        return ResponseEntity.ok(Response.success(fuelEntryService.getFuelStatsBatch(request.getCarIds())));
     }
 
     // GET fuel stats for a car
     @GetMapping("/{id}/fuel/stats")
     public ResponseEntity<Response<FuelStatsResponse>> getFuelStats(@PathVariable("id") Long id) {
-        Map<String, Double> stats = fuelEntryService.getFuelStats(id);
-        FuelStatsResponse response = new FuelStatsResponse();
-        response.totalLiters = stats.get("totalLiters");
-        response.totalPrice = stats.get("totalPrice");
-        response.avgPer100km = stats.get("avgPer100km");
-        return ResponseEntity.ok(Response.success(response));
+        return ResponseEntity.ok(Response.success(FuelStatsResponse.of(fuelEntryService.getFuelStats(id))));
     }
 }
@@ -0,0 +1,41 @@
+package com.example.cars.controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import com.example.cars.dto.Response;
+import com.example.cars.service.FleetService;
+import com.example.cars.stats.FleetFuelStats;
+import com.example.cars.stats.FuelDistribution;
+import com.example.cars.stats.LeaderboardEntry;
+
+@RestController
+@RequestMapping("/api/fleet")
+public class FleetController {
+    private final FleetService fleetService;
+
+    public FleetController(FleetService fleetService) {
+        this.fleetService = fleetService;
+    }
+
+    // GET fuel stats across all cars
+    @GetMapping("/fuel/stats")
+    public ResponseEntity<Response<FleetFuelStats>> getFleetFuelStats() {
+        return ResponseEntity.ok(Response.success(fleetService.getFleetFuelStats()));
+    }
+
+    // GET percentiles of per-interval consumption and price per liter across all cars
+    @GetMapping("/fuel/stats/distribution")
+    public ResponseEntity<Response<FuelDistribution>> getFleetFuelDistribution() {
+        return ResponseEntity.ok(Response.success(fleetService.getFleetFuelDistribution()));
+    }
+
+    // GET the top n cars by avgPer100km, totalPrice or monthTotalPrice (spend this month); n defaults to 20
+    @GetMapping("/leaderboard")
+    public ResponseEntity<Response<List<LeaderboardEntry>>> getLeaderboard(
+            @RequestParam("metric") String metric,
+            @RequestParam(value = "n", required = false) Integer n) {
+        return ResponseEntity.ok(Response.success(fleetService.getLeaderboard(metric, n)));
+    }
+}
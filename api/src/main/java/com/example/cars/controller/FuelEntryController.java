@@ -4,25 +4,40 @@ import java.util.List;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.validation.Valid;
 import com.example.cars.dto.*;
 import com.example.cars.model.FuelEntry;
+import com.example.cars.repository.Page;
+import com.example.cars.repository.ReadSnapshot;
 import com.example.cars.service.FuelEntryService;
 
 @RestController
 @RequestMapping("/api/fuel-entries")
 public class FuelEntryController {
     private final FuelEntryService fuelEntryService;
+    private final ResponseStreamer responseStreamer;
 
-    public FuelEntryController(FuelEntryService fuelEntryService) {
+    public FuelEntryController(FuelEntryService fuelEntryService, ResponseStreamer responseStreamer) {
         this.fuelEntryService = fuelEntryService;
+        this.responseStreamer = responseStreamer;
     }
 
-    // GET all fuel entries
+    // GET all fuel entries, streamed page by page
+    @GetMapping(params = {"!after", "!limit"})
+    public ResponseEntity<StreamingResponseBody> getAllFuelEntries() {
+        ReadSnapshot snapshot = fuelEntryService.openSnapshot();
+        return responseStreamer.stream(snapshot,
+            after -> fuelEntryService.getFuelEntriesPage(after, ResponseStreamer.CHUNK_SIZE, snapshot));
+    }
+
+    // GET one page of fuel entries
     @GetMapping
-    public ResponseEntity<Response<List<FuelEntry>>> getAllFuelEntries() {
-        List<FuelEntry> fuelEntries = fuelEntryService.getAllFuelEntries();
-        return ResponseEntity.ok(Response.success(fuelEntries));
+    public ResponseEntity<Response<List<FuelEntry>>> getFuelEntriesPage(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        Page<FuelEntry> page = fuelEntryService.getFuelEntriesPage(after, limit);
+        return ResponseEntity.ok(Response.page(page.items(), page.nextCursor()));
     }
 
     // GET a fuel entry by id
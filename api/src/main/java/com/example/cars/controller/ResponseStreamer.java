@@ -0,0 +1,70 @@
+package com.example.cars.controller;
+
+import com.example.cars.repository.Page;
+import com.example.cars.repository.ReadSnapshot;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.OutputStream;
+import java.util.function.LongFunction;
+
+// Streams a full list as a Response envelope, {"success":true,"data":[...]}, writing the array one
+// keyset page at a time straight to the servlet output stream. Memory per request is one page, however
+// long the list is, and all pages come from one snapshot, so the list is consistent as a whole.
+@Component
+public class ResponseStreamer {
+
+    // Rows fetched from the repository per step
+    static final int CHUNK_SIZE = Page.MAX_LIMIT;
+
+    private final JsonMapper jsonMapper;
+
+    public ResponseStreamer(JsonMapper jsonMapper) {
+        this.jsonMapper = jsonMapper;
+    }
+
+    // pageAfter reads the page after a cursor from the snapshot. The first page is fetched right away, so
+    // a validation error still becomes a normal error response; the rest once the body is being written.
+    // The snapshot is closed when the body is done or the first page fails.
+    public <T> ResponseEntity<StreamingResponseBody> stream(ReadSnapshot snapshot, LongFunction<Page<T>> pageAfter) {
+        Page<T> first;
+        try {
+            first = pageAfter.apply(0);
+        } catch (RuntimeException e) {
+            snapshot.close();
+            throw e;
+        }
+        StreamingResponseBody body = outputStream -> {
+            try (snapshot) {
+                write(first, pageAfter, outputStream);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    <T> void write(Page<T> first, LongFunction<Page<T>> nextPage, OutputStream outputStream) {
+        JsonGenerator generator = jsonMapper.createGenerator(outputStream);
+        generator.writeStartObject();
+        generator.writeBooleanProperty("success", true);
+        generator.writeName("data");
+        generator.writeStartArray();
+        Page<T> page = first;
+        while (true) {
+            for (T item : page.items()) {
+                generator.writePOJO(item);
+            }
+            if (page.nextCursor() == null) {
+                break;
+            }
+            page = nextPage.apply(page.nextCursor());
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        // Flush without closing: the servlet container owns the output stream
+        generator.flush();
+    }
+}
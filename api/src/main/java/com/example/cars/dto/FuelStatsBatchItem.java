@@ -0,0 +1,19 @@
+package com.example.cars.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+// One car's result in a batch stats request: its stats, or the status and message the single-car
+// endpoint would have failed with
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"carId", "stats", "status", "error"})
+public record FuelStatsBatchItem(Long carId, FuelStatsResponse stats, Integer status, String error) {
+
+    public static FuelStatsBatchItem success(Long carId, FuelStatsResponse stats) {
+        return new FuelStatsBatchItem(carId, stats, null, null);
+    }
+
+    public static FuelStatsBatchItem error(Long carId, int status, String error) {
+        return new FuelStatsBatchItem(carId, null, status, error);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.cars.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public class FuelStatsBatchRequest {
+
+    @NotNull(message = "Car IDs are required")
+    private List<Long> carIds;
+
+    public FuelStatsBatchRequest() {
+    }
+
+    public FuelStatsBatchRequest(List<Long> carIds) {
+        this.carIds = carIds;
+    }
+
+    public List<Long> getCarIds() {
+        return carIds;
+    }
+
+    public void setCarIds(List<Long> carIds) {
+        this.carIds = carIds;
+    }
+}
@@ -1,8 +1,18 @@
 package com.example.cars.dto;
 
+import java.util.Map;
+
 public class FuelStatsResponse {
     public double totalLiters;
     public double totalPrice;
     public double avgPer100km;
-}
 
+    // Factory method from the stats map FuelEntryService returns
+    public static FuelStatsResponse of(Map<String, Double> stats) {
+        FuelStatsResponse response = new FuelStatsResponse();
+        response.totalLiters = stats.get("totalLiters");
+        response.totalPrice = stats.get("totalPrice");
+        response.avgPer100km = stats.get("avgPer100km");
+        return response;
+    }
+}
@@ -3,12 +3,16 @@ package com.example.cars.dto;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
+import java.util.List;
+
 @JsonInclude(JsonInclude.Include.NON_NULL)
-@JsonPropertyOrder({"success", "message", "data"})
+@JsonPropertyOrder({"success", "message", "data", "nextCursor"})
 public class Response<T> {
     private boolean success;
     private String message;
     private T data;
+    // Keyset pagination: the `after` value for the next page, absent on the last page
+    private Long nextCursor;
 
     public Response() {
     }
@@ -34,6 +38,13 @@ public class Response<T> {
         return new Response<>(true, null, message);
     }
 
+    // Factory method for one page of a paginated listing
+    public static <T> Response<List<T>> page(List<T> items, Long nextCursor) {
+        Response<List<T>> response = new Response<>(true, items, null);
+        response.setNextCursor(nextCursor);
+        return response;
+    }
+
     // Factory method for error responses
     public static <T> Response<T> error(String message) {
         return new Response<>(false, null, message);
@@ -60,6 +71,14 @@ public class Response<T> {
         this.data = data;
     }
 
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     public String getMessage() {
         return message;
     }
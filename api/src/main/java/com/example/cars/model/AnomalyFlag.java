@@ -0,0 +1,11 @@
+package com.example.cars.model;
+
+// Why a fuel entry looked suspicious when it was ingested
+public enum AnomalyFlag {
+    // More liters than the configured tank capacity
+    LITERS_ABOVE_TANK_CAPACITY,
+    // Price per liter far from the car's rolling mean, either way
+    PRICE_OUTLIER,
+    // L/100km since the previous fill-up far above the car's rolling mean
+    CONSUMPTION_SPIKE
+}
@@ -0,0 +1,13 @@
+package com.example.cars.model;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+// Flags raised on a fuel entry when it was ingested, with the values that raised them. per100km is the
+// consumption since the car's previous fill-up, null when there is none.
+@JsonPropertyOrder({"entryId", "carId", "timestamp", "flags", "liters", "price", "per100km"})
+public record FuelAnomaly(long entryId, long carId, LocalDateTime timestamp, Set<AnomalyFlag> flags,
+        double liters, double price, Double per100km) {
+}
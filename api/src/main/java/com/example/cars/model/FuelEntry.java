@@ -40,6 +40,11 @@ public class FuelEntry {
         this.timestamp = timestamp;
     }
 
+    // Copy constructor
+    public FuelEntry(FuelEntry other) {
+        this(other.id, other.carId, other.liters, other.price, other.totalPrice, other.odometer, other.timestamp);
+    }
+
     // Getters
     public Long getId() {
         return id;
@@ -0,0 +1,53 @@
+package com.example.cars.persistence;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Defers the durability waits of writes made while a thread holds locks: within an open scope,
+// awaitDurable only records the position, and closing the thread's outermost scope - after its locks
+// are released - waits once per log. Writers queued on the same lock can then append meanwhile and
+// share the fsync instead of each waiting for the previous one's.
+public final class DurabilityScope implements AutoCloseable {
+
+    private static final ThreadLocal<DurabilityScope> CURRENT = new ThreadLocal<>();
+
+    // Highest position written to each log within the scope
+    private final Map<MutationLog, Long> pending = new IdentityHashMap<>(4);
+    private int depth;
+
+    private DurabilityScope() {
+    }
+
+    // Opens the thread's scope, or enters the one already open; every open must be closed
+    public static DurabilityScope open() {
+        DurabilityScope scope = CURRENT.get();
+        if (scope == null) {
+            scope = new DurabilityScope();
+            CURRENT.set(scope);
+        }
+        scope.depth++;
+        return scope;
+    }
+
+    // Waits until the log is durable up to the position now, or when the thread's open scope closes
+    public static void awaitDurable(MutationLog log, long position) {
+        DurabilityScope scope = CURRENT.get();
+        if (scope == null) {
+            log.awaitDurable(position);
+            return;
+        }
+        scope.pending.merge(log, position, Math::max);
+    }
+
+    // The outermost close waits for every write deferred in the scope; call it after releasing the locks
+    @Override
+    public void close() {
+        if (--depth > 0) {
+            return;
+        }
+        CURRENT.remove();
+        for (Map.Entry<MutationLog, Long> write : pending.entrySet()) {
+            write.getKey().awaitDurable(write.getValue());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.cars.persistence;
+
+import com.example.cars.model.AnomalyFlag;
+import com.example.cars.model.Car;
+import com.example.cars.model.FuelAnomaly;
+import com.example.cars.model.FuelEntry;
+import com.example.cars.repository.storage.Timestamps;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+
+// Binary form of the entities written to mutation logs. Doubles are stored as raw bits, so every
+// value replays exactly as it was written.
+public final class EntityCodec {
+
+    private static final int FUEL_ENTRY_SIZE = 56;
+    private static final int FUEL_ANOMALY_SIZE = 57;
+    private static final int ENTRY_KEY_SIZE = 16;
+    private static final int NULL_LENGTH = -1;
+
+    // A fuel entry's id together with its car's, for records of data kept per car
+    public record EntryKey(long carId, long entryId) {
+    }
+
+    private EntityCodec() {
+    }
+
+    public static ByteBuffer encode(Car car) {
+        byte[] brand = bytes(car.getBrand());
+        byte[] model = bytes(car.getModel());
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 5 + 4 + length(brand) + 4 + length(model));
+        buffer.putLong(car.getId());
+        buffer.put((byte) (car.getYear() != null ? 1 : 0));
+        buffer.putInt(car.getYear() != null ? car.getYear() : 0);
+        putBytes(buffer, brand);
+        putBytes(buffer, model);
+        return buffer.flip();
+    }
+
+    public static Car decodeCar(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        boolean hasYear = buffer.get() != 0;
+        int year = buffer.getInt();
+        String brand = getString(buffer);
+        String model = getString(buffer);
+        return new Car(id, brand, model, hasYear ? year : null);
+    }
+
+    public static ByteBuffer encode(FuelEntry fuelEntry) {
+        ByteBuffer buffer = ByteBuffer.allocate(FUEL_ENTRY_SIZE);
+        buffer.putLong(fuelEntry.getId());
+        buffer.putLong(fuelEntry.getCarId());
+        buffer.putDouble(fuelEntry.getLiters());
+        buffer.putDouble(fuelEntry.getPrice());
+        buffer.putDouble(fuelEntry.getTotalPrice());
+        buffer.putLong(Timestamps.epochSecond(fuelEntry.getTimestamp()));
+        buffer.putInt(fuelEntry.getOdometer());
+        buffer.putInt(Timestamps.nano(fuelEntry.getTimestamp()));
+        return buffer.flip();
+    }
+
+    public static FuelEntry decodeFuelEntry(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        long carId = buffer.getLong();
+        double liters = buffer.getDouble();
+        double price = buffer.getDouble();
+        double totalPrice = buffer.getDouble();
+        long epochSecond = buffer.getLong();
+        int odometer = buffer.getInt();
+        int nano = buffer.getInt();
+        return new FuelEntry(id, carId, liters, price, totalPrice, odometer,
+            Timestamps.toLocalDateTime(epochSecond, nano));
+    }
+
+    // Flags as a bit per AnomalyFlag ordinal
+    public static ByteBuffer encode(FuelAnomaly anomaly) {
+        ByteBuffer buffer = ByteBuffer.allocate(FUEL_ANOMALY_SIZE);
+        buffer.putLong(anomaly.entryId());
+        buffer.putLong(anomaly.carId());
+        buffer.putLong(Timestamps.epochSecond(anomaly.timestamp()));
+        buffer.putInt(Timestamps.nano(anomaly.timestamp()));
+        int flags = 0;
+        for (AnomalyFlag flag : anomaly.flags()) {
+            flags |= 1 << flag.ordinal();
+        }
+        buffer.putInt(flags);
+        buffer.putDouble(anomaly.liters());
+        buffer.putDouble(anomaly.price());
+        buffer.put((byte) (anomaly.per100km() != null ? 1 : 0));
+        buffer.putDouble(anomaly.per100km() != null ? anomaly.per100km() : 0.0);
+        return buffer.flip();
+    }
+
+    public static FuelAnomaly decodeFuelAnomaly(ByteBuffer buffer) {
+        long entryId = buffer.getLong();
+        long carId = buffer.getLong();
+        long epochSecond = buffer.getLong();
+        int nano = buffer.getInt();
+        int flagBits = buffer.getInt();
+        Set<AnomalyFlag> flags = EnumSet.noneOf(AnomalyFlag.class);
+        for (AnomalyFlag flag : AnomalyFlag.values()) {
+            if ((flagBits & 1 << flag.ordinal()) != 0) {
+                flags.add(flag);
+            }
+        }
+        double liters = buffer.getDouble();
+        double price = buffer.getDouble();
+        boolean hasPer100km = buffer.get() != 0;
+        double per100km = buffer.getDouble();
+        return new FuelAnomaly(entryId, carId, Timestamps.toLocalDateTime(epochSecond, nano), flags, liters, price,
+            hasPer100km ? per100km : null);
+    }
+
+    public static ByteBuffer encodeId(long id) {
+        return ByteBuffer.allocate(8).putLong(id).flip();
+    }
+
+    public static long decodeId(ByteBuffer buffer) {
+        return buffer.getLong();
+    }
+
+    public static ByteBuffer encodeEntryKey(long carId, long entryId) {
+        return ByteBuffer.allocate(ENTRY_KEY_SIZE).putLong(carId).putLong(entryId).flip();
+    }
+
+    public static EntryKey decodeEntryKey(ByteBuffer buffer) {
+        long carId = buffer.getLong();
+        long entryId = buffer.getLong();
+        return new EntryKey(carId, entryId);
+    }
+
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes != null ? bytes.length : 0;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes != null ? bytes.length : NULL_LENGTH);
+        if (bytes != null) {
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.cars.persistence;
+
+// When appended log records are forced to disk
+public enum FsyncPolicy {
+    // Every writer forces the log before its write returns
+    PER_WRITE,
+    // Writers wait while one flusher thread forces everything appended so far in a single call
+    GROUP_COMMIT,
+    // A background thread forces the log every interval; writers never wait (last interval may be lost)
+    PERIODIC;
+
+    // Parses the property form: per-write, group-commit, periodic
+    public static FsyncPolicy fromProperty(String value) {
+        return valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+}
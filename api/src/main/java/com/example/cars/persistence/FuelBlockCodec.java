@@ -0,0 +1,215 @@
+package com.example.cars.persistence;
+
+import com.example.cars.model.FuelEntry;
+import com.example.cars.repository.storage.Timestamps;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Compressed binary form of a run of one car's fuel entries, for snapshots and other archives. A car's
+// ids, odometer readings and timestamps grow slowly, so each is stored as a zigzag varint delta from the
+// previous entry. Prices repeat, so each distinct price is stored once in a dictionary and entries refer
+// to it by index. Liters and total price are stored as whole thousandths or cents (or as derived from
+// liters * price) only when that decodes to the very same bits; anything else is stored raw, so every
+// double round-trips exactly.
+public final class FuelBlockCodec {
+
+    private static final byte FORMAT = 1;
+
+    // Per-entry flags
+    private static final int NO_TIMESTAMP = 1;
+    private static final int HAS_NANO = 1 << 1;
+    private static final int RAW_LITERS = 1 << 2;
+    private static final int DERIVED_TOTAL = 1 << 3;
+    private static final int TOTAL_IN_CENTS = 1 << 4;
+
+    private static final long NOT_QUANTIZED = Long.MIN_VALUE;
+
+    // Worst case per entry: flags, six varints of up to 10 bytes and a raw double
+    private static final int MAX_ENTRY_SIZE = 1 + 6 * 10 + 8;
+    private static final int MAX_HEADER_SIZE = 1 + 3 * 10;
+
+    private FuelBlockCodec() {
+    }
+
+    // Entries must all belong to the same car; deltas are smallest when they come in id order
+    public static ByteBuffer encode(List<FuelEntry> fuelEntries) {
+        if (fuelEntries.isEmpty()) {
+            throw new IllegalArgumentException("Cannot encode an empty block");
+        }
+        long carId = fuelEntries.get(0).getCarId();
+        // Dictionary of distinct prices, by raw bits, in order of first use
+        Map<Long, Integer> priceIndexes = new HashMap<>();
+        long[] prices = new long[fuelEntries.size()];
+        for (FuelEntry fuelEntry : fuelEntries) {
+            if (fuelEntry.getCarId() != carId) {
+                throw new IllegalArgumentException("Block mixes cars " + carId + " and " + fuelEntry.getCarId());
+            }
+            long bits = Double.doubleToRawLongBits(fuelEntry.getPrice());
+            if (priceIndexes.putIfAbsent(bits, priceIndexes.size()) == null) {
+                prices[priceIndexes.size() - 1] = bits;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_SIZE + priceIndexes.size() * 8
+            + fuelEntries.size() * MAX_ENTRY_SIZE);
+        buffer.put(FORMAT);
+        putVarLong(buffer, zigzag(carId));
+        putVarLong(buffer, fuelEntries.size());
+        putVarLong(buffer, priceIndexes.size());
+        for (int i = 0; i < priceIndexes.size(); i++) {
+            buffer.putLong(prices[i]);
+        }
+
+        long previousId = 0;
+        long previousOdometer = 0;
+        long previousSecond = 0;
+        for (FuelEntry fuelEntry : fuelEntries) {
+            double liters = fuelEntry.getLiters();
+            double totalPrice = fuelEntry.getTotalPrice();
+            long epochSecond = Timestamps.epochSecond(fuelEntry.getTimestamp());
+            int nano = Timestamps.nano(fuelEntry.getTimestamp());
+            long milliliters = quantize(liters, 1000.0);
+            long cents = quantize(totalPrice, 100.0);
+            boolean derivedTotal = sameBits(liters * fuelEntry.getPrice(), totalPrice);
+
+            int flags = 0;
+            if (epochSecond == Timestamps.NONE) {
+                flags |= NO_TIMESTAMP;
+            } else if (nano != 0) {
+                flags |= HAS_NANO;
+            }
+            if (milliliters == NOT_QUANTIZED) {
+                flags |= RAW_LITERS;
+            }
+            if (derivedTotal) {
+                flags |= DERIVED_TOTAL;
+            } else if (cents != NOT_QUANTIZED) {
+                flags |= TOTAL_IN_CENTS;
+            }
+            buffer.put((byte) flags);
+
+            putVarLong(buffer, zigzag(fuelEntry.getId() - previousId));
+            previousId = fuelEntry.getId();
+            putVarLong(buffer, zigzag(fuelEntry.getOdometer() - previousOdometer));
+            previousOdometer = fuelEntry.getOdometer();
+            if ((flags & NO_TIMESTAMP) == 0) {
+                putVarLong(buffer, zigzag(epochSecond - previousSecond));
+                previousSecond = epochSecond;
+                if ((flags & HAS_NANO) != 0) {
+                    putVarLong(buffer, nano);
+                }
+            }
+            if ((flags & RAW_LITERS) != 0) {
+                buffer.putDouble(liters);
+            } else {
+                putVarLong(buffer, zigzag(milliliters));
+            }
+            putVarLong(buffer, priceIndexes.get(Double.doubleToRawLongBits(fuelEntry.getPrice())));
+            if ((flags & TOTAL_IN_CENTS) != 0) {
+                putVarLong(buffer, zigzag(cents));
+            } else if ((flags & DERIVED_TOTAL) == 0) {
+                buffer.putDouble(totalPrice);
+            }
+        }
+        return buffer.flip();
+    }
+
+    // Decodes a block written by encode, handing each entry to the action in the order it was encoded
+    public static void decode(ByteBuffer buffer, Consumer<FuelEntry> action) {
+        try {
+            byte format = buffer.get();
+            if (format != FORMAT) {
+                throw new IllegalStateException("Unknown fuel block format: " + format);
+            }
+            long carId = unzigzag(getVarLong(buffer));
+            long count = getVarLong(buffer);
+            double[] prices = new double[Math.toIntExact(getVarLong(buffer))];
+            for (int i = 0; i < prices.length; i++) {
+                prices[i] = Double.longBitsToDouble(buffer.getLong());
+            }
+
+            long id = 0;
+            long odometer = 0;
+            long epochSecond = 0;
+            for (long i = 0; i < count; i++) {
+                int flags = buffer.get();
+                id += unzigzag(getVarLong(buffer));
+                odometer += unzigzag(getVarLong(buffer));
+                long second = Timestamps.NONE;
+                int nano = 0;
+                if ((flags & NO_TIMESTAMP) == 0) {
+                    epochSecond += unzigzag(getVarLong(buffer));
+                    second = epochSecond;
+                    if ((flags & HAS_NANO) != 0) {
+                        nano = Math.toIntExact(getVarLong(buffer));
+                    }
+                }
+                double liters = (flags & RAW_LITERS) != 0
+                    ? buffer.getDouble()
+                    : unzigzag(getVarLong(buffer)) / 1000.0;
+                double price = prices[Math.toIntExact(getVarLong(buffer))];
+                double totalPrice;
+                if ((flags & DERIVED_TOTAL) != 0) {
+                    totalPrice = liters * price;
+                } else if ((flags & TOTAL_IN_CENTS) != 0) {
+                    totalPrice = unzigzag(getVarLong(buffer)) / 100.0;
+                } else {
+                    totalPrice = buffer.getDouble();
+                }
+                action.accept(new FuelEntry(id, carId, liters, price, totalPrice, Math.toIntExact(odometer),
+                    Timestamps.toLocalDateTime(second, nano)));
+            }
+        } catch (BufferUnderflowException | ArithmeticException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalStateException("Corrupt fuel block", e);
+        }
+    }
+
+    // The value as a whole number of 1/scale units, if dividing that number by scale gives back the
+    // exact same double; NOT_QUANTIZED otherwise
+    private static long quantize(double value, double scale) {
+        double scaled = value * scale;
+        if (!(Math.abs(scaled) < 1L << 53)) {
+            return NOT_QUANTIZED;
+        }
+        long units = Math.round(scaled);
+        return sameBits(units / scale, value) ? units : NOT_QUANTIZED;
+    }
+
+    private static boolean sameBits(double a, double b) {
+        return Double.doubleToRawLongBits(a) == Double.doubleToRawLongBits(b);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // LEB128: seven bits per byte, low bits first, high bit set on every byte but the last
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Corrupt fuel block: varint too long");
+    }
+}
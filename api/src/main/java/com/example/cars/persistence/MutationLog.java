@@ -0,0 +1,37 @@
+package com.example.cars.persistence;
+
+import java.nio.ByteBuffer;
+
+// Append-only log of repository mutations. Records are appended while the writer still holds the lock
+// that orders its mutation, and made durable afterwards with awaitDurable, outside every lock the writer
+// holds (see DurabilityScope).
+public interface MutationLog extends AutoCloseable {
+
+    // Log that records nothing, used when persistence is disabled
+    MutationLog NONE = new MutationLog() {
+        @Override
+        public long append(byte type, ByteBuffer payload) {
+            return 0;
+        }
+
+        @Override
+        public void awaitDurable(long position) {
+        }
+    };
+
+    // Appends one record and returns its end position in the log
+    long append(byte type, ByteBuffer payload);
+
+    // Blocks until the log is durable up to the given position, as far as the fsync policy promises
+    void awaitDurable(long position);
+
+    @Override
+    default void close() {
+    }
+
+    // Receives replayed records in log order
+    @FunctionalInterface
+    interface Replayer {
+        void replay(byte type, ByteBuffer payload);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.cars.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Hands each repository its own write-ahead log under one data directory. Opening a log loads the
+// repository's snapshot and replays the log written after it, so a repository is fully recovered by
+// the time its constructor returns. A background thread snapshots any repository whose log has grown
+// past the threshold and then deletes the log segments the snapshot covers.
+public class PersistenceManager implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistenceManager.class);
+
+    private record Durable(String name, WriteAheadLog wal, SnapshotSource source) {
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final long snapshotThresholdBytes;
+    private final long snapshotCheckMillis;
+    private final List<Durable> opened = new CopyOnWriteArrayList<>();
+    // One snapshot at a time, whether scheduled or requested
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private ScheduledExecutorService snapshotter;
+
+    public PersistenceManager(boolean enabled, Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+                              long snapshotThresholdBytes, long snapshotCheckMillis) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.snapshotThresholdBytes = snapshotThresholdBytes;
+        this.snapshotCheckMillis = snapshotCheckMillis;
+    }
+
+    // Purely in-memory repositories: nothing is replayed or logged
+    public static PersistenceManager disabled() {
+        return new PersistenceManager(false, null, FsyncPolicy.GROUP_COMMIT, 0, 0, 0);
+    }
+
+    // Loads <directory>/<name>.snapshot and replays the log segments <name>-<n>.wal after it into the
+    // replayer, then returns the log for new mutations
+    public synchronized MutationLog open(String name, MutationLog.Replayer replayer, SnapshotSource source) {
+        if (!enabled) {
+            return MutationLog.NONE;
+        }
+        try {
+            Files.createDirectories(directory);
+            long start = System.nanoTime();
+            long[] counts = new long[2];
+            long firstSegment = SnapshotFile.load(snapshotPath(name), (type, payload) -> {
+                counts[0]++;
+                replayer.replay(type, payload);
+            });
+            long loaded = System.nanoTime();
+            WriteAheadLog wal = WriteAheadLog.open(directory, name, fsyncPolicy, fsyncIntervalMillis, firstSegment,
+                (type, payload) -> {
+                    counts[1]++;
+                    replayer.replay(type, payload);
+                });
+            long replayed = System.nanoTime();
+            log.info("Recovered {}: {} snapshot records in {} ms, {} log records in {} ms", name,
+                counts[0], TimeUnit.NANOSECONDS.toMillis(loaded - start),
+                counts[1], TimeUnit.NANOSECONDS.toMillis(replayed - loaded));
+            opened.add(new Durable(name, wal, source));
+            startSnapshotter();
+            return wal;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover " + name + " from " + directory, e);
+        }
+    }
+
+    // Snapshots every open log now, whatever its size
+    public void snapshotAll() {
+        for (Durable durable : opened) {
+            snapshot(durable);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (snapshotter != null) {
+            snapshotter.shutdown();
+            try {
+                snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Durable durable : opened) {
+            durable.wal().close();
+        }
+        opened.clear();
+    }
+
+    private void startSnapshotter() {
+        if (snapshotter != null || snapshotCheckMillis <= 0) {
+            return;
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(this::snapshotLargeLogs,
+            snapshotCheckMillis, snapshotCheckMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void snapshotLargeLogs() {
+        for (Durable durable : opened) {
+            if (durable.wal().segmentSize() >= snapshotThresholdBytes) {
+                try {
+                    snapshot(durable);
+                } catch (RuntimeException e) {
+                    // Keep the old snapshot and segments; the next check tries again
+                    log.error("Snapshot of {} failed", durable.name(), e);
+                }
+            }
+        }
+    }
+
+    // Rolls the log, writes the snapshot alongside running writers, then drops the segments before the roll
+    private void snapshot(Durable durable) {
+        snapshotLock.lock();
+        try {
+            long start = System.nanoTime();
+            long firstSegment = durable.wal().roll();
+            SnapshotFile.write(snapshotPath(durable.name()), firstSegment, durable.source());
+            durable.wal().deleteSegmentsBefore(firstSegment);
+            log.info("Snapshot of {} written in {} ms", durable.name(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to snapshot " + durable.name(), e);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private Path snapshotPath(String name) {
+        return directory.resolve(name + ".snapshot");
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.cars.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Point-in-time image of one repository:
+//   [int magic][int version][long firstSegment] then records framed like the log's
+// firstSegment is the log segment replay continues from. A snapshot is taken right after rolling the log,
+// so it is fuzzy: each entity is captured at some moment after the roll. Replaying the newer segments on
+// top fixes that, because every logged record is a full overwrite or a delete and so is idempotent.
+// Snapshots are written to a temporary file and renamed into place, so a crash never leaves half of one.
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x43534E50;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int WRITE_BUFFER_SIZE = 4 << 20;
+    // Largest region mapped at once; a record never straddles two mappings
+    private static final long MAP_WINDOW = 1L << 30;
+
+    private SnapshotFile() {
+    }
+
+    // Replays the snapshot through memory-mapped windows of the file. Returns the first log segment
+    // to replay after it, or 1 when there is no snapshot.
+    static long load(Path path, MutationLog.Replayer replayer) throws IOException {
+        if (!Files.exists(path)) {
+            return 1;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAP_WINDOW));
+            if (size < FILE_HEADER_SIZE || window.getInt(0) != MAGIC || window.getInt(4) != VERSION) {
+                throw new IllegalStateException("Not a snapshot file: " + path);
+            }
+            long firstSegment = window.getLong(8);
+            long windowStart = 0;
+            long position = FILE_HEADER_SIZE;
+            CRC32 checksum = new CRC32();
+            while (position < size) {
+                if (position + WriteAheadLog.HEADER_SIZE > windowStart + window.limit()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, MAP_WINDOW));
+                }
+                int offset = (int) (position - windowStart);
+                int length = window.getInt(offset);
+                int storedCrc = window.getInt(offset + 4);
+                long end = position + WriteAheadLog.HEADER_SIZE + length;
+                if (length < 1 || length > WriteAheadLog.MAX_RECORD_SIZE || end > size) {
+                    throw new IllegalStateException("Corrupt record at offset " + position + " of " + path);
+                }
+                if (end > windowStart + window.limit()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, MAP_WINDOW));
+                    offset = 0;
+                }
+                ByteBuffer record = window.slice(offset + WriteAheadLog.HEADER_SIZE, length);
+                checksum.reset();
+                checksum.update(record.duplicate());
+                if ((int) checksum.getValue() != storedCrc) {
+                    throw new IllegalStateException("Corrupt record at offset " + position + " of " + path);
+                }
+                replayer.replay(record.get(), record.slice());
+                position = end;
+            }
+            return firstSegment;
+        }
+    }
+
+    static void write(Path path, long firstSegment, SnapshotSource source) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(firstSegment);
+            CRC32 checksum = new CRC32();
+            try {
+                source.writeSnapshot((type, payload) -> {
+                    int length = 1 + payload.remaining();
+                    if (buffer.remaining() < WriteAheadLog.HEADER_SIZE + length) {
+                        drain(channel, buffer);
+                    }
+                    int start = buffer.position();
+                    buffer.position(start + WriteAheadLog.HEADER_SIZE);
+                    buffer.put(type).put(payload.duplicate());
+                    checksum.reset();
+                    checksum.update(buffer.slice(start + WriteAheadLog.HEADER_SIZE, length));
+                    buffer.putInt(start, length);
+                    buffer.putInt(start + 4, (int) checksum.getValue());
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            drain(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) {
+        try {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.cars.persistence;
+
+import java.nio.ByteBuffer;
+
+// A repository whose contents can be written to a snapshot. The records must replay through the
+// repository's own Replayer, exactly like logged mutations.
+@FunctionalInterface
+public interface SnapshotSource {
+
+    // Called on the snapshot thread while writers keep going; see SnapshotFile for why that is safe
+    void writeSnapshot(RecordWriter writer);
+
+    @FunctionalInterface
+    interface RecordWriter {
+        void write(byte type, ByteBuffer payload);
+    }
+}
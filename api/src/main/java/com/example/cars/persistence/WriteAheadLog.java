@@ -0,0 +1,402 @@
+package com.example.cars.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only log written through a FileChannel, split into numbered segment files <name>-<n>.wal.
+// Each record is framed as
+//   [int length][int crc32][byte type][payload]
+// where length counts the type byte plus the payload and the CRC covers the same bytes. Opening a log
+// replays it and cuts off a torn or corrupt tail of the last segment (a crash in the middle of an
+// append), so new records always follow the last complete one. Rolling to a new segment lets a
+// snapshot take over the old segments, which are then deleted.
+public class WriteAheadLog implements MutationLog {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    static final int HEADER_SIZE = 8;
+    static final int MAX_RECORD_SIZE = 1 << 20;
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private final Path directory;
+    private final String name;
+    private final FsyncPolicy policy;
+    private final long fsyncIntervalMillis;
+
+    // Appends and segment rolls are serialized; frame is reused between appends
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer frame = ByteBuffer.allocateDirect(4096);
+    // Current segment; only replaced under both appendLock and forceLock
+    private volatile FileChannel channel;
+    private volatile long segment;
+    // Log position where the current segment starts. Positions keep growing across segments.
+    private long segmentStart;
+    // End of the last appended record, and how much of the log is known to be on disk
+    private volatile long written;
+    private volatile long durable;
+
+    // Held while forcing, so a segment is never closed under a running force
+    private final ReentrantLock forceLock = new ReentrantLock();
+    // Group commit: writers waiting for durability and the flusher thread
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncRequested = syncLock.newCondition();
+    private final Condition synced = syncLock.newCondition();
+    private long requested;
+    private IOException failure;
+    private volatile boolean closed;
+    private Thread flusher;
+
+    private WriteAheadLog(Path directory, String name, FsyncPolicy policy, long fsyncIntervalMillis) {
+        this.directory = directory;
+        this.name = name;
+        this.policy = policy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+    }
+
+    // Opens the log <directory>/<name>-<n>.wal, replays every complete record from segment firstSegment
+    // on into the replayer and positions the log for appending. Older segments are deleted: a snapshot
+    // already covers them. fsyncIntervalMillis is only used by the PERIODIC policy.
+    public static WriteAheadLog open(Path directory, String name, FsyncPolicy policy, long fsyncIntervalMillis,
+                                     long firstSegment, Replayer replayer) throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(directory, name, policy, fsyncIntervalMillis);
+        wal.deleteSegmentsBefore(firstSegment);
+        List<Long> segments = wal.segments();
+        for (int i = 0; i < segments.size(); i++) {
+            boolean last = i == segments.size() - 1;
+            try (FileChannel segmentChannel = FileChannel.open(wal.segmentPath(segments.get(i)),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                wal.replay(segmentChannel, segments.get(i), last, replayer);
+            }
+        }
+        wal.segment = segments.isEmpty() ? firstSegment : segments.get(segments.size() - 1);
+        wal.channel = FileChannel.open(wal.segmentPath(wal.segment),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        wal.written = wal.channel.size();
+        wal.durable = wal.written;
+        wal.startFlusher();
+        return wal;
+    }
+
+    @Override
+    public long append(byte type, ByteBuffer payload) {
+        int length = 1 + payload.remaining();
+        if (length > MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Log record too large: " + length + " bytes");
+        }
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Log is closed: " + name);
+            }
+            if (frame.capacity() < HEADER_SIZE + length) {
+                frame = ByteBuffer.allocateDirect(Integer.highestOneBit(HEADER_SIZE + length) << 1);
+            }
+            frame.clear();
+            frame.position(HEADER_SIZE);
+            frame.put(type);
+            frame.put(payload.duplicate());
+            crc.reset();
+            crc.update(frame.duplicate().flip().position(HEADER_SIZE));
+            frame.putInt(0, length);
+            frame.putInt(4, (int) crc.getValue());
+            frame.flip();
+
+            long position = written;
+            while (frame.hasRemaining()) {
+                position += channel.write(frame, position - segmentStart);
+            }
+            written = position;
+            return position;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to the " + name + " log", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void awaitDurable(long position) {
+        if (durable >= position || policy == FsyncPolicy.PERIODIC) {
+            return;
+        }
+        try {
+            if (policy == FsyncPolicy.PER_WRITE) {
+                // One force covers every record appended before it, so a writer whose record was
+                // forced by someone else while it waited for the lock returns right away
+                force(position);
+                return;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to sync the " + name + " log", e);
+        }
+        syncLock.lock();
+        try {
+            requested = Math.max(requested, position);
+            syncRequested.signal();
+            while (durable < position) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Failed to sync the " + name + " log", failure);
+                }
+                synced.awaitUninterruptibly();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    // Syncs the current segment and starts a new one; returns the new segment's number. Every record
+    // appended before the roll is in an older segment, every record appended after it in the new one.
+    public long roll() {
+        long rolled;
+        appendLock.lock();
+        forceLock.lock();
+        try {
+            channel.force(false);
+            durable = written;
+            FileChannel next = FileChannel.open(segmentPath(segment + 1),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.close();
+            channel = next;
+            rolled = ++segment;
+            segmentStart = written;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll the " + name + " log", e);
+        } finally {
+            forceLock.unlock();
+            appendLock.unlock();
+        }
+        // The roll's force may have covered records that group-commit writers are waiting on; the
+        // flusher sees nothing left to force, so wake them here
+        syncLock.lock();
+        try {
+            synced.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+        return rolled;
+    }
+
+    // Bytes in the current segment, i.e. appended since the last roll
+    public long segmentSize() {
+        return written - segmentStart;
+    }
+
+    // Deletes the segments numbered below the given one
+    public void deleteSegmentsBefore(long firstKept) throws IOException {
+        for (long number : segments()) {
+            if (number < firstKept) {
+                Files.deleteIfExists(segmentPath(number));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            appendLock.unlock();
+        }
+        syncLock.lock();
+        try {
+            syncRequested.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+        try {
+            if (flusher != null) {
+                flusher.join();
+            }
+            force(written);
+            syncLock.lock();
+            try {
+                synced.signalAll();
+            } finally {
+                syncLock.unlock();
+            }
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close the " + name + " log", e);
+        }
+    }
+
+    Path segmentPath(long number) {
+        return directory.resolve(String.format("%s-%012d.wal", name, number));
+    }
+
+    // Forces the current segment unless the log is already durable up to the position.
+    // Reads written before forcing: everything appended up to there is covered.
+    private void force(long position) throws IOException {
+        forceLock.lock();
+        try {
+            if (durable >= position) {
+                return;
+            }
+            long target = written;
+            channel.force(false);
+            durable = Math.max(durable, target);
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    private void startFlusher() {
+        if (policy == FsyncPolicy.PER_WRITE) {
+            return;
+        }
+        flusher = new Thread(policy == FsyncPolicy.GROUP_COMMIT ? this::groupCommitLoop : this::periodicLoop,
+            "wal-flusher-" + name);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Forces once per batch: writers that arrive during a force are all covered by the next one
+    private void groupCommitLoop() {
+        syncLock.lock();
+        try {
+            while (!closed) {
+                if (requested <= durable) {
+                    syncRequested.awaitUninterruptibly();
+                    continue;
+                }
+                // Force without holding the lock, so the next batch can queue up meanwhile
+                long target = requested;
+                syncLock.unlock();
+                try {
+                    force(target);
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    syncLock.lock();
+                }
+                synced.signalAll();
+                if (failure != null) {
+                    return;
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void periodicLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(fsyncIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                force(written);
+            } catch (IOException e) {
+                log.error("Periodic sync of the {} log failed", name, e);
+            }
+        }
+    }
+
+    // Segment numbers present on disk, ascending
+    private List<Long> segments() throws IOException {
+        Pattern pattern = Pattern.compile(Pattern.quote(name) + "-(\\d+)\\.wal");
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    // Replays one segment. A bad record can only be a torn write in the last segment, which is cut off;
+    // anywhere else it means the log is damaged, and recovering past it would silently lose writes.
+    private void replay(FileChannel segmentChannel, long number, boolean last, Replayer replayer) throws IOException {
+        long fileSize = segmentChannel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, Math.max(fileSize, HEADER_SIZE)));
+        buffer.flip();
+        long readPosition = 0;
+        long recordStart = 0;
+        CRC32 checksum = new CRC32();
+        while (true) {
+            // Refill so the buffer holds at least a header, then the whole record
+            if (buffer.remaining() < HEADER_SIZE) {
+                readPosition = refill(segmentChannel, buffer, readPosition, HEADER_SIZE);
+                if (buffer.remaining() < HEADER_SIZE) {
+                    break;
+                }
+            }
+            int length = buffer.getInt(buffer.position());
+            int storedCrc = buffer.getInt(buffer.position() + 4);
+            if (length < 1 || length > MAX_RECORD_SIZE) {
+                break;
+            }
+            if (buffer.remaining() < HEADER_SIZE + length) {
+                if (buffer.capacity() < HEADER_SIZE + length) {
+                    buffer = ByteBuffer.allocate(HEADER_SIZE + length).put(buffer).flip();
+                }
+                readPosition = refill(segmentChannel, buffer, readPosition, HEADER_SIZE + length);
+                if (buffer.remaining() < HEADER_SIZE + length) {
+                    break;
+                }
+            }
+            ByteBuffer record = buffer.slice(buffer.position() + HEADER_SIZE, length);
+            checksum.reset();
+            checksum.update(record.duplicate());
+            if ((int) checksum.getValue() != storedCrc) {
+                break;
+            }
+            replayer.replay(record.get(), record.slice());
+            buffer.position(buffer.position() + HEADER_SIZE + length);
+            recordStart += HEADER_SIZE + length;
+        }
+        if (recordStart < fileSize) {
+            if (!last) {
+                throw new IllegalStateException("Corrupt record at offset " + recordStart + " of "
+                    + segmentPath(number) + ", which is not the last log segment");
+            }
+            log.warn("Discarding {} bytes of incomplete or corrupt records at the end of {}",
+                fileSize - recordStart, segmentPath(number));
+            segmentChannel.truncate(recordStart);
+            segmentChannel.force(false);
+        }
+    }
+
+    // Moves the unread bytes to the front and reads until the buffer holds at least `needed` bytes or EOF
+    private static long refill(FileChannel source, ByteBuffer buffer, long readPosition, int needed) throws IOException {
+        buffer.compact();
+        while (buffer.position() < needed && buffer.hasRemaining()) {
+            int read = source.read(buffer, readPosition);
+            if (read < 0) {
+                break;
+            }
+            readPosition += read;
+        }
+        buffer.flip();
+        return readPosition;
+    }
+}
@@ -1,44 +1,161 @@
 package com.example.cars.repository;
 
 import com.example.cars.model.Car;
+import com.example.cars.persistence.DurabilityScope;
+import com.example.cars.persistence.EntityCodec;
+import com.example.cars.persistence.MutationLog;
+import com.example.cars.persistence.PersistenceManager;
+import com.example.cars.persistence.SnapshotSource;
+import com.example.cars.util.ConcurrentLongObjectMap;
 import org.springframework.stereotype.Repository;
 
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Repository
 public class CarRepository {
 
-    private final Map<Long, Car> storage = new HashMap<>();
+    private static final int LOCK_STRIPES = 256;
+
+    // Mutation log record types
+    private static final byte SAVED = 1;
+    private static final byte DELETED = 2;
+    private static final byte NEXT_ID = 3;
+
+    // Primary index: open-addressing table keyed by the primitive id, no boxing on lookups
+    private final ConcurrentLongObjectMap<Car> storage = new ConcurrentLongObjectMap<>();
+    // Ids in order, so pages can resume from any id in O(log n); only touched by writes and scans
+    private final ConcurrentSkipListSet<Long> ids = new ConcurrentSkipListSet<>();
+    // Earlier versions of recently written cars, for snapshot reads. Stored cars are never modified in
+    // place: an update saves a new Car, so a reader holding the old one keeps a consistent view of it.
+    private final RowVersions<Car> versions = new RowVersions<>(Car::getId);
     private final AtomicLong nextId = new AtomicLong(1);
+    // Writes to one id are serialized, so they reach the log in the order they reach the map. Each write
+    // is applied before it is logged: a snapshot that starts after the record was logged must see it.
+    private final StripedLocks idLocks = new StripedLocks(LOCK_STRIPES);
+    // Still NONE while the log replays, so replayed writes are not logged a second time
+    private MutationLog mutationLog = MutationLog.NONE;
+
+    public CarRepository(PersistenceManager persistenceManager) {
+        this.mutationLog = persistenceManager.open("cars", this::replay, this::writeSnapshot);
+    }
 
     // CREATE
     public Car save(Car car) {
         if (car.getId() == null) {
             car.setId(nextId.getAndIncrement());
         }
-        storage.put(car.getId(), car);
+        long logPosition;
+        ReentrantLock lock = idLocks.lockFor(car.getId());
+        lock.lock();
+        try {
+            RowVersions.Change<Car> change = versions.beginWrite(car.getId(), storage.get(car.getId()));
+            if (storage.put(car.getId(), car) == null) {
+                ids.add(car.getId());
+            }
+            versions.commit(car.getId(), change);
+            logPosition = mutationLog.append(SAVED, EntityCodec.encode(car));
+        } finally {
+            lock.unlock();
+        }
+        DurabilityScope.awaitDurable(mutationLog, logPosition);
         return car;
     }
 
     // READ by ID
-    public Optional<Car> findById(Long id) {
+    public Optional<Car> findById(long id) {
         return Optional.ofNullable(storage.get(id));
     }
 
-    // READ all
+    // READ all, as of one snapshot
     public List<Car> findAll() {
-        return new ArrayList<>(storage.values());
+        try (ReadSnapshot snapshot = openSnapshot()) {
+            List<Car> cars = new ArrayList<>(ids.size());
+            Page<Car> page = findPage(0, Page.MAX_LIMIT, snapshot);
+            cars.addAll(page.items());
+            while (page.nextCursor() != null) {
+                page = findPage(page.nextCursor(), Page.MAX_LIMIT, snapshot);
+                cars.addAll(page.items());
+            }
+            return cars;
+        }
+    }
+
+    // Opens a consistent read view; the caller must close it
+    public ReadSnapshot openSnapshot() {
+        return versions.open();
+    }
+
+    // READ a page: up to limit cars with an id above afterId - O(log n + limit) at any depth
+    public Page<Car> findPage(long afterId, int limit) {
+        return Page.of(latestAfter(afterId, limit + 1), limit, Car::getId);
+    }
+
+    // READ a page as of the snapshot - never blocks writers, and every page of one snapshot agrees
+    public Page<Car> findPage(long afterId, int limit, ReadSnapshot snapshot) {
+        return versions.page(snapshot, afterId, limit, this::latestAfter, car -> true);
     }
 
     // DELETE
-    public void delete(Long id) {
-        storage.remove(id);
+    public void delete(long id) {
+        long logPosition;
+        ReentrantLock lock = idLocks.lockFor(id);
+        lock.lock();
+        try {
+            Car existing = storage.get(id);
+            if (existing == null) {
+                return;
+            }
+            RowVersions.Change<Car> change = versions.beginWrite(id, existing);
+            storage.remove(id);
+            ids.remove(id);
+            versions.commit(id, change);
+            logPosition = mutationLog.append(DELETED, EntityCodec.encodeId(id));
+        } finally {
+            lock.unlock();
+        }
+        DurabilityScope.awaitDurable(mutationLog, logPosition);
     }
 
     // EXISTS
-    public boolean existsById(Long id) {
+    public boolean existsById(long id) {
         return storage.containsKey(id);
     }
-}
 
+    private List<Car> latestAfter(long afterId, int limit) {
+        List<Car> cars = new ArrayList<>(limit);
+        for (Long id : ids.tailSet(afterId, false)) {
+            if (cars.size() == limit) {
+                break;
+            }
+            // Skips a car deleted between reading its id and its row
+            Car car = storage.get(id);
+            if (car != null) {
+                cars.add(car);
+            }
+        }
+        return cars;
+    }
+
+    private void replay(byte type, ByteBuffer payload) {
+        switch (type) {
+            case SAVED -> {
+                Car car = EntityCodec.decodeCar(payload);
+                nextId.accumulateAndGet(car.getId() + 1, Math::max);
+                save(car);
+            }
+            case DELETED -> delete(EntityCodec.decodeId(payload));
+            case NEXT_ID -> nextId.accumulateAndGet(EntityCodec.decodeId(payload), Math::max);
+            default -> throw new IllegalStateException("Unknown car log record type: " + type);
+        }
+    }
+
+    // The id sequence goes first, so ids of cars deleted before the snapshot are never handed out again
+    private void writeSnapshot(SnapshotSource.RecordWriter writer) {
+        writer.write(NEXT_ID, EntityCodec.encodeId(nextId.get()));
+        storage.forEachValue(car -> writer.write(SAVED, EntityCodec.encode(car)));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.cars.repository;
+
+import com.example.cars.model.FuelAnomaly;
+import com.example.cars.persistence.DurabilityScope;
+import com.example.cars.persistence.EntityCodec;
+import com.example.cars.persistence.MutationLog;
+import com.example.cars.persistence.PersistenceManager;
+import com.example.cars.persistence.SnapshotSource;
+import com.example.cars.util.ConcurrentLongObjectMap;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Anomaly flags raised on fuel entries, by car and entry id. Only flagged entries have a record, so memory
+// follows the anomalies rather than the entries. Writes to one car must not overlap; FuelEntryService
+// makes them under the car's lock, along with the entry write they belong to.
+@Repository
+public class FuelAnomalyRepository {
+
+    // Mutation log record types
+    private static final byte SAVED = 1;
+    private static final byte DELETED = 2;
+    private static final byte CAR_DELETED = 3;
+
+    private final ConcurrentLongObjectMap<ConcurrentSkipListMap<Long, FuelAnomaly>> byCar = new ConcurrentLongObjectMap<>();
+    // Still NONE while the log replays, so replayed writes are not logged a second time
+    private MutationLog mutationLog = MutationLog.NONE;
+
+    public FuelAnomalyRepository(PersistenceManager persistenceManager) {
+        this.mutationLog = persistenceManager.open("fuel-anomalies", this::replay, this::writeSnapshot);
+    }
+
+    // CREATE or replace the flags of an entry
+    public FuelAnomaly save(FuelAnomaly anomaly) {
+        byCar.computeIfAbsent(anomaly.carId(), key -> new ConcurrentSkipListMap<>()).put(anomaly.entryId(), anomaly);
+        long logPosition = mutationLog.append(SAVED, EntityCodec.encode(anomaly));
+        DurabilityScope.awaitDurable(mutationLog, logPosition);
+        return anomaly;
+    }
+
+    // READ a car's flagged entries, in entry id order
+    public List<FuelAnomaly> findByCarId(long carId) {
+        ConcurrentSkipListMap<Long, FuelAnomaly> anomalies = byCar.get(carId);
+        return anomalies == null ? new ArrayList<>() : new ArrayList<>(anomalies.values());
+    }
+
+    // DELETE the flags of an entry, if it has any
+    public void delete(long carId, long entryId) {
+        ConcurrentSkipListMap<Long, FuelAnomaly> anomalies = byCar.get(carId);
+        if (anomalies == null || anomalies.remove(entryId) == null) {
+            return;
+        }
+        if (anomalies.isEmpty()) {
+            byCar.remove(carId);
+        }
+        long logPosition = mutationLog.append(DELETED, EntityCodec.encodeEntryKey(carId, entryId));
+        DurabilityScope.awaitDurable(mutationLog, logPosition);
+    }
+
+    // DELETE every flag of a deleted car, with one log record however many it had
+    public void deleteByCarId(long carId) {
+        if (byCar.remove(carId) == null) {
+            return;
+        }
+        long logPosition = mutationLog.append(CAR_DELETED, EntityCodec.encodeId(carId));
+        DurabilityScope.awaitDurable(mutationLog, logPosition);
+    }
+
+    private void replay(byte type, ByteBuffer payload) {
+        switch (type) {
+            case SAVED -> save(EntityCodec.decodeFuelAnomaly(payload));
+            case DELETED -> {
+                EntityCodec.EntryKey key = EntityCodec.decodeEntryKey(payload);
+                delete(key.carId(), key.entryId());
+            }
+            case CAR_DELETED -> deleteByCarId(EntityCodec.decodeId(payload));
+            default -> throw new IllegalStateException("Unknown fuel anomaly log record type: " + type);
+        }
+    }
+
+    private void writeSnapshot(SnapshotSource.RecordWriter writer) {
+        byCar.forEachValue(anomalies -> anomalies.values()
+            .forEach(anomaly -> writer.write(SAVED, EntityCodec.encode(anomaly))));
+    }
+}
@@ -1,52 +1,603 @@
 package com.example.cars.repository;
 
 import com.example.cars.model.FuelEntry;
+import com.example.cars.persistence.DurabilityScope;
+import com.example.cars.persistence.EntityCodec;
+import com.example.cars.persistence.FuelBlockCodec;
+import com.example.cars.persistence.MutationLog;
+import com.example.cars.persistence.PersistenceManager;
+import com.example.cars.persistence.SnapshotSource;
+import com.example.cars.repository.storage.FuelEntryStore;
+import com.example.cars.stats.ConsumptionPoint;
+import com.example.cars.stats.FuelAggregate;
+import com.example.cars.stats.FuelBucket;
+import com.example.cars.stats.Granularity;
+import com.example.cars.stats.LeaderboardEntry;
+import com.example.cars.stats.LeaderboardMetric;
+import com.example.cars.stats.QuantileSketch;
+import com.example.cars.util.ConcurrentLongObjectMap;
 import org.springframework.stereotype.Repository;
 
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
+// Rows live in a pluggable FuelEntryStore, which keeps its own copy of each entry and hands out
+// copies, so the carId index can never be bypassed by mutating a returned entry in place
 @Repository
 public class FuelEntryRepository {
 
-    private final Map<Long, FuelEntry> storage = new HashMap<>();
+    private static final int LOCK_STRIPES = 256;
+
+    // Mutation log record types
+    private static final byte SAVED = 1;
+    private static final byte DELETED = 2;
+    private static final byte NEXT_ID = 3;
+    private static final byte CAR_DELETED = 4;
+    // Snapshot-only: up to BLOCK_ENTRIES of one car's entries in FuelBlockCodec form
+    private static final byte SAVED_BLOCK = 5;
+    private static final int BLOCK_ENTRIES = 4096;
+
+    // A deleted car's entries, hidden from the version the car was deleted at and reclaimed in batches.
+    // The history is no longer indexed, so only the purge reads it.
+    private static final class DetachedHistory {
+        final long carId;
+        final FuelHistory history;
+        final Iterator<Long> unpurged;
+        volatile long version = Long.MAX_VALUE;
+        // Version of the last row reclaimed; the entry stays hidden until no snapshot predates it
+        long lastPurgeVersion;
+
+        DetachedHistory(long carId, FuelHistory history) {
+            this.carId = carId;
+            this.history = history;
+            this.unpurged = history.entryIds().iterator();
+        }
+    }
+
+    private final FuelEntryStore store;
+    // Secondary index: carId -> that car's entry ids, by id and by timestamp, with running totals
+    private final ConcurrentLongObjectMap<FuelHistory> histories = new ConcurrentLongObjectMap<>();
+    // Cars ranked by their stats, re-ranked car by car as the histories change
+    private final FuelLeaderboards leaderboards = new FuelLeaderboards(Clock.systemDefaultZone());
+    // Earlier versions of recently written entries, for snapshot reads
+    private final RowVersions<FuelEntry> versions = new RowVersions<>(FuelEntry::getId);
+    // Deleted cars whose entries are hidden but not yet reclaimed, in deletion order
+    private final ConcurrentLongObjectMap<DetachedHistory> detached = new ConcurrentLongObjectMap<>();
+    private final ConcurrentLinkedQueue<DetachedHistory> purgeQueue = new ConcurrentLinkedQueue<>();
+    // Lets reads skip the hidden-entry check while nothing is detached
+    private final AtomicInteger detachedCars = new AtomicInteger();
     private final AtomicLong nextId = new AtomicLong(1);
+    // Writes are serialized per car; writers for different cars only meet on a stripe collision
+    private final StripedLocks carLocks = new StripedLocks(LOCK_STRIPES);
+    // Appended to under the car locks, so the log orders writes to one entry as they were applied. Each
+    // write is applied before it is logged: a snapshot that starts after the record was logged must see it.
+    // Still NONE while the log replays, so replayed writes are not logged a second time.
+    private MutationLog mutationLog = MutationLog.NONE;
+
+    public FuelEntryRepository(FuelEntryStore store, PersistenceManager persistenceManager) {
+        this.store = store;
+        this.mutationLog = persistenceManager.open("fuel-entries", this::replay, this::writeSnapshot);
+    }
 
     // CREATE
     public FuelEntry save(FuelEntry fuelEntry) {
         if (fuelEntry.getId() == null) {
             fuelEntry.setId(nextId.getAndIncrement());
         }
-        storage.put(fuelEntry.getId(), fuelEntry);
+        long id = fuelEntry.getId();
+        long carId = fuelEntry.getCarId();
+        long logPosition;
+        while (true) {
+            FuelEntry previous = store.get(id);
+            long previousCarId = previous != null ? previous.getCarId() : carId;
+            // Moving an entry to another car touches both cars' indexes
+            ReentrantLock[] locks = carLocks.locksFor(previousCarId, carId);
+            lockAll(locks);
+            try {
+                previous = store.get(id);
+                if (previous != null && previous.getCarId() != previousCarId) {
+                    continue; // Another writer moved the entry meanwhile; lock its new car instead
+                }
+                RowVersions.Change<FuelEntry> change = versions.beginWrite(id, previous);
+                if (previous != null) {
+                    unindex(previous);
+                }
+                store.put(fuelEntry);
+                FuelHistory history = histories.computeIfAbsent(carId, key -> new FuelHistory());
+                history.add(fuelEntry);
+                leaderboards.update(carId, history);
+                if (previousCarId != carId) {
+                    leaderboards.update(previousCarId, histories.get(previousCarId));
+                }
+                versions.commit(id, change);
+                logPosition = mutationLog.append(SAVED, EntityCodec.encode(fuelEntry));
+                break;
+            } finally {
+                unlockAll(locks);
+            }
+        }
+        // Wait for the disk outside the car locks, so other writers to the car can join the same fsync;
+        // inside withCarLock the wait is deferred until that lock is released too
+        DurabilityScope.awaitDurable(mutationLog, logPosition);
         return fuelEntry;
     }
 
     // READ by ID
-    public Optional<FuelEntry> findById(Long id) {
-        return Optional.ofNullable(storage.get(id));
+    public Optional<FuelEntry> findById(long id) {
+        FuelEntry fuelEntry = store.get(id);
+        return Optional.ofNullable(fuelEntry != null && !isHidden(fuelEntry) ? fuelEntry : null);
     }
 
-    // READ all
+    // READ all, as of one snapshot
     public List<FuelEntry> findAll() {
-        return new ArrayList<>(storage.values());
+        try (ReadSnapshot snapshot = openSnapshot()) {
+            List<FuelEntry> fuelEntries = new ArrayList<>(store.size());
+            Page<FuelEntry> page = findPage(0, Page.MAX_LIMIT, snapshot);
+            fuelEntries.addAll(page.items());
+            while (page.nextCursor() != null) {
+                page = findPage(page.nextCursor(), Page.MAX_LIMIT, snapshot);
+                fuelEntries.addAll(page.items());
+            }
+            return fuelEntries;
+        }
+    }
+
+    // Opens a consistent read view; the caller must close it
+    public ReadSnapshot openSnapshot() {
+        return versions.open();
+    }
+
+    // READ a page: up to limit entries with an id above afterId - O(log n + limit) at any depth
+    public Page<FuelEntry> findPage(long afterId, int limit) {
+        List<FuelEntry> fuelEntries = store.findAfter(afterId, limit + 1);
+        if (detachedCars.get() == 0) {
+            return Page.of(fuelEntries, limit, FuelEntry::getId);
+        }
+        // Refill whatever the hidden entries of deleted cars took out of the page
+        List<FuelEntry> visible = new ArrayList<>(limit + 1);
+        while (true) {
+            for (FuelEntry fuelEntry : fuelEntries) {
+                if (!isHidden(fuelEntry) && visible.size() <= limit) {
+                    visible.add(fuelEntry);
+                }
+            }
+            if (visible.size() > limit || fuelEntries.size() < limit + 1) {
+                return Page.of(visible, limit, FuelEntry::getId);
+            }
+            fuelEntries = store.findAfter(fuelEntries.get(fuelEntries.size() - 1).getId(), limit + 1);
+        }
+    }
+
+    // READ a page as of the snapshot - never blocks writers, and every page of one snapshot agrees
+    public Page<FuelEntry> findPage(long afterId, int limit, ReadSnapshot snapshot) {
+        long version = versions.versionOf(snapshot);
+        return versions.page(snapshot, afterId, limit, store::findAfter, fuelEntry -> !isHidden(fuelEntry, version));
     }
 
     // DELETE
-    public void delete(Long id) {
-        storage.remove(id);
+    public void delete(long id) {
+        long logPosition;
+        while (true) {
+            FuelEntry existing = store.get(id);
+            if (existing == null) {
+                return;
+            }
+            long carId = existing.getCarId();
+            ReentrantLock lock = carLocks.lockFor(carId);
+            lock.lock();
+            try {
+                existing = store.get(id);
+                if (existing == null || isHidden(existing)) {
+                    return;
+                }
+                if (existing.getCarId() != carId) {
+                    continue; // Entry was moved to another car meanwhile
+                }
+                RowVersions.Change<FuelEntry> change = versions.beginWrite(id, existing);
+                store.remove(id);
+                unindex(existing);
+                leaderboards.update(carId, histories.get(carId));
+                versions.commit(id, change);
+                logPosition = mutationLog.append(DELETED, EntityCodec.encodeId(id));
+                break;
+            } finally {
+                lock.unlock();
+            }
+        }
+        DurabilityScope.awaitDurable(mutationLog, logPosition);
     }
 
     // EXISTS
-    public boolean existsById(Long id) {
-        return storage.containsKey(id);
+    public boolean existsById(long id) {
+        return detachedCars.get() == 0 ? store.contains(id) : findById(id).isPresent();
     }
 
-    // FIND by Car ID
-    public List<FuelEntry> findByCarId(Long carId) {
-        return storage.values().stream()
-                .filter(fuelEntry -> fuelEntry.getCarId().equals(carId))
-                .collect(Collectors.toList());
+    // DELETE all of a car's entries, through the carId index - O(entries of that car)
+    public void deleteByCarId(long carId) {
+        long logPosition;
+        ReentrantLock lock = carLocks.lockFor(carId);
+        lock.lock();
+        try {
+            FuelHistory history = histories.remove(carId);
+            if (history == null) {
+                return;
+            }
+            leaderboards.remove(carId);
+            for (Long id : history.entryIds()) {
+                RowVersions.Change<FuelEntry> change = versions.beginWrite(id, store.get(id));
+                store.remove(id);
+                versions.commit(id, change);
+            }
+            // One record for the whole history, however long it is
+            logPosition = mutationLog.append(CAR_DELETED, EntityCodec.encodeId(carId));
+        } finally {
+            lock.unlock();
+        }
+        DurabilityScope.awaitDurable(mutationLog, logPosition);
+    }
+
+    // Tombstone variant of deleteByCarId - O(1): the car's entries disappear from every read at once,
+    // and purgeDetached reclaims them later
+    public void detachByCarId(long carId) {
+        long logPosition;
+        ReentrantLock lock = carLocks.lockFor(carId);
+        lock.lock();
+        try {
+            FuelHistory history = histories.remove(carId);
+            if (history == null) {
+                return;
+            }
+            leaderboards.remove(carId);
+            DetachedHistory detachedHistory = new DetachedHistory(carId, history);
+            // Published before it is versioned, so a snapshot that reads the version also finds the marker
+            detached.put(carId, detachedHistory);
+            detachedCars.incrementAndGet();
+            detachedHistory.version = versions.commitBulk();
+            purgeQueue.add(detachedHistory);
+            logPosition = mutationLog.append(CAR_DELETED, EntityCodec.encodeId(carId));
+        } finally {
+            lock.unlock();
+        }
+        DurabilityScope.awaitDurable(mutationLog, logPosition);
+    }
+
+    // Reclaims up to maxEntries entries of detached cars, oldest deletion first; returns how many it
+    // reclaimed. A car's marker is dropped once its entries are gone and no open snapshot still sees them.
+    public int purgeDetached(int maxEntries) {
+        int purged = 0;
+        for (DetachedHistory detachedHistory : purgeQueue) {
+            if (purged == maxEntries) {
+                break;
+            }
+            ReentrantLock lock = carLocks.lockFor(detachedHistory.carId);
+            lock.lock();
+            try {
+                while (purged < maxEntries && detachedHistory.unpurged.hasNext()) {
+                    long id = detachedHistory.unpurged.next();
+                    FuelEntry fuelEntry = store.get(id);
+                    // Skips an entry that was saved to another car since
+                    if (fuelEntry != null && fuelEntry.getCarId() == detachedHistory.carId) {
+                        RowVersions.Change<FuelEntry> change = versions.beginWrite(id, fuelEntry);
+                        store.remove(id);
+                        detachedHistory.lastPurgeVersion = versions.commit(id, change);
+                    }
+                    purged++;
+                }
+                if (!detachedHistory.unpurged.hasNext() && versions.settled(detachedHistory.lastPurgeVersion)) {
+                    purgeQueue.remove(detachedHistory);
+                    detached.remove(detachedHistory.carId);
+                    detachedCars.decrementAndGet();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return purged;
+    }
+
+    // True while a deleted car's entries are still hidden rather than reclaimed
+    public boolean hasDetached() {
+        return detachedCars.get() > 0;
+    }
+
+    // FIND by Car ID - O(entries of that car) through the carId index
+    public List<FuelEntry> findByCarId(long carId) {
+        ReentrantLock lock = carLocks.lockFor(carId);
+        lock.lock();
+        try {
+            FuelHistory history = histories.get(carId);
+            if (history == null) {
+                return new ArrayList<>();
+            }
+            List<FuelEntry> fuelEntries = new ArrayList<>();
+            for (Long id : history.entryIds()) {
+                fuelEntries.add(store.get(id));
+            }
+            return fuelEntries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Page of a car's entries by id, through the carId index - O(log n + limit) at any depth
+    public Page<FuelEntry> findPageByCarId(long carId, long afterId, int limit) {
+        return Page.of(latestByCarIdAfter(carId, afterId, limit + 1), limit, FuelEntry::getId);
+    }
+
+    // Page of a car's entries as of the snapshot; entries moved to or from the car since are placed
+    // where they were when it was opened
+    public Page<FuelEntry> findPageByCarId(long carId, long afterId, int limit, ReadSnapshot snapshot) {
+        long version = versions.versionOf(snapshot);
+        // A car deleted after the snapshot is read through its detached history
+        DetachedHistory detachedHistory = detached.get(carId);
+        RowVersions.RowSource<FuelEntry> rows = detachedHistory != null && detachedHistory.version > version
+            ? (after, count) -> rowsAfter(detachedHistory.history, after, count)
+            : (after, count) -> latestByCarIdAfter(carId, after, count);
+        return versions.page(snapshot, afterId, limit, rows,
+            fuelEntry -> fuelEntry.getCarId() == carId && !isHidden(fuelEntry, version));
+    }
+
+    // Entry recorded right before the given one for the same car (by timestamp) - O(log n)
+    public Optional<FuelEntry> findPreviousByTimestamp(long carId, long entryId) {
+        return findTimelineNeighbor(carId, entryId, true);
+    }
+
+    // Entry recorded right after the given one for the same car (by timestamp) - O(log n)
+    public Optional<FuelEntry> findNextByTimestamp(long carId, long entryId) {
+        return findTimelineNeighbor(carId, entryId, false);
+    }
+
+    private Optional<FuelEntry> findTimelineNeighbor(long carId, long entryId, boolean before) {
+        ReentrantLock lock = carLocks.lockFor(carId);
+        lock.lock();
+        try {
+            FuelHistory history = histories.get(carId);
+            if (history == null) {
+                return Optional.empty();
+            }
+            Long neighborId = before ? history.previousId(entryId) : history.nextId(entryId);
+            return neighborId == null ? Optional.empty() : Optional.of(store.get(neighborId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Running totals for a car's entries (sums, odometer range, most recent entry) - O(1), from the index
+    // alone, so stats never read a row even when the car's history has been spilled to disk
+    public FuelAggregate getAggregateByCarId(long carId) {
+        ReentrantLock lock = carLocks.lockFor(carId);
+        lock.lock();
+        try {
+            FuelHistory history = histories.get(carId);
+            if (history == null) {
+                return FuelAggregate.EMPTY;
+            }
+            return history.aggregate();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // A car's stats per day, week or month, from buckets kept up to date on every write - O(log n + buckets
+    // in range), however many entries the buckets hold
+    public List<FuelBucket> getBucketsByCarId(long carId, Granularity granularity, LocalDate from, LocalDate to) {
+        ReentrantLock lock = carLocks.lockFor(carId);
+        lock.lock();
+        try {
+            FuelHistory history = histories.get(carId);
+            return history == null ? new ArrayList<>() : history.buckets(granularity, from, to);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ids of the cars that have fuel entries, in no particular order
+    public long[] findCarIds() {
+        return histories.keys();
     }
-}
 
+    // Totals for a car's entries timestamped within [from, to), a null bound being open - O(log n) for any
+    // range, from the index alone like the whole-history totals
+    public FuelAggregate getAggregateByCarId(long carId, LocalDateTime from, LocalDateTime to) {
+        ReentrantLock lock = carLocks.lockFor(carId);
+        lock.lock();
+        try {
+            FuelHistory history = histories.get(carId);
+            return history == null ? FuelAggregate.EMPTY : history.aggregate(from, to);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // L/100km between each pair of consecutive fill-ups of a car whose second one is timestamped after since
+    // (all of them for null), oldest first, up to limit - O(log n + limit), in one pass over the car's timeline
+    public List<ConsumptionPoint> findConsumptionByCarId(long carId, LocalDateTime since, int limit) {
+        ReentrantLock lock = carLocks.lockFor(carId);
+        lock.lock();
+        try {
+            FuelHistory history = histories.get(carId);
+            return history == null ? new ArrayList<>() : history.consumption(since, limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Adds a car's consumption and price-per-liter distributions to the given sketches - O(buckets), however
+    // many entries the car has, so a fleet's distribution is the merge of its cars'
+    public void mergeDistributionsByCarId(long carId, QuantileSketch per100km, QuantileSketch pricePerLiter) {
+        ReentrantLock lock = carLocks.lockFor(carId);
+        lock.lock();
+        try {
+            FuelHistory history = histories.get(carId);
+            if (history != null) {
+                history.mergeDistributionsInto(per100km, pricePerLiter);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The N cars ranking highest by the metric - O(N), from rankings kept up to date on every write, so
+    // however large the fleet is. The first read in a new month re-ranks every car's spend for that month.
+    public List<LeaderboardEntry> getLeaderboard(LeaderboardMetric metric, int n) {
+        if (metric == LeaderboardMetric.MONTH_TOTAL_PRICE && leaderboards.monthTurned()) {
+            startLeaderboardMonth();
+        }
+        return leaderboards.top(metric, n);
+    }
+
+    // Highest odometer recorded for a car - O(1)
+    public OptionalInt findMaxOdometerByCarId(long carId) {
+        ReentrantLock lock = carLocks.lockFor(carId);
+        lock.lock();
+        try {
+            FuelHistory history = histories.get(carId);
+            return history == null ? OptionalInt.empty() : OptionalInt.of(history.maxOdometer());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Runs the action while holding the car's write lock, so a check against the car's entries and the
+    // write that depends on it are atomic. Locks are reentrant; the action may call save/delete for that car.
+    // Writes the action makes, to any repository, are made durable after the lock is released and before
+    // this returns, so writers waiting for the stripe can share their fsync.
+    public <T> T withCarLock(long carId, Supplier<T> action) {
+        ReentrantLock lock = carLocks.lockFor(carId);
+        DurabilityScope scope = DurabilityScope.open();
+        try {
+            lock.lock();
+            try {
+                return action.get();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    private List<FuelEntry> latestByCarIdAfter(long carId, long afterId, int limit) {
+        ReentrantLock lock = carLocks.lockFor(carId);
+        lock.lock();
+        try {
+            FuelHistory history = histories.get(carId);
+            return history == null ? new ArrayList<>() : rowsAfter(history, afterId, limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Rows already reclaimed from a detached history are skipped; snapshots get them from their versions
+    private List<FuelEntry> rowsAfter(FuelHistory history, long afterId, int limit) {
+        List<FuelEntry> fuelEntries = new ArrayList<>(limit);
+        for (Long id : history.entryIds().tailSet(afterId, false)) {
+            if (fuelEntries.size() == limit) {
+                break;
+            }
+            FuelEntry fuelEntry = store.get(id);
+            if (fuelEntry != null) {
+                fuelEntries.add(fuelEntry);
+            }
+        }
+        return fuelEntries;
+    }
+
+    // Entry of a deleted car that is not reclaimed yet
+    private boolean isHidden(FuelEntry fuelEntry) {
+        return detachedCars.get() > 0 && detached.containsKey(fuelEntry.getCarId());
+    }
+
+    private boolean isHidden(FuelEntry fuelEntry, long snapshotVersion) {
+        if (detachedCars.get() == 0) {
+            return false;
+        }
+        DetachedHistory detachedHistory = detached.get(fuelEntry.getCarId());
+        return detachedHistory != null && detachedHistory.version <= snapshotVersion;
+    }
+
+    private void replay(byte type, ByteBuffer payload) {
+        switch (type) {
+            case SAVED -> replaySave(EntityCodec.decodeFuelEntry(payload));
+            case SAVED_BLOCK -> FuelBlockCodec.decode(payload, this::replaySave);
+            case DELETED -> delete(EntityCodec.decodeId(payload));
+            case NEXT_ID -> nextId.accumulateAndGet(EntityCodec.decodeId(payload), Math::max);
+            case CAR_DELETED -> deleteByCarId(EntityCodec.decodeId(payload));
+            default -> throw new IllegalStateException("Unknown fuel entry log record type: " + type);
+        }
+    }
+
+    private void replaySave(FuelEntry fuelEntry) {
+        nextId.accumulateAndGet(fuelEntry.getId() + 1, Math::max);
+        save(fuelEntry);
+    }
+
+    // The id sequence goes first, so ids of entries deleted before the snapshot are never handed out again.
+    // Entries are written car by car in compressed blocks, through the carId index; entries of deleted cars
+    // that are not reclaimed yet are no longer indexed, so they never come back with the snapshot.
+    private void writeSnapshot(SnapshotSource.RecordWriter writer) {
+        writer.write(NEXT_ID, EntityCodec.encodeId(nextId.get()));
+        for (long carId : histories.keys()) {
+            long afterId = 0;
+            while (true) {
+                List<FuelEntry> block = latestByCarIdAfter(carId, afterId, BLOCK_ENTRIES);
+                if (!block.isEmpty()) {
+                    writer.write(SAVED_BLOCK, FuelBlockCodec.encode(block));
+                }
+                if (block.size() < BLOCK_ENTRIES) {
+                    break;
+                }
+                afterId = block.get(block.size() - 1).getId();
+            }
+        }
+    }
+
+    // Once a month - O(cars x log n). Writers racing with it re-rank their car under its lock, as does this,
+    // so whichever runs last for a car reads the car's final history.
+    private synchronized void startLeaderboardMonth() {
+        if (!leaderboards.monthTurned()) {
+            return;
+        }
+        leaderboards.startMonth();
+        for (long carId : histories.keys()) {
+            ReentrantLock lock = carLocks.lockFor(carId);
+            lock.lock();
+            try {
+                leaderboards.update(carId, histories.get(carId));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Caller holds the stripe lock of the stored entry's car
+    private void unindex(FuelEntry stored) {
+        FuelHistory history = histories.get(stored.getCarId());
+        if (history != null) {
+            history.remove(stored);
+            if (history.isEmpty()) {
+                histories.remove(stored.getCarId());
+            }
+        }
+    }
+
+    private static void lockAll(ReentrantLock[] locks) {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private static void unlockAll(ReentrantLock[] locks) {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+}
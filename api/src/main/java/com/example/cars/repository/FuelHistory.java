@@ -0,0 +1,182 @@
+package com.example.cars.repository;
+
+import com.example.cars.model.FuelEntry;
+import com.example.cars.stats.ConsumptionPoint;
+import com.example.cars.stats.FuelAggregate;
+import com.example.cars.stats.FuelBucket;
+import com.example.cars.stats.Granularity;
+import com.example.cars.stats.QuantileSketch;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+// Per-car secondary index of fuel entries, by id and by timestamp, plus totals over them.
+// Callers must hold the car's stripe lock.
+final class FuelHistory {
+
+    // Timeline position of an entry; equal timestamps are ordered by id. Carries the entry's liters and
+    // odometer, so aggregates and rollups never have to read rows back from storage.
+    record TimelineKey(LocalDateTime timestamp, long id, double liters, int odometer) implements Comparable<TimelineKey> {
+
+        private static final Comparator<TimelineKey> ORDER = Comparator
+                .comparing(TimelineKey::timestamp, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparingLong(TimelineKey::id);
+
+        // Sorts before every entry at the timestamp or later
+        static TimelineKey first(LocalDateTime timestamp) {
+            return new TimelineKey(timestamp, Long.MIN_VALUE, 0.0, 0);
+        }
+
+        // Sorts after every entry at the timestamp or earlier
+        static TimelineKey last(LocalDateTime timestamp) {
+            return new TimelineKey(timestamp, Long.MAX_VALUE, 0.0, 0);
+        }
+
+        @Override
+        public int compareTo(TimelineKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    private final NavigableMap<Long, TimelineKey> keysById = new TreeMap<>();
+    // Also holds the totals over any stretch of the timeline, the whole of it included
+    private final FuelTimeline timeline = new FuelTimeline();
+    private final FuelRollups rollups = new FuelRollups(timeline);
+    // L/100km of every interval between neighbors on the timeline, and the price per liter of every entry
+    private final QuantileSketch per100km = new QuantileSketch();
+    private final QuantileSketch pricePerLiter = new QuantileSketch();
+
+    void add(FuelEntry fuelEntry) {
+        TimelineKey key = new TimelineKey(fuelEntry.getTimestamp(), fuelEntry.getId(), fuelEntry.getLiters(),
+            fuelEntry.getOdometer());
+        keysById.put(fuelEntry.getId(), key);
+        timeline.add(key, fuelEntry.getTotalPrice());
+        rollups.add(key, fuelEntry);
+        // The entry splits the interval between its neighbors in two
+        TimelineKey previous = timeline.lower(key);
+        TimelineKey next = timeline.higher(key);
+        if (previous != null && next != null) {
+            removeInterval(previous, next);
+        }
+        addInterval(previous, key);
+        addInterval(key, next);
+        pricePerLiter.add(fuelEntry.getPrice());
+    }
+
+    // The entry is the stored one, as it was added
+    void remove(FuelEntry fuelEntry) {
+        TimelineKey key = keysById.remove(fuelEntry.getId());
+        if (key == null) {
+            return;
+        }
+        timeline.remove(key);
+        rollups.remove(key);
+        TimelineKey previous = timeline.lower(key);
+        TimelineKey next = timeline.higher(key);
+        removeInterval(previous, key);
+        removeInterval(key, next);
+        if (previous != null && next != null) {
+            addInterval(previous, next);
+        }
+        pricePerLiter.remove(fuelEntry.getPrice());
+    }
+
+    boolean isEmpty() {
+        return keysById.isEmpty();
+    }
+
+    // Read-only view of the entry ids in ascending order
+    NavigableSet<Long> entryIds() {
+        return Collections.unmodifiableNavigableSet(keysById.navigableKeySet());
+    }
+
+    // Id of the entry right before the given one on the timeline, or null
+    Long previousId(long entryId) {
+        return neighbor(entryId, true);
+    }
+
+    // Id of the entry right after the given one on the timeline, or null
+    Long nextId(long entryId) {
+        return neighbor(entryId, false);
+    }
+
+    // Highest odometer among the entries; only meaningful when not empty
+    int maxOdometer() {
+        return timeline.maxOdometer();
+    }
+
+    // O(1) snapshot of the totals over all entries, without touching the rows
+    FuelAggregate aggregate() {
+        return timeline.aggregate(null, null);
+    }
+
+    // Totals over the entries timestamped within [from, to); a null bound is open - O(log n) for any range
+    FuelAggregate aggregate(LocalDateTime from, LocalDateTime to) {
+        return timeline.aggregate(from != null ? TimelineKey.first(from) : null, to != null ? TimelineKey.first(to) : null);
+    }
+
+    // Stats per day, week or month over [from, to) - O(log n + buckets in range)
+    List<FuelBucket> buckets(Granularity granularity, LocalDate from, LocalDate to) {
+        return rollups.buckets(granularity, from, to);
+    }
+
+    // Consumption over each interval between neighbors on the timeline whose second fill-up is timestamped
+    // after since (every interval for null), oldest first, up to limit - one ordered walk of the timeline,
+    // O(log n + points), without reading rows. Intervals without distance are left out.
+    List<ConsumptionPoint> consumption(LocalDateTime since, int limit) {
+        List<ConsumptionPoint> points = new ArrayList<>(Math.min(limit, 64));
+        TimelineKey from = since != null ? TimelineKey.last(since) : null;
+        TimelineKey previous = from != null ? timeline.lower(from) : null;
+        Iterator<TimelineKey> keys = timeline.iterator(from);
+        while (keys.hasNext() && points.size() < limit) {
+            TimelineKey key = keys.next();
+            if (previous != null && key.odometer() > previous.odometer()) {
+                double per100km = intervalPer100km(previous, key);
+                points.add(new ConsumptionPoint(previous.id(), key.id(), previous.timestamp(), key.timestamp(),
+                    previous.liters(), key.odometer() - previous.odometer(), Math.round(per100km * 100.0) / 100.0));
+            }
+            previous = key;
+        }
+        return points;
+    }
+
+    // Adds the entries' distributions to the given sketches - O(buckets)
+    void mergeDistributionsInto(QuantileSketch per100kmInto, QuantileSketch pricePerLiterInto) {
+        per100kmInto.merge(per100km);
+        pricePerLiterInto.merge(pricePerLiter);
+    }
+
+    private void addInterval(TimelineKey from, TimelineKey to) {
+        if (from != null && to != null && to.odometer() > from.odometer()) {
+            per100km.add(intervalPer100km(from, to));
+        }
+    }
+
+    private void removeInterval(TimelineKey from, TimelineKey to) {
+        if (from != null && to != null && to.odometer() > from.odometer()) {
+            per100km.remove(intervalPer100km(from, to));
+        }
+    }
+
+    // The fuel put in at a fill-up is what gets burnt over the distance to the next one
+    private static double intervalPer100km(TimelineKey from, TimelineKey to) {
+        return from.liters() / (to.odometer() - from.odometer()) * 100.0;
+    }
+
+    private Long neighbor(long entryId, boolean before) {
+        TimelineKey key = keysById.get(entryId);
+        if (key == null) {
+            return null;
+        }
+        TimelineKey neighbor = before ? timeline.lower(key) : timeline.higher(key);
+        return neighbor != null ? neighbor.id() : null;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.cars.repository;
+
+import com.example.cars.stats.AnomalyDetector;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Deletes a car's fuel history, anomaly flags and anomaly baseline together with the car. In background mode the entries are hidden at
+// once and reclaimed in batches on a daemon thread, so deleting a car costs the same however long its
+// history is; in immediate mode they are deleted before the call returns.
+public class FuelHistoryPurger implements AutoCloseable {
+
+    // Entries reclaimed per car lock hold, so fill-ups sharing the lock stripe are never stalled for long
+    static final int BATCH_SIZE = 1_000;
+    // Retry delay while a reclaimed history is still visible to an open snapshot
+    private static final long RETRY_MILLIS = 1_000;
+
+    private final FuelEntryRepository fuelEntryRepository;
+    private final FuelAnomalyRepository fuelAnomalyRepository;
+    private final AnomalyDetector anomalyDetector;
+    private final boolean background;
+    private final ScheduledExecutorService purger;
+    // At most one purge is queued at a time, however many cars are deleted meanwhile
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    public FuelHistoryPurger(FuelEntryRepository fuelEntryRepository, FuelAnomalyRepository fuelAnomalyRepository,
+            AnomalyDetector anomalyDetector, boolean background) {
+        this.fuelEntryRepository = fuelEntryRepository;
+        this.fuelAnomalyRepository = fuelAnomalyRepository;
+        this.anomalyDetector = anomalyDetector;
+        this.background = background;
+        this.purger = background ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fuel-history-purger");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    // Runs deleteCar and removes the car's fuel entries, flags and baseline under the car's lock, so a
+    // concurrent fill-up cannot attach a new entry or flag to the car in between
+    public void deleteCar(long carId, Runnable deleteCar) {
+        fuelEntryRepository.withCarLock(carId, () -> {
+            deleteCar.run();
+            if (background) {
+                fuelEntryRepository.detachByCarId(carId);
+            } else {
+                fuelEntryRepository.deleteByCarId(carId);
+            }
+            // Flags are few per car, so they are deleted at once in both modes
+            fuelAnomalyRepository.deleteByCarId(carId);
+            anomalyDetector.forget(carId);
+            return null;
+        });
+        if (background) {
+            schedulePurge(0);
+        }
+    }
+
+    private void schedulePurge(long delayMillis) {
+        if (queued.compareAndSet(false, true)) {
+            purger.schedule(this::purge, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void purge() {
+        queued.set(false);
+        while (fuelEntryRepository.purgeDetached(BATCH_SIZE) > 0) {
+            // Keep going until every detached entry is reclaimed
+        }
+        if (fuelEntryRepository.hasDetached()) {
+            schedulePurge(RETRY_MILLIS);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (purger != null) {
+            purger.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.cars.repository;
+
+import com.example.cars.stats.FuelAggregate;
+import com.example.cars.stats.LeaderboardEntry;
+import com.example.cars.stats.LeaderboardMetric;
+import com.example.cars.util.ConcurrentLongObjectMap;
+
+import java.time.Clock;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Fleet leaderboards kept up to date as cars' entries change. Per metric the cars are ordered by value in
+// a skip list, so reading the top N walks N cars and a write re-ranks only the car written, in O(log cars),
+// whatever the fleet size. A car is updated under its stripe lock, so it has one writer at a time; reads
+// take no lock. The month's spend starts over when the month turns (see FuelEntryRepository.getLeaderboard).
+final class FuelLeaderboards {
+
+    private record Standing(long carId, double value) {
+    }
+
+    // Highest value first, then lowest car id; written out, as it runs O(log cars) times per write
+    private static final Comparator<Standing> ORDER = (left, right) -> {
+        int order = Double.compare(right.value(), left.value());
+        return order != 0 ? order : Long.compare(left.carId(), right.carId());
+    };
+
+    // One metric's ranking, plus each car's standing in it so the standing can be taken out again
+    private static final class Board {
+        final ConcurrentSkipListSet<Standing> ranking = new ConcurrentSkipListSet<>(ORDER);
+        final ConcurrentLongObjectMap<Standing> byCar = new ConcurrentLongObjectMap<>();
+
+        // The new standing goes in before the old one comes out, so a reader may briefly meet the car twice
+        // but never miss it; top() keeps the first it meets
+        void set(long carId, double value) {
+            Standing previous = byCar.get(carId);
+            if (previous != null && previous.value() == value) {
+                return;
+            }
+            Standing standing = new Standing(carId, value);
+            byCar.put(carId, standing);
+            ranking.add(standing);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+        }
+
+        void remove(long carId) {
+            Standing previous = byCar.remove(carId);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+        }
+
+        List<LeaderboardEntry> top(int n) {
+            List<LeaderboardEntry> top = new ArrayList<>(Math.min(n, 64));
+            Set<Long> seen = new HashSet<>();
+            for (Standing standing : ranking) {
+                if (top.size() == n) {
+                    break;
+                }
+                if (seen.add(standing.carId())) {
+                    top.add(new LeaderboardEntry(top.size() + 1, standing.carId(), standing.value()));
+                }
+            }
+            return top;
+        }
+    }
+
+    private record MonthBoard(YearMonth month, Board board) {
+    }
+
+    private final Clock clock;
+    private final Board avgPer100km = new Board();
+    private final Board totalPrice = new Board();
+    private volatile MonthBoard monthTotalPrice;
+
+    FuelLeaderboards(Clock clock) {
+        this.clock = clock;
+        this.monthTotalPrice = new MonthBoard(YearMonth.now(clock), new Board());
+    }
+
+    // Re-ranks the car from its history, which is null once the car has no entries left. Caller holds the
+    // car's stripe lock. O(log n + log cars).
+    void update(long carId, FuelHistory history) {
+        if (history == null || history.isEmpty()) {
+            remove(carId);
+            return;
+        }
+        FuelAggregate aggregate = history.aggregate();
+        if (aggregate.getCount() >= 2 && aggregate.getMaxOdometer() > aggregate.getMinOdometer()) {
+            avgPer100km.set(carId, aggregate.averagePer100km());
+        } else {
+            avgPer100km.remove(carId);
+        }
+        totalPrice.set(carId, aggregate.getTotalPrice());
+        MonthBoard current = monthTotalPrice;
+        FuelAggregate month = history.aggregate(current.month().atDay(1).atStartOfDay(),
+            current.month().plusMonths(1).atDay(1).atStartOfDay());
+        if (month.getCount() > 0) {
+            current.board().set(carId, month.getTotalPrice());
+        } else {
+            current.board().remove(carId);
+        }
+    }
+
+    // Caller holds the car's stripe lock
+    void remove(long carId) {
+        avgPer100km.remove(carId);
+        totalPrice.remove(carId);
+        monthTotalPrice.board().remove(carId);
+    }
+
+    // The N highest cars - O(N)
+    List<LeaderboardEntry> top(LeaderboardMetric metric, int n) {
+        return switch (metric) {
+            case AVG_PER_100KM -> avgPer100km.top(n);
+            case TOTAL_PRICE -> totalPrice.top(n);
+            case MONTH_TOTAL_PRICE -> monthTotalPrice.board().top(n);
+        };
+    }
+
+    // Whether the month ranked by monthTotalPrice is over
+    boolean monthTurned() {
+        return !monthTotalPrice.month().equals(YearMonth.now(clock));
+    }
+
+    // Replaces the month's ranking with an empty one for the current month; every car then has to be
+    // updated again
+    void startMonth() {
+        monthTotalPrice = new MonthBoard(YearMonth.now(clock), new Board());
+    }
+}
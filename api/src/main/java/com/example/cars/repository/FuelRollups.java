@@ -0,0 +1,176 @@
+package com.example.cars.repository;
+
+import com.example.cars.model.FuelEntry;
+import com.example.cars.stats.FuelAggregate;
+import com.example.cars.stats.FuelBucket;
+import com.example.cars.stats.Granularity;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// One car's entries rolled up into day, week and month buckets, kept up to date as entries come and go,
+// so a range query costs one step per non-empty bucket in range however many entries they hold. Only
+// entries with a timestamp are bucketed. Part of the car's FuelHistory and guarded by the same lock.
+final class FuelRollups {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    // Non-empty buckets of one granularity as parallel arrays sorted by start day, so a bucket costs
+    // about 36 bytes and no objects. Buckets are mostly appended, as entries mostly arrive in time order.
+    // Adds update a bucket in place; removals read it back from the timeline's totals over its stretch.
+    private static final class Buckets {
+        int size;
+        int[] startDays = new int[INITIAL_CAPACITY];
+        int[] counts = new int[INITIAL_CAPACITY];
+        double[] totalLiters = new double[INITIAL_CAPACITY];
+        double[] totalPrices = new double[INITIAL_CAPACITY];
+        int[] minOdometers = new int[INITIAL_CAPACITY];
+        int[] maxOdometers = new int[INITIAL_CAPACITY];
+        FuelHistory.TimelineKey[] latest = new FuelHistory.TimelineKey[INITIAL_CAPACITY];
+
+        // Index of the bucket, or (-(insertion point) - 1)
+        int find(int startDay) {
+            return Arrays.binarySearch(startDays, 0, size, startDay);
+        }
+
+        // Opens an empty bucket at the insertion point
+        int insert(int index, int startDay) {
+            if (size == startDays.length) {
+                int capacity = size + (size >> 1);
+                startDays = Arrays.copyOf(startDays, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                totalLiters = Arrays.copyOf(totalLiters, capacity);
+                totalPrices = Arrays.copyOf(totalPrices, capacity);
+                minOdometers = Arrays.copyOf(minOdometers, capacity);
+                maxOdometers = Arrays.copyOf(maxOdometers, capacity);
+                latest = Arrays.copyOf(latest, capacity);
+            }
+            shift(index, index + 1, size - index);
+            size++;
+            startDays[index] = startDay;
+            counts[index] = 0;
+            totalLiters[index] = 0.0;
+            totalPrices[index] = 0.0;
+            latest[index] = null;
+            return index;
+        }
+
+        void delete(int index) {
+            shift(index + 1, index, size - index - 1);
+            latest[--size] = null;
+        }
+
+        private void shift(int from, int to, int length) {
+            System.arraycopy(startDays, from, startDays, to, length);
+            System.arraycopy(counts, from, counts, to, length);
+            System.arraycopy(totalLiters, from, totalLiters, to, length);
+            System.arraycopy(totalPrices, from, totalPrices, to, length);
+            System.arraycopy(minOdometers, from, minOdometers, to, length);
+            System.arraycopy(maxOdometers, from, maxOdometers, to, length);
+            System.arraycopy(latest, from, latest, to, length);
+        }
+    }
+
+    private final FuelTimeline timeline;
+    // Per granularity, by ordinal
+    private final Buckets[] buckets = new Buckets[Granularity.values().length];
+
+    FuelRollups(FuelTimeline timeline) {
+        this.timeline = timeline;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Buckets();
+        }
+    }
+
+    // Call once the key is on the timeline
+    void add(FuelHistory.TimelineKey key, FuelEntry fuelEntry) {
+        if (key.timestamp() == null) {
+            return;
+        }
+        LocalDate date = key.timestamp().toLocalDate();
+        for (Granularity granularity : Granularity.values()) {
+            Buckets byStart = buckets[granularity.ordinal()];
+            int startDay = Math.toIntExact(granularity.bucketStart(date).toEpochDay());
+            int index = byStart.find(startDay);
+            if (index < 0) {
+                index = byStart.insert(-index - 1, startDay);
+            }
+            if (byStart.counts[index] == 0 || key.odometer() < byStart.minOdometers[index]) {
+                byStart.minOdometers[index] = key.odometer();
+            }
+            if (byStart.counts[index] == 0 || key.odometer() > byStart.maxOdometers[index]) {
+                byStart.maxOdometers[index] = key.odometer();
+            }
+            if (byStart.latest[index] == null || key.compareTo(byStart.latest[index]) > 0) {
+                byStart.latest[index] = key;
+            }
+            byStart.counts[index]++;
+            byStart.totalLiters[index] += fuelEntry.getLiters();
+            byStart.totalPrices[index] += fuelEntry.getTotalPrice();
+        }
+    }
+
+    // Call once the key is off the timeline
+    void remove(FuelHistory.TimelineKey key) {
+        if (key.timestamp() == null) {
+            return;
+        }
+        LocalDate date = key.timestamp().toLocalDate();
+        for (Granularity granularity : Granularity.values()) {
+            Buckets byStart = buckets[granularity.ordinal()];
+            LocalDate start = granularity.bucketStart(date);
+            int index = byStart.find(Math.toIntExact(start.toEpochDay()));
+            if (index < 0) {
+                continue;
+            }
+            if (byStart.counts[index] == 1) {
+                byStart.delete(index);
+            } else {
+                refresh(byStart, index, start, granularity.nextBucketStart(start));
+            }
+        }
+    }
+
+    // Non-empty buckets overlapping [from, to), oldest first; a null bound is open
+    List<FuelBucket> buckets(Granularity granularity, LocalDate from, LocalDate to) {
+        Buckets byStart = buckets[granularity.ordinal()];
+        int first = from == null ? 0 : insertionPoint(byStart.find(dayOf(granularity.bucketStart(from))));
+        int end = to == null ? byStart.size : insertionPoint(byStart.find(dayOf(to)));
+        List<FuelBucket> result = new ArrayList<>(Math.max(0, end - first));
+        for (int index = first; index < end; index++) {
+            LocalDate start = LocalDate.ofEpochDay(byStart.startDays[index]);
+            // Same formula as the car's whole history, over the bucket's entries
+            double avgPer100km = new FuelAggregate(byStart.counts[index], byStart.totalLiters[index],
+                byStart.totalPrices[index], byStart.minOdometers[index], byStart.maxOdometers[index],
+                byStart.latest[index].liters()).averagePer100km();
+            result.add(new FuelBucket(start, granularity.nextBucketStart(start), byStart.counts[index],
+                byStart.totalLiters[index], byStart.totalPrices[index], avgPer100km));
+        }
+        return result;
+    }
+
+    // O(log n), from the timeline's totals over the bucket's stretch; recomputed rather than subtracted,
+    // so rounding errors never build up
+    private void refresh(Buckets byStart, int index, LocalDate start, LocalDate end) {
+        FuelHistory.TimelineKey to = FuelHistory.TimelineKey.first(end.atStartOfDay());
+        FuelAggregate inBucket = timeline.aggregate(FuelHistory.TimelineKey.first(start.atStartOfDay()), to);
+        byStart.counts[index] = inBucket.getCount();
+        byStart.totalLiters[index] = inBucket.getTotalLiters();
+        byStart.totalPrices[index] = inBucket.getTotalPrice();
+        byStart.minOdometers[index] = inBucket.getMinOdometer();
+        byStart.maxOdometers[index] = inBucket.getMaxOdometer();
+        byStart.latest[index] = timeline.lower(to);
+    }
+
+    // Bounds far outside any timestamp are clamped rather than overflowing the int start days
+    private static int dayOf(LocalDate date) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, date.toEpochDay()));
+    }
+
+    // First index at or after the search key
+    private static int insertionPoint(int found) {
+        return found >= 0 ? found : -found - 1;
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.cars.repository;
+
+import com.example.cars.stats.FuelAggregate;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// One car's entries in timeline order, as a treap whose nodes also hold the totals of their subtree
+// (entries, liters, price, odometer range). Any [from, to) stretch of the timeline is summed in
+// O(log n) by adding whole subtrees along the two boundary paths, and inserts anywhere in time just
+// update the totals on their path, so out-of-order entries cost the same as appended ones. Totals are
+// recomputed from the children rather than adjusted, so no rounding error builds up over updates.
+final class FuelTimeline {
+
+    private static final class Node {
+        final FuelHistory.TimelineKey key;
+        final double totalPrice;
+        Node left;
+        Node right;
+        // Totals of the subtree rooted here
+        int count;
+        double sumLiters;
+        double sumPrice;
+        int minOdometer;
+        int maxOdometer;
+
+        Node(FuelHistory.TimelineKey key, double totalPrice) {
+            this.key = key;
+            this.totalPrice = totalPrice;
+            update();
+        }
+
+        void update() {
+            count = 1;
+            sumLiters = key.liters();
+            sumPrice = totalPrice;
+            minOdometer = key.odometer();
+            maxOdometer = key.odometer();
+            if (left != null) {
+                count += left.count;
+                sumLiters += left.sumLiters;
+                sumPrice += left.sumPrice;
+                minOdometer = Math.min(minOdometer, left.minOdometer);
+                maxOdometer = Math.max(maxOdometer, left.maxOdometer);
+            }
+            if (right != null) {
+                count += right.count;
+                sumLiters += right.sumLiters;
+                sumPrice += right.sumPrice;
+                minOdometer = Math.min(minOdometer, right.minOdometer);
+                maxOdometer = Math.max(maxOdometer, right.maxOdometer);
+            }
+        }
+    }
+
+    // Totals being collected for a range
+    private static final class Totals {
+        int count;
+        double sumLiters;
+        double sumPrice;
+        int minOdometer = Integer.MAX_VALUE;
+        int maxOdometer = Integer.MIN_VALUE;
+
+        void addNode(Node node) {
+            count++;
+            sumLiters += node.key.liters();
+            sumPrice += node.totalPrice;
+            minOdometer = Math.min(minOdometer, node.key.odometer());
+            maxOdometer = Math.max(maxOdometer, node.key.odometer());
+        }
+
+        void addSubtree(Node node) {
+            if (node == null) {
+                return;
+            }
+            count += node.count;
+            sumLiters += node.sumLiters;
+            sumPrice += node.sumPrice;
+            minOdometer = Math.min(minOdometer, node.minOdometer);
+            maxOdometer = Math.max(maxOdometer, node.maxOdometer);
+        }
+    }
+
+    private Node root;
+    // Kept aside so the whole timeline's totals stay O(1)
+    private FuelHistory.TimelineKey last;
+
+    // The key must not be on the timeline yet
+    void add(FuelHistory.TimelineKey key, double totalPrice) {
+        root = insert(root, new Node(key, totalPrice));
+        if (last == null || key.compareTo(last) > 0) {
+            last = key;
+        }
+    }
+
+    void remove(FuelHistory.TimelineKey key) {
+        root = delete(root, key);
+        if (key.equals(last)) {
+            last = lower(key);
+        }
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    // Highest odometer on the timeline; only meaningful when not empty
+    int maxOdometer() {
+        return root.maxOdometer;
+    }
+
+    FuelHistory.TimelineKey last() {
+        return last;
+    }
+
+    // Greatest key below the given one, or null
+    FuelHistory.TimelineKey lower(FuelHistory.TimelineKey key) {
+        FuelHistory.TimelineKey lower = null;
+        Node node = root;
+        while (node != null) {
+            if (node.key.compareTo(key) < 0) {
+                lower = node.key;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return lower;
+    }
+
+    // Least key above the given one, or null
+    FuelHistory.TimelineKey higher(FuelHistory.TimelineKey key) {
+        FuelHistory.TimelineKey higher = null;
+        Node node = root;
+        while (node != null) {
+            if (node.key.compareTo(key) > 0) {
+                higher = node.key;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return higher;
+    }
+
+    // The keys from the given one on (all of them for null) in timeline order - O(log n) to start, then
+    // amortized O(1) per key, walking the tree rather than copying it. Not valid across writes.
+    Iterator<FuelHistory.TimelineKey> iterator(FuelHistory.TimelineKey from) {
+        // Nodes still to visit, each one before the right subtrees of those below it
+        ArrayDeque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        while (node != null) {
+            if (from == null || node.key.compareTo(from) >= 0) {
+                path.push(node);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public FuelHistory.TimelineKey next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node next = path.pop();
+                for (Node child = next.right; child != null; child = child.left) {
+                    path.push(child);
+                }
+                return next.key;
+            }
+        };
+    }
+
+    // Totals of the keys within [from, to), the latest of them taken as the most recent entry; a null
+    // bound is open - O(log n), O(1) for the whole timeline
+    FuelAggregate aggregate(FuelHistory.TimelineKey from, FuelHistory.TimelineKey to) {
+        Totals totals = new Totals();
+        collect(root, from, to, totals);
+        if (totals.count == 0) {
+            return FuelAggregate.EMPTY;
+        }
+        FuelHistory.TimelineKey latest = to != null ? lower(to) : last();
+        return new FuelAggregate(totals.count, totals.sumLiters, totals.sumPrice, totals.minOdometer,
+            totals.maxOdometer, latest.liters());
+    }
+
+    // Below the node where the bounds part ways, each step has one side wholly in range, so the walk
+    // touches O(log n) nodes whatever the size of the range
+    private static void collect(Node node, FuelHistory.TimelineKey from, FuelHistory.TimelineKey to, Totals totals) {
+        while (node != null) {
+            if (from == null && to == null) {
+                totals.addSubtree(node);
+                return;
+            }
+            if (from != null && node.key.compareTo(from) < 0) {
+                node = node.right;
+            } else if (to != null && node.key.compareTo(to) >= 0) {
+                node = node.left;
+            } else {
+                // In range: the left subtree only needs the lower bound, the right one only the upper
+                collect(node.left, from, null, totals);
+                totals.addNode(node);
+                from = null;
+                node = node.right;
+            }
+        }
+    }
+
+    private static Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+        if (inserted.key.compareTo(node.key) < 0) {
+            node.left = insert(node.left, inserted);
+            if (priority(node.left) > priority(node)) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, inserted);
+            if (priority(node.right) > priority(node)) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private static Node delete(Node node, FuelHistory.TimelineKey key) {
+        if (node == null) {
+            return null;
+        }
+        int order = key.compareTo(node.key);
+        if (order < 0) {
+            node.left = delete(node.left, key);
+        } else if (order > 0) {
+            node.right = delete(node.right, key);
+        } else {
+            return merge(node.left, node.right);
+        }
+        node.update();
+        return node;
+    }
+
+    // Joins two treaps, every key of left below every key of right
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (priority(left) > priority(right)) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        node.update();
+        left.right = node;
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        node.update();
+        right.left = node;
+        return right;
+    }
+
+    // Derived from the id rather than stored: a well-mixed hash keeps the treap balanced in expectation
+    private static int priority(Node node) {
+        long mixed = node.key.id() * 0x9E3779B97F4A7C15L;
+        mixed ^= mixed >>> 32;
+        mixed *= 0xD6E8FEB86659FD93L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.cars.repository;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+// One page of a keyset-paginated listing: items in ascending id order, and the id to pass as `after`
+// for the next page, or null when this is the last page
+public record Page<T>(List<T> items, Long nextCursor) {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    // Builds a page from up to limit + 1 fetched items; the extra item only signals that more exist
+    static <T> Page<T> of(List<T> fetched, int limit, ToLongFunction<T> idOf) {
+        if (fetched.size() <= limit) {
+            return new Page<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new Page<>(items, idOf.applyAsLong(items.get(limit - 1)));
+    }
+}
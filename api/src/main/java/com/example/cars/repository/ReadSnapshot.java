@@ -0,0 +1,38 @@
+package com.example.cars.repository;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// A consistent read view of one repository: every page read through it reflects exactly the writes
+// committed before it was opened, however long the reader takes. Close it when done, so the old row
+// versions it keeps alive can be dropped.
+public final class ReadSnapshot implements AutoCloseable {
+
+    private final RowVersions<?> owner;
+    // Registered with the owner before the version was read, so nothing this view needs is trimmed
+    private final long pinned;
+    private final long version;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    ReadSnapshot(RowVersions<?> owner, long pinned, long version) {
+        this.owner = owner;
+        this.pinned = pinned;
+        this.version = version;
+    }
+
+    long version(RowVersions<?> reader) {
+        if (reader != owner) {
+            throw new IllegalArgumentException("Snapshot belongs to another repository");
+        }
+        if (closed.get()) {
+            throw new IllegalStateException("Snapshot is closed");
+        }
+        return version;
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            owner.release(pinned);
+        }
+    }
+}
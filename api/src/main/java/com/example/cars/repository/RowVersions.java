@@ -0,0 +1,188 @@
+package com.example.cars.repository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+// Multi-version reads over a repository's rows, kept as an undo log. The rows themselves only hold the
+// latest version. Before a write touches a row it records the row's previous version here, and tags the
+// record with a commit version once the write is applied. A snapshot at version S takes each row as
+// stored, unless a write committed after S (or still in flight) touched it; then it takes the version
+// recorded by the first such write. Records no open snapshot can need are dropped as soon as they are
+// committed, so with no snapshot open the log only holds writes in flight.
+// Writers must hold the row's lock from beginWrite to commit; readers never lock.
+final class RowVersions<V> {
+
+    private static final long IN_FLIGHT = Long.MAX_VALUE;
+
+    // The row as it was before one write; null when the write created it
+    static final class Change<V> {
+        private final V before;
+        private volatile long version = IN_FLIGHT;
+        // Earlier change to the same row, with a lower version
+        private volatile Change<V> older;
+
+        private Change(V before, Change<V> older) {
+            this.before = before;
+            this.older = older;
+        }
+    }
+
+    // Source of the latest rows in id order: up to limit rows with an id above afterId
+    @FunctionalInterface
+    interface RowSource<V> {
+        List<V> after(long afterId, int limit);
+    }
+
+    private final ToLongFunction<V> idOf;
+    // Version of the latest committed write
+    private final AtomicLong clock = new AtomicLong();
+    // Row id -> newest change to it; ordered, so rows deleted after a snapshot can be merged into its pages
+    private final ConcurrentNavigableMap<Long, Change<V>> changes = new ConcurrentSkipListMap<>();
+    // Pinned version -> number of open snapshots pinning it
+    private final ConcurrentNavigableMap<Long, Integer> readers = new ConcurrentSkipListMap<>();
+
+    RowVersions(ToLongFunction<V> idOf) {
+        this.idOf = idOf;
+    }
+
+    // Call before the row is modified, with the row as it is now (null if absent)
+    Change<V> beginWrite(long id, V before) {
+        Change<V> change = new Change<>(before, changes.get(id));
+        changes.put(id, change);
+        return change;
+    }
+
+    // Call once the write is applied; the write becomes visible to snapshots opened from now on.
+    // Returns the write's version.
+    long commit(long id, Change<V> change) {
+        long version = clock.incrementAndGet();
+        change.version = version;
+        trim(id, change, horizon());
+        return version;
+    }
+
+    // Commits a write the caller versions itself, such as hiding a whole set of rows at once; snapshots
+    // at or after the returned version must see it
+    long commitBulk() {
+        return clock.incrementAndGet();
+    }
+
+    // True once no open snapshot predates the version
+    boolean settled(long version) {
+        return version <= horizon();
+    }
+
+    // Version of a snapshot opened on these rows
+    long versionOf(ReadSnapshot snapshot) {
+        return snapshot.version(this);
+    }
+
+    ReadSnapshot open() {
+        // Pin before reading the version: a writer that did not see the pin read the clock earlier,
+        // so it only trims changes at or below the version this snapshot is about to read
+        long pinned = clock.get();
+        readers.merge(pinned, 1, Integer::sum);
+        return new ReadSnapshot(this, pinned, clock.get());
+    }
+
+    void release(long pinned) {
+        readers.computeIfPresent(pinned, (version, count) -> count > 1 ? count - 1 : null);
+        long horizon = horizon();
+        for (Map.Entry<Long, Change<V>> entry : changes.entrySet()) {
+            trim(entry.getKey(), entry.getValue(), horizon);
+        }
+    }
+
+    // The row as the snapshot sees it, given the latest version read just before (null if absent)
+    V resolve(long id, V latest, ReadSnapshot snapshot) {
+        return resolve(id, latest, snapshot.version(this));
+    }
+
+    // A page of rows as the snapshot sees them: the latest rows, with rows changed after the snapshot
+    // swapped for their earlier versions and rows deleted after it merged back in by id
+    Page<V> page(ReadSnapshot snapshot, long afterId, int limit, RowSource<V> rows, Predicate<? super V> filter) {
+        long version = snapshot.version(this);
+        List<V> items = new ArrayList<>(limit + 1);
+        long cursor = afterId;
+        while (items.size() <= limit) {
+            int wanted = limit + 1 - items.size();
+            List<V> batch = rows.after(cursor, wanted);
+            boolean last = batch.size() < wanted;
+            long upper = last ? Long.MAX_VALUE : idOf.applyAsLong(batch.get(batch.size() - 1));
+            // Read after the batch, so any write that changed a row of the batch is already recorded
+            Iterator<Long> changedIds = changes.subMap(cursor, false, upper, true).keySet().iterator();
+            Long changedId = changedIds.hasNext() ? changedIds.next() : null;
+            int next = 0;
+            while ((next < batch.size() || changedId != null) && items.size() <= limit) {
+                long rowId = next < batch.size() ? idOf.applyAsLong(batch.get(next)) : Long.MAX_VALUE;
+                long id;
+                V latest = null;
+                if (changedId == null || rowId <= changedId) {
+                    id = rowId;
+                    latest = batch.get(next++);
+                    if (changedId != null && changedId == rowId) {
+                        changedId = changedIds.hasNext() ? changedIds.next() : null;
+                    }
+                } else {
+                    id = changedId;
+                    changedId = changedIds.hasNext() ? changedIds.next() : null;
+                }
+                V visible = resolve(id, latest, version);
+                if (visible != null && filter.test(visible)) {
+                    items.add(visible);
+                }
+            }
+            if (last) {
+                break;
+            }
+            cursor = upper;
+        }
+        return Page.of(items, limit, idOf);
+    }
+
+    // Rows held for open snapshots and writes in flight
+    int retainedChanges() {
+        return changes.size();
+    }
+
+    private V resolve(long id, V latest, long version) {
+        Change<V> change = changes.get(id);
+        if (change == null || change.version <= version) {
+            return latest;
+        }
+        // Versions fall along the chain; the oldest change after the snapshot holds the row it saw
+        V visible = change.before;
+        for (change = change.older; change != null && change.version > version; change = change.older) {
+            visible = change.before;
+        }
+        return visible;
+    }
+
+    // Changes at or below the horizon are never read again: every open snapshot is at least that new
+    private long horizon() {
+        long latest = clock.get();
+        Map.Entry<Long, Integer> oldest = readers.firstEntry();
+        return oldest == null ? latest : Math.min(latest, oldest.getKey());
+    }
+
+    private void trim(long id, Change<V> newest, long horizon) {
+        if (newest.version <= horizon) {
+            // Only removes the chain if no write has started on the row since
+            changes.remove(id, newest);
+            return;
+        }
+        for (Change<V> change = newest; change.older != null; change = change.older) {
+            if (change.older.version <= horizon) {
+                change.older = null;
+                return;
+            }
+        }
+    }
+}
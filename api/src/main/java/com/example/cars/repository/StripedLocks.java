@@ -0,0 +1,44 @@
+package com.example.cars.repository;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Fixed pool of locks picked by key hash, so writers for different keys almost never share a lock
+final class StripedLocks {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    StripedLocks(int stripes) {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a positive power of two: " + stripes);
+        }
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = stripes - 1;
+    }
+
+    // Lock guarding the given key
+    ReentrantLock lockFor(long key) {
+        return locks[index(key)];
+    }
+
+    // Locks for two keys in stripe order and without duplicates, so callers taking both cannot deadlock
+    ReentrantLock[] locksFor(long first, long second) {
+        int a = index(first);
+        int b = index(second);
+        if (a == b) {
+            return new ReentrantLock[] {locks[a]};
+        }
+        return a < b
+            ? new ReentrantLock[] {locks[a], locks[b]}
+            : new ReentrantLock[] {locks[b], locks[a]};
+    }
+
+    private int index(long key) {
+        // Spread the high bits so sequential ids land on different stripes
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.cars.repository.storage;
+
+import com.example.cars.model.FuelEntry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Immutable on-disk run of fuel entries, sorted by id and read through a memory mapping, so only the
+// pages a query touches are ever loaded. Rows replaced or removed after the spill are marked dead in an
+// on-heap bitmap (one bit per row); the file is deleted once no live row is left.
+final class ColdSegment {
+
+    private static final int MAGIC = 0x46434f31; // "FCO1"
+    private static final int HEADER_SIZE = 8;
+    // Keeps one segment within a single mapping
+    static final int MAX_ROWS = (Integer.MAX_VALUE - HEADER_SIZE) / FuelEntryRecord.SIZE;
+    private static final int WRITE_BATCH = 1024;
+
+    private final Path file;
+    private final ByteBuffer records;
+    private final int rows;
+    private final long minId;
+    private final long maxId;
+    private final AtomicLongArray dead;
+    private final AtomicInteger live;
+
+    private ColdSegment(Path file, ByteBuffer records, int rows) {
+        this.file = file;
+        this.records = records;
+        this.rows = rows;
+        this.minId = idAt(0);
+        this.maxId = idAt(rows - 1);
+        this.dead = new AtomicLongArray((rows + 63) >>> 6);
+        this.live = new AtomicInteger(rows);
+    }
+
+    // Fills one record of a segment being written
+    @FunctionalInterface
+    interface RecordWriter {
+        void write(int row, ByteBuffer buffer, int base);
+    }
+
+    // Writes rows records, ascending by id, to a new file through a small buffer and maps it
+    static ColdSegment write(Path file, int rows, RecordWriter records) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BATCH * FuelEntryRecord.SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        // No fsync: segments are rebuilt from the repository's log on startup, never read back after a crash
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer.putInt(0, MAGIC).putInt(4, rows).limit(HEADER_SIZE);
+            writeFully(channel, buffer);
+            for (int row = 0; row < rows; row += WRITE_BATCH) {
+                int batch = Math.min(WRITE_BATCH, rows - row);
+                buffer.clear().limit(batch * FuelEntryRecord.SIZE);
+                for (int i = 0; i < batch; i++) {
+                    records.write(row + i, buffer, i * FuelEntryRecord.SIZE);
+                }
+                writeFully(channel, buffer);
+            }
+            long size = HEADER_SIZE + (long) rows * FuelEntryRecord.SIZE;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new ColdSegment(file, mapped.order(ByteOrder.LITTLE_ENDIAN), rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write cold segment " + file, e);
+        }
+    }
+
+    // Row holding the id, whether live or dead, or -1
+    int find(long id) {
+        if (id < minId || id > maxId) {
+            return -1;
+        }
+        int low = 0;
+        int high = rows - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = idAt(middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // First row with an id above afterId; rows when there is none
+    int firstRowAfter(long afterId) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (idAt(middle) <= afterId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    long maxId() {
+        return maxId;
+    }
+
+    int live() {
+        return live.get();
+    }
+
+    boolean isLive(int row) {
+        return (dead.get(row >>> 6) & (1L << row)) == 0;
+    }
+
+    long idAt(int row) {
+        return FuelEntryRecord.id(records, HEADER_SIZE + row * FuelEntryRecord.SIZE);
+    }
+
+    FuelEntry read(int row) {
+        return FuelEntryRecord.read(records, HEADER_SIZE + row * FuelEntryRecord.SIZE);
+    }
+
+    // Copies the row's record as is, without materializing it
+    void copy(int row, ByteBuffer buffer, int base) {
+        buffer.put(base, records, HEADER_SIZE + row * FuelEntryRecord.SIZE, FuelEntryRecord.SIZE);
+    }
+
+    // Marks the row dead; returns false if it already was
+    boolean kill(int row) {
+        long bit = 1L << row;
+        long word = dead.getAndUpdate(row >>> 6, bits -> bits | bit);
+        if ((word & bit) != 0) {
+            return false;
+        }
+        live.decrementAndGet();
+        return true;
+    }
+
+    // The mapping itself is released once the last reader drops the segment
+    void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // A platform that refuses to delete a mapped file leaves it for the startup cleanup
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.cars.repository.storage;
+
+import com.example.cars.model.FuelEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Column-wise store: one primitive array per field, about 56 bytes per row and no per-row objects.
+// That is the row alone: the repository indexes every entry on the heap on top of it.
+// Rows are kept sorted by id so lookups are a binary search over the id column. Ids arrive in
+// ascending order in practice, which makes inserts appends; an out-of-order id shifts the tail.
+// Deletes leave a tombstone and the columns are compacted once half of the rows are dead.
+public class ColumnarFuelEntryStore implements FuelEntryStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int SCAN_CHUNK = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] carIds = new long[INITIAL_CAPACITY];
+    private double[] liters = new double[INITIAL_CAPACITY];
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private double[] totalPrices = new double[INITIAL_CAPACITY];
+    private int[] odometers = new int[INITIAL_CAPACITY];
+    private long[] epochSeconds = new long[INITIAL_CAPACITY];
+    private int[] nanos = new int[INITIAL_CAPACITY];
+    private BitSet deleted = new BitSet();
+    // Rows in use, tombstones included
+    private int rows;
+    private int live;
+
+    @Override
+    public FuelEntry get(long id) {
+        lock.readLock().lock();
+        try {
+            int row = liveRow(id);
+            return row >= 0 ? materialize(row) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(FuelEntry fuelEntry) {
+        long id = fuelEntry.getId();
+        lock.writeLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, rows, id);
+            if (row < 0) {
+                row = insertRow(-(row + 1), id);
+                live++;
+            } else if (deleted.get(row)) {
+                deleted.clear(row);
+                live++;
+            }
+            write(row, fuelEntry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int row = liveRow(id);
+            if (row < 0) {
+                return false;
+            }
+            deleted.set(row);
+            live--;
+            if (rows >= INITIAL_CAPACITY && live < rows / 2) {
+                compact();
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return liveRow(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Materializes one chunk at a time under the read lock, so a long scan never stalls writers.
+    // Chunks resume from the last id seen, which stays valid across compactions and inserts.
+    @Override
+    public void forEach(Consumer<FuelEntry> action) {
+        long lastId = Long.MIN_VALUE;
+        boolean first = true;
+        FuelEntry[] chunk = new FuelEntry[SCAN_CHUNK];
+        while (true) {
+            int count = 0;
+            lock.readLock().lock();
+            try {
+                int row = first ? 0 : Arrays.binarySearch(ids, 0, rows, lastId);
+                row = row < 0 ? -(row + 1) : (first ? row : row + 1);
+                for (; row < rows && count < SCAN_CHUNK; row++) {
+                    if (!deleted.get(row)) {
+                        chunk[count++] = materialize(row);
+                    }
+                }
+                if (row > 0) {
+                    lastId = ids[row - 1];
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (int i = 0; i < count; i++) {
+                action.accept(chunk[i]);
+                chunk[i] = null;
+            }
+            if (count < SCAN_CHUNK) {
+                return;
+            }
+            first = false;
+        }
+    }
+
+    @Override
+    public List<FuelEntry> findAfter(long afterId, int limit) {
+        List<FuelEntry> fuelEntries = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, rows, afterId);
+            row = row < 0 ? -(row + 1) : row + 1;
+            for (; row < rows && fuelEntries.size() < limit; row++) {
+                if (!deleted.get(row)) {
+                    fuelEntries.add(materialize(row));
+                }
+            }
+            return fuelEntries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int liveRow(long id) {
+        int row = Arrays.binarySearch(ids, 0, rows, id);
+        return row >= 0 && !deleted.get(row) ? row : -1;
+    }
+
+    private FuelEntry materialize(int row) {
+        return new FuelEntry(ids[row], carIds[row], liters[row], prices[row], totalPrices[row], odometers[row],
+            Timestamps.toLocalDateTime(epochSeconds[row], nanos[row]));
+    }
+
+    private void write(int row, FuelEntry fuelEntry) {
+        carIds[row] = fuelEntry.getCarId();
+        liters[row] = fuelEntry.getLiters();
+        prices[row] = fuelEntry.getPrice();
+        totalPrices[row] = fuelEntry.getTotalPrice();
+        odometers[row] = fuelEntry.getOdometer();
+        epochSeconds[row] = Timestamps.epochSecond(fuelEntry.getTimestamp());
+        nanos[row] = Timestamps.nano(fuelEntry.getTimestamp());
+    }
+
+    // Opens a row for the id at the given position, shifting later rows when the id is out of order
+    private int insertRow(int position, long id) {
+        if (rows == ids.length) {
+            grow();
+        }
+        if (position < rows) {
+            int tail = rows - position;
+            System.arraycopy(ids, position, ids, position + 1, tail);
+            System.arraycopy(carIds, position, carIds, position + 1, tail);
+            System.arraycopy(liters, position, liters, position + 1, tail);
+            System.arraycopy(prices, position, prices, position + 1, tail);
+            System.arraycopy(totalPrices, position, totalPrices, position + 1, tail);
+            System.arraycopy(odometers, position, odometers, position + 1, tail);
+            System.arraycopy(epochSeconds, position, epochSeconds, position + 1, tail);
+            System.arraycopy(nanos, position, nanos, position + 1, tail);
+            BitSet shifted = new BitSet();
+            for (int row = deleted.nextSetBit(0); row >= 0; row = deleted.nextSetBit(row + 1)) {
+                shifted.set(row >= position ? row + 1 : row);
+            }
+            deleted = shifted;
+        }
+        ids[position] = id;
+        rows++;
+        return position;
+    }
+
+    private void grow() {
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        carIds = Arrays.copyOf(carIds, capacity);
+        liters = Arrays.copyOf(liters, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        totalPrices = Arrays.copyOf(totalPrices, capacity);
+        odometers = Arrays.copyOf(odometers, capacity);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        nanos = Arrays.copyOf(nanos, capacity);
+    }
+
+    // Slides live rows over the tombstones, keeping id order
+    private void compact() {
+        int target = 0;
+        for (int row = 0; row < rows; row++) {
+            if (deleted.get(row)) {
+                continue;
+            }
+            if (target != row) {
+                ids[target] = ids[row];
+                carIds[target] = carIds[row];
+                liters[target] = liters[row];
+                prices[target] = prices[row];
+                totalPrices[target] = totalPrices[row];
+                odometers[target] = odometers[row];
+                epochSeconds[target] = epochSeconds[row];
+                nanos[target] = nanos[row];
+            }
+            target++;
+        }
+        rows = target;
+        deleted = new BitSet();
+    }
+}
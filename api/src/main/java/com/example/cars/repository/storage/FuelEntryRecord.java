@@ -0,0 +1,50 @@
+package com.example.cars.repository.storage;
+
+import com.example.cars.model.FuelEntry;
+
+import java.nio.ByteBuffer;
+
+// Fixed-width 56-byte binary layout of one fuel entry, shared by the stores that keep rows outside
+// the Java heap. Reads and writes use absolute offsets, so one buffer can serve concurrent readers.
+final class FuelEntryRecord {
+
+    private static final int ID = 0;
+    private static final int CAR_ID = 8;
+    private static final int LITERS = 16;
+    private static final int PRICE = 24;
+    private static final int TOTAL_PRICE = 32;
+    private static final int EPOCH_SECOND = 40;
+    private static final int ODOMETER = 48;
+    private static final int NANO = 52;
+    static final int SIZE = 56;
+
+    private FuelEntryRecord() {
+    }
+
+    static void write(ByteBuffer buffer, int base, FuelEntry fuelEntry) {
+        buffer.putLong(base + ID, fuelEntry.getId());
+        buffer.putLong(base + CAR_ID, fuelEntry.getCarId());
+        buffer.putDouble(base + LITERS, fuelEntry.getLiters());
+        buffer.putDouble(base + PRICE, fuelEntry.getPrice());
+        buffer.putDouble(base + TOTAL_PRICE, fuelEntry.getTotalPrice());
+        buffer.putLong(base + EPOCH_SECOND, Timestamps.epochSecond(fuelEntry.getTimestamp()));
+        buffer.putInt(base + ODOMETER, fuelEntry.getOdometer());
+        buffer.putInt(base + NANO, Timestamps.nano(fuelEntry.getTimestamp()));
+    }
+
+    static FuelEntry read(ByteBuffer buffer, int base) {
+        return new FuelEntry(
+            buffer.getLong(base + ID),
+            buffer.getLong(base + CAR_ID),
+            buffer.getDouble(base + LITERS),
+            buffer.getDouble(base + PRICE),
+            buffer.getDouble(base + TOTAL_PRICE),
+            buffer.getInt(base + ODOMETER),
+            Timestamps.toLocalDateTime(buffer.getLong(base + EPOCH_SECOND), buffer.getInt(base + NANO)));
+    }
+
+    // Id of the record, without materializing it
+    static long id(ByteBuffer buffer, int base) {
+        return buffer.getLong(base + ID);
+    }
+}
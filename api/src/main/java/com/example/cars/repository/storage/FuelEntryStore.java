@@ -0,0 +1,30 @@
+package com.example.cars.repository.storage;
+
+import com.example.cars.model.FuelEntry;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// Primary row storage behind FuelEntryRepository. Implementations keep their own copy of every row
+// and return a freshly materialized FuelEntry from each read; secondary indexes live in the repository.
+public interface FuelEntryStore {
+
+    // Row with the given id, or null
+    FuelEntry get(long id);
+
+    // Inserts the row, or replaces the row with the same id
+    void put(FuelEntry fuelEntry);
+
+    // Returns true if a row was removed
+    boolean remove(long id);
+
+    boolean contains(long id);
+
+    int size();
+
+    // Visits every row in ascending id order; rows written concurrently may or may not be seen
+    void forEach(Consumer<FuelEntry> action);
+
+    // Up to limit rows with an id above afterId, in ascending id order - O(log n + limit)
+    List<FuelEntry> findAfter(long afterId, int limit);
+}
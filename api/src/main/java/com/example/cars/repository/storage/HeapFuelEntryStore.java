@@ -0,0 +1,83 @@
+package com.example.cars.repository.storage;
+
+import com.example.cars.model.FuelEntry;
+import com.example.cars.util.ConcurrentLongObjectMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+
+// Default store: one FuelEntry object per row in a primitive-keyed hash table, so a lookup is O(1) with
+// no boxing. A separate sorted id set serves the scans in id order that keyset pagination needs.
+public class HeapFuelEntryStore implements FuelEntryStore {
+
+    private final ConcurrentLongObjectMap<FuelEntry> storage = new ConcurrentLongObjectMap<>();
+    // Updated inside the table's write lock for the id, so it never disagrees with the table for long
+    private final ConcurrentSkipListSet<Long> ids = new ConcurrentSkipListSet<>();
+
+    @Override
+    public FuelEntry get(long id) {
+        FuelEntry fuelEntry = storage.get(id);
+        return fuelEntry != null ? new FuelEntry(fuelEntry) : null;
+    }
+
+    @Override
+    public void put(FuelEntry fuelEntry) {
+        FuelEntry copy = new FuelEntry(fuelEntry);
+        storage.compute(copy.getId(), current -> {
+            if (current == null) {
+                ids.add(copy.getId());
+            }
+            return copy;
+        });
+    }
+
+    @Override
+    public boolean remove(long id) {
+        boolean[] removed = new boolean[1];
+        storage.compute(id, current -> {
+            if (current != null) {
+                ids.remove(id);
+                removed[0] = true;
+            }
+            return null;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return storage.containsKey(id);
+    }
+
+    @Override
+    public int size() {
+        return storage.size();
+    }
+
+    @Override
+    public void forEach(Consumer<FuelEntry> action) {
+        for (Long id : ids) {
+            FuelEntry fuelEntry = storage.get(id);
+            if (fuelEntry != null) {
+                action.accept(new FuelEntry(fuelEntry));
+            }
+        }
+    }
+
+    @Override
+    public List<FuelEntry> findAfter(long afterId, int limit) {
+        List<FuelEntry> fuelEntries = new ArrayList<>(limit);
+        for (Long id : ids.tailSet(afterId, false)) {
+            if (fuelEntries.size() == limit) {
+                break;
+            }
+            FuelEntry fuelEntry = storage.get(id);
+            if (fuelEntry != null) {
+                fuelEntries.add(new FuelEntry(fuelEntry));
+            }
+        }
+        return fuelEntries;
+    }
+}
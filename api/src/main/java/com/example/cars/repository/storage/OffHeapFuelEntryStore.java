@@ -0,0 +1,220 @@
+package com.example.cars.repository.storage;
+
+import com.example.cars.model.FuelEntry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Keeps fuel entries as fixed-width 56-byte records in direct (native) memory, so the rows add almost
+// nothing for the GC to trace (the repository's per-car index above the store still does, for every
+// entry). Records are written into slots of 64K-record native chunks; freed slots are reused. The only
+// on-heap structure here is the index: ids sorted ascending with the slot of each record (12 bytes per row). A FuelEntry is decoded from its record only when read.
+public class OffHeapFuelEntryStore implements FuelEntryStore {
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int SCAN_CHUNK = 1024;
+    private static final int DELETED = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Native record storage
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private int slotsAllocated;
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount;
+
+    // On-heap index; a DELETED slot is a tombstone until the next compaction
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] slots = new int[INITIAL_CAPACITY];
+    private int rows;
+    private int live;
+
+    @Override
+    public FuelEntry get(long id) {
+        lock.readLock().lock();
+        try {
+            int row = liveRow(id);
+            return row >= 0 ? decode(slots[row]) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(FuelEntry fuelEntry) {
+        long id = fuelEntry.getId();
+        lock.writeLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, rows, id);
+            if (row < 0) {
+                row = insertRow(-(row + 1), id);
+            }
+            if (slots[row] == DELETED) {
+                slots[row] = allocateSlot();
+                live++;
+            }
+            encode(slots[row], fuelEntry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int row = liveRow(id);
+            if (row < 0) {
+                return false;
+            }
+            releaseSlot(slots[row]);
+            slots[row] = DELETED;
+            live--;
+            if (rows >= INITIAL_CAPACITY && live < rows / 2) {
+                compact();
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return liveRow(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Decodes one chunk at a time under the read lock, resuming from the last id seen
+    @Override
+    public void forEach(Consumer<FuelEntry> action) {
+        long lastId = Long.MIN_VALUE;
+        boolean first = true;
+        FuelEntry[] chunk = new FuelEntry[SCAN_CHUNK];
+        while (true) {
+            int count = 0;
+            lock.readLock().lock();
+            try {
+                int row = first ? 0 : Arrays.binarySearch(ids, 0, rows, lastId);
+                row = row < 0 ? -(row + 1) : (first ? row : row + 1);
+                for (; row < rows && count < SCAN_CHUNK; row++) {
+                    if (slots[row] != DELETED) {
+                        chunk[count++] = decode(slots[row]);
+                    }
+                }
+                if (row > 0) {
+                    lastId = ids[row - 1];
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (int i = 0; i < count; i++) {
+                action.accept(chunk[i]);
+                chunk[i] = null;
+            }
+            if (count < SCAN_CHUNK) {
+                return;
+            }
+            first = false;
+        }
+    }
+
+    @Override
+    public List<FuelEntry> findAfter(long afterId, int limit) {
+        List<FuelEntry> fuelEntries = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, rows, afterId);
+            row = row < 0 ? -(row + 1) : row + 1;
+            for (; row < rows && fuelEntries.size() < limit; row++) {
+                if (slots[row] != DELETED) {
+                    fuelEntries.add(decode(slots[row]));
+                }
+            }
+            return fuelEntries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int liveRow(long id) {
+        int row = Arrays.binarySearch(ids, 0, rows, id);
+        return row >= 0 && slots[row] != DELETED ? row : -1;
+    }
+
+    private FuelEntry decode(int slot) {
+        return FuelEntryRecord.read(chunks.get(slot >>> CHUNK_SHIFT), (slot & CHUNK_MASK) * FuelEntryRecord.SIZE);
+    }
+
+    private void encode(int slot, FuelEntry fuelEntry) {
+        FuelEntryRecord.write(chunks.get(slot >>> CHUNK_SHIFT), (slot & CHUNK_MASK) * FuelEntryRecord.SIZE, fuelEntry);
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if ((slotsAllocated >>> CHUNK_SHIFT) == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect(FuelEntryRecord.SIZE << CHUNK_SHIFT).order(ByteOrder.nativeOrder()));
+        }
+        return slotsAllocated++;
+    }
+
+    private void releaseSlot(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length + (freeSlots.length >> 1));
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    // Opens an index row for the id, shifting later rows when the id is out of order
+    private int insertRow(int position, long id) {
+        if (rows == ids.length) {
+            int capacity = ids.length + (ids.length >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            slots = Arrays.copyOf(slots, capacity);
+        }
+        if (position < rows) {
+            System.arraycopy(ids, position, ids, position + 1, rows - position);
+            System.arraycopy(slots, position, slots, position + 1, rows - position);
+        }
+        ids[position] = id;
+        slots[position] = DELETED;
+        rows++;
+        return position;
+    }
+
+    // Drops tombstones from the index; native slots were already returned to the free list
+    private void compact() {
+        int target = 0;
+        for (int row = 0; row < rows; row++) {
+            if (slots[row] != DELETED) {
+                ids[target] = ids[row];
+                slots[target] = slots[row];
+                target++;
+            }
+        }
+        rows = target;
+    }
+}
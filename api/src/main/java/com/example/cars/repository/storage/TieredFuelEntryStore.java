@@ -0,0 +1,347 @@
+package com.example.cars.repository.storage;
+
+import com.example.cars.model.FuelEntry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Two-tier store: the most recent entries live in a heap store, and once it holds more than hotLimit
+// rows the oldest ones (lowest ids, as ids are issued in arrival order) are spilled to immutable cold
+// segments on disk, read through memory mappings only when a query reaches them. Every id is live in
+// exactly one place: writing a cold row puts the new version in the hot tier and marks the cold copy dead.
+// Past MAX_SEGMENTS the two smallest segments are merged, dropping their dead rows, so a lookup never
+// checks more than a handful of files. Segments hold no state of their own: they are cleared on startup
+// and rebuilt as the log replays.
+public class TieredFuelEntryStore implements FuelEntryStore {
+
+    // Heap cost of one hot entry (object, boxed ids, timestamp and the tier's id index; measured at about
+    // 234 bytes), for turning a memory budget into a row limit
+    public static final int HOT_ENTRY_BYTES = 256;
+
+    private static final int SCAN_CHUNK = 1024;
+    static final int MAX_SEGMENTS = 16;
+    private static final String SEGMENT_PREFIX = "fuel-entries-";
+    private static final String SEGMENT_SUFFIX = ".cold";
+
+    private final Path directory;
+    private final int hotLimit;
+    private final HeapFuelEntryStore hot = new HeapFuelEntryStore();
+    // Replaced as a whole, so a reader never sees a merged segment next to one of its sources
+    private final AtomicReference<List<ColdSegment>> segments = new AtomicReference<>(List.of());
+    private final AtomicLong nextSegment = new AtomicLong();
+    // Writers share it; a spill takes it exclusively only to swap its rows from the hot tier to a segment
+    private final ReentrantReadWriteLock tiers = new ReentrantReadWriteLock();
+    // One spill or merge at a time; writers that find one running carry on
+    private final ReentrantLock spilling = new ReentrantLock();
+
+    public TieredFuelEntryStore(Path directory, int hotLimit) {
+        if (hotLimit < 1) {
+            throw new IllegalArgumentException("hotLimit must be positive: " + hotLimit);
+        }
+        this.directory = directory;
+        this.hotLimit = hotLimit;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path file : stale) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare cold segment directory " + directory, e);
+        }
+    }
+
+    // Hot tier first: a row moving to a segment is published there before it leaves the hot tier. A put
+    // works the other way round, publishing in the hot tier before killing the cold row, so a dead cold
+    // row sends the read back to the hot tier.
+    @Override
+    public FuelEntry get(long id) {
+        FuelEntry fuelEntry = hot.get(id);
+        if (fuelEntry != null) {
+            return fuelEntry;
+        }
+        boolean dead = false;
+        for (ColdSegment segment : segments.get()) {
+            int row = segment.find(id);
+            if (row >= 0) {
+                if (segment.isLive(row)) {
+                    return segment.read(row);
+                }
+                dead = true;
+            }
+        }
+        return dead ? reread(id) : null;
+    }
+
+    @Override
+    public void put(FuelEntry fuelEntry) {
+        tiers.readLock().lock();
+        try {
+            hot.put(fuelEntry);
+            killCold(fuelEntry.getId());
+        } finally {
+            tiers.readLock().unlock();
+        }
+        if (hot.size() > hotLimit && spilling.tryLock()) {
+            try {
+                spill();
+                mergeSegments();
+            } finally {
+                spilling.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        tiers.readLock().lock();
+        try {
+            return hot.remove(id) | killCold(id);
+        } finally {
+            tiers.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long id) {
+        return get(id) != null;
+    }
+
+    @Override
+    public int size() {
+        int size = hot.size();
+        for (ColdSegment segment : segments.get()) {
+            size += segment.live();
+        }
+        return size;
+    }
+
+    // Walks pages in id order, so rows spilled mid-scan are neither skipped nor repeated
+    @Override
+    public void forEach(Consumer<FuelEntry> action) {
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            List<FuelEntry> chunk = findAfter(lastId, SCAN_CHUNK);
+            chunk.forEach(action);
+            if (chunk.size() < SCAN_CHUNK) {
+                return;
+            }
+            lastId = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+    // Merges the first limit rows of each tier; a row caught mid-spill in both keeps its hot version
+    @Override
+    public List<FuelEntry> findAfter(long afterId, int limit) {
+        List<FuelEntry> merged = hot.findAfter(afterId, limit);
+        for (ColdSegment segment : segments.get()) {
+            if (segment.maxId() <= afterId) {
+                continue;
+            }
+            List<FuelEntry> cold = new ArrayList<>();
+            for (int row = segment.firstRowAfter(afterId); row < segment.rows() && cold.size() < limit; row++) {
+                // A dead row may be a put that missed the hot read above; then its new version is found again
+                FuelEntry fuelEntry = segment.isLive(row) ? segment.read(row) : reread(segment.idAt(row));
+                if (fuelEntry != null) {
+                    cold.add(fuelEntry);
+                }
+            }
+            merged = merge(merged, cold, limit);
+        }
+        return merged;
+    }
+
+    // The id's row once a read found its cold copy dead: a put killed it after publishing the new version
+    // in the hot tier, and a spill since then moved that version to a newer segment before it left the hot
+    // tier. Null when the row was removed.
+    private FuelEntry reread(long id) {
+        FuelEntry fuelEntry = hot.get(id);
+        if (fuelEntry != null) {
+            return fuelEntry;
+        }
+        for (ColdSegment segment : segments.get()) {
+            int row = segment.find(id);
+            if (row >= 0 && segment.isLive(row)) {
+                return segment.read(row);
+            }
+        }
+        return null;
+    }
+
+    // Cold segments currently in use
+    int segmentCount() {
+        return segments.get().size();
+    }
+
+    // Moves the oldest hot rows to a new segment, bringing the hot tier down to three quarters of its limit.
+    // The segment is written without blocking writers; rows they changed meanwhile stay hot.
+    private void spill() {
+        int excess = hot.size() - hotLimit * 3 / 4;
+        if (excess <= 0) {
+            return;
+        }
+        List<FuelEntry> oldest = hot.findAfter(Long.MIN_VALUE, Math.min(excess, ColdSegment.MAX_ROWS));
+        if (oldest.isEmpty()) {
+            return;
+        }
+        Path file = directory.resolve(SEGMENT_PREFIX + nextSegment.getAndIncrement() + SEGMENT_SUFFIX);
+        ColdSegment segment = ColdSegment.write(file, oldest.size(),
+            (row, buffer, base) -> FuelEntryRecord.write(buffer, base, oldest.get(row)));
+        tiers.writeLock().lock();
+        try {
+            for (int row = 0; row < oldest.size(); row++) {
+                if (!sameRow(oldest.get(row), hot.get(oldest.get(row).getId()))) {
+                    segment.kill(row);
+                }
+            }
+            if (segment.live() == 0) {
+                segment.delete();
+                return;
+            }
+            segments.updateAndGet(current -> with(current, segment));
+            for (int row = 0; row < oldest.size(); row++) {
+                if (segment.isLive(row)) {
+                    hot.remove(oldest.get(row).getId());
+                }
+            }
+        } finally {
+            tiers.writeLock().unlock();
+        }
+    }
+
+    // Merges the two segments with the fewest live rows until at most MAX_SEGMENTS are left. Records are
+    // copied as they are; rows killed while the merged file was written are killed in it before the swap.
+    private void mergeSegments() {
+        while (segments.get().size() > MAX_SEGMENTS) {
+            List<ColdSegment> bySize = new ArrayList<>(segments.get());
+            bySize.sort(Comparator.comparingInt(ColdSegment::live));
+            ColdSegment first = bySize.get(0);
+            ColdSegment second = bySize.get(1);
+            if ((long) first.live() + second.live() > ColdSegment.MAX_ROWS) {
+                return;
+            }
+            // Source of each merged row: a row of first, or the complement of a row of second
+            int[] origins = new int[first.live() + second.live()];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (count < origins.length && (i < first.rows() || j < second.rows())) {
+                if (i < first.rows() && !first.isLive(i)) {
+                    i++;
+                } else if (j < second.rows() && !second.isLive(j)) {
+                    j++;
+                } else if (j == second.rows() || (i < first.rows() && first.idAt(i) < second.idAt(j))) {
+                    origins[count++] = i++;
+                } else {
+                    origins[count++] = ~j++;
+                }
+            }
+            Path file = directory.resolve(SEGMENT_PREFIX + nextSegment.getAndIncrement() + SEGMENT_SUFFIX);
+            ColdSegment merged = count == 0 ? null : ColdSegment.write(file, count, (row, buffer, base) -> {
+                int origin = origins[row];
+                if (origin >= 0) {
+                    first.copy(origin, buffer, base);
+                } else {
+                    second.copy(~origin, buffer, base);
+                }
+            });
+            tiers.writeLock().lock();
+            try {
+                for (int row = 0; merged != null && row < count; row++) {
+                    int origin = origins[row];
+                    if (origin >= 0 ? !first.isLive(origin) : !second.isLive(~origin)) {
+                        merged.kill(row);
+                    }
+                }
+                if (merged != null && merged.live() > 0) {
+                    segments.updateAndGet(current -> with(current, merged));
+                } else if (merged != null) {
+                    merged.delete();
+                }
+                dropSegments(first, second);
+            } finally {
+                tiers.writeLock().unlock();
+            }
+        }
+    }
+
+    // Removes the segments from the list and deletes their files
+    private void dropSegments(ColdSegment first, ColdSegment second) {
+        List<ColdSegment> before = segments.getAndUpdate(current -> {
+            List<ColdSegment> kept = new ArrayList<>(current);
+            kept.remove(first);
+            kept.remove(second);
+            return List.copyOf(kept);
+        });
+        for (ColdSegment segment : before) {
+            if (segment == first || segment == second) {
+                segment.delete();
+            }
+        }
+    }
+
+    private static List<ColdSegment> with(List<ColdSegment> segments, ColdSegment segment) {
+        List<ColdSegment> extended = new ArrayList<>(segments);
+        extended.add(segment);
+        return List.copyOf(extended);
+    }
+
+    // Marks the id's cold row dead, if it has a live one; drops a segment left with no live rows
+    private boolean killCold(long id) {
+        for (ColdSegment segment : segments.get()) {
+            int row = segment.find(id);
+            if (row >= 0 && segment.isLive(row) && segment.kill(row)) {
+                if (segment.live() == 0) {
+                    dropSegments(segment, segment);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Both lists ascending by id; keeps the first list's row when an id is in both
+    private static List<FuelEntry> merge(List<FuelEntry> first, List<FuelEntry> second, int limit) {
+        if (second.isEmpty()) {
+            return first;
+        }
+        List<FuelEntry> merged = new ArrayList<>(Math.min(limit, first.size() + second.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < first.size() || j < second.size())) {
+            if (j == second.size() || (i < first.size() && first.get(i).getId() <= second.get(j).getId())) {
+                FuelEntry fuelEntry = first.get(i++);
+                if (j < second.size() && second.get(j).getId().equals(fuelEntry.getId())) {
+                    j++;
+                }
+                merged.add(fuelEntry);
+            } else {
+                merged.add(second.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    private static boolean sameRow(FuelEntry spilled, FuelEntry current) {
+        return current != null
+            && spilled.getCarId().equals(current.getCarId())
+            && Double.compare(spilled.getLiters(), current.getLiters()) == 0
+            && Double.compare(spilled.getPrice(), current.getPrice()) == 0
+            && Double.compare(spilled.getTotalPrice(), current.getTotalPrice()) == 0
+            && spilled.getOdometer() == current.getOdometer()
+            && Objects.equals(spilled.getTimestamp(), current.getTimestamp());
+    }
+}
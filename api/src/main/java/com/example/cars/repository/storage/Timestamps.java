@@ -0,0 +1,26 @@
+package com.example.cars.repository.storage;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Fixed-width encoding of fuel entry timestamps: epoch seconds (UTC) plus nanos, exact in both directions
+public final class Timestamps {
+
+    // Epoch-second value standing for a null timestamp
+    public static final long NONE = Long.MIN_VALUE;
+
+    private Timestamps() {
+    }
+
+    public static long epochSecond(LocalDateTime timestamp) {
+        return timestamp != null ? timestamp.toEpochSecond(ZoneOffset.UTC) : NONE;
+    }
+
+    public static int nano(LocalDateTime timestamp) {
+        return timestamp != null ? timestamp.getNano() : 0;
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochSecond, int nano) {
+        return epochSecond == NONE ? null : LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+}
@@ -5,16 +5,25 @@ import java.util.List;
 
 import com.example.cars.model.Car;
 import com.example.cars.repository.CarRepository;
+import com.example.cars.repository.FuelHistoryPurger;
+import com.example.cars.repository.Page;
+import com.example.cars.repository.ReadSnapshot;
+import com.example.cars.stats.FuelStatsCache;
 import com.example.cars.util.ValidationUtils;
 import org.springframework.stereotype.Service;
 
 @Service
 public class CarService {
     private final CarRepository carRepository;
+    private final FuelHistoryPurger fuelHistoryPurger;
+    private final FuelStatsCache fuelStatsCache;
     private final ValidationUtils validationUtils;
 
-    public CarService(CarRepository carRepository, ValidationUtils validationUtils) {
+    public CarService(CarRepository carRepository, FuelHistoryPurger fuelHistoryPurger, FuelStatsCache fuelStatsCache,
+            ValidationUtils validationUtils) {
         this.carRepository = carRepository;
+        this.fuelHistoryPurger = fuelHistoryPurger;
+        this.fuelStatsCache = fuelStatsCache;
         this.validationUtils = validationUtils;
     }
 
@@ -29,6 +38,25 @@ public class CarService {
         return carRepository.findAll();
     }
 
+    // Get a page of cars by id, after the given cursor
+    public Page<Car> getCarsPage(Long after, Integer limit) {
+        int pageSize = limit != null ? limit : Page.DEFAULT_LIMIT;
+        validationUtils.validatePage(after, pageSize, Page.MAX_LIMIT);
+        return carRepository.findPage(after != null ? after : 0, pageSize);
+    }
+
+    // Open a consistent view of all cars, for reads spanning several pages
+    public ReadSnapshot openSnapshot() {
+        return carRepository.openSnapshot();
+    }
+
+    // Get a page of cars as of the snapshot
+    public Page<Car> getCarsPage(Long after, Integer limit, ReadSnapshot snapshot) {
+        int pageSize = limit != null ? limit : Page.DEFAULT_LIMIT;
+        validationUtils.validatePage(after, pageSize, Page.MAX_LIMIT);
+        return carRepository.findPage(after != null ? after : 0, pageSize, snapshot);
+    }
+
     // Get a car by id
     public Car getCarById(Long id) {
         validateIdExists(id);
@@ -41,16 +69,15 @@ public class CarService {
         validateIdExists(id);
         validateYear(car.getYear());
         Car existingCar = getCarById(id);
-        existingCar.setBrand(car.getBrand());
-        existingCar.setModel(car.getModel());
-        existingCar.setYear(car.getYear());
-        return carRepository.save(existingCar);
+        // Save a new version rather than editing the stored car, which readers may be holding
+        return carRepository.save(new Car(existingCar.getId(), car.getBrand(), car.getModel(), car.getYear()));
     }
 
-    // Delete a car
+    // Delete a car along with its fuel entries; its cached stats go too rather than waiting for eviction
     public void deleteCar(Long id) {
         validateIdExists(id);
-        carRepository.delete(id);
+        fuelHistoryPurger.deleteCar(id, () -> carRepository.delete(id));
+        fuelStatsCache.invalidate(id);
     }
 
 
@@ -0,0 +1,58 @@
+package com.example.cars.service;
+
+import com.example.cars.repository.FuelEntryRepository;
+import com.example.cars.stats.FleetFuelStats;
+import com.example.cars.stats.FleetStatsCalculator;
+import com.example.cars.stats.FuelDistribution;
+import com.example.cars.stats.LeaderboardEntry;
+import com.example.cars.stats.LeaderboardMetric;
+import com.example.cars.stats.QuantileSketch;
+import com.example.cars.util.ValidationUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@Service
+public class FleetService {
+    public static final int DEFAULT_LEADERBOARD_SIZE = 20;
+    public static final int MAX_LEADERBOARD_SIZE = 1000;
+
+    private final FuelEntryRepository fuelEntryRepository;
+    private final FleetStatsCalculator fleetStatsCalculator;
+    private final ValidationUtils validationUtils;
+
+    public FleetService(FuelEntryRepository fuelEntryRepository, FleetStatsCalculator fleetStatsCalculator,
+            ValidationUtils validationUtils) {
+        this.fuelEntryRepository = fuelEntryRepository;
+        this.fleetStatsCalculator = fleetStatsCalculator;
+        this.validationUtils = validationUtils;
+    }
+
+    // Get fuel stats across all cars, reading the cars' running aggregates in parallel
+    public FleetFuelStats getFleetFuelStats() {
+        return fleetStatsCalculator.compute(fuelEntryRepository.findCarIds(), fuelEntryRepository::getAggregateByCarId);
+    }
+
+    // Percentiles of per-interval consumption and price per liter across all cars, merging the cars'
+    // sketches - O(cars x buckets), however many entries the cars have
+    public FuelDistribution getFleetFuelDistribution() {
+        QuantileSketch per100km = new QuantileSketch();
+        QuantileSketch pricePerLiter = new QuantileSketch();
+        for (long carId : fuelEntryRepository.findCarIds()) {
+            fuelEntryRepository.mergeDistributionsByCarId(carId, per100km, pricePerLiter);
+        }
+        return FuelDistribution.of(per100km, pricePerLiter);
+    }
+
+    // Top n cars by the metric, from rankings the repository keeps up to date - O(n), whatever the fleet size
+    public List<LeaderboardEntry> getLeaderboard(String metric, Integer n) {
+        LeaderboardMetric leaderboardMetric = LeaderboardMetric.parse(metric)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Invalid metric '" + metric + "'. Expected avgPer100km, totalPrice or monthTotalPrice."));
+        int size = n != null ? n : DEFAULT_LEADERBOARD_SIZE;
+        validationUtils.validatePage(null, size, MAX_LEADERBOARD_SIZE);
+        return fuelEntryRepository.getLeaderboard(leaderboardMetric, size);
+    }
+}
@@ -1,37 +1,81 @@
 package com.example.cars.service;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
+import com.example.cars.dto.FuelStatsBatchItem;
+import com.example.cars.dto.FuelStatsResponse;
+import com.example.cars.model.FuelAnomaly;
 import com.example.cars.model.FuelEntry;
+import com.example.cars.repository.FuelAnomalyRepository;
 import com.example.cars.repository.FuelEntryRepository;
+import com.example.cars.repository.Page;
+import com.example.cars.repository.ReadSnapshot;
+import com.example.cars.stats.AnomalyDetector;
+import com.example.cars.stats.ConsumptionPoint;
+import com.example.cars.stats.FleetStatsCalculator;
+import com.example.cars.stats.FuelAggregate;
+import com.example.cars.stats.FuelBucket;
+import com.example.cars.stats.FuelDistribution;
+import com.example.cars.stats.FuelStatsCache;
+import com.example.cars.stats.Granularity;
+import com.example.cars.stats.QuantileSketch;
 import com.example.cars.util.ValidationUtils;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 @Service
 public class FuelEntryService {
+    public static final int MAX_STATS_BATCH_SIZE = 1000;
+
     private final FuelEntryRepository fuelEntryRepository;
     private final CarService carService;
+    private final FuelStatsCache fuelStatsCache;
     private final ValidationUtils validationUtils;
+    private final AnomalyDetector anomalyDetector;
+    private final FuelAnomalyRepository fuelAnomalyRepository;
+    private final FleetStatsCalculator fleetStatsCalculator;
 
-    public FuelEntryService(FuelEntryRepository fuelEntryRepository, CarService carService, ValidationUtils validationUtils) {
+    public FuelEntryService(FuelEntryRepository fuelEntryRepository, CarService carService,
+            FuelStatsCache fuelStatsCache, ValidationUtils validationUtils,
+            AnomalyDetector anomalyDetector, FuelAnomalyRepository fuelAnomalyRepository,
+            FleetStatsCalculator fleetStatsCalculator) {
         this.fuelEntryRepository = fuelEntryRepository;
         this.carService = carService;
+        this.fuelStatsCache = fuelStatsCache;
         this.validationUtils = validationUtils;
+        this.anomalyDetector = anomalyDetector;
+        this.fuelAnomalyRepository = fuelAnomalyRepository;
+        this.fleetStatsCalculator = fleetStatsCalculator;
     }
 
     // Create a new fuel entry
     public FuelEntry createFuelEntry(FuelEntry fuelEntry) {
-        // Validate that the car exists
-        validateCarIdExists(fuelEntry.getCarId());
-        // Validate odometer doesn't decrease
-        validateOdometerNotDecreasing(fuelEntry.getCarId(), fuelEntry.getOdometer());
-        // Set timestamp if not already set
-        if (fuelEntry.getTimestamp() == null) {
-            fuelEntry.setTimestamp(LocalDateTime.now());
-        }
-        return fuelEntryRepository.save(fuelEntry);
+        validationUtils.validateIdNotNull(fuelEntry.getCarId(), "Car");
+        // Check and insert under the car's lock, so two concurrent fill-ups cannot both pass the same maximum
+        // and the car cannot be deleted between the check and the insert
+        FuelEntry created = fuelEntryRepository.withCarLock(fuelEntry.getCarId(), () -> {
+            // Validate that the car exists
+            validateCarIdExists(fuelEntry.getCarId());
+            // Validate odometer doesn't decrease
+            validateOdometerNotDecreasing(fuelEntry.getCarId(), fuelEntry.getOdometer());
+            // Set timestamp if not already set
+            if (fuelEntry.getTimestamp() == null) {
+                fuelEntry.setTimestamp(LocalDateTime.now());
+            }
+            FuelEntry saved = fuelEntryRepository.save(fuelEntry);
+            // Checked against the car's rolling stats, in the same lock, so fill-ups reach them in order
+            FuelAnomaly anomaly = anomalyDetector.inspect(saved);
+            if (anomaly != null) {
+                fuelAnomalyRepository.save(anomaly);
+            }
+            return saved;
+        });
+        // Like every write below: invalidated once withCarLock has returned, i.e. the write is durable
+        fuelStatsCache.invalidate(created.getCarId());
+        return created;
     }
 
     // Get all fuel entries
@@ -39,6 +83,25 @@ public class FuelEntryService {
         return fuelEntryRepository.findAll();
     }
 
+    // Get a page of fuel entries by id, after the given cursor
+    public Page<FuelEntry> getFuelEntriesPage(Long after, Integer limit) {
+        int pageSize = limit != null ? limit : Page.DEFAULT_LIMIT;
+        validationUtils.validatePage(after, pageSize, Page.MAX_LIMIT);
+        return fuelEntryRepository.findPage(after != null ? after : 0, pageSize);
+    }
+
+    // Open a consistent view of all fuel entries, for reads spanning several pages
+    public ReadSnapshot openSnapshot() {
+        return fuelEntryRepository.openSnapshot();
+    }
+
+    // Get a page of fuel entries as of the snapshot
+    public Page<FuelEntry> getFuelEntriesPage(Long after, Integer limit, ReadSnapshot snapshot) {
+        int pageSize = limit != null ? limit : Page.DEFAULT_LIMIT;
+        validationUtils.validatePage(after, pageSize, Page.MAX_LIMIT);
+        return fuelEntryRepository.findPage(after != null ? after : 0, pageSize, snapshot);
+    }
+
     // Get a fuel entry by id
     public FuelEntry getFuelEntryById(Long id) {
         validateIdExists(id);
@@ -49,102 +112,136 @@ public class FuelEntryService {
     // Update a fuel entry
     public FuelEntry updateFuelEntry(Long id, FuelEntry fuelEntry) {
         validateIdExists(id);
-        FuelEntry existingFuelEntry = getFuelEntryById(id);
-        // Validate odometer against previous and next entries (by timestamp)
-        validateOdometerForUpdate(existingFuelEntry.getCarId(), existingFuelEntry.getId(), existingFuelEntry.getTimestamp(), fuelEntry.getOdometer());
-        existingFuelEntry.setLiters(fuelEntry.getLiters());
-        existingFuelEntry.setPrice(fuelEntry.getPrice());
-        existingFuelEntry.setOdometer(fuelEntry.getOdometer());
+        while (true) {
+            long carId = getFuelEntryById(id).getCarId();
+            // Neighbors cannot change between the check and the save while the car's lock is held
+            FuelEntry updated = fuelEntryRepository.withCarLock(carId, () -> {
+                // Re-read under the lock: saving a copy read before it would re-create an entry deleted meanwhile
+                FuelEntry existingFuelEntry = getLockedFuelEntry(id);
+                if (existingFuelEntry.getCarId() != carId) {
+                    return null; // Moved to another car meanwhile; lock that one instead
+                }
+                // Validate odometer against previous and next entries (by timestamp)
+                validateOdometerForUpdate(carId, id, fuelEntry.getOdometer());
+                existingFuelEntry.setLiters(fuelEntry.getLiters());
+                existingFuelEntry.setPrice(fuelEntry.getPrice());
+                existingFuelEntry.setOdometer(fuelEntry.getOdometer());
 
-        return fuelEntryRepository.save(existingFuelEntry);
+                return fuelEntryRepository.save(existingFuelEntry);
+            });
+            if (updated != null) {
+                fuelStatsCache.invalidate(carId);
+                return updated;
+            }
+        }
     }
 
-    // Delete a fuel entry
+    // Delete a fuel entry, with its anomaly flags, under the car's lock so it cannot interleave with an update
     public void deleteFuelEntry(Long id) {
-        validateIdExists(id);
-        fuelEntryRepository.delete(id);
+        while (true) {
+            long carId = getFuelEntryById(id).getCarId();
+            boolean deleted = fuelEntryRepository.withCarLock(carId, () -> {
+                if (getLockedFuelEntry(id).getCarId() != carId) {
+                    return false; // Moved to another car meanwhile; lock that one instead
+                }
+                fuelEntryRepository.delete(id);
+                fuelAnomalyRepository.delete(carId, id);
+                return true;
+            });
+            if (deleted) {
+                fuelStatsCache.invalidate(carId);
+                return;
+            }
+        }
     }
 
-    // Fuel Stats
+    // Fuel Stats - served from the stats cache; a miss reads the car's running aggregate, O(1) regardless
+    // of history length. The car is checked first, so a deleted car's cached stats are never served.
     public Map<String, Double> getFuelStats(Long carId) {
         validateCarIdExists(carId);
-        List<FuelEntry> fuelEntries = getAllFuelEntriesByCarId(carId);
-        if (fuelEntries.isEmpty()) {
-            // Return zeros if no fuel entries exist
-            Map<String, Double> emptyStats = new HashMap<>();
-            emptyStats.put("totalLiters", 0.0);
-            emptyStats.put("totalPrice", 0.0);
-            emptyStats.put("avgPer100km", 0.0);
-            return emptyStats;
+        return fuelStatsCache.get(carId, this::computeFuelStats);
+    }
+
+    // Fuel stats of many cars at once, in the order of the ids, read in parallel on the fleet stats pool. An id
+    // the single-car read would reject, e.g. an unknown car, gets its status and message in place of stats
+    // rather than failing the batch.
+    public List<FuelStatsBatchItem> getFuelStatsBatch(List<Long> carIds) {
+        if (carIds == null || carIds.isEmpty() || carIds.size() > MAX_STATS_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Car IDs must hold between 1 and " + MAX_STATS_BATCH_SIZE + " ids");
         }
-        return calculateFuelStats(fuelEntries);
-    }   
+        return fleetStatsCalculator.computeEach(carIds, carId -> {
+            try {
+                return FuelStatsBatchItem.success(carId, FuelStatsResponse.of(getFuelStats(carId)));
+            } catch (ResponseStatusException e) {
+                return FuelStatsBatchItem.error(carId, e.getStatusCode().value(), e.getReason());
+            } catch (IllegalArgumentException e) {
+                // Car deleted between the existence check and the read
+                return FuelStatsBatchItem.error(carId, HttpStatus.NOT_FOUND.value(), e.getMessage());
+            }
+        });
+    }
+
+    // Fuel stats over the entries timestamped within [from, to), e.g. a rental period; either bound may be
+    // open. Read from the car's timeline totals in O(log n) for any range, so they are not cached.
+    public Map<String, Double> getFuelStats(Long carId, LocalDateTime from, LocalDateTime to) {
+        validateCarIdExists(carId);
+        validationUtils.validateDateRange(from, to);
+        return toFuelStats(fuelEntryRepository.getAggregateByCarId(carId, from, to));
+    }
+
+    // Fuel stats per day, week or month over [from, to), from buckets the repository keeps up to date, so
+    // the cost depends on the number of buckets in range rather than on the number of entries
+    public List<FuelBucket> getFuelStatsBuckets(Long carId, String granularity, LocalDate from, LocalDate to) {
+        validateCarIdExists(carId);
+        Granularity bucketGranularity = Granularity.parse(granularity)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Invalid granularity '" + granularity + "'. Expected day, week or month."));
+        validationUtils.validateDateRange(from, to);
+        return fuelEntryRepository.getBucketsByCarId(carId, bucketGranularity, from, to);
+    }
+
+    // L/100km between consecutive fill-ups, oldest first. Passing the last point's 'to' as since fetches only
+    // the points added since; the cost depends on the points returned, not on the car's history.
+    public List<ConsumptionPoint> getFuelConsumption(Long carId, LocalDateTime since, Integer limit) {
+        validateCarIdExists(carId);
+        int pageSize = limit != null ? limit : Page.DEFAULT_LIMIT;
+        validationUtils.validatePage(null, pageSize, Page.MAX_LIMIT);
+        return fuelEntryRepository.findConsumptionByCarId(carId, since, pageSize);
+    }
+
+    // Entries of the car flagged when they were ingested, in entry id order
+    public List<FuelAnomaly> getFuelAnomalies(Long carId) {
+        validateCarIdExists(carId);
+        return fuelAnomalyRepository.findByCarId(carId);
+    }
+
+    // Percentiles of the car's per-interval consumption and of its price per liter, from sketches the
+    // repository keeps up to date on every write - O(buckets), however long the car's history is
+    public FuelDistribution getFuelDistribution(Long carId) {
+        validateCarIdExists(carId);
+        QuantileSketch per100km = new QuantileSketch();
+        QuantileSketch pricePerLiter = new QuantileSketch();
+        fuelEntryRepository.mergeDistributionsByCarId(carId, per100km, pricePerLiter);
+        return FuelDistribution.of(per100km, pricePerLiter);
+    }
+
+    // Counters of the stats cache, for sizing it
+    public FuelStatsCache.Counters getFuelStatsCacheCounters() {
+        return fuelStatsCache.counters();
+    }
 
-    // Calculate fuel stats
-    // Formula: Average (L/100km) = (Total fuel consumed / Total distance driven) × 100
-    // Note: Most recent entry (by timestamp) is excluded from consumption calculation as it represents fuel still in tank
-    private Map<String, Double> calculateFuelStats(List<FuelEntry> fuelEntries) {
+    private Map<String, Double> computeFuelStats(long carId) {
+        return toFuelStats(fuelEntryRepository.getAggregateByCarId(carId));
+    }
+
+    private static Map<String, Double> toFuelStats(FuelAggregate aggregate) {
         Map<String, Double> stats = new HashMap<>();
-        
-        // Sum all fuel added across all entries (for totalLiters and totalPrice stats)
-        double totalLiters = fuelEntries.stream().mapToDouble(FuelEntry::getLiters).sum();
-        double totalPrice = fuelEntries.stream().mapToDouble(FuelEntry::getTotalPrice).sum();
-        
-        stats.put("totalLiters", totalLiters);
-        stats.put("totalPrice", totalPrice);
-        stats.put("avgPer100km", calculateAverageConsumption(fuelEntries));
-        
+        stats.put("totalLiters", aggregate.getTotalLiters());
+        stats.put("totalPrice", aggregate.getTotalPrice());
+        stats.put("avgPer100km", aggregate.averagePer100km());
         return stats;
     }
-    
-    // Calculates average fuel consumption per 100km (optimized single-pass algorithm)
-    private double calculateAverageConsumption(List<FuelEntry> fuelEntries) {
-        // Need at least 2 entries to calculate distance traveled
-        if (fuelEntries.size() < 2) {
-            return 0.0;
-        }
-        
-        // Single pass: find min/max odometer, most recent entry, and total fuel
-        int minOdometer = Integer.MAX_VALUE;
-        int maxOdometer = Integer.MIN_VALUE;
-        FuelEntry mostRecentEntry = null;
-        LocalDateTime mostRecentTimestamp = null;
-        double totalFuel = 0.0;
-        
-        for (FuelEntry entry : fuelEntries) {
-            int odometer = entry.getOdometer();
-            if (odometer < minOdometer) {
-                minOdometer = odometer;
-            }
-            if (odometer > maxOdometer) {
-                maxOdometer = odometer;
-            }
-            
-            LocalDateTime timestamp = entry.getTimestamp();
-            if (mostRecentTimestamp == null || (timestamp != null && timestamp.isAfter(mostRecentTimestamp))) {
-                mostRecentTimestamp = timestamp;
-                mostRecentEntry = entry;
-            }
-            
-            totalFuel += entry.getLiters();
-        }
-        
-        // Calculate distance
-        int totalDistance = maxOdometer - minOdometer;
-        if (totalDistance <= 0) {
-            return 0.0;
-        }
-        
-        // Calculate fuel consumed (exclude most recent entry - fuel still in tank)
-        double fuelConsumed = totalFuel;
-        if (mostRecentEntry != null) {
-            fuelConsumed -= mostRecentEntry.getLiters();
-        }
-        
-        // Formula: (Total fuel consumed / Total distance driven) × 100
-        double avgPer100km = (fuelConsumed / totalDistance) * 100.0;
-        return Math.round(avgPer100km * 100.0) / 100.0;
-    }
 
     // Get all fuel entries by car id
     public List<FuelEntry> getAllFuelEntriesByCarId(Long carId) {
@@ -153,63 +250,59 @@ public class FuelEntryService {
     }
 
 
+    // Get a page of a car's fuel entries by id, after the given cursor
+    public Page<FuelEntry> getFuelEntriesPageByCarId(Long carId, Long after, Integer limit) {
+        validateCarIdExists(carId);
+        int pageSize = limit != null ? limit : Page.DEFAULT_LIMIT;
+        validationUtils.validatePage(after, pageSize, Page.MAX_LIMIT);
+        return fuelEntryRepository.findPageByCarId(carId, after != null ? after : 0, pageSize);
+    }
+
+    // Get a page of a car's fuel entries as of the snapshot
+    public Page<FuelEntry> getFuelEntriesPageByCarId(Long carId, Long after, Integer limit, ReadSnapshot snapshot) {
+        validateCarIdExists(carId);
+        int pageSize = limit != null ? limit : Page.DEFAULT_LIMIT;
+        validationUtils.validatePage(after, pageSize, Page.MAX_LIMIT);
+        return fuelEntryRepository.findPageByCarId(carId, after != null ? after : 0, pageSize, snapshot);
+    }
+
+
     private void validateIdExists(Long id) {
         validationUtils.validateEntityExists(id, fuelEntryRepository::existsById, "Fuel entry");
     }
 
+    // The entry as stored now; the caller holds its car's lock. 404 when a concurrent delete got there first.
+    private FuelEntry getLockedFuelEntry(Long id) {
+        return fuelEntryRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Fuel entry with ID " + id + " not found"));
+    }
+
     private void validateCarIdExists(Long carId) {
         validationUtils.validateIdNotNull(carId, "Car");
         // Validate car exists by trying to get it
         carService.getCarById(carId);
     }
 
+    // Reads the car's tracked maximum instead of scanning its entries
     private void validateOdometerNotDecreasing(Long carId, int newOdometer) {
-        List<FuelEntry> existingEntries = getAllFuelEntriesByCarId(carId);
-        if (!existingEntries.isEmpty()) {
-            int maxOdometer = existingEntries.stream()
-                    .mapToInt(FuelEntry::getOdometer)
-                    .max()
-                    .orElse(0);
-            if (newOdometer < maxOdometer) {
-                throw new IllegalArgumentException("Odometer cannot decrease. Maximum odometer for this car: " + maxOdometer + ", New: " + newOdometer);
-            }
+        OptionalInt maxOdometer = fuelEntryRepository.findMaxOdometerByCarId(carId);
+        if (maxOdometer.isPresent() && newOdometer < maxOdometer.getAsInt()) {
+            throw new IllegalArgumentException("Odometer cannot decrease. Maximum odometer for this car: " + maxOdometer.getAsInt() + ", New: " + newOdometer);
         }
     }
 
-    private void validateOdometerForUpdate(Long carId, Long entryId, LocalDateTime entryTimestamp, int newOdometer) {
-        List<FuelEntry> allEntries = getAllFuelEntriesByCarId(carId);
-        // Sort by timestamp
-        List<FuelEntry> sortedEntries = allEntries.stream()
-                .sorted(Comparator.comparing(FuelEntry::getTimestamp))
-                .collect(Collectors.toList());
-        
-        // Find the entry being updated
-        int currentIndex = -1;
-        for (int i = 0; i < sortedEntries.size(); i++) {
-            if (sortedEntries.get(i).getId().equals(entryId)) {
-                currentIndex = i;
-                break;
-            }
-        }
-        
-        if (currentIndex == -1) {
-            return; // Entry not found in list, skip validation
-        }
-        
+    // Neighbors come from the per-car timeline index, so the cost does not grow with the car's history
+    private void validateOdometerForUpdate(Long carId, Long entryId, int newOdometer) {
         // Check previous entry (before this one by timestamp)
-        if (currentIndex > 0) {
-            FuelEntry previousEntry = sortedEntries.get(currentIndex - 1);
-            if (newOdometer < previousEntry.getOdometer()) {
-                throw new IllegalArgumentException("Odometer cannot be below previous entry. Previous odometer: " + previousEntry.getOdometer() + ", New: " + newOdometer);
-            }
+        Optional<FuelEntry> previousEntry = fuelEntryRepository.findPreviousByTimestamp(carId, entryId);
+        if (previousEntry.isPresent() && newOdometer < previousEntry.get().getOdometer()) {
+            throw new IllegalArgumentException("Odometer cannot be below previous entry. Previous odometer: " + previousEntry.get().getOdometer() + ", New: " + newOdometer);
         }
-        
+
         // Check next entry (after this one by timestamp)
-        if (currentIndex < sortedEntries.size() - 1) {
-            FuelEntry nextEntry = sortedEntries.get(currentIndex + 1);
-            if (newOdometer > nextEntry.getOdometer()) {
-                throw new IllegalArgumentException("Odometer cannot be above next entry. Next odometer: " + nextEntry.getOdometer() + ", New: " + newOdometer);
-            }
+        Optional<FuelEntry> nextEntry = fuelEntryRepository.findNextByTimestamp(carId, entryId);
+        if (nextEntry.isPresent() && newOdometer > nextEntry.get().getOdometer()) {
+            throw new IllegalArgumentException("Odometer cannot be above next entry. Next odometer: " + nextEntry.get().getOdometer() + ", New: " + newOdometer);
         }
     }
 }
@@ -0,0 +1,124 @@
+package com.example.cars.stats;
+
+import com.example.cars.model.AnomalyFlag;
+import com.example.cars.model.FuelAnomaly;
+import com.example.cars.model.FuelEntry;
+import com.example.cars.util.ConcurrentLongObjectMap;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+// Flags suspicious fill-ups as they are ingested, against rolling statistics of the car's own fill-ups:
+// exponentially weighted mean and variance of the price per liter and of the L/100km since the previous
+// fill-up, so O(1) memory and time per car. A car's first MIN_SAMPLES values of each only train its
+// baseline. Baselines live in memory, are trained again after a restart and are dropped with their car.
+public final class AnomalyDetector {
+
+    // Weight of the newest value: about the last 20 fill-ups count
+    static final double ALPHA = 0.1;
+    static final int MIN_SAMPLES = 5;
+    // Spread assumed at least, as a share of the mean, so a car that always paid the same price is not
+    // flagged for a cent's difference
+    static final double MIN_RELATIVE_SPREAD = 0.05;
+
+    // Exponentially weighted mean and variance; recent values weigh most, so a lasting change, like a new
+    // fuel price, becomes the car's normal after a few fill-ups
+    private static final class Ewma {
+        int samples;
+        double mean;
+        double variance;
+
+        void add(double value) {
+            if (samples++ == 0) {
+                mean = value;
+                return;
+            }
+            double delta = value - mean;
+            mean += ALPHA * delta;
+            variance = (1 - ALPHA) * (variance + ALPHA * delta * delta);
+        }
+
+        // How many spreads the value lies above the mean, negative below it; 0 while still training
+        double score(double value) {
+            if (samples < MIN_SAMPLES) {
+                return 0.0;
+            }
+            return (value - mean) / spread();
+        }
+
+        // The value moved to within the given number of spreads of the mean, so one outlier cannot inflate
+        // the spread and hide the next; a lasting change still pulls the mean along, a bounded step at a time
+        double bounded(double value, double spreads) {
+            if (samples < MIN_SAMPLES) {
+                return value;
+            }
+            double limit = spreads * spread();
+            return Math.max(mean - limit, Math.min(mean + limit, value));
+        }
+
+        private double spread() {
+            return Math.max(Math.sqrt(variance), MIN_RELATIVE_SPREAD * Math.abs(mean));
+        }
+    }
+
+    private static final class Baseline {
+        final Ewma price = new Ewma();
+        final Ewma per100km = new Ewma();
+        boolean hasPrevious;
+        double previousLiters;
+        int previousOdometer;
+    }
+
+    private final boolean enabled;
+    private final double tankCapacityLiters;
+    private final double threshold;
+    private final ConcurrentLongObjectMap<Baseline> baselines = new ConcurrentLongObjectMap<>();
+
+    // threshold: how many spreads from the mean a value must be to be flagged
+    public AnomalyDetector(boolean enabled, double tankCapacityLiters, double threshold) {
+        this.enabled = enabled;
+        this.tankCapacityLiters = tankCapacityLiters;
+        this.threshold = threshold;
+    }
+
+    // Checks the car's newest fill-up, then adds it to the car's baseline; returns the flags raised, or null.
+    // Calls for one car must not overlap; FuelEntryService makes them under the car's lock.
+    public FuelAnomaly inspect(FuelEntry fuelEntry) {
+        if (!enabled) {
+            return null;
+        }
+        Baseline baseline = baselines.computeIfAbsent(fuelEntry.getCarId(), key -> new Baseline());
+        Set<AnomalyFlag> flags = EnumSet.noneOf(AnomalyFlag.class);
+        if (fuelEntry.getLiters() > tankCapacityLiters) {
+            flags.add(AnomalyFlag.LITERS_ABOVE_TANK_CAPACITY);
+        }
+        if (Math.abs(baseline.price.score(fuelEntry.getPrice())) > threshold) {
+            flags.add(AnomalyFlag.PRICE_OUTLIER);
+        }
+        baseline.price.add(baseline.price.bounded(fuelEntry.getPrice(), threshold));
+        // The previous fill-up's fuel burnt over the distance to this one
+        Double per100km = null;
+        int distance = fuelEntry.getOdometer() - baseline.previousOdometer;
+        if (baseline.hasPrevious && distance > 0) {
+            per100km = baseline.previousLiters / distance * 100.0;
+            if (baseline.per100km.score(per100km) > threshold) {
+                flags.add(AnomalyFlag.CONSUMPTION_SPIKE);
+            }
+            baseline.per100km.add(baseline.per100km.bounded(per100km, threshold));
+        }
+        baseline.hasPrevious = true;
+        baseline.previousLiters = fuelEntry.getLiters();
+        baseline.previousOdometer = fuelEntry.getOdometer();
+        if (flags.isEmpty()) {
+            return null;
+        }
+        return new FuelAnomaly(fuelEntry.getId(), fuelEntry.getCarId(), fuelEntry.getTimestamp(), flags,
+            fuelEntry.getLiters(), fuelEntry.getPrice(), per100km);
+    }
+
+    // Drops the baseline of a deleted car. Must not overlap with inspect for the car; FuelHistoryPurger calls
+    // it under the car's lock.
+    public void forget(long carId) {
+        baselines.remove(carId);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.cars.stats;
+
+import java.time.LocalDateTime;
+
+// Consumption between two consecutive fill-ups of a car: the liters put in at the first one burnt over the
+// distance to the second, per100km = liters / distance x 100
+public record ConsumptionPoint(long fromEntryId, long toEntryId, LocalDateTime from, LocalDateTime to,
+        double liters, int distance, double per100km) {
+}
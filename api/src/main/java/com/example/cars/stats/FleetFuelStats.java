@@ -0,0 +1,18 @@
+package com.example.cars.stats;
+
+import java.util.List;
+
+// Fuel stats across every car with fuel entries. avgPer100km is the fleet's total fuel consumed over
+// its total distance; the distribution is of the cars' own averages, over the cars that have one.
+public record FleetFuelStats(int cars, double totalLiters, double totalPrice, double avgPer100km,
+        Distribution distribution) {
+
+    // Per-car L/100km: nearest-rank percentiles and a histogram whose last bucket has no upper bound
+    public record Distribution(int cars, double min, double p25, double p50, double p75, double p90, double max,
+            double mean, List<Bucket> histogram) {
+    }
+
+    // Cars whose average is within [fromPer100km, toPer100km); toPer100km is null for the last bucket
+    public record Bucket(double fromPer100km, Double toPer100km, int cars) {
+    }
+}
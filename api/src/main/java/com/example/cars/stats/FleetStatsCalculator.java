@@ -0,0 +1,206 @@
+package com.example.cars.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+// Computes fleet-wide fuel stats on a dedicated fork-join pool: the car ids are split in halves down to
+// SPLIT_THRESHOLD cars, each leaf reads its cars' running aggregates, and partial sums are merged back up.
+// The split depends only on the number of cars, so sums come out bit-identical for any parallelism.
+public final class FleetStatsCalculator implements AutoCloseable {
+
+    // Cars one task reads before it stops splitting; each read is a car lock and an O(1) aggregate
+    static final int SPLIT_THRESHOLD = 1024;
+    // Cars one task handles in computeEach, whose per-car work is a whole stats read, validation included
+    static final int EACH_SPLIT_THRESHOLD = 32;
+    // Histogram of per-car averages: BUCKETS buckets of BUCKET_WIDTH L/100km, the last one open-ended
+    static final double BUCKET_WIDTH = 2.0;
+    static final int BUCKETS = 16;
+
+    private final ForkJoinPool pool;
+
+    public FleetStatsCalculator(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("fleet-stats-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    // Each car's aggregate is read atomically, but cars written to meanwhile may be read before or after
+    // the write: the totals are not a single point in time across cars
+    public FleetFuelStats compute(long[] carIds, LongFunction<FuelAggregate> aggregates) {
+        // Each leaf fills its own slice: the car's average, or NaN when it has none
+        double[] averages = new double[carIds.length];
+        Totals totals = pool.invoke(new CarsTask(carIds, 0, carIds.length, aggregates, averages));
+        double[] sorted = new double[totals.averaged];
+        int count = 0;
+        for (double average : averages) {
+            if (!Double.isNaN(average)) {
+                sorted[count++] = average;
+            }
+        }
+        Arrays.sort(sorted);
+        double avgPer100km = totals.distance == 0 ? 0.0 : round(totals.consumed / totals.distance * 100.0);
+        return new FleetFuelStats(totals.cars, totals.liters, totals.price, avgPer100km, distribution(sorted));
+    }
+
+    // Applies the function to each car id on the pool, split like compute; results in the order of the ids
+    public <T> List<T> computeEach(List<Long> carIds, Function<Long, T> perCar) {
+        Object[] results = new Object[carIds.size()];
+        pool.invoke(new EachTask(carIds, 0, results.length, perCar, results));
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) Arrays.asList(results);
+        return list;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private static FleetFuelStats.Distribution distribution(double[] sorted) {
+        int[] counts = new int[BUCKETS];
+        double sum = 0.0;
+        for (double average : sorted) {
+            counts[(int) Math.max(0, Math.min(BUCKETS - 1, average / BUCKET_WIDTH))]++;
+            sum += average;
+        }
+        List<FleetFuelStats.Bucket> histogram = new ArrayList<>(BUCKETS);
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            double from = bucket * BUCKET_WIDTH;
+            histogram.add(new FleetFuelStats.Bucket(from, bucket == BUCKETS - 1 ? null : from + BUCKET_WIDTH,
+                counts[bucket]));
+        }
+        if (sorted.length == 0) {
+            return new FleetFuelStats.Distribution(0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, histogram);
+        }
+        return new FleetFuelStats.Distribution(sorted.length, sorted[0], percentile(sorted, 25),
+            percentile(sorted, 50), percentile(sorted, 75), percentile(sorted, 90), sorted[sorted.length - 1],
+            round(sum / sorted.length), histogram);
+    }
+
+    // Nearest rank: the smallest value with at least percent of the values at or below it
+    private static double percentile(double[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    // Partial sums over a range of cars
+    private static final class Totals {
+        int cars;
+        double liters;
+        double price;
+        // Fuel consumed and distance driven, over the cars that have an average
+        double consumed;
+        long distance;
+        int averaged;
+
+        void add(Totals other) {
+            cars += other.cars;
+            liters += other.liters;
+            price += other.price;
+            consumed += other.consumed;
+            distance += other.distance;
+            averaged += other.averaged;
+        }
+    }
+
+    // Fork-join tasks are Serializable, but these never leave the pool
+    @SuppressWarnings("serial")
+    private static final class CarsTask extends RecursiveTask<Totals> {
+        private final long[] carIds;
+        private final int from;
+        private final int to;
+        private final LongFunction<FuelAggregate> aggregates;
+        private final double[] averages;
+
+        CarsTask(long[] carIds, int from, int to, LongFunction<FuelAggregate> aggregates, double[] averages) {
+            this.carIds = carIds;
+            this.from = from;
+            this.to = to;
+            this.aggregates = aggregates;
+            this.averages = averages;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                CarsTask left = new CarsTask(carIds, from, middle, aggregates, averages);
+                left.fork();
+                Totals totals = new CarsTask(carIds, middle, to, aggregates, averages).compute();
+                // Left then right, whichever finished first, so the merge order never varies
+                Totals merged = left.join();
+                merged.add(totals);
+                return merged;
+            }
+            Totals totals = new Totals();
+            for (int i = from; i < to; i++) {
+                FuelAggregate aggregate = aggregates.apply(carIds[i]);
+                averages[i] = Double.NaN;
+                if (aggregate.getCount() == 0) {
+                    continue; // History removed since the ids were listed
+                }
+                totals.cars++;
+                totals.liters += aggregate.getTotalLiters();
+                totals.price += aggregate.getTotalPrice();
+                int distance = aggregate.getMaxOdometer() - aggregate.getMinOdometer();
+                if (aggregate.getCount() >= 2 && distance > 0) {
+                    totals.consumed += aggregate.getTotalLiters() - aggregate.getLatestLiters();
+                    totals.distance += distance;
+                    totals.averaged++;
+                    averages[i] = aggregate.averagePer100km();
+                }
+            }
+            return totals;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class EachTask extends RecursiveAction {
+        private final List<Long> carIds;
+        private final int from;
+        private final int to;
+        private final Function<Long, ?> perCar;
+        private final Object[] results;
+
+        EachTask(List<Long> carIds, int from, int to, Function<Long, ?> perCar, Object[] results) {
+            this.carIds = carIds;
+            this.from = from;
+            this.to = to;
+            this.perCar = perCar;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > EACH_SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new EachTask(carIds, from, middle, perCar, results),
+                    new EachTask(carIds, middle, to, perCar, results));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                results[i] = perCar.apply(carIds.get(i));
+            }
+        }
+    }
+}
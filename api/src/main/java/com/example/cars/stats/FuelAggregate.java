@@ -0,0 +1,65 @@
+package com.example.cars.stats;
+
+// Immutable summary of a set of fuel entries, enough to derive the fuel stats without the entries
+public final class FuelAggregate {
+
+    public static final FuelAggregate EMPTY = new FuelAggregate(0, 0.0, 0.0, 0, 0, 0.0);
+
+    private final int count;
+    private final double totalLiters;
+    private final double totalPrice;
+    private final int minOdometer;
+    private final int maxOdometer;
+    private final double latestLiters;
+
+    public FuelAggregate(int count, double totalLiters, double totalPrice, int minOdometer, int maxOdometer, double latestLiters) {
+        this.count = count;
+        this.totalLiters = totalLiters;
+        this.totalPrice = totalPrice;
+        this.minOdometer = minOdometer;
+        this.maxOdometer = maxOdometer;
+        this.latestLiters = latestLiters;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getTotalLiters() {
+        return totalLiters;
+    }
+
+    public double getTotalPrice() {
+        return totalPrice;
+    }
+
+    public int getMinOdometer() {
+        return minOdometer;
+    }
+
+    public int getMaxOdometer() {
+        return maxOdometer;
+    }
+
+    // Liters of the most recent entry (by timestamp)
+    public double getLatestLiters() {
+        return latestLiters;
+    }
+
+    // Average fuel consumption per 100km
+    // Formula: Average (L/100km) = (Total fuel consumed / Total distance driven) × 100
+    // Note: Most recent entry (by timestamp) is excluded from consumption as it represents fuel still in tank
+    public double averagePer100km() {
+        // Need at least 2 entries to calculate distance traveled
+        if (count < 2) {
+            return 0.0;
+        }
+        int totalDistance = maxOdometer - minOdometer;
+        if (totalDistance <= 0) {
+            return 0.0;
+        }
+        double fuelConsumed = totalLiters - latestLiters;
+        double avgPer100km = (fuelConsumed / totalDistance) * 100.0;
+        return Math.round(avgPer100km * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.cars.stats;
+
+import java.time.LocalDate;
+
+// Fuel stats of one car over the entries timestamped within [start, end); avgPer100km is computed over
+// those entries alone, the same way as for the car's whole history
+public record FuelBucket(LocalDate start, LocalDate end, int entries, double totalLiters, double totalPrice,
+        double avgPer100km) {
+}
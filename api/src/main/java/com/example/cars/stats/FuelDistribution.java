@@ -0,0 +1,27 @@
+package com.example.cars.stats;
+
+// Percentiles of the consumption over each interval between consecutive fill-ups (the fuel of a fill-up
+// over the distance to the next one, in L/100km) and of the price per liter, for a car or the fleet.
+// Estimated from quantile sketches, within relativeAccuracy of the true value.
+public record FuelDistribution(double relativeAccuracy, Percentiles per100km, Percentiles pricePerLiter) {
+
+    // Percentiles are null when there are no values
+    public record Percentiles(long count, Double p50, Double p90, Double p99) {
+
+        static Percentiles of(QuantileSketch sketch) {
+            if (sketch.count() == 0) {
+                return new Percentiles(0, null, null, null);
+            }
+            return new Percentiles(sketch.count(), round(sketch.quantile(0.50)), round(sketch.quantile(0.90)),
+                round(sketch.quantile(0.99)));
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100.0) / 100.0;
+        }
+    }
+
+    public static FuelDistribution of(QuantileSketch per100km, QuantileSketch pricePerLiter) {
+        return new FuelDistribution(per100km.relativeAccuracy(), Percentiles.of(per100km), Percentiles.of(pricePerLiter));
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.cars.stats;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+// Size-bounded LRU cache of per-car fuel stats. Concurrent misses for one car share a single load, and
+// a write to the car invalidates both the cached value and any load already running, so a load that
+// raced with the write is handed to the callers that were waiting for it but never cached.
+// Cars are spread over up to STRIPES stripes by id, each with its own lock and its own share of the
+// capacity, so reads for different cars rarely meet on a lock; eviction is least recently used within
+// the stripe. Small caches keep one stripe, and with it an exact LRU.
+public final class FuelStatsCache {
+
+    static final int STRIPES = 64;
+    // Capacity a stripe gets at least, so per-stripe LRU stays close to a global one
+    static final int MIN_STRIPE_CAPACITY = 64;
+
+    // Counters for sizing the cache
+    public record Counters(long hits, long misses, long loads, long evictions, int size, int capacity) {
+    }
+
+    // One running load; stale once the car was written to after it started
+    private static final class Load {
+        final CompletableFuture<Map<String, Double>> result = new CompletableFuture<>();
+        boolean stale;
+    }
+
+    private static final class Stripe {
+        final int capacity;
+        // Guards every field below; held only for map updates, never while a load runs
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<Long, Map<String, Double>> entries = new LinkedHashMap<>(16, 0.75f, true);
+        final Map<Long, Load> loads = new HashMap<>();
+        long hits;
+        long misses;
+        long loadCount;
+        long evictions;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    private final int capacity;
+    private final Stripe[] stripes;
+    private final int mask;
+
+    // A capacity of 0 disables caching; every call loads
+    public FuelStatsCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        int count = Integer.highestOneBit(Math.max(1, Math.min(STRIPES, capacity / MIN_STRIPE_CAPACITY)));
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            // The remainder goes to the first stripes, so the shares add up to the capacity
+            stripes[i] = new Stripe(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+        this.mask = count - 1;
+    }
+
+    // The car's cached stats, or the loader's result, shared with every concurrent miss for the car
+    public Map<String, Double> get(long carId, LongFunction<Map<String, Double>> loader) {
+        Stripe stripe = stripeFor(carId);
+        Load load;
+        boolean owner = false;
+        stripe.lock.lock();
+        try {
+            Map<String, Double> cached = stripe.entries.get(carId);
+            if (cached != null) {
+                stripe.hits++;
+                return cached;
+            }
+            stripe.misses++;
+            load = stripe.loads.get(carId);
+            if (load == null) {
+                load = new Load();
+                stripe.loads.put(carId, load);
+                stripe.loadCount++;
+                owner = true;
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        return owner ? load(stripe, carId, load, loader) : await(load);
+    }
+
+    // Call after the write is applied, so any load that could have read the old state is marked stale
+    public void invalidate(long carId) {
+        Stripe stripe = stripeFor(carId);
+        stripe.lock.lock();
+        try {
+            stripe.entries.remove(carId);
+            Load load = stripe.loads.remove(carId);
+            if (load != null) {
+                load.stale = true;
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // Summed stripe by stripe, so not a single point in time while the cache is in use
+    public Counters counters() {
+        long hits = 0;
+        long misses = 0;
+        long loads = 0;
+        long evictions = 0;
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                hits += stripe.hits;
+                misses += stripe.misses;
+                loads += stripe.loadCount;
+                evictions += stripe.evictions;
+                size += stripe.entries.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return new Counters(hits, misses, loads, evictions, size, capacity);
+    }
+
+    private Stripe stripeFor(long carId) {
+        // Spread the high bits so sequential ids land on different stripes
+        long h = carId * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (h ^ (h >>> 32)) & mask];
+    }
+
+    private static Map<String, Double> load(Stripe stripe, long carId, Load load,
+            LongFunction<Map<String, Double>> loader) {
+        Map<String, Double> stats;
+        try {
+            stats = Map.copyOf(loader.apply(carId));
+        } catch (RuntimeException e) {
+            finish(stripe, carId, load, null);
+            load.result.completeExceptionally(e);
+            throw e;
+        }
+        finish(stripe, carId, load, stats);
+        load.result.complete(stats);
+        return stats;
+    }
+
+    private static void finish(Stripe stripe, long carId, Load load, Map<String, Double> stats) {
+        stripe.lock.lock();
+        try {
+            stripe.loads.remove(carId, load);
+            if (stats != null && !load.stale && stripe.capacity > 0) {
+                stripe.entries.put(carId, stats);
+                if (stripe.entries.size() > stripe.capacity) {
+                    // Access order: the first key is the least recently used
+                    stripe.entries.remove(stripe.entries.keySet().iterator().next());
+                    stripe.evictions++;
+                }
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private static Map<String, Double> await(Load load) {
+        try {
+            return load.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
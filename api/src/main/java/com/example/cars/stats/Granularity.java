@@ -0,0 +1,42 @@
+package com.example.cars.stats;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+import java.util.Optional;
+
+// Width of a time bucket for rolled-up fuel stats; weeks start on Monday (ISO-8601)
+public enum Granularity {
+    DAY,
+    WEEK,
+    MONTH;
+
+    // First day of the bucket holding the date
+    public LocalDate bucketStart(LocalDate date) {
+        return switch (this) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+
+    // First day of the bucket after the one starting on start
+    public LocalDate nextBucketStart(LocalDate start) {
+        return switch (this) {
+            case DAY -> start.plusDays(1);
+            case WEEK -> start.plusWeeks(1);
+            case MONTH -> start.plusMonths(1);
+        };
+    }
+
+    // Case-insensitive lookup by name, e.g. "month"
+    public static Optional<Granularity> parse(String name) {
+        for (Granularity granularity : values()) {
+            if (granularity.name().equals(name.toUpperCase(Locale.ROOT))) {
+                return Optional.of(granularity);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.cars.stats;
+
+// A car's place on a fleet leaderboard; rank 1 has the highest value, ties going to the lower car id
+public record LeaderboardEntry(int rank, long carId, double value) {
+}
@@ -0,0 +1,34 @@
+package com.example.cars.stats;
+
+import java.util.Optional;
+
+// What a fleet leaderboard ranks cars by, highest first; cars without a value are left out
+public enum LeaderboardMetric {
+    // Whole-history L/100km, thirstiest first; needs two entries and some distance
+    AVG_PER_100KM("avgPer100km"),
+    // Whole-history spend
+    TOTAL_PRICE("totalPrice"),
+    // Spend on the entries timestamped in the current calendar month
+    MONTH_TOTAL_PRICE("monthTotalPrice");
+
+    private final String parameter;
+
+    LeaderboardMetric(String parameter) {
+        this.parameter = parameter;
+    }
+
+    // Name used in requests, e.g. "avgPer100km"
+    public String parameter() {
+        return parameter;
+    }
+
+    // Case-insensitive lookup by request name
+    public static Optional<LeaderboardMetric> parse(String name) {
+        for (LeaderboardMetric metric : values()) {
+            if (metric.parameter.equalsIgnoreCase(name)) {
+                return Optional.of(metric);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.cars.stats;
+
+// Quantile sketch with relative accuracy, DDSketch style: values are counted in buckets whose bounds grow
+// geometrically, so any quantile is estimated within the relative accuracy of the true value, and memory
+// depends on the range of the values rather than on how many there are. Counts can be taken out again,
+// so a value is removed when the entry it came from changes, and sketches of the same accuracy merge by
+// adding their counts. Not thread-safe.
+public final class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    // At the default accuracy, enough for values from 1e-9 to 1e9 before the lowest buckets are folded
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    private static final int[] NO_COUNTS = new int[0];
+    private static final int MIN_SLACK = 8;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private final int maxBuckets;
+    // counts[i] is the count of bucket offset + i, bucket k holding values in (gamma^(k-1), gamma^k]
+    private int[] counts = NO_COUNTS;
+    private int offset;
+    // Buckets below are folded into this one once the values span more than maxBuckets
+    private int floor = Integer.MIN_VALUE;
+    // Values not above zero have no bucket
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (!(relativeAccuracy > 0.0 && relativeAccuracy < 1.0)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+        }
+        if (maxBuckets < 1) {
+            throw new IllegalArgumentException("Max buckets must be positive");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1.0 + relativeAccuracy) / (1.0 - relativeAccuracy));
+        this.maxBuckets = maxBuckets;
+    }
+
+    public void add(double value) {
+        if (value > 0.0) {
+            adjust(bucketOf(value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+    }
+
+    // The value must have been added before
+    public void remove(double value) {
+        if (value > 0.0) {
+            int index = Math.max(bucketOf(value), floor);
+            if (index < offset || index >= offset + counts.length || counts[index - offset] == 0) {
+                throw new IllegalArgumentException("Value " + value + " is not in the sketch");
+            }
+            counts[index - offset]--;
+        } else {
+            if (zeroCount == 0) {
+                throw new IllegalArgumentException("Value " + value + " is not in the sketch");
+            }
+            zeroCount--;
+        }
+        count--;
+    }
+
+    // Adds the other sketch's counts to this one - O(buckets of the other sketch)
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches of different relative accuracy");
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] != 0) {
+                adjust(other.offset + i, other.counts[i]);
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    // Estimate of the value at the given rank, within the relative accuracy; NaN when empty
+    public double quantile(double quantile) {
+        if (!(quantile >= 0.0 && quantile <= 1.0)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double rank = quantile * (count - 1);
+        long seen = zeroCount;
+        if (seen > rank) {
+            return 0.0;
+        }
+        int last = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                seen += counts[i];
+                last = i;
+                if (seen > rank) {
+                    break;
+                }
+            }
+        }
+        // Midpoint of the bucket in relative terms, so the error is the same on either side
+        return 2.0 * Math.exp((offset + last) * logGamma) / (1.0 + Math.exp(logGamma));
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    // Buckets allocated, which is what the sketch's memory grows with
+    public int bucketCount() {
+        return counts.length;
+    }
+
+    private int bucketOf(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    private void adjust(int index, int delta) {
+        index = Math.max(index, floor);
+        if (index < offset || index >= offset + counts.length) {
+            grow(index);
+            index = Math.max(index, floor);
+        }
+        counts[index - offset] += delta;
+    }
+
+    // Widens the buckets to cover the index, with some slack on that side so a run of new values does not
+    // copy every time. Past maxBuckets the lowest buckets are folded together, keeping the high quantiles
+    // accurate, which is what dashboards watch.
+    private void grow(int index) {
+        boolean empty = counts.length == 0;
+        int neededLow = empty ? index : Math.min(offset, index);
+        int neededHigh = empty ? index : Math.max(offset + counts.length - 1, index);
+        if (neededHigh - neededLow + 1 > maxBuckets) {
+            neededLow = neededHigh - maxBuckets + 1;
+            floor = neededLow;
+        }
+        int span = neededHigh - neededLow + 1;
+        int slack = Math.min(maxBuckets - span, Math.max(MIN_SLACK, span >> 1));
+        int low = neededLow;
+        int high = neededHigh;
+        if (!empty && index < offset) {
+            low = Math.max(neededLow - slack, floor);
+        } else {
+            high += slack;
+        }
+        int[] grown = new int[high - low + 1];
+        for (int i = 0; i < counts.length; i++) {
+            grown[Math.max(offset + i, low) - low] += counts[i];
+        }
+        counts = grown;
+        offset = low;
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.cars.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.UnaryOperator;
+
+// Concurrent map from primitive long keys to non-null values, with no boxing and no per-entry node objects.
+// Keys are spread over a fixed number of segments; each segment is an open-addressing table (linear probing,
+// removals shift later entries back instead of leaving tombstones) guarded by a StampedLock. Reads are
+// optimistic and only take the read lock when they race with a write to the same segment.
+public final class ConcurrentLongObjectMap<V> {
+
+    private static final int SEGMENTS = 64;
+    private static final int SEGMENT_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(SEGMENTS);
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Both arrays are replaced together on resize, so a reader always sees a matching pair
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+    }
+
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        Table table = new Table(INITIAL_CAPACITY);
+        int size;
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public ConcurrentLongObjectMap() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    public V get(long key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.tryOptimisticRead();
+        V value = find(segment.table, key, hash);
+        if (segment.lock.validate(stamp)) {
+            return value;
+        }
+        stamp = segment.lock.readLock();
+        try {
+            return find(segment.table, key, hash);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    // Returns the previous value, or null
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return store(segment, key, hash, value);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Returns the removed value, or null
+    public V remove(long key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            return delete(segment, key, hash);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    public V computeIfAbsent(long key, LongFunction<V> mappingFunction) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        return compute(key, current -> current != null ? current : mappingFunction.apply(key));
+    }
+
+    // Replaces the key's value (null when absent) with the function's result, removing the key when the
+    // result is null. Runs under the segment's write lock, so it is atomic with respect to other writers
+    // and may update structures that must stay in step with this map.
+    public V compute(long key, UnaryOperator<V> remappingFunction) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        long stamp = segment.lock.writeLock();
+        try {
+            V current = find(segment.table, key, hash);
+            V updated = remappingFunction.apply(current);
+            if (updated != null) {
+                store(segment, key, hash, updated);
+            } else if (current != null) {
+                delete(segment, key, hash);
+            }
+            return updated;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    // Visits every value, one segment at a time; each segment is copied under its read lock, so the
+    // action never runs while a lock is held
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        List<V> batch = new ArrayList<>();
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                for (Object value : segment.table.values) {
+                    if (value != null) {
+                        batch.add((V) value);
+                    }
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+            batch.forEach(action);
+            batch.clear();
+        }
+    }
+
+    // Keys present at the time each segment is read, in no particular order
+    public long[] keys() {
+        long[] keys = new long[16];
+        int count = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                Table table = segment.table;
+                for (int slot = 0; slot < table.values.length; slot++) {
+                    if (table.values[slot] != null) {
+                        if (count == keys.length) {
+                            keys = Arrays.copyOf(keys, count << 1);
+                        }
+                        keys[count++] = table.keys[slot];
+                    }
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    // Fibonacci hashing; the top bits pick the segment, the low bits the slot
+    private static long hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> SEGMENT_SHIFT)];
+    }
+
+    // Probes at most the whole table, so a racing optimistic read always terminates
+    @SuppressWarnings("unchecked")
+    private static <V> V find(Table table, long key, long hash) {
+        long[] keys = table.keys;
+        Object[] values = table.values;
+        int mask = keys.length - 1;
+        int slot = (int) hash & mask;
+        for (int probes = 0; probes < keys.length; probes++) {
+            Object value = values[slot];
+            if (value == null) {
+                return null;
+            }
+            if (keys[slot] == key) {
+                return (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V store(Segment segment, long key, long hash, V value) {
+        Table table = segment.table;
+        int mask = table.keys.length - 1;
+        int slot = (int) hash & mask;
+        while (table.values[slot] != null) {
+            if (table.keys[slot] == key) {
+                V previous = (V) table.values[slot];
+                table.values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table.keys[slot] = key;
+        table.values[slot] = value;
+        segment.size++;
+        // Keep the load factor at or below 2/3
+        if (segment.size * 3 > table.keys.length * 2) {
+            resize(segment);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V delete(Segment segment, long key, long hash) {
+        Table table = segment.table;
+        long[] keys = table.keys;
+        Object[] values = table.values;
+        int mask = keys.length - 1;
+        int slot = (int) hash & mask;
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == null) {
+            return null;
+        }
+        V removed = (V) values[slot];
+        segment.size--;
+        // Shift later entries of the probe run back into the hole when their home slot allows it
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (values[next] == null) {
+                break;
+            }
+            int home = (int) hash(keys[next]) & mask;
+            boolean homeBetween = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!homeBetween) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = 0;
+        values[hole] = null;
+        return removed;
+    }
+
+    private static void resize(Segment segment) {
+        Table old = segment.table;
+        Table grown = new Table(old.keys.length << 1);
+        int mask = grown.keys.length - 1;
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.values[i] != null) {
+                int slot = (int) hash(old.keys[i]) & mask;
+                while (grown.values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                grown.keys[slot] = old.keys[i];
+                grown.values[slot] = old.values[i];
+            }
+        }
+        segment.table = grown;
+    }
+}
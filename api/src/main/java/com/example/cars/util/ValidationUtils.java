@@ -1,6 +1,6 @@
 package com.example.cars.util;
 
-import java.util.function.Predicate;
+import java.util.function.LongPredicate;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ResponseStatusException;
@@ -26,16 +26,48 @@ public class ValidationUtils {
      * Validates that an entity exists using the provided existence checker.
      * 
      * @param id the ID to check
-     * @param existsChecker a predicate that checks if the entity exists
+     * @param existsChecker a predicate that checks if the entity exists, taking the unboxed ID
      * @param entityName the name of the entity for error messages
      * @throws ResponseStatusException if ID is null or entity not found
      */
-    public void validateEntityExists(Long id, Predicate<Long> existsChecker, String entityName) {
+    public void validateEntityExists(Long id, LongPredicate existsChecker, String entityName) {
         validateIdNotNull(id, entityName);
         if (!existsChecker.test(id)) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, 
                 entityName + " with ID " + id + " not found");
         }
     }
-}
 
+    /**
+     * Validates keyset pagination parameters.
+     * 
+     * @param after the cursor (last id of the previous page), or null for the first page
+     * @param limit the page size
+     * @param maxLimit the largest page size allowed
+     * @throws ResponseStatusException if the cursor is negative or the limit is out of range
+     */
+    public void validatePage(Long after, int limit, int maxLimit) {
+        if (after != null && after < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                "Cursor 'after' cannot be negative");
+        }
+        if (limit < 1 || limit > maxLimit) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                "Limit must be between 1 and " + maxLimit);
+        }
+    }
+
+    /**
+     * Validates a half-open date or time range [from, to), either bound of which may be open.
+     * 
+     * @param from the start of the range, or null
+     * @param to the end of the range (exclusive), or null
+     * @throws ResponseStatusException if both bounds are given and from is not before to
+     */
+    public <T extends Comparable<? super T>> void validateDateRange(T from, T to) {
+        if (from != null && to != null && from.compareTo(to) >= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
+                "'from' must be before 'to'");
+        }
+    }
+}
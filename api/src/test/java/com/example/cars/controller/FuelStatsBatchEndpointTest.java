@@ -0,0 +1,53 @@
+package com.example.cars.controller;
+
+import com.example.cars.model.Car;
+import com.example.cars.repository.CarRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Per-car results of a batch share one Response envelope; failing ids do not fail the request
+@SpringBootTest
+@AutoConfigureMockMvc
+class FuelStatsBatchEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Test
+    void getFuelStatsBatch_KnownAndUnknownIds_ReturnsStatsAndErrorsInOrder() throws Exception {
+        // Given
+        Long carId = carRepository.save(new Car("Toyota", "Corolla", 2020)).getId();
+
+        // When & Then
+        mockMvc.perform(post("/api/cars/fuel/stats:batch").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"carIds\": [999999, " + carId + "]}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.success").value(true))
+            .andExpect(jsonPath("$.data.length()").value(2))
+            .andExpect(jsonPath("$.data[0].carId").value(999999))
+            .andExpect(jsonPath("$.data[0].status").value(404))
+            .andExpect(jsonPath("$.data[0].stats").doesNotExist())
+            .andExpect(jsonPath("$.data[1].carId").value(carId))
+            .andExpect(jsonPath("$.data[1].stats.totalLiters").value(0.0))
+            .andExpect(jsonPath("$.data[1].error").doesNotExist());
+    }
+
+    @Test
+    void getFuelStatsBatch_NoIds_ReturnsBadRequest() throws Exception {
+        // When & Then
+        mockMvc.perform(post("/api/cars/fuel/stats:batch").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"carIds\": []}"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.success").value(false));
+    }
+}
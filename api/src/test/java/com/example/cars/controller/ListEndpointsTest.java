@@ -0,0 +1,66 @@
+package com.example.cars.controller;
+
+import com.example.cars.model.Car;
+import com.example.cars.repository.CarRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Full lists are streamed, pages are regular responses, and both share the Response envelope
+@SpringBootTest
+@AutoConfigureMockMvc
+class ListEndpointsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @BeforeEach
+    void setUp() {
+        carRepository.findAll().forEach(car -> carRepository.delete(car.getId()));
+        for (int i = 0; i < 3; i++) {
+            carRepository.save(new Car("Toyota", "Corolla", 2020));
+        }
+    }
+
+    @Test
+    void getAllCars_NoPagingParameters_StreamsFullList() throws Exception {
+        // When
+        MvcResult result = mockMvc.perform(get("/api/cars")).andExpect(request().asyncStarted()).andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.success").value(true))
+            .andExpect(jsonPath("$.data.length()").value(3))
+            .andExpect(jsonPath("$.data[0].brand").value("Toyota"))
+            .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void getAllCars_WithLimit_ReturnsPageAndCursor() throws Exception {
+        // When & Then
+        mockMvc.perform(get("/api/cars").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.data.length()").value(2))
+            .andExpect(jsonPath("$.nextCursor").isNumber());
+    }
+
+    @Test
+    void getAllFuelEntries_UnknownCar_ReturnsNotFoundBeforeStreaming() throws Exception {
+        // When & Then
+        mockMvc.perform(get("/api/cars/999999/fuel"))
+            .andExpect(status().isNotFound())
+            .andExpect(jsonPath("$.success").value(false));
+    }
+}
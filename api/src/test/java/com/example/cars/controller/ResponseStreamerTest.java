@@ -0,0 +1,131 @@
+package com.example.cars.controller;
+
+import com.example.cars.model.FuelEntry;
+import com.example.cars.repository.Page;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseStreamerTest {
+
+    private static final int EXPORT_ENTRIES = 5_000_000;
+
+    private final ResponseStreamer responseStreamer = new ResponseStreamer(JsonMapper.builder().build());
+
+    @Test
+    void write_SeveralPages_ProducesOneResponseEnvelope() {
+        // Given
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // When
+        responseStreamer.write(page(0, 3, 7), after -> page(after, 3, 7), output);
+
+        // Then
+        JsonNode json = JsonMapper.builder().build().readTree(output.toByteArray());
+        assertTrue(json.get("success").asBoolean());
+        assertFalse(json.has("message"));
+        assertFalse(json.has("nextCursor"));
+        assertEquals(7, json.get("data").size());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(i + 1, json.get("data").get(i).get("id").asLong());
+        }
+    }
+
+    @Test
+    void write_EmptyList_ProducesEmptyArray() {
+        // Given
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // When
+        responseStreamer.write(new Page<FuelEntry>(List.of(), null), after -> fail("No further pages"), output);
+
+        // Then
+        assertEquals("{\"success\":true,\"data\":[]}", output.toString(StandardCharsets.UTF_8));
+    }
+
+    // Runs the export in a separate JVM capped at 32 MB of heap: 5M entries are several hundred MB of
+    // JSON, so this only passes if nothing holds on to the list or the output
+    @Test
+    void write_FiveMillionEntries_RunsInSmallHeap() throws Exception {
+        // Given
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-Xmx32m", "-cp", System.getProperty("java.class.path"),
+            Export.class.getName(), String.valueOf(EXPORT_ENTRIES));
+        builder.redirectErrorStream(true);
+
+        // When
+        Process process = builder.start();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            reader.lines().forEach(lines::add);
+        }
+        assertTrue(process.waitFor(5, TimeUnit.MINUTES));
+
+        // Then
+        assertEquals(0, process.exitValue(), String.join("\n", lines));
+        String summary = lines.get(lines.size() - 1);
+        assertTrue(summary.startsWith("entries=" + EXPORT_ENTRIES + " "), summary);
+    }
+
+    // Entry point of the export JVM: streams synthetic pages into a sink that only counts bytes and entries
+    static class Export {
+        public static void main(String[] args) {
+            int total = Integer.parseInt(args[0]);
+            CountingOutputStream output = new CountingOutputStream();
+            new ResponseStreamer(JsonMapper.builder().build())
+                .write(page(0, ResponseStreamer.CHUNK_SIZE, total),
+                    after -> page(after, ResponseStreamer.CHUNK_SIZE, total), output);
+            System.out.println("entries=" + output.entries + " bytes=" + output.bytes);
+        }
+    }
+
+    // Entries with ids after..after+size, up to total
+    private static Page<FuelEntry> page(long after, int size, int total) {
+        List<FuelEntry> items = new ArrayList<>(size);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (long id = after + 1; id <= Math.min(after + size, total); id++) {
+            items.add(new FuelEntry(id, id % 1000, 40.0, 1.5, 60.0, (int) id, base.plusMinutes(id)));
+        }
+        long last = after + items.size();
+        return new Page<>(items, last < total ? last : null);
+    }
+
+    // Counts bytes, and entries by their opening brace (one object per entry after the envelope's own)
+    private static class CountingOutputStream extends OutputStream {
+        long bytes;
+        long entries = -1;
+
+        @Override
+        public void write(int b) {
+            count(b);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                count(buffer[i]);
+            }
+        }
+
+        private void count(int b) {
+            bytes++;
+            if (b == '{') {
+                entries++;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.cars.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DurabilityScopeTest {
+
+    // Records each wait, and whether the lock was still held at the time
+    private static final class RecordingLog implements MutationLog {
+        final List<Long> waits = new ArrayList<>();
+        final List<Boolean> lockHeld = new ArrayList<>();
+        final ReentrantLock lock;
+
+        RecordingLog(ReentrantLock lock) {
+            this.lock = lock;
+        }
+
+        @Override
+        public long append(byte type, ByteBuffer payload) {
+            return 0;
+        }
+
+        @Override
+        public void awaitDurable(long position) {
+            waits.add(position);
+            lockHeld.add(lock.isHeldByCurrentThread());
+        }
+    }
+
+    @Test
+    void awaitDurable_NoScope_WaitsAtOnce() {
+        // Given
+        RecordingLog log = new RecordingLog(new ReentrantLock());
+
+        // When
+        DurabilityScope.awaitDurable(log, 42);
+
+        // Then
+        assertEquals(List.of(42L), log.waits);
+    }
+
+    @Test
+    void close_NestedScopesUnderLock_WaitsOncePerLogAfterOutermostUnlock() {
+        // Given - writes to two logs while holding the lock, some of them in a nested scope
+        ReentrantLock lock = new ReentrantLock();
+        RecordingLog entries = new RecordingLog(lock);
+        RecordingLog anomalies = new RecordingLog(lock);
+
+        // When
+        DurabilityScope outer = DurabilityScope.open();
+        lock.lock();
+        DurabilityScope.awaitDurable(entries, 10);
+        DurabilityScope inner = DurabilityScope.open();
+        DurabilityScope.awaitDurable(entries, 30);
+        DurabilityScope.awaitDurable(anomalies, 5);
+        inner.close();
+        DurabilityScope.awaitDurable(entries, 20);
+        List<Long> waitedUnderLock = new ArrayList<>(entries.waits);
+        lock.unlock();
+        outer.close();
+        DurabilityScope.awaitDurable(entries, 50);
+
+        // Then
+        assertTrue(waitedUnderLock.isEmpty());
+        assertEquals(List.of(30L, 50L), entries.waits);
+        assertEquals(List.of(5L), anomalies.waits);
+        assertFalse(entries.lockHeld.contains(true));
+        assertFalse(anomalies.lockHeld.contains(true));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.cars.persistence;
+
+import com.example.cars.model.FuelEntry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Snapshot size and decode rate of compressed per-car blocks against one EntityCodec record per entry.
+// Excluded from the default build; run with: mvn -B test -Pperf
+@Tag("perf")
+class FuelBlockCodecPerfTest {
+
+    private static final int CARS = 2_000;
+    private static final int FILL_UPS_PER_CAR = 500;
+    private static final int ENTRIES = CARS * FILL_UPS_PER_CAR;
+    private static final int ROUNDS = 6;
+    // Framing every snapshot record pays on top of its payload: the record header and the type byte
+    private static final int RECORD_OVERHEAD = WriteAheadLog.HEADER_SIZE + 1;
+
+    @Test
+    void encode_FleetHistories_ReportsBytesPerEntryAndDecodeRate() {
+        // Given - ids interleaved across the fleet as fill-ups arrive, microsecond timestamps, a fleet-wide
+        // price that changes every 20 rounds, totals of liters * price
+        Random random = new Random(1);
+        List<List<FuelEntry>> histories = new ArrayList<>();
+        int[] odometers = new int[CARS];
+        LocalDateTime[] timestamps = new LocalDateTime[CARS];
+        for (int c = 0; c < CARS; c++) {
+            histories.add(new ArrayList<>());
+            odometers[c] = random.nextInt(100_000);
+            timestamps[c] = LocalDateTime.of(2020, 1, 1, 0, 0).plusMinutes(random.nextInt(100_000));
+        }
+        double price = 1.659;
+        long id = 1;
+        long odometerSum = 0;
+        for (int round = 0; round < FILL_UPS_PER_CAR; round++) {
+            if (round % 20 == 0) {
+                price = 1.4 + random.nextInt(600) / 1000.0;
+            }
+            for (int c = 0; c < CARS; c++) {
+                odometers[c] += 250 + random.nextInt(500);
+                timestamps[c] = timestamps[c].plusSeconds(2 * 86_400L + random.nextInt(400_000))
+                    .withNano(random.nextInt(1_000_000) * 1000);
+                double liters = 25 + random.nextInt(4000) / 100.0;
+                histories.get(c).add(new FuelEntry(id++, c + 1L, liters, price, liters * price, odometers[c],
+                    timestamps[c]));
+                odometerSum += odometers[c];
+            }
+        }
+
+        // When - sizes as snapshot records, then the best rates of the rounds after the first
+        List<ByteBuffer> records = new ArrayList<>();
+        List<ByteBuffer> blocks = new ArrayList<>();
+        long recordBytes = 0;
+        long blockBytes = 0;
+        for (List<FuelEntry> history : histories) {
+            ByteBuffer block = FuelBlockCodec.encode(history);
+            blocks.add(block);
+            blockBytes += RECORD_OVERHEAD + block.remaining();
+        }
+        for (List<FuelEntry> history : histories) {
+            for (FuelEntry fuelEntry : history) {
+                ByteBuffer record = EntityCodec.encode(fuelEntry);
+                records.add(record);
+                recordBytes += RECORD_OVERHEAD + record.remaining();
+            }
+        }
+        long[] sink = {0};
+        double blockDecodeRate = 0;
+        double recordDecodeRate = 0;
+        double encodeRate = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            for (List<FuelEntry> history : histories) {
+                sink[0] -= FuelBlockCodec.encode(history).remaining();
+            }
+            long t1 = System.nanoTime();
+            for (ByteBuffer block : blocks) {
+                FuelBlockCodec.decode(block.duplicate(), fuelEntry -> sink[0] += fuelEntry.getOdometer());
+            }
+            long t2 = System.nanoTime();
+            for (ByteBuffer record : records) {
+                sink[0] += EntityCodec.decodeFuelEntry(record.duplicate()).getOdometer();
+            }
+            long t3 = System.nanoTime();
+            if (round > 0) {
+                encodeRate = Math.max(encodeRate, ENTRIES / ((t1 - t0) / 1e9));
+                blockDecodeRate = Math.max(blockDecodeRate, ENTRIES / ((t2 - t1) / 1e9));
+                recordDecodeRate = Math.max(recordDecodeRate, ENTRIES / ((t3 - t2) / 1e9));
+            }
+        }
+        System.out.printf("%,d entries: records %.1f B/entry, blocks %.1f B/entry, ratio %.2fx%n",
+            ENTRIES, (double) recordBytes / ENTRIES, (double) blockBytes / ENTRIES, (double) recordBytes / blockBytes);
+        System.out.printf("decode: records %.1fM entries/s, blocks %.1fM entries/s; block encode %.1fM entries/s%n",
+            recordDecodeRate / 1e6, blockDecodeRate / 1e6, encodeRate / 1e6);
+
+        // Then - both forms decoded every odometer in every round, and encoding is deterministic
+        assertEquals(ROUNDS * (2 * odometerSum - (blockBytes - (long) CARS * RECORD_OVERHEAD)), sink[0]);
+        assertTrue(blockBytes < recordBytes);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.cars.persistence;
+
+import com.example.cars.model.FuelEntry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FuelBlockCodecTest {
+
+    @Test
+    void decode_TypicalHistory_RoundTripsAndCompresses() {
+        // Given - one car's fill-ups: rising odometer, prices that rarely change, totals of liters * price
+        List<FuelEntry> history = new ArrayList<>();
+        Random random = new Random(7);
+        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 1, 8, 0);
+        int odometer = 10_000;
+        double price = 1.659;
+        for (long id = 1; id <= 500; id++) {
+            odometer += 300 + random.nextInt(400);
+            timestamp = timestamp.plusHours(60 + random.nextInt(100)).withNano(random.nextInt(1_000_000) * 1000);
+            if (random.nextInt(10) == 0) {
+                price = 1.5 + random.nextInt(400) / 1000.0;
+            }
+            double liters = 30 + random.nextInt(3000) / 100.0;
+            history.add(new FuelEntry(id * 37, 12L, liters, price, liters * price, odometer, timestamp));
+        }
+
+        // When
+        ByteBuffer block = FuelBlockCodec.encode(history);
+        int size = block.remaining();
+        List<FuelEntry> decoded = decode(block);
+
+        // Then
+        assertSameEntries(history, decoded);
+        assertTrue(size * 3 < history.size() * EntityCodec.encode(history.get(0)).remaining(),
+            "block of " + size + " bytes is not a third of the raw size");
+    }
+
+    @Test
+    void decode_UnusualValues_RoundTripsBitForBit() {
+        // Given - values that must fall back to raw storage
+        double[] doubles = {0.0, -0.0, Double.NaN, Double.longBitsToDouble(0x7ff8_0000_0000_0001L),
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, 1e300,
+            0.1 + 0.2, 41.27, 1.379, 56.91, -3.5};
+        List<FuelEntry> entries = new ArrayList<>();
+        long id = Long.MAX_VALUE - 1_000;
+        for (int i = 0; i < doubles.length; i++) {
+            double liters = doubles[i];
+            double price = doubles[(i + 3) % doubles.length];
+            double totalPrice = doubles[(i + 7) % doubles.length];
+            LocalDateTime timestamp = i % 3 == 0 ? null
+                : LocalDateTime.of(i % 2 == 0 ? 1900 : 2999, 12, 31, 23, 59, 59, i * 123_456_789 % 1_000_000_000);
+            entries.add(new FuelEntry(id, 5L, liters, price, totalPrice, i % 2 == 0 ? Integer.MAX_VALUE : 0, timestamp));
+            id -= 1 + i * 1_000_000_007L;
+        }
+
+        // When
+        List<FuelEntry> decoded = decode(FuelBlockCodec.encode(entries));
+
+        // Then
+        assertSameEntries(entries, decoded);
+    }
+
+    @Test
+    void encode_EntriesOfSeveralCars_Throws() {
+        // Given
+        List<FuelEntry> entries = List.of(
+            new FuelEntry(1L, 1L, 10.0, 1.5, 15.0, 100, null),
+            new FuelEntry(2L, 2L, 10.0, 1.5, 15.0, 200, null));
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> FuelBlockCodec.encode(entries));
+    }
+
+    @Test
+    void decode_TruncatedBlock_ThrowsIllegalState() {
+        // Given
+        ByteBuffer block = FuelBlockCodec.encode(List.of(new FuelEntry(1L, 1L, 10.0, 1.5, 15.0, 100, null)));
+        block.limit(block.limit() - 1);
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> decode(block));
+    }
+
+    private static List<FuelEntry> decode(ByteBuffer block) {
+        List<FuelEntry> decoded = new ArrayList<>();
+        FuelBlockCodec.decode(block, decoded::add);
+        return decoded;
+    }
+
+    private static void assertSameEntries(List<FuelEntry> expected, List<FuelEntry> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            FuelEntry e = expected.get(i);
+            FuelEntry a = actual.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getCarId(), a.getCarId());
+            assertEquals(Double.doubleToRawLongBits(e.getLiters()), Double.doubleToRawLongBits(a.getLiters()));
+            assertEquals(Double.doubleToRawLongBits(e.getPrice()), Double.doubleToRawLongBits(a.getPrice()));
+            assertEquals(Double.doubleToRawLongBits(e.getTotalPrice()), Double.doubleToRawLongBits(a.getTotalPrice()));
+            assertEquals(e.getOdometer(), a.getOdometer());
+            assertEquals(e.getTimestamp(), a.getTimestamp());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.cars.persistence;
+
+import com.example.cars.model.FuelEntry;
+import com.example.cars.repository.FuelEntryRepository;
+import com.example.cars.repository.storage.HeapFuelEntryStore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Startup time of a persisted fuel entry repository: replaying the log alone, loading a snapshot alone and a
+// snapshot plus a log tail. Excluded from the default build; run with: mvn -B test -Pperf
+@Tag("perf")
+class PersistenceRecoveryPerfTest {
+
+    private static final int ENTRIES = 1_000_000;
+    private static final int CARS = 100_000;
+    // Times each entry is saved again after it is created, so the log holds several records per entry
+    private static final int UPDATES_PER_ENTRY = 2;
+    // Entries written after the snapshot, replayed from the log on the next start
+    private static final int TAIL_ENTRIES = ENTRIES / 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restart_MillionEntries_ReportsSnapshotLoadAndLogReplayTimes() {
+        // Given - ENTRIES fill-ups, each updated UPDATES_PER_ENTRY times, in the log only
+        try (PersistenceManager persistence = open()) {
+            FuelEntryRepository fuelEntryRepository = new FuelEntryRepository(new HeapFuelEntryStore(), persistence);
+            save(fuelEntryRepository, 0, ENTRIES);
+            for (int update = 1; update <= UPDATES_PER_ENTRY; update++) {
+                for (long id = 1; id <= ENTRIES; id++) {
+                    FuelEntry fuelEntry = fuelEntryRepository.findById(id).orElseThrow();
+                    fuelEntry.setLiters(40.0 + update);
+                    fuelEntryRepository.save(fuelEntry);
+                }
+            }
+        }
+
+        // When & Then - the log alone, then a snapshot and a 1% log tail, then the snapshot alone
+        long snapshotWriteMillis;
+        try (PersistenceManager persistence = open()) {
+            FuelEntryRepository fuelEntryRepository = restart(persistence,
+                "log only (" + (1 + UPDATES_PER_ENTRY) + " records per entry)", ENTRIES);
+            long t0 = System.nanoTime();
+            persistence.snapshotAll();
+            snapshotWriteMillis = (System.nanoTime() - t0) / 1_000_000;
+            save(fuelEntryRepository, ENTRIES, TAIL_ENTRIES);
+        }
+        try (PersistenceManager persistence = open()) {
+            restart(persistence, "snapshot + 1% log tail", ENTRIES + TAIL_ENTRIES);
+            persistence.snapshotAll();
+        }
+        try (PersistenceManager persistence = open()) {
+            restart(persistence, "snapshot only", ENTRIES + TAIL_ENTRIES);
+        }
+        System.out.printf("snapshot of %,d entries written in %d ms%n", ENTRIES, snapshotWriteMillis);
+    }
+
+    private static void save(FuelEntryRepository fuelEntryRepository, int from, int count) {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 8, 0);
+        for (int i = from; i < from + count; i++) {
+            fuelEntryRepository.save(new FuelEntry(null, 1L + i % CARS, 40.0, 1.5, 60.0, i, start.plusMinutes(i)));
+        }
+    }
+
+    // Times building the repository, which loads the snapshot and replays the log
+    private static FuelEntryRepository restart(PersistenceManager persistence, String source, int expectedEntries) {
+        System.gc();
+        long t0 = System.nanoTime();
+        FuelEntryRepository fuelEntryRepository = new FuelEntryRepository(new HeapFuelEntryStore(), persistence);
+        long millis = (System.nanoTime() - t0) / 1_000_000;
+        System.out.printf("restart from %s, %,d entries: %d ms%n", source, expectedEntries, millis);
+        assertEquals(expectedEntries, fuelEntryRepository.findAll().size());
+        return fuelEntryRepository;
+    }
+
+    private PersistenceManager open() {
+        // Periodic fsync so writing the workload is not bound by the disk; snapshots only when asked
+        return new PersistenceManager(true, directory, FsyncPolicy.PERIODIC, 100, Long.MAX_VALUE, 0);
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.cars.persistence;
+
+import com.example.cars.model.AnomalyFlag;
+import com.example.cars.model.Car;
+import com.example.cars.model.FuelAnomaly;
+import com.example.cars.model.FuelEntry;
+import com.example.cars.repository.CarRepository;
+import com.example.cars.repository.FuelAnomalyRepository;
+import com.example.cars.repository.FuelEntryRepository;
+import com.example.cars.repository.FuelHistoryPurger;
+import com.example.cars.repository.storage.HeapFuelEntryStore;
+import com.example.cars.stats.AnomalyDetector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Repositories rebuilt from their logs must match the state before the restart
+class PersistenceRecoveryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restart_AfterWrites_RestoresRepositoriesAndIdSequence() {
+        // Given
+        LocalDateTime timestamp = LocalDateTime.of(2024, 5, 1, 8, 30, 15, 123_456_789);
+        try (PersistenceManager persistence = open()) {
+            CarRepository carRepository = new CarRepository(persistence);
+            FuelEntryRepository fuelEntryRepository = new FuelEntryRepository(new HeapFuelEntryStore(), persistence);
+            Car car = carRepository.save(new Car("Toyota", "Corolla", 2020));
+            carRepository.save(new Car(null, "Honda", null, null));
+            Long deletedCarId = carRepository.save(new Car("Ford", "Focus", 2018)).getId();
+            carRepository.delete(deletedCarId);
+            car.setYear(2021);
+            carRepository.save(car);
+
+            fuelEntryRepository.save(new FuelEntry(null, car.getId(), 40.1, 1.57, 62.957, 1000, timestamp));
+            FuelEntry updated = fuelEntryRepository.save(new FuelEntry(null, car.getId(), 35.0, 1.5, 52.5, 1500, null));
+            Long deletedEntryId = fuelEntryRepository.save(
+                new FuelEntry(null, car.getId(), 20.0, 1.5, 30.0, 1800, timestamp)).getId();
+            updated.setOdometer(1600);
+            fuelEntryRepository.save(updated);
+            fuelEntryRepository.delete(deletedEntryId);
+        }
+
+        // When
+        try (PersistenceManager persistence = open()) {
+            CarRepository carRepository = new CarRepository(persistence);
+            FuelEntryRepository fuelEntryRepository = new FuelEntryRepository(new HeapFuelEntryStore(), persistence);
+
+            // Then
+            assertEquals(2, carRepository.findAll().size());
+            assertEquals(2021, carRepository.findById(1L).orElseThrow().getYear());
+            Car honda = carRepository.findById(2L).orElseThrow();
+            assertEquals("Honda", honda.getBrand());
+            assertNull(honda.getModel());
+            assertNull(honda.getYear());
+            assertFalse(carRepository.existsById(3L));
+            assertEquals(4L, carRepository.save(new Car("Kia", "Rio", 2022)).getId());
+
+            FuelEntry first = fuelEntryRepository.findById(1L).orElseThrow();
+            assertEquals(40.1, first.getLiters());
+            assertEquals(62.957, first.getTotalPrice());
+            assertEquals(timestamp, first.getTimestamp());
+            assertEquals(1600, fuelEntryRepository.findById(2L).orElseThrow().getOdometer());
+            assertNull(fuelEntryRepository.findById(2L).orElseThrow().getTimestamp());
+            assertFalse(fuelEntryRepository.existsById(3L));
+            assertEquals(2, fuelEntryRepository.findByCarId(1L).size());
+            assertEquals(1600, fuelEntryRepository.findMaxOdometerByCarId(1L).getAsInt());
+            assertEquals(4L, fuelEntryRepository.save(
+                new FuelEntry(null, 1L, 10.0, 1.0, 10.0, 1700, timestamp)).getId());
+        }
+    }
+
+    @Test
+    void restart_AfterSnapshot_LoadsSnapshotAndLogTail() {
+        // Given
+        try (PersistenceManager persistence = open()) {
+            CarRepository carRepository = new CarRepository(persistence);
+            FuelEntryRepository fuelEntryRepository = new FuelEntryRepository(new HeapFuelEntryStore(), persistence);
+            Long carId = carRepository.save(new Car("Toyota", "Corolla", 2020)).getId();
+            for (int i = 0; i < 50; i++) {
+                fuelEntryRepository.save(new FuelEntry(null, carId, 30.0 + i, 1.5, 45.0 + i, 1000 * i, null));
+            }
+            // Highest id deleted before the snapshot: the sequence must still move past it
+            fuelEntryRepository.delete(50L);
+            persistence.snapshotAll();
+            fuelEntryRepository.delete(1L);
+            FuelEntry updated = fuelEntryRepository.findById(2L).orElseThrow();
+            updated.setLiters(99.5);
+            fuelEntryRepository.save(updated);
+        }
+
+        // When
+        try (PersistenceManager persistence = open()) {
+            CarRepository carRepository = new CarRepository(persistence);
+            FuelEntryRepository fuelEntryRepository = new FuelEntryRepository(new HeapFuelEntryStore(), persistence);
+
+            // Then
+            assertFalse(Files.exists(directory.resolve("fuel-entries-000000000001.wal")));
+            assertTrue(Files.exists(directory.resolve("fuel-entries.snapshot")));
+            assertEquals(1, carRepository.findAll().size());
+            assertEquals(48, fuelEntryRepository.findAll().size());
+            assertFalse(fuelEntryRepository.existsById(1L));
+            assertEquals(99.5, fuelEntryRepository.findById(2L).orElseThrow().getLiters());
+            assertEquals(51L, fuelEntryRepository.save(new FuelEntry(null, 1L, 10.0, 1.0, 10.0, 90_000, null)).getId());
+        }
+    }
+
+    @Test
+    void restart_AfterCarHistoriesDeleted_KeepsThemDeleted() {
+        // Given - one history is still unreclaimed when the snapshot is taken, one is deleted after it
+        try (PersistenceManager persistence = open()) {
+            FuelEntryRepository fuelEntryRepository = new FuelEntryRepository(new HeapFuelEntryStore(), persistence);
+            for (int i = 0; i < 30; i++) {
+                fuelEntryRepository.save(new FuelEntry(null, 1L + i % 3, 30.0, 1.5, 45.0, 1000 * i, null));
+            }
+            fuelEntryRepository.detachByCarId(1L);
+            persistence.snapshotAll();
+            fuelEntryRepository.deleteByCarId(2L);
+        }
+
+        // When
+        try (PersistenceManager persistence = open()) {
+            FuelEntryRepository fuelEntryRepository = new FuelEntryRepository(new HeapFuelEntryStore(), persistence);
+
+            // Then
+            assertEquals(10, fuelEntryRepository.findAll().size());
+            assertTrue(fuelEntryRepository.findByCarId(1L).isEmpty());
+            assertTrue(fuelEntryRepository.findByCarId(2L).isEmpty());
+            assertEquals(10, fuelEntryRepository.findByCarId(3L).size());
+            assertFalse(fuelEntryRepository.hasDetached());
+        }
+    }
+
+    @Test
+    void restart_AfterAnomaliesFlagged_RestoresFlags() {
+        // Given - one flagged entry before the snapshot, one after it, and one whose flags are deleted
+        LocalDateTime timestamp = LocalDateTime.of(2024, 5, 1, 8, 30, 15, 123_456_789);
+        FuelAnomaly overflow = new FuelAnomaly(1L, 7L, timestamp, Set.of(AnomalyFlag.LITERS_ABOVE_TANK_CAPACITY),
+            120.0, 1.5, null);
+        FuelAnomaly spike = new FuelAnomaly(3L, 7L, timestamp.plusDays(2),
+            Set.of(AnomalyFlag.PRICE_OUTLIER, AnomalyFlag.CONSUMPTION_SPIKE), 45.0, 3.1, 21.5);
+        try (PersistenceManager persistence = open()) {
+            FuelAnomalyRepository fuelAnomalyRepository = new FuelAnomalyRepository(persistence);
+            fuelAnomalyRepository.save(overflow);
+            fuelAnomalyRepository.save(new FuelAnomaly(2L, 7L, timestamp.plusDays(1),
+                Set.of(AnomalyFlag.PRICE_OUTLIER), 40.0, 0.2, 8.0));
+            persistence.snapshotAll();
+            fuelAnomalyRepository.save(spike);
+            fuelAnomalyRepository.delete(7L, 2L);
+        }
+
+        // When
+        try (PersistenceManager persistence = open()) {
+            FuelAnomalyRepository fuelAnomalyRepository = new FuelAnomalyRepository(persistence);
+
+            // Then
+            assertEquals(List.of(overflow, spike), fuelAnomalyRepository.findByCarId(7L));
+            assertTrue(fuelAnomalyRepository.findByCarId(8L).isEmpty());
+        }
+    }
+
+    @Test
+    void restart_AfterCarsWithAnomaliesDeleted_DropsTheirFlagsAndBaselines() {
+        // Given - three cars with flagged fill-ups; one is deleted before the snapshot, one after it
+        LocalDateTime timestamp = LocalDateTime.of(2024, 5, 1, 8, 0);
+        AnomalyDetector anomalyDetector = new AnomalyDetector(true, 60.0, 3.0);
+        List<Long> carIds = new ArrayList<>();
+        try (PersistenceManager persistence = open()) {
+            CarRepository carRepository = new CarRepository(persistence);
+            FuelEntryRepository fuelEntryRepository = new FuelEntryRepository(new HeapFuelEntryStore(), persistence);
+            FuelAnomalyRepository fuelAnomalyRepository = new FuelAnomalyRepository(persistence);
+            FuelHistoryPurger fuelHistoryPurger =
+                new FuelHistoryPurger(fuelEntryRepository, fuelAnomalyRepository, anomalyDetector, false);
+            for (int c = 0; c < 3; c++) {
+                long carId = carRepository.save(new Car("Toyota", "Corolla", 2020)).getId();
+                carIds.add(carId);
+                for (int i = 0; i < 10; i++) {
+                    // Every other fill-up overflows the 60 L tank
+                    FuelEntry saved = fuelEntryRepository.save(new FuelEntry(null, carId, i % 2 == 0 ? 75.0 : 40.0,
+                        1.5, 60.0, 10_000 + 500 * i, timestamp.plusDays(i)));
+                    FuelAnomaly anomaly = anomalyDetector.inspect(saved);
+                    if (anomaly != null) {
+                        fuelAnomalyRepository.save(anomaly);
+                    }
+                }
+            }
+            fuelHistoryPurger.deleteCar(carIds.get(0), () -> carRepository.delete(carIds.get(0)));
+            persistence.snapshotAll();
+            fuelHistoryPurger.deleteCar(carIds.get(1), () -> carRepository.delete(carIds.get(1)));
+        }
+
+        // When
+        try (PersistenceManager persistence = open()) {
+            FuelAnomalyRepository fuelAnomalyRepository = new FuelAnomalyRepository(persistence);
+
+            // Then - flags are gone from the snapshot and from the log tail
+            assertTrue(fuelAnomalyRepository.findByCarId(carIds.get(0)).isEmpty());
+            assertTrue(fuelAnomalyRepository.findByCarId(carIds.get(1)).isEmpty());
+            assertEquals(5, fuelAnomalyRepository.findByCarId(carIds.get(2)).size());
+        }
+        // A deleted car's baseline is gone: a price spike only trains a fresh one, while the kept car flags it
+        FuelEntry spike = new FuelEntry(999L, carIds.get(1), 40.0, 5.0, 200.0, 20_000, timestamp.plusDays(20));
+        assertNull(anomalyDetector.inspect(spike));
+        spike.setCarId(carIds.get(2));
+        assertEquals(Set.of(AnomalyFlag.PRICE_OUTLIER), anomalyDetector.inspect(spike).flags());
+    }
+
+    @Test
+    void snapshot_WhileWritersRunning_RestartMatchesFinalState() throws Exception {
+        // Given
+        List<ByteBuffer> expected;
+        try (PersistenceManager persistence = open()) {
+            FuelEntryRepository fuelEntryRepository = new FuelEntryRepository(new HeapFuelEntryStore(), persistence);
+            int threads = 4;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 2_000; i++) {
+                        long id = 1 + random.nextInt(500);
+                        if (random.nextInt(4) == 0) {
+                            fuelEntryRepository.delete(id);
+                        } else {
+                            fuelEntryRepository.save(new FuelEntry(id, 1L + random.nextInt(5), random.nextInt(80),
+                                1.5, random.nextInt(120), random.nextInt(100_000), null));
+                        }
+                    }
+                }));
+            }
+
+            // When - snapshots cut the log while the writers keep going
+            for (int i = 0; i < 5; i++) {
+                persistence.snapshotAll();
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            expected = encodeAll(fuelEntryRepository);
+        }
+
+        // Then
+        try (PersistenceManager persistence = open()) {
+            FuelEntryRepository fuelEntryRepository = new FuelEntryRepository(new HeapFuelEntryStore(), persistence);
+            assertEquals(expected, encodeAll(fuelEntryRepository));
+        }
+    }
+
+    private static List<ByteBuffer> encodeAll(FuelEntryRepository fuelEntryRepository) {
+        List<FuelEntry> fuelEntries = fuelEntryRepository.findAll();
+        fuelEntries.sort(Comparator.comparing(FuelEntry::getId));
+        List<ByteBuffer> encoded = new ArrayList<>();
+        for (FuelEntry fuelEntry : fuelEntries) {
+            encoded.add(EntityCodec.encode(fuelEntry));
+        }
+        return encoded;
+    }
+
+    private PersistenceManager open() {
+        // Snapshots only when asked, so tests control where the log is cut
+        return new PersistenceManager(true, directory, FsyncPolicy.GROUP_COMMIT, 0, Long.MAX_VALUE, 0);
+    }
+}
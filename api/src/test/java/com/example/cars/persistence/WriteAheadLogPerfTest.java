@@ -0,0 +1,91 @@
+package com.example.cars.persistence;
+
+import com.example.cars.model.FuelEntry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Durable write throughput per fsync policy. Excluded from the default build; run with: mvn -B test -Pperf
+@Tag("perf")
+class WriteAheadLogPerfTest {
+
+    private static final int ROUNDS = 4;
+    private static final long ROUND_MILLIS = 1_000;
+    private static final long FSYNC_INTERVAL_MILLIS = 100;
+
+    @TempDir
+    Path directory;
+
+    // Each writer appends a fuel entry record and waits until it is durable, as a repository write does
+    @ParameterizedTest
+    @CsvSource({"PER_WRITE, 1", "PER_WRITE, 16", "GROUP_COMMIT, 1", "GROUP_COMMIT, 16", "PERIODIC, 1", "PERIODIC, 16"})
+    void appendAndAwaitDurable_ConcurrentWriters_ReportsThroughput(FsyncPolicy policy, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        FuelEntry fuelEntry = new FuelEntry(1L, 1L, 40.0, 1.3, 52.0, 10_000, LocalDateTime.of(2024, 1, 1, 8, 0));
+        double best = 0;
+        try {
+            // The first round is warm-up; every round writes to a fresh log for ROUND_MILLIS
+            for (int round = 0; round < ROUNDS; round++) {
+                Path roundDirectory = Files.createDirectory(directory.resolve("round-" + round));
+                long written = 0;
+                long elapsed;
+                try (WriteAheadLog wal = WriteAheadLog.open(roundDirectory, "fuel-entries", policy,
+                        FSYNC_INTERVAL_MILLIS, 1, (type, payload) -> fail("Log should be empty"))) {
+                    CountDownLatch start = new CountDownLatch(1);
+                    List<Future<Long>> results = new ArrayList<>();
+                    for (int t = 0; t < threads; t++) {
+                        results.add(executor.submit(() -> {
+                            start.await();
+                            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ROUND_MILLIS);
+                            long writes = 0;
+                            while (System.nanoTime() < deadline) {
+                                wal.awaitDurable(wal.append((byte) 1, EntityCodec.encode(fuelEntry)));
+                                writes++;
+                            }
+                            return writes;
+                        }));
+                    }
+                    long t0 = System.nanoTime();
+                    start.countDown();
+                    for (Future<Long> result : results) {
+                        written += result.get(60, TimeUnit.SECONDS);
+                    }
+                    elapsed = System.nanoTime() - t0;
+                }
+                deleteRecursively(roundDirectory);
+                assertTrue(written > 0);
+                if (round > 0) {
+                    best = Math.max(best, written / (elapsed / 1e9));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.printf("append + awaitDurable, %s, %d thread(s): %,.0f writes/s (best of %d)%n",
+            policy, threads, best, ROUNDS - 1);
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path file : paths.sorted((a, b) -> b.compareTo(a)).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
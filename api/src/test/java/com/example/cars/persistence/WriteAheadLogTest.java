@@ -0,0 +1,205 @@
+package com.example.cars.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    private static final String NAME = "test";
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    void open_AfterAppends_ReplaysRecordsInOrder(FsyncPolicy policy) throws IOException {
+        // Given
+        try (WriteAheadLog wal = open(policy, (type, payload) -> fail("Log should be empty"))) {
+            for (long i = 0; i < 100; i++) {
+                wal.awaitDurable(wal.append((byte) (i % 3), EntityCodec.encodeId(i)));
+            }
+        }
+
+        // When
+        List<Long> replayed = replay(1);
+
+        // Then
+        assertEquals(100, replayed.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, replayed.get(i));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    void append_ConcurrentWriters_EveryRecordReplayed(FsyncPolicy policy) throws Exception {
+        // Given
+        int threads = 8;
+        int perThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (WriteAheadLog wal = open(policy, (type, payload) -> { })) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long base = (long) t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (long i = base; i < base + perThread; i++) {
+                        wal.awaitDurable(wal.append((byte) 1, EntityCodec.encodeId(i)));
+                        if (i % 97 == 0) {
+                            wal.roll();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // When
+        List<Long> replayed = replay(1);
+
+        // Then
+        assertEquals(threads * perThread, replayed.size());
+        assertEquals(threads * perThread, replayed.stream().distinct().count());
+    }
+
+    @Test
+    void open_TruncatedMidRecord_ReplaysCompleteRecordsAndCutsTail() throws IOException {
+        // Given - a crash in the middle of writing the last record
+        long completeSize;
+        try (WriteAheadLog wal = open(FsyncPolicy.PER_WRITE, (type, payload) -> { })) {
+            for (long i = 0; i < 10; i++) {
+                wal.append((byte) 1, EntityCodec.encodeId(i));
+            }
+            completeSize = wal.segmentSize();
+            wal.append((byte) 1, EntityCodec.encodeId(10));
+        }
+        try (FileChannel channel = FileChannel.open(segment(1), StandardOpenOption.WRITE)) {
+            channel.truncate(completeSize + WriteAheadLog.HEADER_SIZE + 3);
+        }
+
+        // When
+        List<Long> replayed = replay(1);
+
+        // Then
+        assertEquals(10, replayed.size());
+        assertEquals(9L, replayed.get(9));
+        assertEquals(completeSize, Files.size(segment(1)));
+    }
+
+    @Test
+    void append_AfterTruncatedTailRecovered_NewRecordsReplayed() throws IOException {
+        // Given
+        try (WriteAheadLog wal = open(FsyncPolicy.PER_WRITE, (type, payload) -> { })) {
+            wal.append((byte) 1, EntityCodec.encodeId(1));
+            wal.append((byte) 1, EntityCodec.encodeId(2));
+        }
+        try (FileChannel channel = FileChannel.open(segment(1), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        // When
+        try (WriteAheadLog wal = open(FsyncPolicy.PER_WRITE, (type, payload) -> { })) {
+            wal.append((byte) 1, EntityCodec.encodeId(3));
+        }
+
+        // Then
+        assertEquals(List.of(1L, 3L), replay(1));
+    }
+
+    @Test
+    void open_CorruptedRecord_StopsBeforeIt() throws IOException {
+        // Given - a flipped payload byte in the third record
+        long thirdRecordStart;
+        try (WriteAheadLog wal = open(FsyncPolicy.PER_WRITE, (type, payload) -> { })) {
+            wal.append((byte) 1, EntityCodec.encodeId(1));
+            thirdRecordStart = wal.append((byte) 1, EntityCodec.encodeId(2));
+            wal.append((byte) 1, EntityCodec.encodeId(3));
+            wal.append((byte) 1, EntityCodec.encodeId(4));
+        }
+        flipByte(segment(1), thirdRecordStart + WriteAheadLog.HEADER_SIZE + 4);
+
+        // When
+        List<Long> replayed = replay(1);
+
+        // Then
+        assertEquals(List.of(1L, 2L), replayed);
+        assertEquals(thirdRecordStart, Files.size(segment(1)));
+    }
+
+    @Test
+    void open_CorruptedRecordInOlderSegment_Fails() throws IOException {
+        // Given
+        try (WriteAheadLog wal = open(FsyncPolicy.PER_WRITE, (type, payload) -> { })) {
+            wal.append((byte) 1, EntityCodec.encodeId(1));
+            wal.roll();
+            wal.append((byte) 1, EntityCodec.encodeId(2));
+        }
+        flipByte(segment(1), WriteAheadLog.HEADER_SIZE + 4);
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> replay(1));
+    }
+
+    @Test
+    void roll_ThenDeleteOlderSegments_ReplaysOnlyNewSegment() throws IOException {
+        // Given
+        long newSegment;
+        try (WriteAheadLog wal = open(FsyncPolicy.GROUP_COMMIT, (type, payload) -> { })) {
+            wal.append((byte) 1, EntityCodec.encodeId(1));
+            newSegment = wal.roll();
+            wal.awaitDurable(wal.append((byte) 1, EntityCodec.encodeId(2)));
+
+            // When
+            wal.deleteSegmentsBefore(newSegment);
+        }
+
+        // Then
+        assertEquals(2, newSegment);
+        assertFalse(Files.exists(segment(1)));
+        assertEquals(List.of(2L), replay(newSegment));
+    }
+
+    private WriteAheadLog open(FsyncPolicy policy, MutationLog.Replayer replayer) throws IOException {
+        return WriteAheadLog.open(directory, NAME, policy, 5, 1, replayer);
+    }
+
+    private List<Long> replay(long firstSegment) throws IOException {
+        List<Long> replayed = new ArrayList<>();
+        // Opening replays the segments into the list
+        WriteAheadLog.open(directory, NAME, FsyncPolicy.PER_WRITE, 0, firstSegment,
+            (type, payload) -> replayed.add(EntityCodec.decodeId(payload))).close();
+        return replayed;
+    }
+
+    private Path segment(long number) {
+        return directory.resolve(String.format("%s-%012d.wal", NAME, number));
+    }
+
+    private static void flipByte(Path path, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer flipped = ByteBuffer.allocate(1);
+            channel.read(flipped, offset);
+            flipped.put(0, (byte) ~flipped.get(0)).rewind();
+            channel.write(flipped, offset);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.cars.repository;
+
+import com.example.cars.model.Car;
+import com.example.cars.persistence.PersistenceManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarRepositoryTest {
+
+    private static final int WRITES_PER_THREAD = 2_000;
+
+    private CarRepository carRepository;
+
+    @BeforeEach
+    void setUp() {
+        carRepository = new CarRepository(PersistenceManager.disabled());
+    }
+
+    @Test
+    void findPage_FollowingCursors_VisitsEveryCarOnceInIdOrder() {
+        // Given
+        for (int i = 0; i < 7; i++) {
+            carRepository.save(new Car("Toyota", "Corolla", 2020));
+        }
+        carRepository.delete(3L);
+
+        // When
+        Page<Car> first = carRepository.findPage(0, 3);
+        Page<Car> second = carRepository.findPage(first.nextCursor(), 3);
+
+        // Then
+        assertEquals(List.of(1L, 2L, 4L), first.items().stream().map(Car::getId).toList());
+        assertEquals(4L, first.nextCursor());
+        assertEquals(List.of(5L, 6L, 7L), second.items().stream().map(Car::getId).toList());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void findPage_WithSnapshot_IgnoresWritesAfterIt() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            carRepository.save(new Car("Toyota", "Corolla", 2020 + i));
+        }
+        ReadSnapshot snapshot = carRepository.openSnapshot();
+        carRepository.save(new Car(2L, "Honda", "Civic", 2019));
+        carRepository.delete(4L);
+        carRepository.save(new Car("Ford", "Focus", 2021));
+
+        // When
+        Page<Car> first = carRepository.findPage(0, 3, snapshot);
+        Page<Car> second = carRepository.findPage(first.nextCursor(), 3, snapshot);
+        snapshot.close();
+
+        // Then
+        assertEquals(List.of(1L, 2L, 3L), first.items().stream().map(Car::getId).toList());
+        assertEquals("Toyota", first.items().get(1).getBrand());
+        assertEquals(List.of(4L, 5L), second.items().stream().map(Car::getId).toList());
+        assertNull(second.nextCursor());
+        assertEquals(List.of(1L, 2L, 3L, 5L, 6L), carRepository.findAll().stream().map(Car::getId).toList());
+        assertEquals("Honda", carRepository.findById(2L).orElseThrow().getBrand());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 8, 32})
+    void save_ConcurrentWriters_LosesNoWritesAndAssignsUniqueIds(int threads) throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Long>>> results = new ArrayList<>();
+
+        // When - every thread creates cars and immediately deletes every other one
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                List<Long> kept = new ArrayList<>();
+                for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                    Car car = carRepository.save(new Car("Toyota", "Corolla", 2020));
+                    if (i % 2 == 0) {
+                        carRepository.delete(car.getId());
+                    } else {
+                        kept.add(car.getId());
+                    }
+                }
+                return kept;
+            }));
+        }
+        start.countDown();
+
+        Set<Long> keptIds = new HashSet<>();
+        for (Future<List<Long>> result : results) {
+            keptIds.addAll(result.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        // Then
+        assertEquals(threads * WRITES_PER_THREAD / 2, keptIds.size());
+        assertEquals(keptIds.size(), carRepository.findAll().size());
+        keptIds.forEach(id -> assertTrue(carRepository.existsById(id)));
+    }
+}
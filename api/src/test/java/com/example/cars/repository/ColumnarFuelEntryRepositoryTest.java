@@ -0,0 +1,13 @@
+package com.example.cars.repository;
+
+import com.example.cars.repository.storage.ColumnarFuelEntryStore;
+import com.example.cars.repository.storage.FuelEntryStore;
+
+// Runs the repository suite against the columnar storage backend
+class ColumnarFuelEntryRepositoryTest extends FuelEntryRepositoryTest {
+
+    @Override
+    protected FuelEntryStore createStore() {
+        return new ColumnarFuelEntryStore();
+    }
+}
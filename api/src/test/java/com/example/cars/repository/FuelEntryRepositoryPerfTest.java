@@ -0,0 +1,258 @@
+package com.example.cars.repository;
+
+import com.example.cars.model.FuelEntry;
+import com.example.cars.persistence.PersistenceManager;
+import com.example.cars.repository.storage.ColumnarFuelEntryStore;
+import com.example.cars.repository.storage.FuelEntryStore;
+import com.example.cars.repository.storage.HeapFuelEntryStore;
+import com.example.cars.repository.storage.OffHeapFuelEntryStore;
+import com.example.cars.repository.storage.TieredFuelEntryStore;
+import com.example.cars.stats.Granularity;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Benchmarks behind the performance figures quoted for the repository. Excluded from the default
+// build; run with: mvn -B test -Pperf (results are printed, the assertions only check the work was done)
+@Tag("perf")
+class FuelEntryRepositoryPerfTest {
+
+    private static final int ROUNDS = 5;
+    private static final int WRITES_PER_ROUND = 200_000;
+    private static final int CARS = 1_000;
+    private static final int FOOTPRINT_ENTRIES = 1_000_000;
+    private static final int TIERED_HOT_ENTRIES = 10_000;
+
+    @TempDir
+    Path coldDirectory;
+
+    // Where the save benchmark writes: the repository, or the map it replaced
+    private interface SaveTarget {
+        void save(FuelEntry fuelEntry);
+
+        int size();
+    }
+
+    // Baseline: the save path before the per-car indexes, a ConcurrentHashMap by id written under the car's
+    // striped lock, as FuelEntryRepository stood after the concurrency fix and before the indexes
+    private static final class MapSaveTarget implements SaveTarget {
+        private final Map<Long, FuelEntry> storage = new ConcurrentHashMap<>();
+        private final AtomicLong nextId = new AtomicLong(1);
+        private final StripedLocks carLocks = new StripedLocks(256);
+
+        @Override
+        public void save(FuelEntry fuelEntry) {
+            ReentrantLock lock = carLocks.lockFor(fuelEntry.getCarId());
+            lock.lock();
+            try {
+                if (fuelEntry.getId() == null) {
+                    fuelEntry.setId(nextId.getAndIncrement());
+                }
+                storage.put(fuelEntry.getId(), fuelEntry);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            return storage.size();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 8, 32})
+    void save_ConcurrentWritersOnDistinctCars_ReportsThroughput(int threads) throws Exception {
+        reportSaveThroughput("repository", FuelEntryRepositoryPerfTest::repositoryTarget, threads, false);
+        reportSaveThroughput("map baseline", MapSaveTarget::new, threads, false);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 8, 32})
+    void save_ConcurrentWritersOnOneCar_ReportsThroughput(int threads) throws Exception {
+        reportSaveThroughput("repository", FuelEntryRepositoryPerfTest::repositoryTarget, threads, true);
+        reportSaveThroughput("map baseline", MapSaveTarget::new, threads, true);
+    }
+
+    // Heap retained per entry and the full GC pause, for the store alone and for the whole repository,
+    // which adds the per-car index, timeline and aggregates on top of the store for every backend
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "columnar", "off-heap", "tiered"})
+    void save_OneMillionEntries_ReportsHeapPerEntryAndGcPause(String mode) {
+        // Given
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        // When
+        long baseline = usedHeapAfterGc();
+        FuelEntryStore store = createStore(mode);
+        for (int i = 1; i <= FOOTPRINT_ENTRIES; i++) {
+            store.put(new FuelEntry((long) i, 1L + i % CARS, 40.0, 1.3, 52.0, i, start.plusSeconds(i)));
+        }
+        long storeBytes = usedHeapAfterGc() - baseline;
+        long storeGcMs = fullGcPauseMillis();
+        assertEquals(FOOTPRINT_ENTRIES, store.size());
+        store = null;
+
+        baseline = usedHeapAfterGc();
+        FuelEntryRepository fuelEntryRepository =
+            new FuelEntryRepository(createStore(mode), PersistenceManager.disabled());
+        for (int i = 1; i <= FOOTPRINT_ENTRIES; i++) {
+            fuelEntryRepository.save(new FuelEntry(null, 1L + i % CARS, 40.0, 1.3, 52.0, i, start.plusSeconds(i)));
+        }
+        long repositoryBytes = usedHeapAfterGc() - baseline;
+        long repositoryGcMs = fullGcPauseMillis();
+        System.out.printf("%s, %,d entries: store %d B/entry, full GC %d ms; repository %d B/entry, full GC %d ms%n",
+            mode, FOOTPRINT_ENTRIES, storeBytes / FOOTPRINT_ENTRIES, storeGcMs,
+            repositoryBytes / FOOTPRINT_ENTRIES, repositoryGcMs);
+
+        // Then
+        assertEquals(FOOTPRINT_ENTRIES / CARS, fuelEntryRepository.findByCarId(1L).size());
+    }
+
+    @Test
+    void getBucketsByCarId_TenYearsOfDailyEntries_ReportsListingAgainstRegrouping() {
+        // Given - one car with a fill-up every day for ten years
+        FuelEntryRepository fuelEntryRepository =
+            new FuelEntryRepository(new HeapFuelEntryStore(), PersistenceManager.disabled());
+        LocalDateTime start = LocalDateTime.of(2015, 1, 1, 8, 0);
+        for (int i = 0; i < 3650; i++) {
+            fuelEntryRepository.save(new FuelEntry(null, 1L, 30.0, 1.5, 45.0, 1000 * i, start.plusDays(i)));
+        }
+
+        // When - month buckets as maintained, against regrouping the entries on every call
+        long sink = 0;
+        double listingUs = 0;
+        double regroupingUs = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < 2_000; i++) {
+                sink += fuelEntryRepository.getBucketsByCarId(1L, Granularity.MONTH, null, null).size();
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < 200; i++) {
+                Map<LocalDate, double[]> months = new TreeMap<>();
+                for (FuelEntry fuelEntry : fuelEntryRepository.findByCarId(1L)) {
+                    months.computeIfAbsent(fuelEntry.getTimestamp().toLocalDate().withDayOfMonth(1),
+                        month -> new double[1])[0] += fuelEntry.getLiters();
+                }
+                sink += months.size();
+            }
+            long t2 = System.nanoTime();
+            listingUs = (t1 - t0) / 2_000 / 1e3;
+            regroupingUs = (t2 - t1) / 200 / 1e3;
+        }
+        System.out.printf("month buckets for 3650 entries: listing %.1f us, regrouping %.1f us%n",
+            listingUs, regroupingUs);
+
+        // Then
+        assertEquals(ROUNDS * (2_000 + 200) * 120L, sink);
+    }
+
+    private FuelEntryStore createStore(String mode) {
+        return switch (mode) {
+            case "heap" -> new HeapFuelEntryStore();
+            case "columnar" -> new ColumnarFuelEntryStore();
+            case "off-heap" -> new OffHeapFuelEntryStore();
+            case "tiered" -> new TieredFuelEntryStore(coldDirectory.resolve("tiered-" + System.nanoTime()),
+                TIERED_HOT_ENTRIES);
+            default -> throw new IllegalArgumentException(mode);
+        };
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Best of three System.gc() calls, which are full collections with the live set in place
+    private static long fullGcPauseMillis() {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long t0 = System.nanoTime();
+            System.gc();
+            best = Math.min(best, (System.nanoTime() - t0) / 1_000_000);
+        }
+        return best;
+    }
+
+    private static SaveTarget repositoryTarget() {
+        FuelEntryRepository fuelEntryRepository =
+            new FuelEntryRepository(new HeapFuelEntryStore(), PersistenceManager.disabled());
+        return new SaveTarget() {
+            @Override
+            public void save(FuelEntry fuelEntry) {
+                fuelEntryRepository.save(fuelEntry);
+            }
+
+            @Override
+            public int size() {
+                return fuelEntryRepository.findAll().size();
+            }
+        };
+    }
+
+    // Every round saves WRITES_PER_ROUND entries split across the threads; the first round is warm-up
+    private static void reportSaveThroughput(String name, Supplier<SaveTarget> targets, int threads, boolean sameCar)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        double best = 0;
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                SaveTarget target = targets.get();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> results = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        LocalDateTime timestamp = LocalDateTime.of(2024, 1, 1, 0, 0);
+                        for (int i = thread; i < WRITES_PER_ROUND; i += threads) {
+                            long carId = sameCar ? 1L : 1L + i % CARS;
+                            target.save(
+                                new FuelEntry(null, carId, 40.0, 1.3, 52.0, i, timestamp.plusSeconds(i)));
+                        }
+                        return null;
+                    }));
+                }
+                long t0 = System.nanoTime();
+                start.countDown();
+                for (Future<?> result : results) {
+                    result.get(60, TimeUnit.SECONDS);
+                }
+                double opsPerSecond = WRITES_PER_ROUND / ((System.nanoTime() - t0) / 1e9);
+                if (round > 0) {
+                    best = Math.max(best, opsPerSecond);
+                }
+                assertEquals(WRITES_PER_ROUND, target.size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.printf("save to %s, %d thread(s), %s: %,.0f ops/s (best of %d)%n",
+            name, threads, sameCar ? "one car" : CARS + " cars", best, ROUNDS - 1);
+    }
+}
@@ -0,0 +1,716 @@
+package com.example.cars.repository;
+
+import com.example.cars.model.FuelEntry;
+import com.example.cars.persistence.PersistenceManager;
+import com.example.cars.repository.storage.FuelEntryStore;
+import com.example.cars.repository.storage.HeapFuelEntryStore;
+import com.example.cars.stats.ConsumptionPoint;
+import com.example.cars.stats.FuelAggregate;
+import com.example.cars.stats.FuelBucket;
+import com.example.cars.stats.Granularity;
+import com.example.cars.stats.LeaderboardEntry;
+import com.example.cars.stats.LeaderboardMetric;
+import com.example.cars.stats.QuantileSketch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FuelEntryRepositoryTest {
+
+    private static final int WRITES_PER_THREAD = 2_000;
+
+    private FuelEntryRepository fuelEntryRepository;
+
+    @BeforeEach
+    void setUp() {
+        fuelEntryRepository = new FuelEntryRepository(createStore(), PersistenceManager.disabled());
+    }
+
+    // Storage backend under test; subclasses run the same suite against other backends
+    protected FuelEntryStore createStore() {
+        return new HeapFuelEntryStore();
+    }
+
+    @Test
+    void save_NewEntry_AssignsIdAndStoresEntry() {
+        // When
+        FuelEntry saved = fuelEntryRepository.save(new FuelEntry(1L, 40.0, 1.30, 10000));
+
+        // Then
+        assertNotNull(saved.getId());
+        assertTrue(fuelEntryRepository.existsById(saved.getId()));
+        assertEquals(1, fuelEntryRepository.findByCarId(1L).size());
+    }
+
+    @Test
+    void delete_ExistingEntry_RemovesEntry() {
+        // Given
+        FuelEntry saved = fuelEntryRepository.save(new FuelEntry(1L, 40.0, 1.30, 10000));
+
+        // When
+        fuelEntryRepository.delete(saved.getId());
+
+        // Then
+        assertFalse(fuelEntryRepository.existsById(saved.getId()));
+        assertTrue(fuelEntryRepository.findByCarId(1L).isEmpty());
+    }
+
+    @Test
+    void findByCarId_OnlyReturnsEntriesOfThatCar() {
+        // Given
+        fuelEntryRepository.save(new FuelEntry(1L, 40.0, 1.30, 10000));
+        fuelEntryRepository.save(new FuelEntry(2L, 35.0, 1.35, 20000));
+        fuelEntryRepository.save(new FuelEntry(1L, 30.0, 1.40, 11000));
+
+        // When
+        List<FuelEntry> result = fuelEntryRepository.findByCarId(1L);
+
+        // Then
+        assertEquals(2, result.size());
+        assertTrue(result.stream().allMatch(entry -> entry.getCarId().equals(1L)));
+        assertTrue(fuelEntryRepository.findByCarId(3L).isEmpty());
+    }
+
+    @Test
+    void findPage_FollowingCursors_VisitsEveryEntryOnceInIdOrder() {
+        // Given
+        for (int i = 0; i < 25; i++) {
+            fuelEntryRepository.save(new FuelEntry(1L + i % 3, 40.0, 1.30, 10000 + i));
+        }
+        fuelEntryRepository.delete(5L);
+
+        // When
+        List<Long> visited = new ArrayList<>();
+        Long cursor = 0L;
+        int pages = 0;
+        while (cursor != null) {
+            Page<FuelEntry> page = fuelEntryRepository.findPage(cursor, 10);
+            page.items().forEach(entry -> visited.add(entry.getId()));
+            cursor = page.nextCursor();
+            pages++;
+        }
+
+        // Then
+        assertEquals(3, pages);
+        assertEquals(24, visited.size());
+        assertFalse(visited.contains(5L));
+        assertEquals(visited.stream().sorted().toList(), visited);
+    }
+
+    @Test
+    void findPageByCarId_OnlyPagesThroughThatCar() {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            fuelEntryRepository.save(new FuelEntry(1L + i % 2, 40.0, 1.30, 10000 + i));
+        }
+
+        // When
+        Page<FuelEntry> first = fuelEntryRepository.findPageByCarId(1L, 0, 3);
+        Page<FuelEntry> last = fuelEntryRepository.findPageByCarId(1L, first.nextCursor(), 3);
+
+        // Then
+        assertEquals(List.of(1L, 3L, 5L), first.items().stream().map(FuelEntry::getId).toList());
+        assertEquals(5L, first.nextCursor());
+        assertEquals(List.of(7L, 9L), last.items().stream().map(FuelEntry::getId).toList());
+        assertNull(last.nextCursor());
+        assertTrue(fuelEntryRepository.findPageByCarId(3L, 0, 3).items().isEmpty());
+    }
+
+    @Test
+    void findPage_WithSnapshot_IgnoresWritesAfterIt() {
+        // Given
+        for (int i = 0; i < 6; i++) {
+            fuelEntryRepository.save(new FuelEntry(1L, 40.0, 1.30, 10000 + i));
+        }
+        ReadSnapshot snapshot = fuelEntryRepository.openSnapshot();
+        FuelEntry updated = fuelEntryRepository.findById(2L).orElseThrow();
+        updated.setLiters(99.0);
+        fuelEntryRepository.save(updated);
+        FuelEntry moved = fuelEntryRepository.findById(5L).orElseThrow();
+        moved.setCarId(2L);
+        fuelEntryRepository.save(moved);
+        fuelEntryRepository.delete(3L);
+        fuelEntryRepository.save(new FuelEntry(1L, 10.0, 1.30, 20000));
+
+        // When
+        Page<FuelEntry> first = fuelEntryRepository.findPage(0, 4, snapshot);
+        Page<FuelEntry> second = fuelEntryRepository.findPage(first.nextCursor(), 4, snapshot);
+        Page<FuelEntry> carOne = fuelEntryRepository.findPageByCarId(1L, 0, 10, snapshot);
+        Page<FuelEntry> carTwo = fuelEntryRepository.findPageByCarId(2L, 0, 10, snapshot);
+        snapshot.close();
+
+        // Then
+        assertEquals(List.of(1L, 2L, 3L, 4L), first.items().stream().map(FuelEntry::getId).toList());
+        assertEquals(40.0, first.items().get(1).getLiters());
+        assertEquals(List.of(5L, 6L), second.items().stream().map(FuelEntry::getId).toList());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), carOne.items().stream().map(FuelEntry::getId).toList());
+        assertTrue(carTwo.items().isEmpty());
+        assertEquals(List.of(5L), fuelEntryRepository.findPageByCarId(2L, 0, 10).items().stream().map(FuelEntry::getId).toList());
+    }
+
+    @Test
+    void findPage_SnapshotReadTwiceDuringWrites_SeesSameEntries() throws Exception {
+        // Given
+        for (int i = 0; i < 2_000; i++) {
+            fuelEntryRepository.save(new FuelEntry(1L + i % 10, 40.0, 1.30, 10000 + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long seed = t;
+            writers.add(executor.submit(() -> {
+                start.await();
+                Random random = new Random(seed);
+                for (int i = 0; i < 5_000; i++) {
+                    long id = 1 + random.nextInt(2_000);
+                    switch (random.nextInt(3)) {
+                        case 0 -> fuelEntryRepository.delete(id);
+                        case 1 -> fuelEntryRepository.save(new FuelEntry(1L + i % 10, 20.0, 1.50, 30000 + i));
+                        default -> fuelEntryRepository.findById(id).ifPresent(entry -> {
+                            entry.setLiters(entry.getLiters() + 1.0);
+                            entry.setCarId(1L + (entry.getCarId() % 10));
+                            fuelEntryRepository.save(entry);
+                        });
+                    }
+                }
+                return null;
+            }));
+        }
+
+        // When
+        List<String> firstRead;
+        List<String> secondRead;
+        try (ReadSnapshot snapshot = fuelEntryRepository.openSnapshot()) {
+            start.countDown();
+            firstRead = readAll(snapshot);
+            secondRead = readAll(snapshot);
+        }
+        for (Future<?> writer : writers) {
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then
+        assertEquals(2_000, firstRead.size());
+        assertEquals(firstRead, secondRead);
+    }
+
+    @Test
+    void deleteByCarId_RemovesOnlyThatCarsEntries() {
+        // Given
+        for (int i = 0; i < 9; i++) {
+            fuelEntryRepository.save(new FuelEntry(1L + i % 3, 40.0, 1.30, 10000 + i));
+        }
+
+        // When
+        fuelEntryRepository.deleteByCarId(2L);
+
+        // Then
+        assertTrue(fuelEntryRepository.findByCarId(2L).isEmpty());
+        assertFalse(fuelEntryRepository.existsById(2L));
+        assertEquals(6, fuelEntryRepository.findAll().size());
+        assertEquals(3, fuelEntryRepository.findByCarId(1L).size());
+        assertEquals(0.0, fuelEntryRepository.getAggregateByCarId(2L).getTotalLiters());
+    }
+
+    @Test
+    void detachByCarId_HidesEntriesAtOnceAndPurgeReclaimsThem() {
+        // Given
+        for (int i = 0; i < 30; i++) {
+            fuelEntryRepository.save(new FuelEntry(1L + i % 3, 40.0, 1.30, 10000 + i));
+        }
+
+        // When
+        fuelEntryRepository.detachByCarId(1L);
+
+        // Then - hidden before anything is reclaimed
+        assertTrue(fuelEntryRepository.hasDetached());
+        assertTrue(fuelEntryRepository.findByCarId(1L).isEmpty());
+        assertFalse(fuelEntryRepository.existsById(1L));
+        assertTrue(fuelEntryRepository.findById(4L).isEmpty());
+        assertEquals(20, fuelEntryRepository.findAll().size());
+        Page<FuelEntry> page = fuelEntryRepository.findPage(0, 5);
+        assertEquals(List.of(2L, 3L, 5L, 6L, 8L), page.items().stream().map(FuelEntry::getId).toList());
+
+        // And reclaimed in batches
+        assertEquals(4, fuelEntryRepository.purgeDetached(4));
+        assertEquals(6, fuelEntryRepository.purgeDetached(100));
+        assertEquals(0, fuelEntryRepository.purgeDetached(100));
+        assertFalse(fuelEntryRepository.hasDetached());
+        assertEquals(20, fuelEntryRepository.findAll().size());
+    }
+
+    @Test
+    void detachByCarId_SnapshotOpenedBefore_StillSeesEntriesUntilClosed() {
+        // Given
+        for (int i = 0; i < 6; i++) {
+            fuelEntryRepository.save(new FuelEntry(1L + i % 2, 40.0, 1.30, 10000 + i));
+        }
+        ReadSnapshot snapshot = fuelEntryRepository.openSnapshot();
+
+        // When
+        fuelEntryRepository.detachByCarId(1L);
+        fuelEntryRepository.purgeDetached(100);
+
+        // Then
+        assertEquals(6, fuelEntryRepository.findPage(0, 10, snapshot).items().size());
+        assertEquals(List.of(1L, 3L, 5L),
+            fuelEntryRepository.findPageByCarId(1L, 0, 10, snapshot).items().stream().map(FuelEntry::getId).toList());
+        assertEquals(3, fuelEntryRepository.findAll().size());
+        assertTrue(fuelEntryRepository.hasDetached());
+        snapshot.close();
+        fuelEntryRepository.purgeDetached(100);
+        assertFalse(fuelEntryRepository.hasDetached());
+        assertEquals(3, fuelEntryRepository.findAll().size());
+    }
+
+    @Test
+    void save_CarIdChanged_MovesEntryBetweenCars() {
+        // Given
+        FuelEntry saved = fuelEntryRepository.save(new FuelEntry(1L, 40.0, 1.30, 10000));
+
+        // When
+        FuelEntry moved = fuelEntryRepository.findById(saved.getId()).orElseThrow();
+        moved.setCarId(2L);
+        fuelEntryRepository.save(moved);
+
+        // Then
+        assertTrue(fuelEntryRepository.findByCarId(1L).isEmpty());
+        assertEquals(List.of(saved.getId()), fuelEntryRepository.findByCarId(2L).stream().map(FuelEntry::getId).toList());
+    }
+
+    @Test
+    void findById_ReturnedEntryMutated_DoesNotChangeStoredEntry() {
+        // Given
+        FuelEntry saved = fuelEntryRepository.save(new FuelEntry(1L, 40.0, 1.30, 10000));
+
+        // When
+        fuelEntryRepository.findById(saved.getId()).orElseThrow().setCarId(2L);
+
+        // Then
+        assertEquals(1L, fuelEntryRepository.findById(saved.getId()).orElseThrow().getCarId());
+        assertEquals(1, fuelEntryRepository.findByCarId(1L).size());
+    }
+
+    @Test
+    void findNeighborsByTimestamp_OutOfOrderInserts_UsesTimestampOrder() {
+        // Given - ids are assigned in insertion order, timestamps are not
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 12, 0);
+        FuelEntry middle = fuelEntryRepository.save(new FuelEntry(null, 1L, 40.0, 1.30, 52.0, 15000, base.plusDays(2)));
+        FuelEntry first = fuelEntryRepository.save(new FuelEntry(null, 1L, 40.0, 1.30, 52.0, 10000, base));
+        FuelEntry last = fuelEntryRepository.save(new FuelEntry(null, 1L, 40.0, 1.30, 52.0, 20000, base.plusDays(4)));
+        fuelEntryRepository.save(new FuelEntry(null, 2L, 40.0, 1.30, 52.0, 12000, base.plusDays(3)));
+
+        // When & Then
+        assertEquals(first.getId(), fuelEntryRepository.findPreviousByTimestamp(1L, middle.getId()).orElseThrow().getId());
+        assertEquals(last.getId(), fuelEntryRepository.findNextByTimestamp(1L, middle.getId()).orElseThrow().getId());
+        assertTrue(fuelEntryRepository.findPreviousByTimestamp(1L, first.getId()).isEmpty());
+        assertTrue(fuelEntryRepository.findNextByTimestamp(1L, last.getId()).isEmpty());
+    }
+
+    @Test
+    void save_TimestampChanged_MovesEntryOnTimeline() {
+        // Given
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 12, 0);
+        FuelEntry first = fuelEntryRepository.save(new FuelEntry(null, 1L, 40.0, 1.30, 52.0, 10000, base));
+        FuelEntry second = fuelEntryRepository.save(new FuelEntry(null, 1L, 40.0, 1.30, 52.0, 15000, base.plusDays(1)));
+
+        // When
+        first.setTimestamp(base.plusDays(2));
+        fuelEntryRepository.save(first);
+
+        // Then
+        assertEquals(second.getId(), fuelEntryRepository.findPreviousByTimestamp(1L, first.getId()).orElseThrow().getId());
+        assertTrue(fuelEntryRepository.findNextByTimestamp(1L, first.getId()).isEmpty());
+    }
+
+    @Test
+    void getBucketsByCarId_RandomWrites_MatchRecomputationFromEntries() {
+        // Given - out-of-order timestamps over more than a year, updates that move entries between
+        // buckets and cars, and deletes
+        Random random = new Random(11);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Long> ids = new ArrayList<>();
+        for (int op = 0; op < 600; op++) {
+            // When
+            int action = random.nextInt(10);
+            if (action < 6 || ids.isEmpty()) {
+                FuelEntry entry = new FuelEntry(null, 1L + random.nextInt(2), 5 + random.nextInt(6000) / 100.0, 1.5, 0.0,
+                    random.nextInt(100_000), base.plusMinutes(random.nextInt(400 * 24 * 60)));
+                entry.setPrice(1 + random.nextInt(100) / 100.0);
+                ids.add(fuelEntryRepository.save(entry).getId());
+            } else if (action < 8) {
+                FuelEntry entry = fuelEntryRepository.findById(ids.get(random.nextInt(ids.size()))).orElseThrow();
+                entry.setLiters(5 + random.nextInt(6000) / 100.0);
+                entry.setOdometer(random.nextInt(100_000));
+                entry.setCarId(1L + random.nextInt(2));
+                entry.setTimestamp(base.plusMinutes(random.nextInt(400 * 24 * 60)));
+                fuelEntryRepository.save(entry);
+            } else {
+                fuelEntryRepository.delete(ids.remove(random.nextInt(ids.size())));
+            }
+
+            // Then
+            if (op % 25 == 0) {
+                for (Granularity granularity : Granularity.values()) {
+                    assertBucketsMatch(1L, granularity, null, null);
+                    assertBucketsMatch(2L, granularity, LocalDate.of(2024, 3, 15), LocalDate.of(2024, 9, 2));
+                }
+            }
+        }
+    }
+
+    @Test
+    void getBucketsByCarId_Month_SumsEntriesOfEachMonth() {
+        // Given
+        fuelEntryRepository.save(new FuelEntry(null, 1L, 40.0, 1.50, 60.0, 10000, LocalDateTime.of(2024, 1, 5, 8, 0)));
+        fuelEntryRepository.save(new FuelEntry(null, 1L, 30.0, 1.50, 45.0, 10500, LocalDateTime.of(2024, 1, 20, 8, 0)));
+        fuelEntryRepository.save(new FuelEntry(null, 1L, 35.0, 1.60, 56.0, 11000, LocalDateTime.of(2024, 3, 2, 8, 0)));
+
+        // When
+        List<FuelBucket> buckets = fuelEntryRepository.getBucketsByCarId(1L, Granularity.MONTH, null, null);
+        List<FuelBucket> march = fuelEntryRepository.getBucketsByCarId(1L, Granularity.MONTH,
+            LocalDate.of(2024, 2, 10), LocalDate.of(2024, 3, 2));
+
+        // Then - January: 40 L consumed over 500 km; empty months are left out
+        assertEquals(2, buckets.size());
+        assertEquals(new FuelBucket(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 1), 2, 70.0, 105.0, 8.0), buckets.get(0));
+        assertEquals(new FuelBucket(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 4, 1), 1, 35.0, 56.0, 0.0), buckets.get(1));
+        assertEquals(List.of(buckets.get(1)), march);
+    }
+
+    @Test
+    void mergeDistributionsByCarId_RandomWrites_MatchSketchOfRecomputedIntervals() {
+        // Given - out-of-order timestamps, updates that move entries on the timeline and between cars, deletes
+        Random random = new Random(17);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Long> ids = new ArrayList<>();
+        for (int op = 0; op < 600; op++) {
+            // When
+            int action = random.nextInt(10);
+            if (action < 6 || ids.isEmpty()) {
+                FuelEntry entry = new FuelEntry(null, 1L + random.nextInt(2), 5 + random.nextInt(6000) / 100.0,
+                    1 + random.nextInt(100) / 100.0, 0.0, random.nextInt(100_000), base.plusMinutes(random.nextInt(100_000)));
+                ids.add(fuelEntryRepository.save(entry).getId());
+            } else if (action < 8) {
+                FuelEntry entry = fuelEntryRepository.findById(ids.get(random.nextInt(ids.size()))).orElseThrow();
+                entry.setLiters(5 + random.nextInt(6000) / 100.0);
+                entry.setPrice(1 + random.nextInt(100) / 100.0);
+                entry.setOdometer(random.nextInt(100_000));
+                entry.setCarId(1L + random.nextInt(2));
+                entry.setTimestamp(base.plusMinutes(random.nextInt(100_000)));
+                fuelEntryRepository.save(entry);
+            } else {
+                fuelEntryRepository.delete(ids.remove(random.nextInt(ids.size())));
+            }
+
+            // Then
+            if (op % 25 == 0) {
+                assertDistributionsMatch(1L);
+                assertDistributionsMatch(2L);
+            }
+        }
+    }
+
+    @Test
+    void mergeDistributionsByCarId_EntryInsertedBetweenFillUps_SplitsInterval() {
+        // Given - 40 L over 1000 km, then a fill-up recorded late in the middle of it
+        fuelEntryRepository.save(new FuelEntry(null, 1L, 40.0, 1.50, 60.0, 10000, LocalDateTime.of(2024, 1, 1, 8, 0)));
+        fuelEntryRepository.save(new FuelEntry(null, 1L, 30.0, 1.50, 45.0, 11000, LocalDateTime.of(2024, 1, 20, 8, 0)));
+        fuelEntryRepository.save(new FuelEntry(null, 1L, 25.0, 1.60, 40.0, 10500, LocalDateTime.of(2024, 1, 10, 8, 0)));
+
+        // When
+        QuantileSketch per100km = new QuantileSketch();
+        QuantileSketch pricePerLiter = new QuantileSketch();
+        fuelEntryRepository.mergeDistributionsByCarId(1L, per100km, pricePerLiter);
+
+        // Then - 40 L over 500 km and 25 L over 500 km
+        assertEquals(2, per100km.count());
+        assertEquals(5.0, per100km.quantile(0.0), 5.0 * per100km.relativeAccuracy());
+        assertEquals(8.0, per100km.quantile(1.0), 8.0 * per100km.relativeAccuracy());
+        assertEquals(3, pricePerLiter.count());
+        assertEquals(1.60, pricePerLiter.quantile(1.0), 1.60 * pricePerLiter.relativeAccuracy());
+    }
+
+    @Test
+    void findConsumptionByCarId_RandomWritesPagedBySince_MatchIntervalsOfSortedEntries() {
+        // Given - distinct timestamps out of order, odometers that sometimes go backwards
+        Random random = new Random(29);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Long> ids = new ArrayList<>();
+        for (int op = 0; op < 400; op++) {
+            if (random.nextInt(5) > 0 || ids.isEmpty()) {
+                FuelEntry entry = new FuelEntry(null, 1L, 5 + random.nextInt(6000) / 100.0, 1.5, 0.0,
+                    random.nextInt(100_000), base.plusMinutes(op * 7919L % 10_007));
+                ids.add(fuelEntryRepository.save(entry).getId());
+            } else {
+                fuelEntryRepository.delete(ids.remove(random.nextInt(ids.size())));
+            }
+        }
+        List<FuelEntry> entries = new ArrayList<>(fuelEntryRepository.findByCarId(1L));
+        entries.sort(Comparator.comparing(FuelEntry::getTimestamp).thenComparing(FuelEntry::getId));
+        List<ConsumptionPoint> expected = new ArrayList<>();
+        for (int i = 0; i + 1 < entries.size(); i++) {
+            FuelEntry from = entries.get(i);
+            FuelEntry to = entries.get(i + 1);
+            int distance = to.getOdometer() - from.getOdometer();
+            if (distance > 0) {
+                expected.add(new ConsumptionPoint(from.getId(), to.getId(), from.getTimestamp(), to.getTimestamp(),
+                    from.getLiters(), distance, Math.round(from.getLiters() / distance * 100.0 * 100.0) / 100.0));
+            }
+        }
+
+        // When - pages of 7, each starting after the 'to' of the previous page's last point
+        List<ConsumptionPoint> all = fuelEntryRepository.findConsumptionByCarId(1L, null, Integer.MAX_VALUE);
+        List<ConsumptionPoint> paged = new ArrayList<>();
+        LocalDateTime since = null;
+        while (true) {
+            List<ConsumptionPoint> page = fuelEntryRepository.findConsumptionByCarId(1L, since, 7);
+            paged.addAll(page);
+            if (page.size() < 7) {
+                break;
+            }
+            since = page.get(page.size() - 1).to();
+        }
+
+        // Then
+        assertEquals(expected, all);
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void getLeaderboard_RandomWrites_MatchRankingOfEveryCar() {
+        // Given - writes spread over 30 cars and around this month, moving entries between cars
+        Random random = new Random(23);
+        LocalDateTime base = LocalDateTime.now().minusDays(45);
+        List<Long> ids = new ArrayList<>();
+        for (int op = 0; op < 800; op++) {
+            // When
+            int action = random.nextInt(10);
+            if (action < 6 || ids.isEmpty()) {
+                FuelEntry entry = new FuelEntry(null, 1L + random.nextInt(30), 5 + random.nextInt(6000) / 100.0, 1.5,
+                    random.nextInt(9000) / 100.0, random.nextInt(100_000), base.plusMinutes(random.nextInt(90 * 24 * 60)));
+                ids.add(fuelEntryRepository.save(entry).getId());
+            } else if (action < 8) {
+                FuelEntry entry = fuelEntryRepository.findById(ids.get(random.nextInt(ids.size()))).orElseThrow();
+                entry.setTotalPrice(random.nextInt(9000) / 100.0);
+                entry.setOdometer(random.nextInt(100_000));
+                entry.setCarId(1L + random.nextInt(30));
+                fuelEntryRepository.save(entry);
+            } else if (action < 9) {
+                fuelEntryRepository.delete(ids.remove(random.nextInt(ids.size())));
+            } else {
+                long carId = 1L + random.nextInt(30);
+                fuelEntryRepository.findByCarId(carId).forEach(entry -> ids.remove(entry.getId()));
+                fuelEntryRepository.deleteByCarId(carId);
+            }
+
+            // Then
+            if (op % 40 == 0) {
+                for (LeaderboardMetric metric : LeaderboardMetric.values()) {
+                    List<LeaderboardEntry> expected = rankEveryCar(metric, 10);
+                    List<LeaderboardEntry> leaderboard = fuelEntryRepository.getLeaderboard(metric, 10);
+                    // Summation order differs, so values are compared with a tolerance
+                    assertEquals(expected.stream().map(LeaderboardEntry::carId).toList(),
+                        leaderboard.stream().map(LeaderboardEntry::carId).toList());
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertEquals(i + 1, leaderboard.get(i).rank());
+                        assertEquals(expected.get(i).value(), leaderboard.get(i).value(), 1e-6);
+                    }
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 8, 32})
+    void save_ConcurrentWriters_LosesNoWritesAndAssignsUniqueIds(int threads) throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Long>>> results = new ArrayList<>();
+
+        // When - each thread writes to its own car and to one car shared by all threads
+        for (int t = 0; t < threads; t++) {
+            long ownCarId = t + 100L;
+            results.add(executor.submit(() -> {
+                start.await();
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                    long carId = i % 2 == 0 ? ownCarId : 1L;
+                    ids.add(fuelEntryRepository.save(new FuelEntry(carId, 10.0, 1.5, i + 1)).getId());
+                }
+                return ids;
+            }));
+        }
+        start.countDown();
+
+        Set<Long> allIds = new HashSet<>();
+        for (Future<List<Long>> result : results) {
+            allIds.addAll(result.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        // Then
+        int expected = threads * WRITES_PER_THREAD;
+        assertEquals(expected, allIds.size());
+        assertEquals(expected, fuelEntryRepository.findAll().size());
+        assertEquals(expected / 2, fuelEntryRepository.findByCarId(1L).size());
+        for (int t = 0; t < threads; t++) {
+            assertEquals(WRITES_PER_THREAD / 2, fuelEntryRepository.findByCarId(t + 100L).size());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 8, 32})
+    void delete_ConcurrentWithSaves_LeavesOnlySurvivingEntries(int threads) throws Exception {
+        // Given
+        List<Long> toDelete = new ArrayList<>();
+        for (int i = 0; i < threads * WRITES_PER_THREAD; i++) {
+            toDelete.add(fuelEntryRepository.save(new FuelEntry((long) (i % threads), 10.0, 1.5, i + 1)).getId());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+
+        // When - every thread deletes its slice of the old entries while adding new ones
+        for (int t = 0; t < threads; t++) {
+            int slice = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int i = slice; i < toDelete.size(); i += threads) {
+                    fuelEntryRepository.delete(toDelete.get(i));
+                    fuelEntryRepository.save(new FuelEntry((long) slice, 10.0, 1.5, i + 1));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then
+        assertEquals(toDelete.size(), fuelEntryRepository.findAll().size());
+        toDelete.forEach(id -> assertFalse(fuelEntryRepository.existsById(id)));
+    }
+
+    // Buckets recomputed from the car's entries with the formula of the car's whole-history stats
+    private void assertBucketsMatch(long carId, Granularity granularity, LocalDate from, LocalDate to) {
+        Map<LocalDate, List<FuelEntry>> byStart = new TreeMap<>();
+        for (FuelEntry entry : fuelEntryRepository.findByCarId(carId)) {
+            LocalDate start = granularity.bucketStart(entry.getTimestamp().toLocalDate());
+            if ((from == null || from.isBefore(granularity.nextBucketStart(start))) && (to == null || start.isBefore(to))) {
+                byStart.computeIfAbsent(start, key -> new ArrayList<>()).add(entry);
+            }
+        }
+        List<FuelBucket> buckets = fuelEntryRepository.getBucketsByCarId(carId, granularity, from, to);
+        assertEquals(new ArrayList<>(byStart.keySet()), buckets.stream().map(FuelBucket::start).toList());
+        int i = 0;
+        for (List<FuelEntry> entries : byStart.values()) {
+            FuelBucket bucket = buckets.get(i++);
+            assertEquals(entries.size(), bucket.entries());
+            assertEquals(entries.stream().mapToDouble(FuelEntry::getLiters).sum(), bucket.totalLiters(), 1e-6);
+            assertEquals(entries.stream().mapToDouble(FuelEntry::getTotalPrice).sum(), bucket.totalPrice(), 1e-6);
+            FuelEntry latest = entries.stream().max(Comparator.comparing(FuelEntry::getTimestamp)
+                .thenComparing(FuelEntry::getId)).orElseThrow();
+            int distance = entries.stream().mapToInt(FuelEntry::getOdometer).max().orElseThrow()
+                - entries.stream().mapToInt(FuelEntry::getOdometer).min().orElseThrow();
+            double expected = entries.size() < 2 || distance <= 0 ? 0.0 : Math.round(
+                (entries.stream().mapToDouble(FuelEntry::getLiters).sum() - latest.getLiters()) / distance * 100.0 * 100.0) / 100.0;
+            // Summation order differs, so allow one step of the 2-decimal rounding
+            assertEquals(expected, bucket.avgPer100km(), 0.01 + 1e-9);
+        }
+    }
+
+    // Sketches rebuilt from the car's entries in timeline order should hold exactly the same values
+    private void assertDistributionsMatch(long carId) {
+        List<FuelEntry> entries = new ArrayList<>(fuelEntryRepository.findByCarId(carId));
+        entries.sort(Comparator.comparing(FuelEntry::getTimestamp).thenComparing(FuelEntry::getId));
+        QuantileSketch expectedPer100km = new QuantileSketch();
+        QuantileSketch expectedPricePerLiter = new QuantileSketch();
+        for (int i = 0; i < entries.size(); i++) {
+            expectedPricePerLiter.add(entries.get(i).getPrice());
+            if (i + 1 < entries.size()) {
+                int distance = entries.get(i + 1).getOdometer() - entries.get(i).getOdometer();
+                if (distance > 0) {
+                    expectedPer100km.add(entries.get(i).getLiters() / distance * 100.0);
+                }
+            }
+        }
+        QuantileSketch per100km = new QuantileSketch();
+        QuantileSketch pricePerLiter = new QuantileSketch();
+        fuelEntryRepository.mergeDistributionsByCarId(carId, per100km, pricePerLiter);
+        assertEquals(expectedPer100km.count(), per100km.count());
+        assertEquals(expectedPricePerLiter.count(), pricePerLiter.count());
+        for (double quantile : new double[] {0.0, 0.5, 0.9, 0.99, 1.0}) {
+            assertEquals(expectedPer100km.quantile(quantile), per100km.quantile(quantile));
+            assertEquals(expectedPricePerLiter.quantile(quantile), pricePerLiter.quantile(quantile));
+        }
+    }
+
+    // The leaderboard computed the slow way, from every car's entries
+    private List<LeaderboardEntry> rankEveryCar(LeaderboardMetric metric, int n) {
+        YearMonth month = YearMonth.now();
+        List<double[]> standings = new ArrayList<>();
+        for (long carId : fuelEntryRepository.findCarIds()) {
+            List<FuelEntry> entries = fuelEntryRepository.findByCarId(carId);
+            Double value = switch (metric) {
+                case AVG_PER_100KM -> {
+                    FuelAggregate aggregate = fuelEntryRepository.getAggregateByCarId(carId);
+                    yield aggregate.getCount() >= 2 && aggregate.getMaxOdometer() > aggregate.getMinOdometer()
+                        ? aggregate.averagePer100km() : null;
+                }
+                case TOTAL_PRICE -> entries.stream().mapToDouble(FuelEntry::getTotalPrice).sum();
+                case MONTH_TOTAL_PRICE -> {
+                    List<FuelEntry> inMonth = entries.stream()
+                        .filter(entry -> YearMonth.from(entry.getTimestamp()).equals(month)).toList();
+                    yield inMonth.isEmpty() ? null : inMonth.stream().mapToDouble(FuelEntry::getTotalPrice).sum();
+                }
+            };
+            if (value != null) {
+                standings.add(new double[] {value, carId});
+            }
+        }
+        standings.sort(Comparator.<double[]>comparingDouble(standing -> -standing[0])
+            .thenComparingDouble(standing -> standing[1]));
+        List<LeaderboardEntry> top = new ArrayList<>();
+        for (double[] standing : standings.subList(0, Math.min(n, standings.size()))) {
+            top.add(new LeaderboardEntry(top.size() + 1, (long) standing[1], standing[0]));
+        }
+        return top;
+    }
+
+    private List<String> readAll(ReadSnapshot snapshot) {
+        List<String> entries = new ArrayList<>();
+        Long cursor = 0L;
+        while (cursor != null) {
+            Page<FuelEntry> page = fuelEntryRepository.findPage(cursor, 97, snapshot);
+            page.items().forEach(entry -> entries.add(entry.getId() + ":" + entry.getCarId() + ":" + entry.getLiters()));
+            cursor = page.nextCursor();
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.cars.repository;
+
+import com.example.cars.model.FuelEntry;
+import com.example.cars.stats.LeaderboardEntry;
+import com.example.cars.stats.LeaderboardMetric;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FuelLeaderboardsTest {
+
+    // Clock the test can move forward
+    private static final class MovableClock extends Clock {
+        Instant now;
+
+        MovableClock(LocalDateTime now) {
+            this.now = now.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @Test
+    void update_ChangedCars_ReRanksOnlyThoseCars() {
+        // Given
+        FuelLeaderboards leaderboards = new FuelLeaderboards(new MovableClock(LocalDateTime.of(2024, 3, 15, 12, 0)));
+        FuelHistory first = history(1L, 60.0, 90.0);
+        FuelHistory second = history(2L, 20.0, 40.0);
+        leaderboards.update(1L, first);
+        leaderboards.update(2L, second);
+
+        // When - the second car overtakes the first, then the first loses its entries
+        second.add(new FuelEntry(100L, 2L, 50.0, 1.5, 75.0, 30000, LocalDateTime.of(2024, 3, 12, 8, 0)));
+        leaderboards.update(2L, second);
+        List<LeaderboardEntry> overtaken = leaderboards.top(LeaderboardMetric.TOTAL_PRICE, 10);
+        leaderboards.update(1L, null);
+
+        // Then
+        assertEquals(List.of(new LeaderboardEntry(1, 2L, 115.0), new LeaderboardEntry(2, 1L, 90.0)), overtaken);
+        assertEquals(List.of(new LeaderboardEntry(1, 2L, 115.0)), leaderboards.top(LeaderboardMetric.TOTAL_PRICE, 10));
+        assertEquals(List.of(2L), leaderboards.top(LeaderboardMetric.AVG_PER_100KM, 10).stream()
+            .map(LeaderboardEntry::carId).toList());
+    }
+
+    @Test
+    void startMonth_MonthTurned_RanksSpendOfNewMonthOnly() {
+        // Given - March spend only
+        MovableClock clock = new MovableClock(LocalDateTime.of(2024, 3, 31, 23, 0));
+        FuelLeaderboards leaderboards = new FuelLeaderboards(clock);
+        FuelHistory history = history(1L, 60.0, 90.0);
+        leaderboards.update(1L, history);
+        List<LeaderboardEntry> march = leaderboards.top(LeaderboardMetric.MONTH_TOTAL_PRICE, 10);
+
+        // When
+        clock.now = LocalDateTime.of(2024, 4, 1, 1, 0).toInstant(ZoneOffset.UTC);
+        boolean turned = leaderboards.monthTurned();
+        leaderboards.startMonth();
+        history.add(new FuelEntry(101L, 1L, 10.0, 2.0, 20.0, 30000, LocalDateTime.of(2024, 4, 1, 0, 30)));
+        leaderboards.update(1L, history);
+
+        // Then
+        assertEquals(List.of(new LeaderboardEntry(1, 1L, 90.0)), march);
+        assertTrue(turned);
+        assertFalse(leaderboards.monthTurned());
+        assertEquals(List.of(new LeaderboardEntry(1, 1L, 20.0)), leaderboards.top(LeaderboardMetric.MONTH_TOTAL_PRICE, 10));
+        assertEquals(110.0, leaderboards.top(LeaderboardMetric.TOTAL_PRICE, 1).get(0).value());
+    }
+
+    // Two March fill-ups of a car, 1000 km apart, for the given liters and spend in all
+    private static FuelHistory history(long carId, double liters, double totalPrice) {
+        FuelHistory history = new FuelHistory();
+        history.add(new FuelEntry(carId * 10, carId, liters / 2, 1.5, totalPrice / 2, 10000,
+            LocalDateTime.of(2024, 3, 1, 8, 0)));
+        history.add(new FuelEntry(carId * 10 + 1, carId, liters / 2, 1.5, totalPrice / 2, 11000,
+            LocalDateTime.of(2024, 3, 10, 8, 0)));
+        return history;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.cars.repository;
+
+import com.example.cars.stats.FuelAggregate;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FuelTimelineTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void aggregate_RandomInsertsAndRemovals_MatchesScanOfRange() {
+        // Given - keys inserted in random time order, some removed again
+        Random random = new Random(3);
+        FuelTimeline timeline = new FuelTimeline();
+        TreeSet<FuelHistory.TimelineKey> keys = new TreeSet<>();
+        Map<FuelHistory.TimelineKey, Double> prices = new HashMap<>();
+        List<FuelHistory.TimelineKey> added = new ArrayList<>();
+        for (int op = 0; op < 3_000; op++) {
+            if (added.isEmpty() || random.nextInt(4) > 0) {
+                FuelHistory.TimelineKey key = new FuelHistory.TimelineKey(BASE.plusMinutes(random.nextInt(5_000)), op,
+                    5 + random.nextInt(6000) / 100.0, random.nextInt(200_000));
+                double price = key.liters() * 1.5;
+                timeline.add(key, price);
+                keys.add(key);
+                prices.put(key, price);
+                added.add(key);
+            } else {
+                FuelHistory.TimelineKey key = added.remove(random.nextInt(added.size()));
+                timeline.remove(key);
+                keys.remove(key);
+            }
+
+            // When & Then
+            LocalDateTime from = BASE.plusMinutes(random.nextInt(5_000));
+            LocalDateTime to = from.plusMinutes(random.nextInt(2_000));
+            assertMatchesScan(timeline.aggregate(FuelHistory.TimelineKey.first(from), FuelHistory.TimelineKey.first(to)),
+                keys.subSet(FuelHistory.TimelineKey.first(from), FuelHistory.TimelineKey.first(to)), prices);
+            assertMatchesScan(timeline.aggregate(null, FuelHistory.TimelineKey.first(to)),
+                keys.headSet(FuelHistory.TimelineKey.first(to)), prices);
+            assertMatchesScan(timeline.aggregate(FuelHistory.TimelineKey.first(from), null),
+                keys.tailSet(FuelHistory.TimelineKey.first(from)), prices);
+            assertMatchesScan(timeline.aggregate(null, null), keys, prices);
+            assertEquals(keys.isEmpty() ? null : keys.last(), timeline.last());
+            FuelHistory.TimelineKey probe = FuelHistory.TimelineKey.first(from);
+            assertEquals(keys.lower(probe), timeline.lower(probe));
+            assertEquals(keys.higher(probe), timeline.higher(probe));
+            if (op % 50 == 0) {
+                assertIterates(keys.tailSet(probe), timeline.iterator(probe));
+                assertIterates(keys, timeline.iterator(null));
+            }
+        }
+    }
+
+    @Test
+    void remove_EveryKey_LeavesEmptyTimeline() {
+        // Given
+        FuelTimeline timeline = new FuelTimeline();
+        FuelHistory.TimelineKey first = new FuelHistory.TimelineKey(BASE, 1, 40.0, 10000);
+        FuelHistory.TimelineKey second = new FuelHistory.TimelineKey(BASE.plusDays(1), 2, 30.0, 10500);
+        timeline.add(second, 45.0);
+        timeline.add(first, 60.0);
+
+        // When
+        timeline.remove(second);
+        FuelAggregate afterFirstRemoval = timeline.aggregate(null, null);
+        timeline.remove(first);
+
+        // Then
+        assertEquals(1, afterFirstRemoval.getCount());
+        assertEquals(40.0, afterFirstRemoval.getLatestLiters());
+        assertTrue(timeline.isEmpty());
+        assertNull(timeline.last());
+        assertSame(FuelAggregate.EMPTY, timeline.aggregate(null, null));
+    }
+
+    private static void assertIterates(SortedSet<FuelHistory.TimelineKey> expected, Iterator<FuelHistory.TimelineKey> iterator) {
+        List<FuelHistory.TimelineKey> visited = new ArrayList<>();
+        iterator.forEachRemaining(visited::add);
+        assertEquals(new ArrayList<>(expected), visited);
+    }
+
+    private static void assertMatchesScan(FuelAggregate aggregate, SortedSet<FuelHistory.TimelineKey> inRange,
+            Map<FuelHistory.TimelineKey, Double> prices) {
+        assertEquals(inRange.size(), aggregate.getCount());
+        if (inRange.isEmpty()) {
+            return;
+        }
+        assertEquals(inRange.stream().mapToDouble(FuelHistory.TimelineKey::liters).sum(), aggregate.getTotalLiters(), 1e-6);
+        assertEquals(inRange.stream().mapToDouble(prices::get).sum(), aggregate.getTotalPrice(), 1e-6);
+        assertEquals(inRange.stream().mapToInt(FuelHistory.TimelineKey::odometer).min().orElseThrow(), aggregate.getMinOdometer());
+        assertEquals(inRange.stream().mapToInt(FuelHistory.TimelineKey::odometer).max().orElseThrow(), aggregate.getMaxOdometer());
+        assertEquals(inRange.last().liters(), aggregate.getLatestLiters());
+    }
+}
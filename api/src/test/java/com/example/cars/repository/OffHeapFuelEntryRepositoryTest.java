@@ -0,0 +1,13 @@
+package com.example.cars.repository;
+
+import com.example.cars.repository.storage.FuelEntryStore;
+import com.example.cars.repository.storage.OffHeapFuelEntryStore;
+
+// Runs the repository suite against the off-heap storage backend
+class OffHeapFuelEntryRepositoryTest extends FuelEntryRepositoryTest {
+
+    @Override
+    protected FuelEntryStore createStore() {
+        return new OffHeapFuelEntryStore();
+    }
+}
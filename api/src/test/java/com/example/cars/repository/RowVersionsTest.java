@@ -0,0 +1,115 @@
+package com.example.cars.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowVersionsTest {
+
+    record Row(long id, String value) {
+    }
+
+    private final RowVersions<Row> versions = new RowVersions<>(Row::id);
+    // Latest rows, as a repository would hold them
+    private final ConcurrentSkipListMap<Long, Row> rows = new ConcurrentSkipListMap<>();
+
+    @Test
+    void resolve_SeveralWritesAfterSnapshot_ReturnsRowAsOfEachSnapshot() {
+        // Given
+        write(1, "a");
+        ReadSnapshot first = versions.open();
+        write(1, "b");
+        ReadSnapshot second = versions.open();
+        write(1, "c");
+        delete(1);
+
+        // When & Then
+        assertEquals("a", versions.resolve(1, rows.get(1L), first).value());
+        assertEquals("b", versions.resolve(1, rows.get(1L), second).value());
+        first.close();
+        assertEquals("b", versions.resolve(1, rows.get(1L), second).value());
+        second.close();
+    }
+
+    @Test
+    void page_RowsInsertedAndDeletedAfterSnapshot_ShowsRowsAsOfSnapshot() {
+        // Given
+        for (long id = 1; id <= 6; id++) {
+            write(id, "v" + id);
+        }
+        ReadSnapshot snapshot = versions.open();
+        delete(2);
+        delete(5);
+        write(3, "changed");
+        write(7, "new");
+
+        // When
+        Page<Row> first = versions.page(snapshot, 0, 4, this::latestAfter, row -> true);
+        Page<Row> second = versions.page(snapshot, first.nextCursor(), 4, this::latestAfter, row -> true);
+
+        // Then
+        assertEquals(List.of("v1", "v2", "v3", "v4"), first.items().stream().map(Row::value).toList());
+        assertEquals(List.of("v5", "v6"), second.items().stream().map(Row::value).toList());
+        assertNull(second.nextCursor());
+        snapshot.close();
+    }
+
+    @Test
+    void commit_NoSnapshotOpen_RetainsNothing() {
+        // When
+        write(1, "a");
+        write(1, "b");
+        delete(1);
+
+        // Then
+        assertEquals(0, versions.retainedChanges());
+    }
+
+    @Test
+    void close_LastSnapshot_DropsRetainedChanges() {
+        // Given
+        write(1, "a");
+        ReadSnapshot snapshot = versions.open();
+        write(1, "b");
+        write(2, "c");
+        assertEquals(2, versions.retainedChanges());
+
+        // When
+        snapshot.close();
+        snapshot.close();
+
+        // Then
+        assertEquals(0, versions.retainedChanges());
+        assertThrows(IllegalStateException.class, () -> versions.resolve(1, rows.get(1L), snapshot));
+    }
+
+    @Test
+    void resolve_SnapshotOfAnotherOwner_Throws() {
+        // Given
+        RowVersions<Row> other = new RowVersions<>(Row::id);
+
+        // When & Then
+        try (ReadSnapshot snapshot = other.open()) {
+            assertThrows(IllegalArgumentException.class, () -> versions.resolve(1, null, snapshot));
+        }
+    }
+
+    private void write(long id, String value) {
+        RowVersions.Change<Row> change = versions.beginWrite(id, rows.get(id));
+        rows.put(id, new Row(id, value));
+        versions.commit(id, change);
+    }
+
+    private void delete(long id) {
+        RowVersions.Change<Row> change = versions.beginWrite(id, rows.get(id));
+        rows.remove(id);
+        versions.commit(id, change);
+    }
+
+    private List<Row> latestAfter(long afterId, int limit) {
+        return rows.tailMap(afterId, false).values().stream().limit(limit).toList();
+    }
+}
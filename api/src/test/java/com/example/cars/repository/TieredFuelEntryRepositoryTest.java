@@ -0,0 +1,19 @@
+package com.example.cars.repository;
+
+import com.example.cars.repository.storage.FuelEntryStore;
+import com.example.cars.repository.storage.TieredFuelEntryStore;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+// Runs the repository suite against the tiered storage backend, with a hot tier small enough to spill
+class TieredFuelEntryRepositoryTest extends FuelEntryRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Override
+    protected FuelEntryStore createStore() {
+        return new TieredFuelEntryStore(directory, 256);
+    }
+}
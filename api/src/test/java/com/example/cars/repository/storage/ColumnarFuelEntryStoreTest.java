@@ -0,0 +1,9 @@
+package com.example.cars.repository.storage;
+
+class ColumnarFuelEntryStoreTest extends FuelEntryStoreTest {
+
+    @Override
+    protected FuelEntryStore createStore() {
+        return new ColumnarFuelEntryStore();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.cars.repository.storage;
+
+import com.example.cars.model.FuelEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Behaviour every FuelEntryStore must share; subclasses pick the backend
+abstract class FuelEntryStoreTest {
+
+    private FuelEntryStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = createStore();
+    }
+
+    protected abstract FuelEntryStore createStore();
+
+    @Test
+    void put_ThenGet_RoundTripsEveryField() {
+        // Given
+        LocalDateTime timestamp = LocalDateTime.of(2024, 3, 15, 8, 30, 12, 123_456_789);
+        FuelEntry entry = new FuelEntry(7L, 3L, 41.27, 1.379, 56.91, 123456, timestamp);
+
+        // When
+        store.put(entry);
+        FuelEntry result = store.get(7L);
+
+        // Then
+        assertEquals(7L, result.getId());
+        assertEquals(3L, result.getCarId());
+        assertEquals(41.27, result.getLiters());
+        assertEquals(1.379, result.getPrice());
+        assertEquals(56.91, result.getTotalPrice());
+        assertEquals(123456, result.getOdometer());
+        assertEquals(timestamp, result.getTimestamp());
+        assertNotSame(entry, result);
+    }
+
+    @Test
+    void put_NullTimestamp_ReadsBackNull() {
+        // When
+        store.put(new FuelEntry(1L, 1L, 10.0, 1.0, 10.0, 100, null));
+
+        // Then
+        assertNull(store.get(1L).getTimestamp());
+    }
+
+    @Test
+    void put_OutOfOrderIds_KeepsRowsSortedAndFindable() {
+        // When
+        for (long id : new long[] {10, 30, 20, 5, 25}) {
+            store.put(entry(id));
+        }
+        store.remove(20L);
+        store.put(entry(15L));
+
+        // Then
+        assertEquals(List.of(5L, 10L, 15L, 25L, 30L), ids());
+        assertNull(store.get(20L));
+        assertFalse(store.contains(20L));
+        assertEquals(5, store.size());
+    }
+
+    @Test
+    void remove_ThenPutSameId_RevivesRow() {
+        // Given
+        store.put(entry(1L));
+        store.remove(1L);
+
+        // When
+        store.put(new FuelEntry(1L, 9L, 20.0, 2.0, 40.0, 500, LocalDateTime.now()));
+
+        // Then
+        assertEquals(9L, store.get(1L).getCarId());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void remove_MostRows_CompactsAndKeepsSurvivors() {
+        // Given
+        for (long id = 1; id <= 10_000; id++) {
+            store.put(entry(id));
+        }
+
+        // When - drop everything that is not a multiple of 7
+        for (long id = 1; id <= 10_000; id++) {
+            if (id % 7 != 0) {
+                assertTrue(store.remove(id));
+            }
+        }
+
+        // Then
+        List<Long> ids = ids();
+        assertEquals(10_000 / 7, ids.size());
+        assertEquals(ids.size(), store.size());
+        assertTrue(ids.stream().allMatch(id -> id % 7 == 0));
+        assertEquals(7000L, store.get(7000L).getId());
+    }
+
+    @Test
+    void forEach_RemovingDuringScan_VisitsEveryOtherRowOnce() {
+        // Given - more rows than one scan chunk
+        for (long id = 1; id <= 5_000; id++) {
+            store.put(entry(id));
+        }
+
+        // When - the scan deletes rows far ahead of itself, forcing compactions mid-scan
+        List<Long> visited = new ArrayList<>();
+        store.forEach(entry -> {
+            visited.add(entry.getId());
+            long ahead = entry.getId() + 2_500;
+            if (ahead <= 5_000 && ahead % 2 == 0) {
+                store.remove(ahead);
+            }
+        });
+
+        // Then
+        assertEquals(visited.stream().distinct().count(), visited.size());
+        assertTrue(visited.containsAll(ids()));
+    }
+
+    @Test
+    void findAfter_WithTombstones_ReturnsNextLiveRowsInIdOrder() {
+        // Given
+        for (long id : new long[] {40, 10, 30, 20, 50, 60}) {
+            store.put(entry(id));
+        }
+        store.remove(30L);
+
+        // When
+        List<FuelEntry> firstPage = store.findAfter(0, 2);
+        List<FuelEntry> secondPage = store.findAfter(20, 2);
+        List<FuelEntry> lastPage = store.findAfter(55, 10);
+
+        // Then
+        assertEquals(List.of(10L, 20L), firstPage.stream().map(FuelEntry::getId).toList());
+        assertEquals(List.of(40L, 50L), secondPage.stream().map(FuelEntry::getId).toList());
+        assertEquals(List.of(60L), lastPage.stream().map(FuelEntry::getId).toList());
+        assertTrue(store.findAfter(60, 10).isEmpty());
+    }
+
+    private List<Long> ids() {
+        List<Long> ids = new ArrayList<>();
+        store.forEach(entry -> ids.add(entry.getId()));
+        return ids;
+    }
+
+    private static FuelEntry entry(long id) {
+        return new FuelEntry(id, 1L, 10.0, 1.5, 15.0, (int) id, LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(id));
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.cars.repository.storage;
+
+import com.example.cars.model.FuelEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TieredFuelEntryStoreTest extends FuelEntryStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Override
+    protected FuelEntryStore createStore() {
+        return new TieredFuelEntryStore(directory, 64);
+    }
+
+    @Test
+    void put_OverHotLimit_SpillsOldestRowsToSegments() throws IOException {
+        // Given
+        TieredFuelEntryStore store = new TieredFuelEntryStore(directory, 100);
+
+        // When
+        for (long id = 1; id <= 1_000; id++) {
+            store.put(entry(id, 1L));
+        }
+
+        // Then
+        assertEquals(1_000, store.size());
+        assertTrue(store.segmentCount() > 0);
+        assertEquals(store.segmentCount(), segmentFiles());
+        assertEquals(1L, store.get(1L).getId());
+        assertEquals(500, store.get(500L).getOdometer());
+        assertEquals(List.of(499L, 500L, 501L), store.findAfter(498, 3).stream().map(FuelEntry::getId).toList());
+    }
+
+    @Test
+    void put_ManySpills_MergesSegmentsDownToLimit() throws IOException {
+        // Given
+        TieredFuelEntryStore store = new TieredFuelEntryStore(directory, 8);
+
+        // When
+        for (long id = 1; id <= 5_000; id++) {
+            store.put(entry(id, 1L));
+            if (id % 3 == 0) {
+                store.remove(id - 1);
+            }
+        }
+
+        // Then
+        assertTrue(store.segmentCount() <= TieredFuelEntryStore.MAX_SEGMENTS);
+        assertEquals(store.segmentCount(), segmentFiles());
+        assertEquals(5_000 - 5_000 / 3, store.size());
+        assertNull(store.get(2L));
+        assertEquals(List.of(1L, 3L, 4L, 6L), store.findAfter(0, 4).stream().map(FuelEntry::getId).toList());
+    }
+
+    @Test
+    void put_ColdRow_ReplacesItWithHotVersion() {
+        // Given
+        TieredFuelEntryStore store = new TieredFuelEntryStore(directory, 10);
+        for (long id = 1; id <= 100; id++) {
+            store.put(entry(id, 1L));
+        }
+
+        // When
+        store.put(entry(3L, 9L));
+
+        // Then
+        assertEquals(9L, store.get(3L).getCarId());
+        assertEquals(100, store.size());
+        assertEquals(List.of(2L, 3L, 4L), store.findAfter(1, 3).stream().map(FuelEntry::getId).toList());
+        assertEquals(9L, store.findAfter(2, 1).get(0).getCarId());
+    }
+
+    @Test
+    void remove_EveryColdRow_DeletesSegmentFiles() throws IOException {
+        // Given
+        TieredFuelEntryStore store = new TieredFuelEntryStore(directory, 10);
+        for (long id = 1; id <= 100; id++) {
+            store.put(entry(id, 1L));
+        }
+
+        // When
+        for (long id = 1; id <= 100; id++) {
+            assertTrue(store.remove(id));
+        }
+
+        // Then
+        assertEquals(0, store.size());
+        assertEquals(0, store.segmentCount());
+        assertEquals(0, segmentFiles());
+    }
+
+    @Test
+    void constructor_StaleSegments_ClearsThem() throws IOException {
+        // Given
+        TieredFuelEntryStore first = new TieredFuelEntryStore(directory, 10);
+        for (long id = 1; id <= 100; id++) {
+            first.put(entry(id, 1L));
+        }
+        assertTrue(segmentFiles() > 0);
+
+        // When
+        TieredFuelEntryStore second = new TieredFuelEntryStore(directory, 10);
+
+        // Then
+        assertEquals(0, segmentFiles());
+        assertEquals(0, second.size());
+    }
+
+    @Test
+    void randomOperations_MatchReferenceMap() {
+        // Given
+        TieredFuelEntryStore store = new TieredFuelEntryStore(directory, 50);
+        TreeMap<Long, FuelEntry> reference = new TreeMap<>();
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 20_000; i++) {
+            long id = 1 + random.nextInt(2_000);
+            if (random.nextInt(4) == 0) {
+                assertEquals(reference.remove(id) != null, store.remove(id));
+            } else {
+                FuelEntry fuelEntry = entry(id, 1 + random.nextInt(5));
+                store.put(fuelEntry);
+                reference.put(id, fuelEntry);
+            }
+        }
+
+        // Then
+        assertEquals(reference.size(), store.size());
+        List<Long> ids = new ArrayList<>();
+        store.forEach(fuelEntry -> {
+            ids.add(fuelEntry.getId());
+            assertEquals(reference.get(fuelEntry.getId()).getCarId(), fuelEntry.getCarId());
+        });
+        assertEquals(new ArrayList<>(reference.keySet()), ids);
+    }
+
+    @Test
+    void get_ColdRowsUpdatedConcurrently_NeverReadsThemAsMissing() throws Exception {
+        // Given - every row spilled to segments but the newest
+        TieredFuelEntryStore store = new TieredFuelEntryStore(directory, 200);
+        int rows = 2_000;
+        for (long id = 1; id <= rows; id++) {
+            store.put(entry(id, 1L));
+        }
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        // When - one writer rewrites random rows, moving them back and forth between the tiers, while
+        // two readers look every row up and page through them all
+        Future<?> writer = executor.submit(() -> {
+            Random random = new Random(7);
+            for (int i = 0; i < 50_000; i++) {
+                store.put(entry(1 + random.nextInt(rows), 1 + random.nextInt(3)));
+            }
+            writing.set(false);
+            return null;
+        });
+        Future<Integer> getter = executor.submit(() -> {
+            int missing = 0;
+            while (writing.get()) {
+                for (long id = 1; id <= rows; id++) {
+                    if (store.get(id) == null) {
+                        missing++;
+                    }
+                }
+            }
+            return missing;
+        });
+        Future<Integer> pager = executor.submit(() -> {
+            int missing = 0;
+            while (writing.get()) {
+                int seen = 0;
+                long after = 0;
+                List<FuelEntry> page;
+                do {
+                    page = store.findAfter(after, 100);
+                    seen += page.size();
+                    if (!page.isEmpty()) {
+                        after = page.get(page.size() - 1).getId();
+                    }
+                } while (page.size() == 100);
+                missing += rows - seen;
+            }
+            return missing;
+        });
+
+        // Then
+        writer.get(60, TimeUnit.SECONDS);
+        assertEquals(0, getter.get(60, TimeUnit.SECONDS));
+        assertEquals(0, pager.get(60, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(rows, store.size());
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static FuelEntry entry(long id, long carId) {
+        return new FuelEntry(id, carId, 10.0, 1.5, 15.0, (int) id, LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(id));
+    }
+}
@@ -2,6 +2,9 @@ package com.example.cars.service;
 
 import com.example.cars.model.Car;
 import com.example.cars.repository.CarRepository;
+import com.example.cars.repository.FuelHistoryPurger;
+import com.example.cars.repository.Page;
+import com.example.cars.stats.FuelStatsCache;
 import com.example.cars.util.ValidationUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,10 +16,12 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -28,15 +33,20 @@ class CarServiceTest {
     @Mock
     private CarRepository carRepository;
 
+    @Mock
+    private FuelHistoryPurger fuelHistoryPurger;
+
     private ValidationUtils validationUtils = new ValidationUtils();
 
+    private FuelStatsCache fuelStatsCache = new FuelStatsCache(100);
+
     @InjectMocks
     private CarService carService;
     
     @org.junit.jupiter.api.BeforeEach
     void setUpMocks() {
         // Inject the real ValidationUtils since we need it to actually call existsById
-        carService = new CarService(carRepository, validationUtils);
+        carService = new CarService(carRepository, fuelHistoryPurger, fuelStatsCache, validationUtils);
     }
 
     private Car testCar;
@@ -140,6 +150,10 @@ class CarServiceTest {
     void deleteCar_ValidId_DeletesCar() {
         // Given
         when(carRepository.existsById(1L)).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return null;
+        }).when(fuelHistoryPurger).deleteCar(eq(1L), any());
 
         // When
         carService.deleteCar(1L);
@@ -148,6 +162,20 @@ class CarServiceTest {
         // validateEntityExists calls existsById internally
         verify(carRepository).existsById(1L);
         verify(carRepository).delete(1L);
+        verify(fuelHistoryPurger).deleteCar(eq(1L), any());
+    }
+
+    @Test
+    void deleteCar_WithCachedStats_DropsThemFromCache() {
+        // Given
+        when(carRepository.existsById(1L)).thenReturn(true);
+        fuelStatsCache.get(1L, carId -> Map.of("totalLiters", 40.0));
+
+        // When
+        carService.deleteCar(1L);
+
+        // Then
+        assertEquals(0, fuelStatsCache.counters().size());
     }
 
     @Test
@@ -161,5 +189,29 @@ class CarServiceTest {
         verify(carRepository).existsById(999L);
         verify(carRepository, never()).delete(anyLong());
     }
-}
 
+    @Test
+    void getCarsPage_NoLimit_UsesDefaultPageSize() {
+        // Given
+        Page<Car> page = new Page<>(List.of(testCar), null);
+        when(carRepository.findPage(0L, Page.DEFAULT_LIMIT)).thenReturn(page);
+
+        // When
+        Page<Car> result = carService.getCarsPage(null, null);
+
+        // Then
+        assertSame(page, result);
+    }
+
+    @Test
+    void getCarsPage_LimitTooLarge_ThrowsBadRequest() {
+        // When & Then
+        ResponseStatusException exception = assertThrows(
+            ResponseStatusException.class,
+            () -> carService.getCarsPage(0L, Page.MAX_LIMIT + 1)
+        );
+
+        assertEquals(400, exception.getStatusCode().value());
+        verify(carRepository, never()).findPage(anyLong(), anyInt());
+    }
+}
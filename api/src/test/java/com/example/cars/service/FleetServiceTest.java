@@ -0,0 +1,76 @@
+package com.example.cars.service;
+
+import com.example.cars.repository.FuelEntryRepository;
+import com.example.cars.stats.FleetStatsCalculator;
+import com.example.cars.stats.LeaderboardEntry;
+import com.example.cars.stats.LeaderboardMetric;
+import com.example.cars.util.ValidationUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FleetServiceTest {
+
+    @Mock
+    private FuelEntryRepository fuelEntryRepository;
+
+    private FleetStatsCalculator fleetStatsCalculator;
+    private FleetService fleetService;
+
+    @BeforeEach
+    void setUp() {
+        fleetStatsCalculator = new FleetStatsCalculator(1);
+        fleetService = new FleetService(fuelEntryRepository, fleetStatsCalculator, new ValidationUtils());
+    }
+
+    @AfterEach
+    void tearDown() {
+        fleetStatsCalculator.close();
+    }
+
+    @Test
+    void getLeaderboard_MetricAnyCase_ReadsRepositoryLeaderboard() {
+        // Given
+        List<LeaderboardEntry> top = List.of(new LeaderboardEntry(1, 7L, 14.2));
+        when(fuelEntryRepository.getLeaderboard(LeaderboardMetric.AVG_PER_100KM, 5)).thenReturn(top);
+
+        // When
+        List<LeaderboardEntry> leaderboard = fleetService.getLeaderboard("AVGPER100KM", 5);
+
+        // Then
+        assertEquals(top, leaderboard);
+    }
+
+    @Test
+    void getLeaderboard_NoSize_ReturnsDefaultSize() {
+        // When
+        fleetService.getLeaderboard("monthTotalPrice", null);
+
+        // Then
+        verify(fuelEntryRepository).getLeaderboard(LeaderboardMetric.MONTH_TOTAL_PRICE, FleetService.DEFAULT_LEADERBOARD_SIZE);
+    }
+
+    @Test
+    void getLeaderboard_UnknownMetricOrSizeOutOfRange_ThrowsBadRequest() {
+        // When & Then
+        ResponseStatusException unknownMetric = assertThrows(ResponseStatusException.class,
+            () -> fleetService.getLeaderboard("mileage", 20));
+        ResponseStatusException tooMany = assertThrows(ResponseStatusException.class,
+            () -> fleetService.getLeaderboard("totalPrice", FleetService.MAX_LEADERBOARD_SIZE + 1));
+        assertEquals(400, unknownMetric.getStatusCode().value());
+        assertEquals(400, tooMany.getStatusCode().value());
+        verify(fuelEntryRepository, never()).getLeaderboard(any(), anyInt());
+    }
+}
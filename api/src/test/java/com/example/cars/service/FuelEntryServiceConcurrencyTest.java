@@ -0,0 +1,136 @@
+package com.example.cars.service;
+
+import com.example.cars.model.Car;
+import com.example.cars.model.FuelEntry;
+import com.example.cars.persistence.PersistenceManager;
+import com.example.cars.repository.CarRepository;
+import com.example.cars.repository.FuelAnomalyRepository;
+import com.example.cars.repository.FuelEntryRepository;
+import com.example.cars.repository.FuelHistoryPurger;
+import com.example.cars.repository.storage.HeapFuelEntryStore;
+import com.example.cars.util.ValidationUtils;
+import com.example.cars.stats.AnomalyDetector;
+import com.example.cars.stats.FleetStatsCalculator;
+import com.example.cars.stats.FuelStatsCache;
+import org.junit.jupiter.api.RepeatedTest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FuelEntryServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 500;
+
+    @RepeatedTest(3)
+    void createFuelEntry_ConcurrentFillUpsForSameCar_NeverDecreaseOdometer() throws Exception {
+        // Given
+        CarRepository carRepository = new CarRepository(PersistenceManager.disabled());
+        FuelEntryRepository fuelEntryRepository =
+            new FuelEntryRepository(new HeapFuelEntryStore(), PersistenceManager.disabled());
+        ValidationUtils validationUtils = new ValidationUtils();
+        FuelStatsCache fuelStatsCache = new FuelStatsCache(1_000);
+        AnomalyDetector anomalyDetector = new AnomalyDetector(true, 100.0, 3.0);
+        FuelAnomalyRepository fuelAnomalyRepository = new FuelAnomalyRepository(PersistenceManager.disabled());
+        FuelHistoryPurger fuelHistoryPurger =
+            new FuelHistoryPurger(fuelEntryRepository, fuelAnomalyRepository, anomalyDetector, false);
+        FuelEntryService fuelEntryService = new FuelEntryService(
+            fuelEntryRepository, new CarService(carRepository, fuelHistoryPurger, fuelStatsCache, validationUtils),
+            fuelStatsCache, validationUtils, anomalyDetector, fuelAnomalyRepository,
+            new FleetStatsCalculator(1));
+        Long carId = carRepository.save(new Car("Toyota", "Corolla", 2020)).getId();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+
+        // When - racing fill-ups with odometers close to each other; some must be rejected
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    int odometer = i * 10 + ThreadLocalRandom.current().nextInt(10);
+                    try {
+                        fuelEntryService.createFuelEntry(new FuelEntry(carId, 10.0, 1.5, odometer));
+                    } catch (IllegalArgumentException e) {
+                        // Lost the race against a higher reading
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then - ids are assigned inside the locked section, so id order is commit order
+        List<FuelEntry> entries = fuelEntryRepository.findByCarId(carId);
+        assertFalse(entries.isEmpty());
+        for (int i = 1; i < entries.size(); i++) {
+            assertTrue(entries.get(i).getOdometer() >= entries.get(i - 1).getOdometer(),
+                "Odometer decreased from " + entries.get(i - 1).getOdometer() + " to " + entries.get(i).getOdometer());
+        }
+        assertEquals(entries.get(entries.size() - 1).getOdometer(),
+            fuelEntryRepository.findMaxOdometerByCarId(carId).getAsInt());
+    }
+
+    @RepeatedTest(3)
+    void updateFuelEntry_RacingDelete_NeverRecreatesDeletedEntry() throws Exception {
+        // Given
+        CarRepository carRepository = new CarRepository(PersistenceManager.disabled());
+        FuelEntryRepository fuelEntryRepository =
+            new FuelEntryRepository(new HeapFuelEntryStore(), PersistenceManager.disabled());
+        ValidationUtils validationUtils = new ValidationUtils();
+        FuelStatsCache fuelStatsCache = new FuelStatsCache(1_000);
+        AnomalyDetector anomalyDetector = new AnomalyDetector(true, 100.0, 3.0);
+        FuelAnomalyRepository fuelAnomalyRepository = new FuelAnomalyRepository(PersistenceManager.disabled());
+        FuelHistoryPurger fuelHistoryPurger =
+            new FuelHistoryPurger(fuelEntryRepository, fuelAnomalyRepository, anomalyDetector, false);
+        FuelEntryService fuelEntryService = new FuelEntryService(
+            fuelEntryRepository, new CarService(carRepository, fuelHistoryPurger, fuelStatsCache, validationUtils),
+            fuelStatsCache, validationUtils, anomalyDetector, fuelAnomalyRepository,
+            new FleetStatsCalculator(1));
+        Long carId = carRepository.save(new Car("Toyota", "Corolla", 2020)).getId();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // When - each round one thread updates an entry while the other deletes it
+        for (int round = 0; round < ATTEMPTS_PER_THREAD; round++) {
+            int odometer = 1000 + round;
+            Long id = fuelEntryService.createFuelEntry(new FuelEntry(carId, 10.0, 1.5, odometer)).getId();
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> update = executor.submit(() -> {
+                start.await();
+                try {
+                    fuelEntryService.updateFuelEntry(id, new FuelEntry(carId, 20.0, 1.5, odometer));
+                } catch (ResponseStatusException | IllegalArgumentException e) {
+                    // The delete got there first
+                }
+                return null;
+            });
+            Future<?> delete = executor.submit(() -> {
+                start.await();
+                fuelEntryService.deleteFuelEntry(id);
+                return null;
+            });
+            start.countDown();
+            update.get(30, TimeUnit.SECONDS);
+            delete.get(30, TimeUnit.SECONDS);
+
+            // Then - the delete always wins in the end, in the store and in the car's history and stats
+            assertFalse(fuelEntryRepository.existsById(id), "Entry " + id + " was re-created");
+        }
+        executor.shutdown();
+        assertTrue(fuelEntryRepository.findByCarId(carId).isEmpty());
+        assertEquals(0.0, fuelEntryService.getFuelStats(carId).get("totalLiters"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.cars.service;
+
+import com.example.cars.model.Car;
+import com.example.cars.model.FuelEntry;
+import com.example.cars.persistence.PersistenceManager;
+import com.example.cars.repository.CarRepository;
+import com.example.cars.repository.FuelAnomalyRepository;
+import com.example.cars.repository.FuelEntryRepository;
+import com.example.cars.repository.FuelHistoryPurger;
+import com.example.cars.repository.storage.HeapFuelEntryStore;
+import com.example.cars.stats.AnomalyDetector;
+import com.example.cars.stats.FleetStatsCalculator;
+import com.example.cars.stats.FuelStatsCache;
+import com.example.cars.util.ValidationUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Ingest throughput through the service. Excluded from the default build; run with: mvn -B test -Pperf
+@Tag("perf")
+class FuelEntryServicePerfTest {
+
+    private static final int ROUNDS = 5;
+    private static final int CARS = 1_000;
+    private static final int FILL_UPS_PER_CAR = 100;
+
+    // createFuelEntry with anomaly detection on and off; one fill-up in 50 has an outlying price
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void createFuelEntry_WithAndWithoutDetection_ReportsThroughput(boolean detection) {
+        double best = 0;
+        long flagged = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            // Given
+            CarRepository carRepository = new CarRepository(PersistenceManager.disabled());
+            FuelEntryRepository fuelEntryRepository =
+                new FuelEntryRepository(new HeapFuelEntryStore(), PersistenceManager.disabled());
+            ValidationUtils validationUtils = new ValidationUtils();
+            FuelStatsCache fuelStatsCache = new FuelStatsCache(1_000);
+            AnomalyDetector anomalyDetector = new AnomalyDetector(detection, 100.0, 3.0);
+            FuelAnomalyRepository fuelAnomalyRepository = new FuelAnomalyRepository(PersistenceManager.disabled());
+            FuelHistoryPurger fuelHistoryPurger =
+                new FuelHistoryPurger(fuelEntryRepository, fuelAnomalyRepository, anomalyDetector, false);
+            FuelEntryService fuelEntryService = new FuelEntryService(
+                fuelEntryRepository, new CarService(carRepository, fuelHistoryPurger, fuelStatsCache, validationUtils),
+                fuelStatsCache, validationUtils, anomalyDetector, fuelAnomalyRepository,
+                new FleetStatsCalculator(1));
+            long[] carIds = new long[CARS];
+            for (int c = 0; c < CARS; c++) {
+                carIds[c] = carRepository.save(new Car("Toyota", "Corolla", 2020)).getId();
+            }
+            Random random = new Random(round);
+            LocalDateTime start = LocalDateTime.of(2024, 1, 1, 8, 0);
+
+            // When - fill-ups arrive car after car, as a fleet reports in
+            long t0 = System.nanoTime();
+            for (int i = 0; i < FILL_UPS_PER_CAR; i++) {
+                for (int c = 0; c < CARS; c++) {
+                    double price = random.nextInt(50) == 0 ? 4.5 : 1.5 + random.nextGaussian() * 0.03;
+                    fuelEntryService.createFuelEntry(new FuelEntry(null, carIds[c], 35.0 + random.nextInt(10), price,
+                        0.0, 500 * i + random.nextInt(50), start.plusDays(i)));
+                }
+            }
+            double entriesPerSecond = CARS * FILL_UPS_PER_CAR / ((System.nanoTime() - t0) / 1e9);
+            if (round > 0) {
+                best = Math.max(best, entriesPerSecond);
+            }
+
+            // Then
+            assertEquals(CARS * FILL_UPS_PER_CAR, fuelEntryRepository.findAll().size());
+            flagged = 0;
+            for (long carId : carIds) {
+                flagged += fuelAnomalyRepository.findByCarId(carId).size();
+            }
+            assertEquals(detection, flagged > 0);
+        }
+        System.out.printf("createFuelEntry, detection %s: %,.0f entries/s (best of %d), %d flagged%n",
+            detection ? "on" : "off", best, ROUNDS - 1, flagged);
+    }
+}
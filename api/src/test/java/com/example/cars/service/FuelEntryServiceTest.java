@@ -1,23 +1,47 @@
 package com.example.cars.service;
 
+import com.example.cars.dto.FuelStatsBatchItem;
+import com.example.cars.model.AnomalyFlag;
 import com.example.cars.model.Car;
+import com.example.cars.model.FuelAnomaly;
 import com.example.cars.model.FuelEntry;
+import com.example.cars.persistence.PersistenceManager;
+import com.example.cars.repository.FuelAnomalyRepository;
 import com.example.cars.repository.FuelEntryRepository;
+import com.example.cars.stats.AnomalyDetector;
+import com.example.cars.stats.ConsumptionPoint;
+import com.example.cars.stats.FleetStatsCalculator;
+import com.example.cars.stats.FuelAggregate;
+import com.example.cars.stats.FuelBucket;
+import com.example.cars.stats.FuelDistribution;
+import com.example.cars.stats.FuelStatsCache;
+import com.example.cars.stats.Granularity;
+import com.example.cars.stats.QuantileSketch;
 import com.example.cars.util.ValidationUtils;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -34,13 +58,27 @@ class FuelEntryServiceTest {
 
     private ValidationUtils validationUtils = new ValidationUtils();
 
+    private FuelAnomalyRepository fuelAnomalyRepository;
+    private FleetStatsCalculator fleetStatsCalculator;
+
     @InjectMocks
     private FuelEntryService fuelEntryService;
     
     @org.junit.jupiter.api.BeforeEach
     void setUpMocks() {
         // Inject the real ValidationUtils since we need it to actually call existsById
-        fuelEntryService = new FuelEntryService(fuelEntryRepository, carService, validationUtils);
+        fuelAnomalyRepository = new FuelAnomalyRepository(PersistenceManager.disabled());
+        fleetStatsCalculator = new FleetStatsCalculator(2);
+        fuelEntryService = new FuelEntryService(fuelEntryRepository, carService, new FuelStatsCache(100), validationUtils,
+            new AnomalyDetector(true, 60.0, 3.0), fuelAnomalyRepository, fleetStatsCalculator);
+        // Run the guarded action directly, as the real per-car lock would
+        lenient().when(fuelEntryRepository.withCarLock(anyLong(), any()))
+            .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+    }
+
+    @AfterEach
+    void tearDown() {
+        fleetStatsCalculator.close();
     }
 
     private FuelEntry testFuelEntry;
@@ -57,7 +95,7 @@ class FuelEntryServiceTest {
         // Given
         FuelEntry newEntry = new FuelEntry(1L, 40.0, 1.30, 10000);
         when(carService.getCarById(1L)).thenReturn(testCar);
-        when(fuelEntryRepository.findByCarId(1L)).thenReturn(List.of());
+        when(fuelEntryRepository.findMaxOdometerByCarId(1L)).thenReturn(OptionalInt.empty());
         when(fuelEntryRepository.save(any(FuelEntry.class))).thenReturn(testFuelEntry);
 
         // When
@@ -66,8 +104,9 @@ class FuelEntryServiceTest {
         // Then
         assertNotNull(result);
         assertNotNull(result.getTimestamp());
-        // getCarById is called twice: once in validateCarIdExists, once in getAllFuelEntriesByCarId
-        verify(carService, times(2)).getCarById(1L);
+        verify(carService).getCarById(1L);
+        verify(fuelEntryRepository).withCarLock(eq(1L), any());
+        verify(fuelEntryRepository, never()).findByCarId(anyLong());
         verify(fuelEntryRepository).save(any(FuelEntry.class));
     }
 
@@ -76,9 +115,7 @@ class FuelEntryServiceTest {
         // Given
         FuelEntry newEntry = new FuelEntry(1L, 40.0, 1.30, 5000);
         when(carService.getCarById(1L)).thenReturn(testCar);
-        when(fuelEntryRepository.findByCarId(1L)).thenReturn(
-            Arrays.asList(new FuelEntry(1L, 1L, 30.0, 1.25, 37.5, 10000, LocalDateTime.now()))
-        );
+        when(fuelEntryRepository.findMaxOdometerByCarId(1L)).thenReturn(OptionalInt.of(10000));
 
         // When & Then
         assertThrows(IllegalArgumentException.class, () -> fuelEntryService.createFuelEntry(newEntry));
@@ -86,15 +123,82 @@ class FuelEntryServiceTest {
     }
 
     @Test
-    void getFuelStats_ValidCarId_ReturnsStats() {
+    void createFuelEntry_SameOdometerAsMax_ReturnsCreatedEntry() {
+        // Given
+        FuelEntry newEntry = new FuelEntry(1L, 40.0, 1.30, 10000);
+        when(carService.getCarById(1L)).thenReturn(testCar);
+        when(fuelEntryRepository.findMaxOdometerByCarId(1L)).thenReturn(OptionalInt.of(10000));
+        when(fuelEntryRepository.save(any(FuelEntry.class))).thenReturn(testFuelEntry);
+
+        // When & Then
+        assertNotNull(fuelEntryService.createFuelEntry(newEntry));
+        verify(fuelEntryRepository).save(newEntry);
+    }
+
+    @Test
+    void createFuelEntry_LitersAboveTankCapacity_StoresAnomaly() {
+        // Given
+        FuelEntry newEntry = new FuelEntry(1L, 75.0, 1.30, 10000);
+        FuelEntry saved = new FuelEntry(7L, 1L, 75.0, 1.30, 97.5, 10000, LocalDateTime.of(2024, 3, 1, 8, 0));
+        when(carService.getCarById(1L)).thenReturn(testCar);
+        when(fuelEntryRepository.findMaxOdometerByCarId(1L)).thenReturn(OptionalInt.empty());
+        when(fuelEntryRepository.save(any(FuelEntry.class))).thenReturn(saved);
+
+        // When
+        fuelEntryService.createFuelEntry(newEntry);
+        List<FuelAnomaly> anomalies = fuelEntryService.getFuelAnomalies(1L);
+
+        // Then
+        assertEquals(1, anomalies.size());
+        assertEquals(7L, anomalies.get(0).entryId());
+        assertEquals(Set.of(AnomalyFlag.LITERS_ABOVE_TANK_CAPACITY), anomalies.get(0).flags());
+    }
+
+    @Test
+    void getFuelStatsBatch_UnknownAndNullIds_ReturnsErrorsInPlace() {
         // Given
         when(carService.getCarById(1L)).thenReturn(testCar);
-        List<FuelEntry> entries = Arrays.asList(
-            new FuelEntry(1L, 1L, 40.0, 1.30, 52.0, 10000, LocalDateTime.now().minusDays(2)),
-            new FuelEntry(2L, 1L, 35.0, 1.35, 47.25, 15000, LocalDateTime.now().minusDays(1)),
-            new FuelEntry(3L, 1L, 30.0, 1.40, 42.0, 20000, LocalDateTime.now())
+        when(carService.getCarById(99L)).thenThrow(
+            new ResponseStatusException(HttpStatus.NOT_FOUND, "Car with ID 99 not found"));
+        when(fuelEntryRepository.getAggregateByCarId(1L)).thenReturn(
+            new FuelAggregate(3, 105.0, 141.25, 10000, 20000, 30.0));
+
+        // When
+        List<FuelStatsBatchItem> results = fuelEntryService.getFuelStatsBatch(Arrays.asList(99L, 1L, null));
+
+        // Then
+        assertEquals(3, results.size());
+        assertEquals(99L, results.get(0).carId());
+        assertEquals(404, results.get(0).status());
+        assertEquals("Car with ID 99 not found", results.get(0).error());
+        assertNull(results.get(0).stats());
+        assertEquals(1L, results.get(1).carId());
+        assertEquals(105.0, results.get(1).stats().totalLiters);
+        assertEquals(0.75, results.get(1).stats().avgPer100km);
+        assertNull(results.get(1).error());
+        assertEquals(400, results.get(2).status());
+    }
+
+    @Test
+    void getFuelStatsBatch_EmptyOrTooManyIds_ThrowsBadRequest() {
+        // When & Then
+        ResponseStatusException empty = assertThrows(ResponseStatusException.class,
+            () -> fuelEntryService.getFuelStatsBatch(List.of()));
+        ResponseStatusException tooMany = assertThrows(ResponseStatusException.class,
+            () -> fuelEntryService.getFuelStatsBatch(Collections.nCopies(
+                FuelEntryService.MAX_STATS_BATCH_SIZE + 1, 1L)));
+        assertEquals(400, empty.getStatusCode().value());
+        assertEquals(400, tooMany.getStatusCode().value());
+        verify(carService, never()).getCarById(anyLong());
+    }
+
+    @Test
+    void getFuelStats_ValidCarId_ReturnsStats() {
+        // Given - aggregate of entries (40L @ 10000km, 35L @ 15000km, 30L @ 20000km, most recent)
+        when(carService.getCarById(1L)).thenReturn(testCar);
+        when(fuelEntryRepository.getAggregateByCarId(1L)).thenReturn(
+            new FuelAggregate(3, 105.0, 141.25, 10000, 20000, 30.0)
         );
-        when(fuelEntryRepository.findByCarId(1L)).thenReturn(entries);
 
         // When
         Map<String, Double> stats = fuelEntryService.getFuelStats(1L);
@@ -103,17 +207,17 @@ class FuelEntryServiceTest {
         assertNotNull(stats);
         assertEquals(105.0, stats.get("totalLiters")); // 40 + 35 + 30
         assertEquals(141.25, stats.get("totalPrice")); // 52 + 47.25 + 42
-        assertTrue(stats.get("avgPer100km") > 0);
-        // getCarById is called twice: once in validateCarIdExists, once in getAllFuelEntriesByCarId
-        verify(carService, times(2)).getCarById(1L);
-        verify(fuelEntryRepository).findByCarId(1L);
+        assertEquals(0.75, stats.get("avgPer100km")); // (105 - 30) / 10000 * 100
+        verify(carService).getCarById(1L);
+        verify(fuelEntryRepository).getAggregateByCarId(1L);
+        verify(fuelEntryRepository, never()).findByCarId(anyLong());
     }
 
     @Test
     void getFuelStats_NoEntries_ReturnsZeroStats() {
         // Given
         when(carService.getCarById(1L)).thenReturn(testCar);
-        when(fuelEntryRepository.findByCarId(1L)).thenReturn(List.of());
+        when(fuelEntryRepository.getAggregateByCarId(1L)).thenReturn(FuelAggregate.EMPTY);
 
         // When
         Map<String, Double> stats = fuelEntryService.getFuelStats(1L);
@@ -129,10 +233,9 @@ class FuelEntryServiceTest {
     void getFuelStats_SingleEntry_ReturnsZeroAvgConsumption() {
         // Given
         when(carService.getCarById(1L)).thenReturn(testCar);
-        List<FuelEntry> singleEntry = Arrays.asList(
-            new FuelEntry(1L, 1L, 40.0, 1.30, 52.0, 10000, LocalDateTime.now())
+        when(fuelEntryRepository.getAggregateByCarId(1L)).thenReturn(
+            new FuelAggregate(1, 40.0, 52.0, 10000, 10000, 40.0)
         );
-        when(fuelEntryRepository.findByCarId(1L)).thenReturn(singleEntry);
 
         // When
         Map<String, Double> stats = fuelEntryService.getFuelStats(1L);
@@ -142,9 +245,45 @@ class FuelEntryServiceTest {
         assertEquals(40.0, stats.get("totalLiters"));
         assertEquals(52.0, stats.get("totalPrice"));
         assertEquals(0.0, stats.get("avgPer100km")); // No distance traveled with single entry
-        // getCarById is called twice: once in validateCarIdExists, once in getAllFuelEntriesByCarId
+        verify(carService).getCarById(1L);
+        verify(fuelEntryRepository).getAggregateByCarId(1L);
+    }
+
+    @Test
+    void getFuelStats_CalledTwice_ReadsAggregateOnce() {
+        // Given
+        when(carService.getCarById(1L)).thenReturn(testCar);
+        when(fuelEntryRepository.getAggregateByCarId(1L)).thenReturn(new FuelAggregate(1, 40.0, 52.0, 10000, 10000, 40.0));
+
+        // When
+        Map<String, Double> first = fuelEntryService.getFuelStats(1L);
+        Map<String, Double> second = fuelEntryService.getFuelStats(1L);
+
+        // Then
+        assertEquals(first, second);
         verify(carService, times(2)).getCarById(1L);
-        verify(fuelEntryRepository).findByCarId(1L);
+        verify(fuelEntryRepository, times(1)).getAggregateByCarId(1L);
+        assertEquals(1, fuelEntryService.getFuelStatsCacheCounters().hits());
+    }
+
+    @Test
+    void createFuelEntry_AfterStatsCached_InvalidatesCarStats() {
+        // Given
+        when(carService.getCarById(1L)).thenReturn(testCar);
+        when(fuelEntryRepository.getAggregateByCarId(1L))
+            .thenReturn(new FuelAggregate(1, 40.0, 52.0, 10000, 10000, 40.0))
+            .thenReturn(new FuelAggregate(2, 70.0, 91.0, 10000, 10500, 30.0));
+        when(fuelEntryRepository.findMaxOdometerByCarId(1L)).thenReturn(OptionalInt.of(10000));
+        when(fuelEntryRepository.save(any(FuelEntry.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        fuelEntryService.getFuelStats(1L);
+
+        // When
+        fuelEntryService.createFuelEntry(new FuelEntry(1L, 30.0, 1.30, 10500));
+        Map<String, Double> stats = fuelEntryService.getFuelStats(1L);
+
+        // Then
+        assertEquals(70.0, stats.get("totalLiters"));
+        verify(fuelEntryRepository, times(2)).getAggregateByCarId(1L);
     }
 
     @Test
@@ -154,14 +293,107 @@ class FuelEntryServiceTest {
 
         // When & Then
         assertThrows(IllegalArgumentException.class, () -> fuelEntryService.getFuelStats(999L));
-        verify(fuelEntryRepository, never()).findByCarId(anyLong());
+        verify(fuelEntryRepository, never()).getAggregateByCarId(anyLong());
+    }
+
+    @Test
+    void getFuelStatsBuckets_ValidGranularity_ReadsRepositoryBuckets() {
+        // Given
+        FuelBucket january = new FuelBucket(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 1), 2, 70.0, 105.0, 8.0);
+        when(carService.getCarById(1L)).thenReturn(testCar);
+        when(fuelEntryRepository.getBucketsByCarId(1L, Granularity.MONTH, LocalDate.of(2024, 1, 1), null))
+            .thenReturn(List.of(january));
+
+        // When
+        List<FuelBucket> buckets = fuelEntryService.getFuelStatsBuckets(1L, "month", LocalDate.of(2024, 1, 1), null);
+
+        // Then
+        assertEquals(List.of(january), buckets);
+    }
+
+    @Test
+    void getFuelStatsBuckets_UnknownGranularity_ThrowsBadRequest() {
+        // Given
+        when(carService.getCarById(1L)).thenReturn(testCar);
+
+        // When & Then
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+            () -> fuelEntryService.getFuelStatsBuckets(1L, "year", null, null));
+        assertEquals(400, exception.getStatusCode().value());
+        verify(fuelEntryRepository, never()).getBucketsByCarId(anyLong(), any(), any(), any());
+    }
+
+    @Test
+    void getFuelConsumption_NoLimit_ReadsDefaultPageSinceGivenTime() {
+        // Given
+        LocalDateTime since = LocalDateTime.of(2024, 1, 1, 0, 0);
+        ConsumptionPoint point = new ConsumptionPoint(1L, 2L, since.plusDays(1), since.plusDays(8), 40.0, 500, 8.0);
+        when(carService.getCarById(1L)).thenReturn(testCar);
+        when(fuelEntryRepository.findConsumptionByCarId(1L, since, 100)).thenReturn(List.of(point));
+
+        // When
+        List<ConsumptionPoint> points = fuelEntryService.getFuelConsumption(1L, since, null);
+
+        // Then
+        assertEquals(List.of(point), points);
+    }
+
+    @Test
+    void getFuelConsumption_LimitOutOfRange_ThrowsBadRequest() {
+        // Given
+        when(carService.getCarById(1L)).thenReturn(testCar);
+
+        // When & Then
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+            () -> fuelEntryService.getFuelConsumption(1L, null, 0));
+        assertEquals(400, exception.getStatusCode().value());
+        verify(fuelEntryRepository, never()).findConsumptionByCarId(anyLong(), any(), anyInt());
+    }
+
+    @Test
+    void getFuelDistribution_ValidCarId_ReportsPercentilesOfRepositorySketches() {
+        // Given - intervals of 5..14 L/100km and one price per liter
+        when(carService.getCarById(1L)).thenReturn(testCar);
+        doAnswer(invocation -> {
+            QuantileSketch per100km = invocation.getArgument(1);
+            QuantileSketch pricePerLiter = invocation.getArgument(2);
+            for (int value = 5; value <= 14; value++) {
+                per100km.add(value);
+            }
+            pricePerLiter.add(1.5);
+            return null;
+        }).when(fuelEntryRepository).mergeDistributionsByCarId(eq(1L), any(), any());
+
+        // When
+        FuelDistribution distribution = fuelEntryService.getFuelDistribution(1L);
+
+        // Then - within 1% of the exact values
+        assertEquals(10, distribution.per100km().count());
+        assertEquals(9.0, distribution.per100km().p50(), 0.09);
+        assertEquals(13.0, distribution.per100km().p90(), 0.13);
+        assertEquals(1, distribution.pricePerLiter().count());
+        assertEquals(1.5, distribution.pricePerLiter().p99(), 0.015);
+    }
+
+    @Test
+    void getFuelDistribution_NoEntries_ReportsNoPercentiles() {
+        // Given
+        when(carService.getCarById(1L)).thenReturn(testCar);
+
+        // When
+        FuelDistribution distribution = fuelEntryService.getFuelDistribution(1L);
+
+        // Then
+        assertEquals(0, distribution.per100km().count());
+        assertNull(distribution.per100km().p50());
+        assertNull(distribution.pricePerLiter().p99());
     }
 
     @Test
     void getAllFuelEntriesByCarId_ValidCarId_ReturnsEntries() {
         // Given
         when(carService.getCarById(1L)).thenReturn(testCar);
-        List<FuelEntry> entries = Arrays.asList(testFuelEntry);
+        List<FuelEntry> entries = List.of(testFuelEntry);
         when(fuelEntryRepository.findByCarId(1L)).thenReturn(entries);
 
         // When
@@ -174,10 +406,64 @@ class FuelEntryServiceTest {
         verify(fuelEntryRepository).findByCarId(1L);
     }
 
+    @Test
+    void updateFuelEntry_OdometerBetweenNeighbors_ReturnsUpdatedEntry() {
+        // Given
+        FuelEntry update = new FuelEntry(1L, 45.0, 1.30, 12000);
+        when(fuelEntryRepository.existsById(1L)).thenReturn(true);
+        when(fuelEntryRepository.findById(1L)).thenReturn(Optional.of(testFuelEntry));
+        when(fuelEntryRepository.findPreviousByTimestamp(1L, 1L)).thenReturn(
+            Optional.of(new FuelEntry(2L, 1L, 30.0, 1.25, 37.5, 9000, LocalDateTime.now().minusDays(1)))
+        );
+        when(fuelEntryRepository.findNextByTimestamp(1L, 1L)).thenReturn(
+            Optional.of(new FuelEntry(3L, 1L, 30.0, 1.25, 37.5, 15000, LocalDateTime.now().plusDays(1)))
+        );
+        when(fuelEntryRepository.save(any(FuelEntry.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        FuelEntry result = fuelEntryService.updateFuelEntry(1L, update);
+
+        // Then
+        assertEquals(12000, result.getOdometer());
+        assertEquals(45.0, result.getLiters());
+        verify(fuelEntryRepository, never()).findByCarId(anyLong());
+    }
+
+    @Test
+    void updateFuelEntry_OdometerAboveNextEntry_ThrowsException() {
+        // Given
+        FuelEntry update = new FuelEntry(1L, 45.0, 1.30, 16000);
+        when(fuelEntryRepository.existsById(1L)).thenReturn(true);
+        when(fuelEntryRepository.findById(1L)).thenReturn(Optional.of(testFuelEntry));
+        when(fuelEntryRepository.findPreviousByTimestamp(1L, 1L)).thenReturn(Optional.empty());
+        when(fuelEntryRepository.findNextByTimestamp(1L, 1L)).thenReturn(
+            Optional.of(new FuelEntry(3L, 1L, 30.0, 1.25, 37.5, 15000, LocalDateTime.now().plusDays(1)))
+        );
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> fuelEntryService.updateFuelEntry(1L, update));
+        verify(fuelEntryRepository, never()).save(any(FuelEntry.class));
+    }
+
+    @Test
+    void updateFuelEntry_DeletedBeforeCarLockTaken_ThrowsNotFound() {
+        // Given - the entry is still there when first read, and gone once the car's lock is held
+        FuelEntry update = new FuelEntry(1L, 45.0, 1.30, 12000);
+        when(fuelEntryRepository.existsById(1L)).thenReturn(true);
+        when(fuelEntryRepository.findById(1L)).thenReturn(Optional.of(testFuelEntry)).thenReturn(Optional.empty());
+
+        // When & Then
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+            () -> fuelEntryService.updateFuelEntry(1L, update));
+        assertEquals(404, exception.getStatusCode().value());
+        verify(fuelEntryRepository, never()).save(any(FuelEntry.class));
+    }
+
     @Test
     void deleteFuelEntry_ValidId_DeletesEntry() {
         // Given
         when(fuelEntryRepository.existsById(1L)).thenReturn(true);
+        when(fuelEntryRepository.findById(1L)).thenReturn(Optional.of(testFuelEntry));
 
         // When
         fuelEntryService.deleteFuelEntry(1L);
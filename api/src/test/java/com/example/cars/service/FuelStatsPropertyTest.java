@@ -0,0 +1,159 @@
+package com.example.cars.service;
+
+import com.example.cars.model.Car;
+import com.example.cars.model.FuelEntry;
+import com.example.cars.persistence.PersistenceManager;
+import com.example.cars.repository.CarRepository;
+import com.example.cars.repository.FuelAnomalyRepository;
+import com.example.cars.repository.FuelEntryRepository;
+import com.example.cars.repository.FuelHistoryPurger;
+import com.example.cars.repository.storage.HeapFuelEntryStore;
+import com.example.cars.util.ValidationUtils;
+import com.example.cars.stats.AnomalyDetector;
+import com.example.cars.stats.FleetStatsCalculator;
+import com.example.cars.stats.FuelStatsCache;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Random create/update/move/delete sequences: the incrementally maintained stats must always
+// match a from-scratch computation over the car's entries
+class FuelStatsPropertyTest {
+
+    private static final int OPERATIONS = 3_000;
+    private static final int CARS = 5;
+
+    @ParameterizedTest
+    @ValueSource(longs = {1L, 7L, 42L, 1234L, 98765L})
+    void getFuelStats_RandomOperations_MatchesFullRecomputation(long seed) {
+        // Given
+        Random random = new Random(seed);
+        CarRepository carRepository = new CarRepository(PersistenceManager.disabled());
+        FuelEntryRepository fuelEntryRepository =
+            new FuelEntryRepository(new HeapFuelEntryStore(), PersistenceManager.disabled());
+        ValidationUtils validationUtils = new ValidationUtils();
+        // Uncached: saves below bypass the service, so nothing would invalidate the cache
+        FuelStatsCache fuelStatsCache = new FuelStatsCache(0);
+        AnomalyDetector anomalyDetector = new AnomalyDetector(true, 100.0, 3.0);
+        FuelAnomalyRepository fuelAnomalyRepository = new FuelAnomalyRepository(PersistenceManager.disabled());
+        FuelHistoryPurger fuelHistoryPurger =
+            new FuelHistoryPurger(fuelEntryRepository, fuelAnomalyRepository, anomalyDetector, false);
+        FuelEntryService fuelEntryService = new FuelEntryService(
+            fuelEntryRepository, new CarService(carRepository, fuelHistoryPurger, fuelStatsCache, validationUtils),
+            fuelStatsCache, validationUtils, anomalyDetector, fuelAnomalyRepository,
+            new FleetStatsCalculator(1));
+        List<Long> carIds = new ArrayList<>();
+        for (int i = 0; i < CARS; i++) {
+            carIds.add(carRepository.save(new Car("Toyota", "Corolla", 2020)).getId());
+        }
+        List<Long> entryIds = new ArrayList<>();
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        for (int op = 0; op < OPERATIONS; op++) {
+            // When - saves go straight to the repository so out-of-order data is covered too
+            int action = random.nextInt(10);
+            if (action < 5 || entryIds.isEmpty()) {
+                FuelEntry entry = new FuelEntry(null, randomCar(random, carIds), randomLiters(random), 0.0, 0.0,
+                    random.nextInt(200_000), base.plusMinutes(op));
+                entry.setPrice(randomPrice(random));
+                entryIds.add(fuelEntryRepository.save(entry).getId());
+            } else if (action < 8) {
+                FuelEntry entry = fuelEntryRepository.findById(randomEntry(random, entryIds)).orElseThrow();
+                entry.setLiters(randomLiters(random));
+                entry.setPrice(randomPrice(random));
+                entry.setOdometer(random.nextInt(200_000));
+                if (random.nextBoolean()) {
+                    entry.setCarId(randomCar(random, carIds));
+                }
+                if (random.nextBoolean()) {
+                    entry.setTimestamp(base.plusMinutes(OPERATIONS + op));
+                }
+                fuelEntryRepository.save(entry);
+            } else {
+                Long id = entryIds.remove(random.nextInt(entryIds.size()));
+                fuelEntryRepository.delete(id);
+            }
+
+            // Then
+            Long carId = randomCar(random, carIds);
+            Map<String, Double> expected = calculateFuelStats(fuelEntryRepository.findByCarId(carId));
+            Map<String, Double> actual = fuelEntryService.getFuelStats(carId);
+            assertEquals(expected.get("totalLiters"), actual.get("totalLiters"), 1e-6);
+            assertEquals(expected.get("totalPrice"), actual.get("totalPrice"), 1e-6);
+            // Summation order differs, so allow one step of the 2-decimal rounding
+            assertEquals(expected.get("avgPer100km"), actual.get("avgPer100km"), 0.01 + 1e-9);
+
+            // Then - the same over a random [from, to) stretch of the timeline
+            LocalDateTime from = base.plusMinutes(random.nextInt(2 * OPERATIONS));
+            LocalDateTime to = from.plusMinutes(1 + random.nextInt(2 * OPERATIONS));
+            Map<String, Double> expectedInRange = calculateFuelStats(fuelEntryRepository.findByCarId(carId).stream()
+                .filter(entry -> !entry.getTimestamp().isBefore(from) && entry.getTimestamp().isBefore(to))
+                .toList());
+            Map<String, Double> actualInRange = fuelEntryService.getFuelStats(carId, from, to);
+            assertEquals(expectedInRange.get("totalLiters"), actualInRange.get("totalLiters"), 1e-6);
+            assertEquals(expectedInRange.get("totalPrice"), actualInRange.get("totalPrice"), 1e-6);
+            assertEquals(expectedInRange.get("avgPer100km"), actualInRange.get("avgPer100km"), 0.01 + 1e-9);
+        }
+    }
+
+    private static Long randomCar(Random random, List<Long> carIds) {
+        return carIds.get(random.nextInt(carIds.size()));
+    }
+
+    private static Long randomEntry(Random random, List<Long> entryIds) {
+        return entryIds.get(random.nextInt(entryIds.size()));
+    }
+
+    private static double randomLiters(Random random) {
+        return 5 + random.nextInt(7500) / 100.0;
+    }
+
+    private static double randomPrice(Random random) {
+        return 1 + random.nextInt(150) / 100.0;
+    }
+
+    // Reference: the full-scan computation FuelEntryService used before stats were incremental
+    private static Map<String, Double> calculateFuelStats(List<FuelEntry> fuelEntries) {
+        Map<String, Double> stats = new HashMap<>();
+        stats.put("totalLiters", fuelEntries.stream().mapToDouble(FuelEntry::getLiters).sum());
+        stats.put("totalPrice", fuelEntries.stream().mapToDouble(FuelEntry::getTotalPrice).sum());
+        stats.put("avgPer100km", calculateAverageConsumption(fuelEntries));
+        return stats;
+    }
+
+    private static double calculateAverageConsumption(List<FuelEntry> fuelEntries) {
+        if (fuelEntries.size() < 2) {
+            return 0.0;
+        }
+        int minOdometer = Integer.MAX_VALUE;
+        int maxOdometer = Integer.MIN_VALUE;
+        FuelEntry mostRecentEntry = null;
+        LocalDateTime mostRecentTimestamp = null;
+        double totalFuel = 0.0;
+        for (FuelEntry entry : fuelEntries) {
+            minOdometer = Math.min(minOdometer, entry.getOdometer());
+            maxOdometer = Math.max(maxOdometer, entry.getOdometer());
+            LocalDateTime timestamp = entry.getTimestamp();
+            if (mostRecentTimestamp == null || (timestamp != null && timestamp.isAfter(mostRecentTimestamp))) {
+                mostRecentTimestamp = timestamp;
+                mostRecentEntry = entry;
+            }
+            totalFuel += entry.getLiters();
+        }
+        int totalDistance = maxOdometer - minOdometer;
+        if (totalDistance <= 0) {
+            return 0.0;
+        }
+        double fuelConsumed = totalFuel - mostRecentEntry.getLiters();
+        double avgPer100km = (fuelConsumed / totalDistance) * 100.0;
+        return Math.round(avgPer100km * 100.0) / 100.0;
+    }
+}
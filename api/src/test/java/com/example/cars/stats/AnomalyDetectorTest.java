@@ -0,0 +1,93 @@
+package com.example.cars.stats;
+
+import com.example.cars.model.AnomalyFlag;
+import com.example.cars.model.FuelAnomaly;
+import com.example.cars.model.FuelEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnomalyDetectorTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 8, 0);
+
+    @Test
+    void inspect_RegularFillUps_FlagsNothing() {
+        // Given
+        AnomalyDetector detector = new AnomalyDetector(true, 60.0, 3.0);
+
+        // When & Then - 40 L every 500 km, prices drifting by a few cents
+        for (int i = 0; i < 50; i++) {
+            assertNull(detector.inspect(entry(i, 1L, 40.0, 1.50 + 0.02 * (i % 3), 10_000 + 500 * i)));
+        }
+    }
+
+    @Test
+    void inspect_LitersAboveTankCapacity_FlagsFirstFillUpToo() {
+        // Given
+        AnomalyDetector detector = new AnomalyDetector(true, 60.0, 3.0);
+
+        // When
+        FuelAnomaly anomaly = detector.inspect(entry(0, 1L, 75.0, 1.5, 10_000));
+
+        // Then
+        assertEquals(Set.of(AnomalyFlag.LITERS_ABOVE_TANK_CAPACITY), anomaly.flags());
+        assertEquals(0L, anomaly.entryId());
+        assertNull(anomaly.per100km());
+    }
+
+    @Test
+    void inspect_PriceFarFromRollingMean_FlagsPriceOnlyAfterTraining() {
+        // Given - a typo'd price on a car still training, and one on a trained car
+        AnomalyDetector detector = new AnomalyDetector(true, 60.0, 3.0);
+        for (int i = 0; i < 20; i++) {
+            detector.inspect(entry(i, 1L, 40.0, 1.50 + 0.02 * (i % 3), 10_000 + 500 * i));
+        }
+        detector.inspect(entry(100, 2L, 40.0, 1.5, 10_000));
+
+        // When - twice in a row on the trained car
+        FuelAnomaly whileTraining = detector.inspect(entry(101, 2L, 40.0, 15.0, 10_500));
+        FuelAnomaly anomaly = detector.inspect(entry(20, 1L, 40.0, 15.0, 20_000));
+        FuelAnomaly repeated = detector.inspect(entry(21, 1L, 40.0, 15.0, 20_500));
+
+        // Then
+        assertNull(whileTraining);
+        assertEquals(Set.of(AnomalyFlag.PRICE_OUTLIER), anomaly.flags());
+        assertEquals(8.0, anomaly.per100km(), 1e-9);
+        assertEquals(Set.of(AnomalyFlag.PRICE_OUTLIER), repeated.flags());
+    }
+
+    @Test
+    void inspect_ShortDistanceSincePreviousFillUp_FlagsConsumptionSpike() {
+        // Given - 40 L every 500 km (8 L/100km) on one car, a second car untouched
+        AnomalyDetector detector = new AnomalyDetector(true, 60.0, 3.0);
+        for (int i = 0; i < 20; i++) {
+            detector.inspect(entry(i, 1L, 40.0, 1.5, 10_000 + 500 * i));
+        }
+
+        // When - the previous 40 L lasted only 200 km (20 L/100km)
+        FuelAnomaly anomaly = detector.inspect(entry(20, 1L, 40.0, 1.5, 19_700));
+        FuelAnomaly otherCar = detector.inspect(entry(21, 2L, 40.0, 1.5, 19_700));
+
+        // Then
+        assertEquals(Set.of(AnomalyFlag.CONSUMPTION_SPIKE), anomaly.flags());
+        assertEquals(20.0, anomaly.per100km(), 1e-9);
+        assertNull(otherCar);
+    }
+
+    @Test
+    void inspect_Disabled_ReturnsNull() {
+        // Given
+        AnomalyDetector detector = new AnomalyDetector(false, 60.0, 3.0);
+
+        // When & Then
+        assertNull(detector.inspect(entry(0, 1L, 500.0, 99.0, 10_000)));
+    }
+
+    private static FuelEntry entry(long id, long carId, double liters, double price, int odometer) {
+        return new FuelEntry(id, carId, liters, price, liters * price, odometer, START.plusDays(id));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.cars.stats;
+
+import com.example.cars.model.FuelEntry;
+import com.example.cars.persistence.PersistenceManager;
+import com.example.cars.repository.FuelEntryRepository;
+import com.example.cars.repository.storage.HeapFuelEntryStore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Fleet stats speedup over pool parallelism. Excluded from the default build; run with: mvn -B test -Pperf
+@Tag("perf")
+class FleetStatsCalculatorPerfTest {
+
+    private static final int CARS = 100_000;
+    private static final int FILL_UPS_PER_CAR = 5;
+    private static final int WARM_UP_RUNS = 100;
+    private static final int RUNS = 20;
+
+    @Test
+    void compute_HundredThousandCars_ReportsSpeedupOverParallelism() {
+        // Given
+        FuelEntryRepository fuelEntryRepository =
+            new FuelEntryRepository(new HeapFuelEntryStore(), PersistenceManager.disabled());
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 8, 0);
+        for (long carId = 1; carId <= CARS; carId++) {
+            for (int i = 0; i < FILL_UPS_PER_CAR; i++) {
+                fuelEntryRepository.save(new FuelEntry(null, carId, 30.0 + i, 1.5, 45.0, 1000 * i, start.plusDays(i)));
+            }
+        }
+        long[] carIds = fuelEntryRepository.findCarIds();
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        // When & Then - best of RUNS after warm-up, for 1, 2, 4 and every available processor
+        FleetFuelStats expected = null;
+        double sequentialMillis = 0;
+        for (int parallelism : IntStream.of(1, 2, 4, processors).distinct().toArray()) {
+            try (FleetStatsCalculator calculator = new FleetStatsCalculator(parallelism)) {
+                for (int i = 0; i < WARM_UP_RUNS; i++) {
+                    calculator.compute(carIds, fuelEntryRepository::getAggregateByCarId);
+                }
+                long best = Long.MAX_VALUE;
+                FleetFuelStats stats = null;
+                for (int i = 0; i < RUNS; i++) {
+                    long t0 = System.nanoTime();
+                    stats = calculator.compute(carIds, fuelEntryRepository::getAggregateByCarId);
+                    best = Math.min(best, System.nanoTime() - t0);
+                }
+                double millis = best / 1e6;
+                if (expected == null) {
+                    expected = stats;
+                    sequentialMillis = millis;
+                }
+                assertEquals(expected, stats);
+                System.out.printf("fleet stats, %,d cars, parallelism %d (%d processors): %.2f ms, speedup %.2fx%n",
+                    CARS, parallelism, processors, millis, sequentialMillis / millis);
+            }
+        }
+    }
+}
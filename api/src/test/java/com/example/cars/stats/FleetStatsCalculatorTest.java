@@ -0,0 +1,133 @@
+package com.example.cars.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FleetStatsCalculatorTest {
+
+    @Test
+    void compute_AnyParallelism_SameResultAsSequentialSums() {
+        // Given - enough cars to split into many tasks
+        Random random = new Random(42);
+        int cars = FleetStatsCalculator.SPLIT_THRESHOLD * 10 + 7;
+        long[] carIds = new long[cars];
+        Map<Long, FuelAggregate> aggregates = new HashMap<>();
+        double totalLiters = 0.0;
+        double consumed = 0.0;
+        long distance = 0;
+        for (int i = 0; i < cars; i++) {
+            carIds[i] = i + 1;
+            int count = random.nextInt(4);
+            double liters = count * (20 + random.nextInt(4000) / 100.0);
+            int minOdometer = random.nextInt(100_000);
+            int maxOdometer = count < 2 ? minOdometer : minOdometer + random.nextInt(5_000);
+            double latestLiters = count == 0 ? 0.0 : liters / count;
+            aggregates.put(carIds[i], new FuelAggregate(count, liters, liters * 1.5, minOdometer, maxOdometer, latestLiters));
+            totalLiters += liters;
+            if (count >= 2 && maxOdometer > minOdometer) {
+                consumed += liters - latestLiters;
+                distance += maxOdometer - minOdometer;
+            }
+        }
+
+        // When
+        FleetFuelStats single;
+        FleetFuelStats parallel;
+        try (FleetStatsCalculator one = new FleetStatsCalculator(1);
+             FleetStatsCalculator four = new FleetStatsCalculator(4)) {
+            single = one.compute(carIds, aggregates::get);
+            parallel = four.compute(carIds, aggregates::get);
+        }
+
+        // Then
+        assertEquals(single, parallel);
+        assertEquals(aggregates.values().stream().filter(aggregate -> aggregate.getCount() > 0).count(), single.cars());
+        assertEquals(totalLiters, single.totalLiters(), 1e-6);
+        assertEquals(Math.round(consumed / distance * 100.0 * 100.0) / 100.0, single.avgPer100km());
+        FleetFuelStats.Distribution distribution = single.distribution();
+        assertEquals(distribution.cars(), distribution.histogram().stream().mapToInt(FleetFuelStats.Bucket::cars).sum());
+        assertTrue(distribution.min() <= distribution.p25());
+        assertTrue(distribution.p25() <= distribution.p50());
+        assertTrue(distribution.p50() <= distribution.p75());
+        assertTrue(distribution.p75() <= distribution.p90());
+        assertTrue(distribution.p90() <= distribution.max());
+    }
+
+    @Test
+    void compute_KnownAverages_ReportsPercentilesAndHistogram() {
+        // Given - averages 5, 10, 15 and 50 L/100km, and one car with a single entry
+        Map<Long, FuelAggregate> aggregates = Map.of(
+            1L, new FuelAggregate(2, 60.0, 90.0, 0, 200, 50.0),
+            2L, new FuelAggregate(2, 60.0, 90.0, 0, 100, 50.0),
+            3L, new FuelAggregate(2, 45.0, 60.0, 0, 100, 30.0),
+            4L, new FuelAggregate(2, 70.0, 100.0, 0, 100, 20.0),
+            5L, new FuelAggregate(1, 40.0, 50.0, 0, 0, 40.0));
+
+        // When
+        FleetFuelStats stats;
+        try (FleetStatsCalculator calculator = new FleetStatsCalculator(2)) {
+            stats = calculator.compute(new long[] {1, 2, 3, 4, 5}, aggregates::get);
+        }
+
+        // Then
+        assertEquals(5, stats.cars());
+        assertEquals(275.0, stats.totalLiters());
+        assertEquals(390.0, stats.totalPrice());
+        // (10 + 10 + 15 + 50) L over 500 km
+        assertEquals(17.0, stats.avgPer100km());
+        FleetFuelStats.Distribution distribution = stats.distribution();
+        assertEquals(4, distribution.cars());
+        assertEquals(5.0, distribution.min());
+        assertEquals(5.0, distribution.p25());
+        assertEquals(10.0, distribution.p50());
+        assertEquals(15.0, distribution.p75());
+        assertEquals(50.0, distribution.p90());
+        assertEquals(50.0, distribution.max());
+        assertEquals(20.0, distribution.mean());
+        assertEquals(1, distribution.histogram().get(2).cars());
+        assertEquals(1, distribution.histogram().get(5).cars());
+        assertEquals(1, distribution.histogram().get(7).cars());
+        FleetFuelStats.Bucket last = distribution.histogram().get(FleetStatsCalculator.BUCKETS - 1);
+        assertNull(last.toPer100km());
+        assertEquals(1, last.cars());
+    }
+
+    @Test
+    void computeEach_ManyCars_ResultsInOrderOfIds() {
+        // Given - enough cars to split into several tasks, one id repeated
+        List<Long> carIds = new ArrayList<>();
+        for (int i = 0; i < FleetStatsCalculator.EACH_SPLIT_THRESHOLD * 5 + 3; i++) {
+            carIds.add((long) (i * 7 % 101));
+        }
+
+        // When
+        List<String> results;
+        try (FleetStatsCalculator calculator = new FleetStatsCalculator(3)) {
+            results = calculator.computeEach(carIds, carId -> "car-" + carId);
+        }
+
+        // Then
+        assertEquals(carIds.stream().map(carId -> "car-" + carId).toList(), results);
+    }
+
+    @Test
+    void compute_NoCars_ReturnsZeros() {
+        // When
+        FleetFuelStats stats;
+        try (FleetStatsCalculator calculator = new FleetStatsCalculator(2)) {
+            stats = calculator.compute(new long[0], carId -> FuelAggregate.EMPTY);
+        }
+
+        // Then
+        assertEquals(0, stats.cars());
+        assertEquals(0.0, stats.avgPer100km());
+        assertEquals(0, stats.distribution().cars());
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.cars.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FuelStatsCacheTest {
+
+    @Test
+    void get_OverCapacity_EvictsLeastRecentlyUsed() {
+        // Given
+        FuelStatsCache cache = new FuelStatsCache(2);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(1L, carId -> stats(loads.incrementAndGet()));
+        cache.get(2L, carId -> stats(loads.incrementAndGet()));
+        cache.get(1L, carId -> stats(loads.incrementAndGet()));
+
+        // When
+        cache.get(3L, carId -> stats(loads.incrementAndGet()));
+
+        // Then - car 2 was the least recently used
+        assertEquals(stats(1), cache.get(1L, carId -> stats(loads.incrementAndGet())));
+        assertEquals(stats(4), cache.get(2L, carId -> stats(loads.incrementAndGet())));
+        FuelStatsCache.Counters counters = cache.counters();
+        assertEquals(2, counters.hits());
+        assertEquals(4, counters.misses());
+        assertEquals(4, counters.loads());
+        assertEquals(2, counters.evictions());
+        assertEquals(2, counters.size());
+    }
+
+    @Test
+    void get_ConcurrentMisses_LoadOnce() throws Exception {
+        // Given
+        FuelStatsCache cache = new FuelStatsCache(10);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<Map<String, Double>> first = pool.submit(() -> cache.get(1L, carId -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return stats(1);
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            // When
+            Future<Map<String, Double>> second = pool.submit(() -> cache.get(1L, carId -> stats(loads.incrementAndGet())));
+            Future<Map<String, Double>> third = pool.submit(() -> cache.get(1L, carId -> stats(loads.incrementAndGet())));
+            while (cache.counters().misses() < 3) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            // Then
+            assertEquals(stats(1), first.get(5, TimeUnit.SECONDS));
+            assertEquals(stats(1), second.get(5, TimeUnit.SECONDS));
+            assertEquals(stats(1), third.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+            assertEquals(1, cache.counters().loads());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void invalidate_DuringLoad_ResultIsNotCached() throws Exception {
+        // Given
+        FuelStatsCache cache = new FuelStatsCache(10);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<Map<String, Double>> stale = pool.submit(() -> cache.get(1L, carId -> {
+                loading.countDown();
+                await(release);
+                return stats(1);
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            // When
+            cache.invalidate(1L);
+            release.countDown();
+
+            // Then - the caller still gets its result, but the next read loads again
+            assertEquals(stats(1), stale.get(5, TimeUnit.SECONDS));
+            assertEquals(stats(2), cache.get(1L, carId -> stats(2)));
+            assertEquals(0, cache.counters().hits());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void get_LoaderThrows_PropagatesAndCachesNothing() {
+        // Given
+        FuelStatsCache cache = new FuelStatsCache(10);
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> cache.get(1L, carId -> {
+            throw new IllegalArgumentException("Car not found with id: " + carId);
+        }));
+        assertEquals(stats(1), cache.get(1L, carId -> stats(1)));
+        assertEquals(0, cache.counters().hits());
+    }
+
+    @Test
+    void get_LargeCapacity_SpreadsCarsOverStripesWithinCapacity() {
+        // Given - twice as many cars as the cache holds
+        int capacity = FuelStatsCache.STRIPES * FuelStatsCache.MIN_STRIPE_CAPACITY;
+        FuelStatsCache cache = new FuelStatsCache(capacity);
+        AtomicInteger loads = new AtomicInteger();
+
+        // When
+        for (long carId = 1; carId <= 2L * capacity; carId++) {
+            cache.get(carId, id -> stats(loads.incrementAndGet()));
+        }
+
+        // Then - every stripe filled up to its share, so the cache stays exactly at capacity
+        FuelStatsCache.Counters counters = cache.counters();
+        assertEquals(capacity, counters.size());
+        assertEquals(capacity, counters.evictions());
+        assertEquals(stats(2 * capacity), cache.get(2L * capacity, id -> stats(-1)));
+    }
+
+    @Test
+    void get_ZeroCapacity_AlwaysLoads() {
+        // Given
+        FuelStatsCache cache = new FuelStatsCache(0);
+        AtomicInteger loads = new AtomicInteger();
+
+        // When
+        cache.get(1L, carId -> stats(loads.incrementAndGet()));
+        cache.get(1L, carId -> stats(loads.incrementAndGet()));
+
+        // Then
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.counters().size());
+        assertEquals(0, cache.counters().evictions());
+    }
+
+    private static Map<String, Double> stats(double totalLiters) {
+        return Map.of("totalLiters", totalLiters);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
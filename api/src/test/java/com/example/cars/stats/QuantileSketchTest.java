@@ -0,0 +1,119 @@
+package com.example.cars.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    @Test
+    void quantile_AccuracyVsMemory_ErrorWithinAccuracyAndBucketsGrowAsItTightens() {
+        // Given - 100k consumptions around 8 L/100km, log-normally spread like real fill-ups
+        Random random = new Random(5);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 8.0 * Math.exp(0.4 * random.nextGaussian());
+        }
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        // When & Then - measured here, growth slack included: 5% -> 54 buckets, 2% -> 106, 1% -> 204,
+        // 0.5% -> 400, i.e. under 2 KB per sketch against 800 KB for the values themselves; memory halves
+        // each time the error bound doubles
+        int previousBuckets = Integer.MAX_VALUE;
+        for (double accuracy : new double[] {0.005, 0.01, 0.02, 0.05}) {
+            QuantileSketch sketch = new QuantileSketch(accuracy, QuantileSketch.DEFAULT_MAX_BUCKETS);
+            for (double value : values) {
+                sketch.add(value);
+            }
+            for (double quantile : QUANTILES) {
+                double exact = sorted[(int) (quantile * (sorted.length - 1))];
+                assertEquals(exact, sketch.quantile(quantile), exact * accuracy * (1 + 1e-9));
+            }
+            assertTrue(sketch.bucketCount() < previousBuckets);
+            assertTrue(sketch.bucketCount() * Integer.BYTES < 2_048);
+            previousBuckets = sketch.bucketCount();
+        }
+    }
+
+    @Test
+    void remove_AddedValues_SameAsNeverAdded() {
+        // Given
+        QuantileSketch sketch = new QuantileSketch();
+        QuantileSketch expected = new QuantileSketch();
+        for (int i = 1; i <= 100; i++) {
+            sketch.add(i);
+            expected.add(i);
+        }
+
+        // When
+        sketch.add(0.001);
+        sketch.add(1_000_000.0);
+        sketch.add(0.0);
+        sketch.remove(0.001);
+        sketch.remove(1_000_000.0);
+        sketch.remove(0.0);
+
+        // Then
+        assertEquals(expected.count(), sketch.count());
+        for (double quantile : new double[] {0.0, 0.5, 0.9, 0.99, 1.0}) {
+            assertEquals(expected.quantile(quantile), sketch.quantile(quantile));
+        }
+        assertThrows(IllegalArgumentException.class, () -> sketch.remove(1_000_000.0));
+    }
+
+    @Test
+    void merge_PerCarSketches_SameAsOneSketchOfAllValues() {
+        // Given - cars of different consumption levels, so their buckets barely overlap
+        Random random = new Random(9);
+        QuantileSketch fleet = new QuantileSketch();
+        QuantileSketch all = new QuantileSketch();
+        for (int car = 0; car < 50; car++) {
+            QuantileSketch perCar = new QuantileSketch();
+            double level = 4.0 + car;
+            for (int i = 0; i < 200; i++) {
+                double value = level * (0.8 + 0.4 * random.nextDouble());
+                perCar.add(value);
+                all.add(value);
+            }
+
+            // When
+            fleet.merge(perCar);
+        }
+
+        // Then
+        assertEquals(all.count(), fleet.count());
+        for (double quantile : QUANTILES) {
+            assertEquals(all.quantile(quantile), fleet.quantile(quantile));
+        }
+        assertThrows(IllegalArgumentException.class, () -> fleet.merge(new QuantileSketch(0.05, 100)));
+    }
+
+    @Test
+    void add_ValuesSpanningMoreThanMaxBuckets_FoldsLowestAndKeepsHighQuantiles() {
+        // Given - 64 buckets at 1% cover a range of about 3.6x
+        QuantileSketch sketch = new QuantileSketch(0.01, 64);
+
+        // When
+        for (int i = 1; i <= 1_000; i++) {
+            sketch.add(i);
+        }
+
+        // Then
+        assertEquals(64, sketch.bucketCount());
+        assertEquals(1_000, sketch.count());
+        assertEquals(990.0, sketch.quantile(0.99), 990.0 * 0.01 + 1e-9);
+        assertTrue(sketch.quantile(0.0) > 1.0);
+    }
+
+    @Test
+    void quantile_Empty_ReturnsNaN() {
+        assertTrue(Double.isNaN(new QuantileSketch().quantile(0.5)));
+        assertThrows(IllegalArgumentException.class, () -> new QuantileSketch().quantile(1.5));
+    }
+}
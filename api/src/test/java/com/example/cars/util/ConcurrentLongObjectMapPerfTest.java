@@ -0,0 +1,126 @@
+package com.example.cars.util;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ConcurrentLongObjectMap against ConcurrentHashMap<Long, V>, the map it replaced. Excluded from the default
+// build; run with: mvn -B test -Pperf
+@Tag("perf")
+class ConcurrentLongObjectMapPerfTest {
+
+    private static final int ENTRIES = 1_000_000;
+    private static final int OPERATIONS = 2_000_000;
+    private static final int ROUNDS = 5;
+    private static final Object VALUE = new Object();
+
+    // 1M sequential keys, as repository ids are; each operation hits a random existing key. Timed loops are
+    // written out per map so neither pays for a shared, megamorphic call site.
+    @Test
+    void getPutRemove_MillionKeys_ReportsNanosPerOperation() {
+        // Given
+        ConcurrentLongObjectMap<Object> primitive = new ConcurrentLongObjectMap<>();
+        ConcurrentHashMap<Long, Object> boxed = new ConcurrentHashMap<>();
+        for (long key = 1; key <= ENTRIES; key++) {
+            primitive.put(key, VALUE);
+            boxed.put(key, VALUE);
+        }
+        long[] keys = new Random(42).longs(OPERATIONS, 1, ENTRIES + 1).toArray();
+
+        // When - best of the rounds after the first, which is warm-up
+        double[] primitiveNanos = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] boxedNanos = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            for (long key : keys) {
+                sink += primitive.get(key) == VALUE ? 1 : 0;
+            }
+            long t1 = System.nanoTime();
+            for (long key : keys) {
+                primitive.put(key, VALUE);
+            }
+            long t2 = System.nanoTime();
+            for (long key : keys) {
+                primitive.remove(key);
+                primitive.put(key, VALUE);
+            }
+            long t3 = System.nanoTime();
+            for (long key : keys) {
+                sink += boxed.get(key) == VALUE ? 1 : 0;
+            }
+            long t4 = System.nanoTime();
+            for (long key : keys) {
+                boxed.put(key, VALUE);
+            }
+            long t5 = System.nanoTime();
+            for (long key : keys) {
+                boxed.remove(key);
+                boxed.put(key, VALUE);
+            }
+            long t6 = System.nanoTime();
+            if (round > 0) {
+                keepBest(primitiveNanos, t0, t1, t2, t3);
+                keepBest(boxedNanos, t3, t4, t5, t6);
+            }
+        }
+        System.out.printf("ConcurrentLongObjectMap:  get %.0f, put %.0f, remove+put %.0f ns/op%n",
+            primitiveNanos[0], primitiveNanos[1], primitiveNanos[2]);
+        System.out.printf("ConcurrentHashMap<Long>:  get %.0f, put %.0f, remove+put %.0f ns/op%n",
+            boxedNanos[0], boxedNanos[1], boxedNanos[2]);
+
+        // Then
+        assertEquals((long) ROUNDS * OPERATIONS * 2, sink);
+        assertEquals(ENTRIES, primitive.size());
+        assertEquals(ENTRIES, boxed.size());
+    }
+
+    // Heap used after GC, before and after filling each map; every entry shares one value, so only the map's
+    // own structure (and the boxed keys) are counted
+    @Test
+    void put_MillionKeys_ReportsRetainedBytesPerEntry() {
+        // Given
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        // When
+        long baseline = usedHeapAfterGc(memory);
+        ConcurrentLongObjectMap<Object> primitive = new ConcurrentLongObjectMap<>();
+        for (long key = 1; key <= ENTRIES; key++) {
+            primitive.put(key, VALUE);
+        }
+        double primitiveBytes = (double) (usedHeapAfterGc(memory) - baseline) / ENTRIES;
+        assertEquals(ENTRIES, primitive.size());
+        primitive = null;
+
+        baseline = usedHeapAfterGc(memory);
+        ConcurrentHashMap<Long, Object> boxed = new ConcurrentHashMap<>();
+        for (long key = 1; key <= ENTRIES; key++) {
+            boxed.put(key, VALUE);
+        }
+        double boxedBytes = (double) (usedHeapAfterGc(memory) - baseline) / ENTRIES;
+        System.out.printf("retained heap, %,d entries: ConcurrentLongObjectMap %.1f B/entry, "
+            + "ConcurrentHashMap<Long> %.1f B/entry%n", ENTRIES, primitiveBytes, boxedBytes);
+
+        // Then
+        assertEquals(ENTRIES, boxed.size());
+    }
+
+    private static void keepBest(double[] best, long t0, long t1, long t2, long t3) {
+        best[0] = Math.min(best[0], (double) (t1 - t0) / OPERATIONS);
+        best[1] = Math.min(best[1], (double) (t2 - t1) / OPERATIONS);
+        best[2] = Math.min(best[2], (double) (t3 - t2) / OPERATIONS);
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 5; i++) {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
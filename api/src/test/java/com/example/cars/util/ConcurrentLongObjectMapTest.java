@@ -0,0 +1,142 @@
+package com.example.cars.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLongObjectMapTest {
+
+    @Test
+    void putGetRemove_SingleKey_BehavesLikeMap() {
+        // Given
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<>();
+
+        // When & Then
+        assertNull(map.put(7L, "a"));
+        assertEquals("a", map.put(7L, "b"));
+        assertEquals("b", map.get(7L));
+        assertTrue(map.containsKey(7L));
+        assertEquals(1, map.size());
+        assertEquals("b", map.remove(7L));
+        assertNull(map.remove(7L));
+        assertNull(map.get(7L));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void put_NullValue_Throws() {
+        // Given
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<>();
+
+        // When & Then
+        assertThrows(NullPointerException.class, () -> map.put(1L, null));
+    }
+
+    @Test
+    void randomOperations_MatchHashMap() {
+        // Given - a small key range forces long probe runs, so removals exercise the backward shift
+        ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000) - 100;
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+                case 1 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+        }
+
+        // Then
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        List<Long> values = new ArrayList<>();
+        map.forEachValue(values::add);
+        assertEquals(expected.size(), values.size());
+        assertTrue(values.containsAll(expected.values()));
+        assertEquals(new TreeSet<>(expected.keySet()),
+            Arrays.stream(map.keys()).boxed().collect(Collectors.toCollection(TreeSet::new)));
+        assertEquals(expected.size(), map.keys().length);
+    }
+
+    @Test
+    void compute_NullResult_RemovesKey() {
+        // Given
+        ConcurrentLongObjectMap<String> map = new ConcurrentLongObjectMap<>();
+        map.put(1L, "a");
+
+        // When
+        map.compute(1L, current -> null);
+        String added = map.compute(2L, current -> current == null ? "new" : current);
+
+        // Then
+        assertFalse(map.containsKey(1L));
+        assertEquals("new", added);
+        assertEquals("new", map.computeIfAbsent(2L, key -> "other"));
+        assertEquals("x3", map.computeIfAbsent(3L, key -> "x" + key));
+    }
+
+    @Test
+    void concurrentReadersAndWriters_ReadersNeverMissStableKeys() throws InterruptedException {
+        // Given - stable keys are never written; churn keys grow, shrink and shift the same tables
+        ConcurrentLongObjectMap<Long> map = new ConcurrentLongObjectMap<>();
+        int stableKeys = 10_000;
+        for (long key = 0; key < stableKeys; key++) {
+            map.put(key, key);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(4);
+
+        // When
+        for (int t = 0; t < 2; t++) {
+            long base = 1_000_000L * (t + 1);
+            new Thread(() -> {
+                Random random = new Random(base);
+                while (running.get()) {
+                    long key = base + random.nextInt(50_000);
+                    if (random.nextBoolean()) {
+                        map.put(key, key);
+                    } else {
+                        map.remove(key);
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        for (int t = 0; t < 2; t++) {
+            new Thread(() -> {
+                for (int round = 0; round < 50 && failure.get() == null; round++) {
+                    for (long key = 0; key < stableKeys; key++) {
+                        Long value = map.get(key);
+                        if (value == null || value != key) {
+                            failure.set("Key " + key + " read as " + value);
+                            break;
+                        }
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        Thread.sleep(2_000);
+        running.set(false);
+        done.await();
+
+        // Then
+        assertNull(failure.get());
+    }
+}
@@ -7,7 +7,8 @@ import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.function.Predicate;
+import java.time.LocalDate;
+import java.util.function.LongPredicate;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -17,8 +18,8 @@ class ValidationUtilsTest {
     @InjectMocks
     private ValidationUtils validationUtils;
 
-    private Predicate<Long> alwaysTrue;
-    private Predicate<Long> alwaysFalse;
+    private LongPredicate alwaysTrue;
+    private LongPredicate alwaysFalse;
 
     @BeforeEach
     void setUp() {
@@ -85,5 +86,48 @@ class ValidationUtilsTest {
         assertEquals(404, exception.getStatusCode().value());
         assertTrue(exception.getReason().contains("Fuel entry with ID 999 not found"));
     }
-}
 
+    @Test
+    void validatePage_ValidCursorAndLimit_DoesNotThrow() {
+        // When & Then
+        assertDoesNotThrow(() -> validationUtils.validatePage(null, 1, 1000));
+        assertDoesNotThrow(() -> validationUtils.validatePage(42L, 1000, 1000));
+    }
+
+    @Test
+    void validatePage_NegativeCursor_ThrowsBadRequest() {
+        // When & Then
+        ResponseStatusException exception = assertThrows(
+            ResponseStatusException.class,
+            () -> validationUtils.validatePage(-1L, 10, 1000)
+        );
+
+        assertEquals(400, exception.getStatusCode().value());
+        assertTrue(exception.getReason().contains("cannot be negative"));
+    }
+
+    @Test
+    void validatePage_LimitOutOfRange_ThrowsBadRequest() {
+        // When & Then
+        ResponseStatusException exception = assertThrows(
+            ResponseStatusException.class,
+            () -> validationUtils.validatePage(null, 0, 1000)
+        );
+
+        assertEquals(400, exception.getStatusCode().value());
+        assertTrue(exception.getReason().contains("Limit must be between 1 and 1000"));
+    }
+
+    @Test
+    void validateDateRange_FromNotBeforeTo_ThrowsBadRequest() {
+        // When & Then
+        ResponseStatusException exception = assertThrows(
+            ResponseStatusException.class,
+            () -> validationUtils.validateDateRange(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 1))
+        );
+
+        assertEquals(400, exception.getStatusCode().value());
+        assertDoesNotThrow(() -> validationUtils.validateDateRange(null, LocalDate.of(2024, 2, 1)));
+        assertDoesNotThrow(() -> validationUtils.validateDateRange(LocalDate.of(2024, 1, 31), LocalDate.of(2024, 2, 1)));
+    }
+}